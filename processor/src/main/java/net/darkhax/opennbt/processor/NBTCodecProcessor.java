@@ -0,0 +1,966 @@
+package net.darkhax.opennbt.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an NBTCodec for every class and record marked with NBTSerializable. The generated
+ * codecs read and write each field with straight line code, so no reflection is used at run
+ * time. Placing this processor on the compile class path is enough for javac to run it.
+ *
+ * Fields can hold the primitive types and their boxed forms, except for char, as well as
+ * String, enums, arrays of byte, short, int, long, float, double and String, and other classes
+ * marked with NBTSerializable, which are written as nested compound tags.
+ */
+@SupportedAnnotationTypes(NBTCodecProcessor.SERIALIZABLE)
+public class NBTCodecProcessor extends AbstractProcessor {
+    
+    /**
+     * The name of the annotation which marks classes to generate codecs for.
+     */
+    static final String SERIALIZABLE = "net.darkhax.opennbt.mapping.NBTSerializable";
+    
+    /**
+     * The name of the annotation which sets the tag name of a field.
+     */
+    private static final String NAME = "net.darkhax.opennbt.mapping.NBTName";
+    
+    /**
+     * The suffix added to the name of a class to get the name of its codec.
+     */
+    private static final String SUFFIX = "_NBTCodec";
+    
+    /**
+     * The indentation used for each level of generated code.
+     */
+    private static final String INDENT = "    ";
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion () {
+        
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        
+        final TypeElement annotation = this.processingEnv.getElementUtils().getTypeElement(SERIALIZABLE);
+        
+        if (annotation == null)
+            return false;
+            
+        for (final Element element : round.getElementsAnnotatedWith(annotation))
+            try {
+                
+                this.generate((TypeElement) element);
+            }
+            
+            catch (final InvalidElementException e) {
+                
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            }
+            
+            catch (final IOException e) {
+                
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write NBT codec: " + e.getMessage(), element);
+            }
+            
+        return true;
+    }
+    
+    /**
+     * Generates the codec for a class.
+     *
+     * @param type The class to generate a codec for.
+     * @throws InvalidElementException If the class or one of its fields can not be mapped.
+     * @throws IOException If the source file could not be written.
+     */
+    private void generate (TypeElement type) throws InvalidElementException, IOException {
+        
+        final boolean record = type.getKind().name().equals("RECORD");
+        
+        if (type.getKind() != ElementKind.CLASS && !record)
+            throw new InvalidElementException("Only classes and records can be marked with NBTSerializable.", type);
+            
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT))
+            throw new InvalidElementException("Classes marked with NBTSerializable can not be private or abstract.", type);
+            
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+            throw new InvalidElementException("Nested classes marked with NBTSerializable must be static.", type);
+            
+        if (!type.getTypeParameters().isEmpty())
+            throw new InvalidElementException("Classes marked with NBTSerializable can not have type parameters.", type);
+            
+        if (!record && !hasDefaultConstructor(type))
+            throw new InvalidElementException("Classes marked with NBTSerializable need a constructor which takes no arguments.", type);
+            
+        final List<Property> properties = new ArrayList<Property>();
+        final Set<String> keys = new HashSet<String>();
+        
+        for (final Element member : type.getEnclosedElements())
+            if (member.getKind() == ElementKind.FIELD && !member.getModifiers().contains(Modifier.STATIC) && !member.getModifiers().contains(Modifier.TRANSIENT)) {
+                
+                final Property property = this.createProperty(type, (VariableElement) member, record, properties.size());
+                
+                if (!keys.add(property.key))
+                    throw new InvalidElementException("Another field is already mapped to the tag " + property.key + ".", member);
+                    
+                properties.add(property);
+            }
+            
+        final String packageName = this.getPackage(type);
+        final String codecName = getFlatName(type) + SUFFIX;
+        final String className = type.getQualifiedName().toString();
+        final Set<String> imports = new TreeSet<String>();
+        imports.add("java.io.IOException");
+        imports.add("net.darkhax.opennbt.io.NBTReader");
+        imports.add("net.darkhax.opennbt.io.NBTWriter");
+        imports.add("net.darkhax.opennbt.mapping.NBTCodec");
+        imports.add("net.darkhax.opennbt.tags.CompoundTag");
+        imports.add("net.darkhax.opennbt.tags.Tag");
+        
+        for (final Property property : properties)
+            imports.add("net.darkhax.opennbt.tags." + property.type.tag);
+            
+        final StringBuilder source = new StringBuilder();
+        
+        if (!packageName.isEmpty())
+            source.append("package ").append(packageName).append(";\n\n");
+            
+        for (final String name : imports)
+            source.append("import ").append(name).append(";\n");
+            
+        source.append("\n/**\n * Generated by the OpenNBT processor from ").append(className).append(". Do not edit.\n */\n");
+        source.append("public final class ").append(codecName).append(" implements NBTCodec<").append(className).append("> {\n\n");
+        line(source, 1, "/**");
+        line(source, 1, " * The shared instance of the codec.");
+        line(source, 1, " */");
+        line(source, 1, "public static final " + codecName + " INSTANCE = new " + codecName + "();");
+        source.append('\n');
+        
+        line(source, 1, "@Override");
+        line(source, 1, "public Class<" + className + "> getType () {");
+        line(source, 2, "return " + className + ".class;");
+        line(source, 1, "}");
+        source.append('\n');
+        
+        line(source, 1, "@Override");
+        line(source, 1, "public void write (NBTWriter out, " + className + " value) throws IOException {");
+        
+        for (final Property property : properties)
+            this.writeStream(source, property);
+            
+        line(source, 2, "out.writeByte(0);");
+        line(source, 1, "}");
+        source.append('\n');
+        
+        line(source, 1, "@Override");
+        line(source, 1, "public " + className + " read (NBTReader in) throws IOException {");
+        createValue(source, className, properties, record);
+        line(source, 2, "for (int id = in.readUnsignedByte(); id != 0; id = in.readUnsignedByte()) {");
+        line(source, 3, "final String key = in.readName();");
+        line(source, 3, "switch (key) {");
+        
+        for (final Property property : properties)
+            this.readStream(source, property, record);
+            
+        line(source, 4, "default:");
+        line(source, 5, "in.skipPayload(id);");
+        line(source, 3, "}");
+        line(source, 2, "}");
+        returnValue(source, className, properties, record);
+        line(source, 1, "}");
+        source.append('\n');
+        
+        line(source, 1, "@Override");
+        line(source, 1, "public CompoundTag toTag (String name, " + className + " value) {");
+        line(source, 2, "final CompoundTag tag = new CompoundTag(name);");
+        
+        for (final Property property : properties)
+            this.writeTag(source, property);
+            
+        line(source, 2, "return tag;");
+        line(source, 1, "}");
+        source.append('\n');
+        
+        line(source, 1, "@Override");
+        line(source, 1, "public " + className + " fromTag (CompoundTag tag) {");
+        createValue(source, className, properties, record);
+        
+        for (final Property property : properties)
+            this.readTag(source, property, record);
+            
+        returnValue(source, className, properties, record);
+        line(source, 1, "}");
+        source.append("}\n");
+        
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? codecName : packageName + "." + codecName, type).openWriter()) {
+            
+            writer.write(source.toString());
+        }
+    }
+    
+    /**
+     * Creates the property for a field, working out how it is accessed and what type of tag
+     * it is mapped to.
+     *
+     * @param type The class which declares the field.
+     * @param field The field to map.
+     * @param record Whether or not the class is a record.
+     * @param index The index of the field among the mapped fields, used to name locals.
+     * @return Property The mapped property.
+     * @throws InvalidElementException If the field can not be mapped.
+     */
+    private Property createProperty (TypeElement type, VariableElement field, boolean record, int index) throws InvalidElementException {
+        
+        final String name = field.getSimpleName().toString();
+        final TypeMirror fieldType = field.asType();
+        final ValueType valueType = this.getValueType(fieldType, field);
+        final String key = getTagName(field);
+        final String local = "value" + index;
+        
+        if (record)
+            return new Property(key, valueType, fieldType, "value." + name + "()", null, local);
+            
+        if (field.getModifiers().contains(Modifier.FINAL))
+            throw new InvalidElementException("Fields mapped by NBTSerializable can not be final.", field);
+            
+        if (!field.getModifiers().contains(Modifier.PRIVATE))
+            return new Property(key, valueType, fieldType, "value." + name, "value." + name + " = ", local);
+            
+        final String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        final String getter = fieldType.getKind() == TypeKind.BOOLEAN && findMethod(type, "is" + suffix, 0) ? "is" + suffix : "get" + suffix;
+        
+        if (!findMethod(type, getter, 0) || !findMethod(type, "set" + suffix, 1))
+            throw new InvalidElementException("Private fields mapped by NBTSerializable need a getter and a setter.", field);
+            
+        return new Property(key, valueType, fieldType, "value." + getter + "()", "value.set" + suffix + "(", local);
+    }
+    
+    /**
+     * Gets the type of tag a field is mapped to.
+     *
+     * @param type The type of the field.
+     * @param field The field, used for error messages.
+     * @return ValueType The type of tag the field is mapped to.
+     * @throws InvalidElementException If the type of the field is not supported.
+     */
+    private ValueType getValueType (TypeMirror type, VariableElement field) throws InvalidElementException {
+        
+        switch (type.getKind()) {
+            
+            case BYTE:
+                return ValueType.BYTE;
+                
+            case SHORT:
+                return ValueType.SHORT;
+                
+            case INT:
+                return ValueType.INT;
+                
+            case LONG:
+                return ValueType.LONG;
+                
+            case FLOAT:
+                return ValueType.FLOAT;
+                
+            case DOUBLE:
+                return ValueType.DOUBLE;
+                
+            case BOOLEAN:
+                return ValueType.BOOLEAN;
+                
+            case ARRAY:
+                final TypeMirror component = ((ArrayType) type).getComponentType();
+                
+                switch (component.getKind()) {
+                    
+                    case BYTE:
+                        return ValueType.BYTE_ARRAY;
+                        
+                    case SHORT:
+                        return ValueType.SHORT_ARRAY;
+                        
+                    case INT:
+                        return ValueType.INT_ARRAY;
+                        
+                    case LONG:
+                        return ValueType.LONG_ARRAY;
+                        
+                    case FLOAT:
+                        return ValueType.FLOAT_ARRAY;
+                        
+                    case DOUBLE:
+                        return ValueType.DOUBLE_ARRAY;
+                        
+                    case DECLARED:
+                        if (getName(component).equals("java.lang.String"))
+                            return ValueType.STRING_ARRAY;
+                            
+                        break;
+                        
+                    default:
+                        break;
+                }
+                
+                break;
+                
+            case DECLARED:
+                final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                
+                switch (element.getQualifiedName().toString()) {
+                    
+                    case "java.lang.Byte":
+                        return ValueType.BYTE;
+                        
+                    case "java.lang.Short":
+                        return ValueType.SHORT;
+                        
+                    case "java.lang.Integer":
+                        return ValueType.INT;
+                        
+                    case "java.lang.Long":
+                        return ValueType.LONG;
+                        
+                    case "java.lang.Float":
+                        return ValueType.FLOAT;
+                        
+                    case "java.lang.Double":
+                        return ValueType.DOUBLE;
+                        
+                    case "java.lang.Boolean":
+                        return ValueType.BOOLEAN;
+                        
+                    case "java.lang.String":
+                        return ValueType.STRING;
+                        
+                    default:
+                        break;
+                }
+                
+                if (element.getKind() == ElementKind.ENUM)
+                    return ValueType.ENUM;
+                    
+                if (getAnnotation(element, SERIALIZABLE) != null)
+                    return ValueType.COMPOUND;
+                    
+                break;
+                
+            default:
+                break;
+        }
+        
+        throw new InvalidElementException("Fields of type " + type + " can not be mapped by NBTSerializable.", field);
+    }
+    
+    /**
+     * Gets the name of the package a class is in.
+     *
+     * @param type The class.
+     * @return String The name of the package, or an empty String for the unnamed package.
+     */
+    private String getPackage (TypeElement type) {
+        
+        final PackageElement element = this.processingEnv.getElementUtils().getPackageOf(type);
+        return element.isUnnamed() ? "" : element.getQualifiedName().toString();
+    }
+    
+    /**
+     * Gets the qualified name of the codec generated for a class.
+     *
+     * @param type The class.
+     * @return String The qualified name of the codec.
+     */
+    private String getCodecName (TypeMirror type) {
+        
+        final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        final String packageName = this.getPackage(element);
+        return (packageName.isEmpty() ? "" : packageName + ".") + getFlatName(element) + SUFFIX;
+    }
+    
+    /**
+     * Writes the code which writes a property to the NBT stream.
+     *
+     * @param source The source being generated.
+     * @param property The property to write.
+     */
+    private void writeStream (StringBuilder source, Property property) {
+        
+        String value = property.getter;
+        int depth = 2;
+        
+        if (!property.primitive) {
+            
+            line(source, 2, "final " + property.typeName + " " + property.local + " = " + value + ";");
+            line(source, 2, "if (" + property.local + " != null) {");
+            value = property.local;
+            depth = 3;
+        }
+        
+        line(source, depth, "out.writeByte(" + property.type.tag + ".ID);");
+        line(source, depth, "out.writeUTF(" + literal(property.key) + ");");
+        
+        switch (property.type) {
+            
+            case BOOLEAN:
+                line(source, depth, "out.writeByte(" + value + " ? 1 : 0);");
+                break;
+                
+            case ENUM:
+                line(source, depth, "out.writeUTF(" + value + ".name());");
+                break;
+                
+            case BYTE_ARRAY:
+                line(source, depth, "out.writeInt(" + value + ".length);");
+                line(source, depth, "out.write(" + value + ");");
+                break;
+                
+            case STRING_ARRAY:
+                line(source, depth, "out.writeInt(" + value + ".length);");
+                line(source, depth, "for (final String element : " + value + ")");
+                line(source, depth + 1, "out.writeUTF(element);");
+                break;
+                
+            case COMPOUND:
+                line(source, depth, this.getCodecName(property.mirror) + ".INSTANCE.write(out, " + value + ");");
+                break;
+                
+            default:
+                if (property.type.array) {
+                    
+                    line(source, depth, "out.writeInt(" + value + ".length);");
+                    line(source, depth, "out." + property.type.write + "(" + value + ", 0, " + value + ".length);");
+                }
+                
+                else
+                    line(source, depth, "out." + property.type.write + "(" + value + ");");
+        }
+        
+        if (!property.primitive)
+            line(source, 2, "}");
+    }
+    
+    /**
+     * Writes the case which reads a property from the NBT stream.
+     *
+     * @param source The source being generated.
+     * @param property The property to read.
+     * @param record Whether or not the class is a record.
+     */
+    private void readStream (StringBuilder source, Property property, boolean record) {
+        
+        line(source, 4, "case " + literal(property.key) + ":");
+        
+        if (property.type.array) {
+            
+            final String element = property.typeName.substring(0, property.typeName.length() - 2);
+            line(source, 5, "if (id == " + property.type.tag + ".ID) {");
+            line(source, 6, "final " + property.typeName + " array = new " + element + "[in.readInt()];");
+            
+            if (property.type == ValueType.BYTE_ARRAY)
+                line(source, 6, "in.readFully(array);");
+                
+            else if (property.type == ValueType.STRING_ARRAY) {
+                
+                line(source, 6, "for (int index = 0; index < array.length; index++)");
+                line(source, 7, "array[index] = in.readUTF();");
+            }
+            
+            else
+                line(source, 6, "in." + property.type.read + "(array, 0, array.length);");
+                
+            line(source, 6, property.assign("array", record));
+            line(source, 5, "}");
+        }
+        
+        else {
+            
+            final String value;
+            
+            switch (property.type) {
+                
+                case BOOLEAN:
+                    value = "in.readByte() != 0";
+                    break;
+                    
+                case ENUM:
+                    value = property.typeName + ".valueOf(in.readUTF())";
+                    break;
+                    
+                case COMPOUND:
+                    value = this.getCodecName(property.mirror) + ".INSTANCE.read(in)";
+                    break;
+                    
+                default:
+                    value = "in." + property.type.read + "()";
+            }
+            
+            line(source, 5, "if (id == " + property.type.tag + ".ID)");
+            line(source, 6, property.assign(value, record));
+        }
+        
+        line(source, 5, "else");
+        line(source, 6, "in.skipPayload(id);");
+        line(source, 5, "break;");
+    }
+    
+    /**
+     * Writes the code which stores a property in a CompoundTag.
+     *
+     * @param source The source being generated.
+     * @param property The property to store.
+     */
+    private void writeTag (StringBuilder source, Property property) {
+        
+        String value = property.getter;
+        int depth = 2;
+        
+        if (!property.primitive) {
+            
+            line(source, 2, "final " + property.typeName + " " + property.local + " = " + value + ";");
+            line(source, 2, "if (" + property.local + " != null)");
+            value = property.local;
+            depth = 3;
+        }
+        
+        final String key = literal(property.key);
+        
+        switch (property.type) {
+            
+            case ENUM:
+                line(source, depth, "tag.setString(" + key + ", " + value + ".name());");
+                break;
+                
+            case COMPOUND:
+                line(source, depth, "tag.setTag(" + this.getCodecName(property.mirror) + ".INSTANCE.toTag(" + key + ", " + value + "));");
+                break;
+                
+            default:
+                line(source, depth, "tag." + property.type.set + "(" + key + ", " + value + ");");
+        }
+    }
+    
+    /**
+     * Writes the code which reads a property from a CompoundTag.
+     *
+     * @param source The source being generated.
+     * @param property The property to read.
+     * @param record Whether or not the class is a record.
+     */
+    private void readTag (StringBuilder source, Property property, boolean record) {
+        
+        final String tag = "tag" + property.local.substring("value".length());
+        final String cast = "((" + property.type.tag + ") " + tag + ")";
+        final String value;
+        
+        switch (property.type) {
+            
+            case BOOLEAN:
+                value = cast + ".getValue() != 0";
+                break;
+                
+            case ENUM:
+                value = property.typeName + ".valueOf(" + cast + ".getValue())";
+                break;
+                
+            case COMPOUND:
+                value = this.getCodecName(property.mirror) + ".INSTANCE.fromTag(" + cast + ")";
+                break;
+                
+            default:
+                value = cast + ".getValue()";
+        }
+        
+        line(source, 2, "final Tag " + tag + " = tag.getTag(" + literal(property.key) + ");");
+        line(source, 2, "if (" + tag + " instanceof " + property.type.tag + ")");
+        line(source, 3, property.assign(value, record));
+    }
+    
+    /**
+     * Writes the code which creates the object being read. Records are created at the end,
+     * so a local is declared for each of their fields instead.
+     *
+     * @param source The source being generated.
+     * @param className The name of the class being read.
+     * @param properties The properties of the class.
+     * @param record Whether or not the class is a record.
+     */
+    private static void createValue (StringBuilder source, String className, List<Property> properties, boolean record) {
+        
+        if (!record)
+            line(source, 2, "final " + className + " value = new " + className + "();");
+            
+        else
+            for (final Property property : properties)
+                line(source, 2, property.typeName + " " + property.local + " = " + property.defaultValue() + ";");
+    }
+    
+    /**
+     * Writes the code which returns the object which was read.
+     *
+     * @param source The source being generated.
+     * @param className The name of the class being read.
+     * @param properties The properties of the class.
+     * @param record Whether or not the class is a record.
+     */
+    private static void returnValue (StringBuilder source, String className, List<Property> properties, boolean record) {
+        
+        if (!record) {
+            
+            line(source, 2, "return value;");
+            return;
+        }
+        
+        final StringBuilder arguments = new StringBuilder();
+        
+        for (final Property property : properties)
+            arguments.append(arguments.length() > 0 ? ", " : "").append(property.local);
+            
+        line(source, 2, "return new " + className + "(" + arguments + ");");
+    }
+    
+    /**
+     * Checks if a class has a constructor which takes no arguments and is not private.
+     *
+     * @param type The class to check.
+     * @return boolean Whether or not the class has a usable constructor.
+     */
+    private static boolean hasDefaultConstructor (TypeElement type) {
+        
+        for (final Element member : type.getEnclosedElements())
+            if (member.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) member).getParameters().isEmpty() && !member.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+                
+        return false;
+    }
+    
+    /**
+     * Checks if a class declares an instance method which is not private.
+     *
+     * @param type The class to check.
+     * @param name The name of the method.
+     * @param parameters The amount of parameters the method takes.
+     * @return boolean Whether or not the method was found.
+     */
+    private static boolean findMethod (TypeElement type, String name, int parameters) {
+        
+        for (final Element member : type.getEnclosedElements())
+            if (member.getKind() == ElementKind.METHOD && member.getSimpleName().contentEquals(name) && ((ExecutableElement) member).getParameters().size() == parameters && !member.getModifiers().contains(Modifier.PRIVATE) && !member.getModifiers().contains(Modifier.STATIC))
+                return true;
+                
+        return false;
+    }
+    
+    /**
+     * Gets the name of the tag a field is mapped to.
+     *
+     * @param field The field.
+     * @return String The value of its NBTName annotation, or the name of the field.
+     */
+    private static String getTagName (VariableElement field) {
+        
+        final AnnotationMirror annotation = getAnnotation(field, NAME);
+        
+        if (annotation != null)
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet())
+                if (entry.getKey().getSimpleName().contentEquals("value"))
+                    return (String) entry.getValue().getValue();
+                    
+        return field.getSimpleName().toString();
+    }
+    
+    /**
+     * Gets an annotation on an element by name.
+     *
+     * @param element The annotated element.
+     * @param name The qualified name of the annotation.
+     * @return AnnotationMirror The annotation, or null if the element does not have it.
+     */
+    private static AnnotationMirror getAnnotation (Element element, String name) {
+        
+        for (final AnnotationMirror annotation : element.getAnnotationMirrors())
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(name))
+                return annotation;
+                
+        return null;
+    }
+    
+    /**
+     * Gets the qualified name of a declared type.
+     *
+     * @param type The type.
+     * @return String The qualified name of the type.
+     */
+    private static String getName (TypeMirror type) {
+        
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+    
+    /**
+     * Gets the name of a class joined with the names of the classes it is nested in, such as
+     * {@code Outer_Inner}.
+     *
+     * @param type The class.
+     * @return String The flat name of the class.
+     */
+    private static String getFlatName (TypeElement type) {
+        
+        final Element enclosing = type.getEnclosingElement();
+        return enclosing instanceof TypeElement ? getFlatName((TypeElement) enclosing) + "_" + type.getSimpleName() : type.getSimpleName().toString();
+    }
+    
+    /**
+     * Quotes a String as a Java literal.
+     *
+     * @param value The String to quote.
+     * @return String The Java literal.
+     */
+    private static String literal (String value) {
+        
+        final StringBuilder literal = new StringBuilder("\"");
+        
+        for (int index = 0; index < value.length(); index++) {
+            
+            final char character = value.charAt(index);
+            
+            if (character == '"' || character == '\\')
+                literal.append('\\').append(character);
+                
+            else if (character < 0x20 || character > 0x7E)
+                literal.append(String.format("\\u%04x", (int) character));
+                
+            else
+                literal.append(character);
+        }
+        
+        return literal.append('"').toString();
+    }
+    
+    /**
+     * Appends an indented line of code.
+     *
+     * @param source The source being generated.
+     * @param depth The indentation level of the line.
+     * @param code The code to append.
+     */
+    private static void line (StringBuilder source, int depth, String code) {
+        
+        for (int level = 0; level < depth; level++)
+            source.append(INDENT);
+            
+        source.append(code).append('\n');
+    }
+    
+    /**
+     * The types of tag which fields can be mapped to.
+     */
+    private enum ValueType {
+        
+        BYTE("ByteTag", "setByte", "writeByte", "readByte", false),
+        SHORT("ShortTag", "setShort", "writeShort", "readShort", false),
+        INT("IntTag", "setInt", "writeInt", "readInt", false),
+        LONG("LongTag", "setLong", "writeLong", "readLong", false),
+        FLOAT("FloatTag", "setFloat", "writeFloat", "readFloat", false),
+        DOUBLE("DoubleTag", "setDouble", "writeDouble", "readDouble", false),
+        BOOLEAN("ByteTag", "setBoolean", null, null, false),
+        STRING("StringTag", "setString", "writeUTF", "readUTF", false),
+        ENUM("StringTag", null, null, null, false),
+        BYTE_ARRAY("ByteArrayTag", "setByteArray", null, null, true),
+        SHORT_ARRAY("ShortArrayTag", "setShortArray", "writeShorts", "readShorts", true),
+        INT_ARRAY("IntArrayTag", "setIntArray", "writeInts", "readInts", true),
+        LONG_ARRAY("LongArrayTag", "setLongArray", "writeLongs", "readLongs", true),
+        FLOAT_ARRAY("FloatArrayTag", "setFloatArray", "writeFloats", "readFloats", true),
+        DOUBLE_ARRAY("DoubleArrayTag", "setDoubleArray", "writeDoubles", "readDoubles", true),
+        STRING_ARRAY("StringArrayTag", "setStringArray", null, null, true),
+        COMPOUND("CompoundTag", null, null, null, false);
+        
+        /**
+         * The simple name of the tag class.
+         */
+        private final String tag;
+        
+        /**
+         * The CompoundTag method which stores the value.
+         */
+        private final String set;
+        
+        /**
+         * The NBTWriter method which writes the value.
+         */
+        private final String write;
+        
+        /**
+         * The NBTReader method which reads the value.
+         */
+        private final String read;
+        
+        /**
+         * Whether or not the value is an array.
+         */
+        private final boolean array;
+        
+        /**
+         * Creates a new value type.
+         *
+         * @param tag The simple name of the tag class.
+         * @param set The CompoundTag method which stores the value.
+         * @param write The NBTWriter method which writes the value.
+         * @param read The NBTReader method which reads the value.
+         * @param array Whether or not the value is an array.
+         */
+        ValueType(String tag, String set, String write, String read, boolean array) {
+            
+            this.tag = tag;
+            this.set = set;
+            this.write = write;
+            this.read = read;
+            this.array = array;
+        }
+    }
+    
+    /**
+     * A field which is mapped to a tag.
+     */
+    private static final class Property {
+        
+        /**
+         * The name of the tag.
+         */
+        private final String key;
+        
+        /**
+         * The type of tag.
+         */
+        private final ValueType type;
+        
+        /**
+         * The type of the field.
+         */
+        private final TypeMirror mirror;
+        
+        /**
+         * The type of the field, as written in source.
+         */
+        private final String typeName;
+        
+        /**
+         * Whether or not the field is a primitive, which can never be null.
+         */
+        private final boolean primitive;
+        
+        /**
+         * The expression which gets the value of the field from an object named value.
+         */
+        private final String getter;
+        
+        /**
+         * The code which starts assigning the field of an object named value. Null for the
+         * fields of a record.
+         */
+        private final String setter;
+        
+        /**
+         * The name of the local used for the field. Records are read into these locals.
+         */
+        private final String local;
+        
+        /**
+         * Creates a new property.
+         *
+         * @param key The name of the tag.
+         * @param type The type of tag.
+         * @param mirror The type of the field.
+         * @param getter The expression which gets the value of the field.
+         * @param setter The code which starts assigning the field, or null for a record.
+         * @param local The name of the local used for the field.
+         */
+        private Property(String key, ValueType type, TypeMirror mirror, String getter, String setter, String local) {
+            
+            this.key = key;
+            this.type = type;
+            this.mirror = mirror;
+            this.typeName = mirror.toString();
+            this.primitive = mirror.getKind().isPrimitive();
+            this.getter = getter;
+            this.setter = setter;
+            this.local = local;
+        }
+        
+        /**
+         * Creates the statement which assigns a value to the field.
+         *
+         * @param value The expression to assign.
+         * @param record Whether or not the field belongs to a record.
+         * @return String The statement.
+         */
+        private String assign (String value, boolean record) {
+            
+            if (record)
+                return this.local + " = " + value + ";";
+                
+            return this.setter.endsWith("(") ? this.setter + value + ");" : this.setter + value + ";";
+        }
+        
+        /**
+         * Gets the default value of the field, used for record fields without a tag.
+         *
+         * @return String The default value.
+         */
+        private String defaultValue () {
+            
+            if (!this.primitive)
+                return "null";
+                
+            return this.mirror.getKind() == TypeKind.BOOLEAN ? "false" : "0";
+        }
+    }
+    
+    /**
+     * An exception thrown when a class or field can not be mapped.
+     */
+    @SuppressWarnings("serial")
+    private static final class InvalidElementException extends Exception {
+        
+        /**
+         * The element which can not be mapped.
+         */
+        private final transient Element element;
+        
+        /**
+         * Creates a new exception.
+         *
+         * @param message The reason the element can not be mapped.
+         * @param element The element which can not be mapped.
+         */
+        private InvalidElementException(String message, Element element) {
+            
+            super(message);
+            this.element = element;
+        }
+    }
+}
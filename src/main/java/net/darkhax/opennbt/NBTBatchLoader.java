@@ -0,0 +1,402 @@
+package net.darkhax.opennbt;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import net.darkhax.opennbt.compression.Compression;
+import net.darkhax.opennbt.tags.CompoundTag;
+
+/**
+ * Reads many NBT files in parallel. Files are read and decoded on a ForkJoinPool, with a
+ * limit on how many files are read at the same time. Results can be delivered in the order
+ * the files were given, or in the order they finish, either as a Map or as a Stream which
+ * yields each file as soon as it is ready.
+ *
+ * A file which can not be read does not stop the rest of the batch. It is left out of the
+ * results, and passed to the failure handler along with the error, which can be any
+ * Throwable, such as a StackOverflowError thrown by a deeply nested file. Loaders are immutable,
+ * and can be shared between threads.
+ */
+public class NBTBatchLoader {
+    
+    /**
+     * A loader which uses the common ForkJoinPool, reads as many files at once as there are
+     * processors, detects the compression of each file, and keeps the results in order.
+     */
+    public static final NBTBatchLoader DEFAULT = new NBTBatchLoader(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors(), null, true, (path, error) -> error.printStackTrace());
+    
+    /**
+     * The pool which files are read on.
+     */
+    private final ForkJoinPool pool;
+    
+    /**
+     * The maximum amount of files to read at the same time.
+     */
+    private final int concurrency;
+    
+    /**
+     * The compression used by the files, or null to detect it for each file.
+     */
+    private final Compression compression;
+    
+    /**
+     * Whether results are delivered in the order the files were given.
+     */
+    private final boolean ordered;
+    
+    /**
+     * The handler which is given every file which could not be read.
+     */
+    private final BiConsumer<Path, Throwable> failureHandler;
+    
+    /**
+     * Creates a new loader.
+     *
+     * @param pool The pool to read files on.
+     * @param concurrency The maximum amount of files to read at the same time.
+     * @param compression The compression used by the files, or null to detect it.
+     * @param ordered Whether results are delivered in the order the files were given.
+     * @param failureHandler The handler for files which could not be read.
+     */
+    private NBTBatchLoader(ForkJoinPool pool, int concurrency, Compression compression, boolean ordered, BiConsumer<Path, Throwable> failureHandler) {
+        
+        this.pool = pool;
+        this.concurrency = concurrency;
+        this.compression = compression;
+        this.ordered = ordered;
+        this.failureHandler = failureHandler;
+    }
+    
+    /**
+     * Creates a copy of this loader which reads files on a different pool.
+     *
+     * @param pool The pool to read files on.
+     * @return NBTBatchLoader The new loader.
+     */
+    public NBTBatchLoader withPool (ForkJoinPool pool) {
+        
+        return new NBTBatchLoader(pool, this.concurrency, this.compression, this.ordered, this.failureHandler);
+    }
+    
+    /**
+     * Creates a copy of this loader which reads a different amount of files at once.
+     *
+     * @param concurrency The maximum amount of files to read at the same time.
+     * @return NBTBatchLoader The new loader.
+     */
+    public NBTBatchLoader withConcurrency (int concurrency) {
+        
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("Concurrency must be positive.");
+            
+        return new NBTBatchLoader(this.pool, concurrency, this.compression, this.ordered, this.failureHandler);
+    }
+    
+    /**
+     * Creates a copy of this loader which reads files using a specific compression.
+     *
+     * @param compression The compression used by the files, or null to detect it for each
+     *        file.
+     * @return NBTBatchLoader The new loader.
+     */
+    public NBTBatchLoader withCompression (Compression compression) {
+        
+        return new NBTBatchLoader(this.pool, this.concurrency, compression, this.ordered, this.failureHandler);
+    }
+    
+    /**
+     * Creates a copy of this loader which delivers results in a different order. Unordered
+     * results are delivered as soon as each file is read, so one slow file does not hold up
+     * the rest.
+     *
+     * @param ordered Whether results are delivered in the order the files were given.
+     * @return NBTBatchLoader The new loader.
+     */
+    public NBTBatchLoader withOrdered (boolean ordered) {
+        
+        return new NBTBatchLoader(this.pool, this.concurrency, this.compression, ordered, this.failureHandler);
+    }
+    
+    /**
+     * Creates a copy of this loader which reports failed files to a different handler. The
+     * handler is called on the thread which read the file.
+     *
+     * @param failureHandler The handler for files which could not be read.
+     * @return NBTBatchLoader The new loader.
+     */
+    public NBTBatchLoader withFailureHandler (BiConsumer<Path, Throwable> failureHandler) {
+        
+        return new NBTBatchLoader(this.pool, this.concurrency, this.compression, this.ordered, failureHandler);
+    }
+    
+    /**
+     * Reads every regular file in a directory. Sub directories are not searched.
+     *
+     * @param directory The directory to read.
+     * @return Map<Path, CompoundTag> The root tag of every file which was read.
+     * @throws IOException If the directory could not be listed.
+     */
+    public Map<Path, CompoundTag> load (Path directory) throws IOException {
+        
+        return this.load(listFiles(directory, "*"));
+    }
+    
+    /**
+     * Reads every regular file in a directory which matches a glob pattern, such as *.dat.
+     * Sub directories are not searched.
+     *
+     * @param directory The directory to read.
+     * @param glob The pattern which file names must match.
+     * @return Map<Path, CompoundTag> The root tag of every file which was read.
+     * @throws IOException If the directory could not be listed.
+     */
+    public Map<Path, CompoundTag> load (Path directory, String glob) throws IOException {
+        
+        return this.load(listFiles(directory, glob));
+    }
+    
+    /**
+     * Reads a collection of files, and waits for all of them to finish.
+     *
+     * @param paths The files to read.
+     * @return Map<Path, CompoundTag> The root tag of every file which was read. The map
+     *         iterates in the order the files were given, or in the order they were read if
+     *         this loader is unordered.
+     */
+    public Map<Path, CompoundTag> load (Collection<Path> paths) {
+        
+        final Map<Path, CompoundTag> tags = new LinkedHashMap<Path, CompoundTag>();
+        
+        try (Stream<Map.Entry<Path, CompoundTag>> stream = this.stream(paths)) {
+            
+            stream.forEach(entry -> tags.put(entry.getKey(), entry.getValue()));
+        }
+        
+        return tags;
+    }
+    
+    /**
+     * Starts reading a collection of files, and streams each file once it has been read.
+     * Reading starts right away, and continues in the background while the stream is
+     * consumed. Closing the stream early stops any files which have not started yet. Files
+     * which can not be read are left out, so the size of the stream is not known up front.
+     *
+     * @param paths The files to read.
+     * @return Stream<Map.Entry<Path, CompoundTag>> The path and root tag of every file which
+     *         was read.
+     */
+    public Stream<Map.Entry<Path, CompoundTag>> stream (Collection<Path> paths) {
+        
+        final Batch batch = new Batch(new ArrayList<Path>(paths));
+        batch.start();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batch, this.ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL), false).onClose(batch::cancel);
+    }
+    
+    /**
+     * Lists the regular files in a directory which match a glob pattern.
+     *
+     * @param directory The directory to list.
+     * @param glob The pattern which file names must match.
+     * @return List<Path> The matching files.
+     * @throws IOException If the directory could not be listed.
+     */
+    private static List<Path> listFiles (Path directory, String glob) throws IOException {
+        
+        final List<Path> files = new ArrayList<Path>();
+        
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            
+            for (final Path path : stream)
+                if (Files.isRegularFile(path))
+                    files.add(path);
+        }
+        
+        return files;
+    }
+    
+    /**
+     * A single run of the loader over a list of files. A fixed amount of workers take the
+     * next unread file until none are left, which bounds how many files are read at once
+     * without queueing a task for every file. Results are read back through the iterator.
+     */
+    private class Batch implements Iterator<Map.Entry<Path, CompoundTag>> {
+        
+        /**
+         * The files being read.
+         */
+        private final List<Path> paths;
+        
+        /**
+         * The result of each file. Files which could not be read complete with null.
+         */
+        private final List<CompletableFuture<CompoundTag>> results;
+        
+        /**
+         * The indexes of files in the order they finished. Only used when unordered.
+         */
+        private final BlockingQueue<Integer> finished = new LinkedBlockingQueue<Integer>();
+        
+        /**
+         * The index of the next file for a worker to read.
+         */
+        private final AtomicInteger nextPath = new AtomicInteger();
+        
+        /**
+         * The amount of results which have been taken by the iterator.
+         */
+        private int taken;
+        
+        /**
+         * The next entry to return from the iterator.
+         */
+        private Map.Entry<Path, CompoundTag> next;
+        
+        /**
+         * Creates a new batch.
+         *
+         * @param paths The files to read.
+         */
+        private Batch(List<Path> paths) {
+            
+            this.paths = paths;
+            this.results = new ArrayList<CompletableFuture<CompoundTag>>(paths.size());
+            
+            for (int index = 0; index < paths.size(); index++)
+                this.results.add(new CompletableFuture<CompoundTag>());
+        }
+        
+        /**
+         * Starts the workers on the pool.
+         */
+        private void start () {
+            
+            for (int worker = Math.min(NBTBatchLoader.this.concurrency, this.paths.size()); worker > 0; worker--)
+                NBTBatchLoader.this.pool.execute(this::work);
+        }
+        
+        /**
+         * Reads files until there are none left.
+         */
+        private void work () {
+            
+            for (int index = this.nextPath.getAndIncrement(); index < this.paths.size(); index = this.nextPath.getAndIncrement()) {
+                
+                final Path path = this.paths.get(index);
+                CompoundTag tag = null;
+                
+                try {
+                    
+                    tag = NBTHelper.readCompoundFile(path.toFile(), NBTBatchLoader.this.compression);
+                }
+                
+                catch (final Throwable e) {
+                    
+                    try {
+                        
+                        NBTBatchLoader.this.failureHandler.accept(path, e);
+                    }
+                    
+                    catch (final Throwable handlerError) {
+                        
+                        handlerError.printStackTrace();
+                    }
+                }
+                
+                finally {
+                    
+                    this.finish(index, tag);
+                }
+            }
+        }
+        
+        /**
+         * Records the result of a file.
+         *
+         * @param index The index of the file.
+         * @param tag The root tag of the file, or null if it could not be read.
+         */
+        private void finish (int index, CompoundTag tag) {
+            
+            this.results.get(index).complete(tag);
+            
+            if (!NBTBatchLoader.this.ordered)
+                this.finished.add(index);
+        }
+        
+        /**
+         * Stops any files which have not started yet. Their results are left out.
+         */
+        private void cancel () {
+            
+            for (int index = this.nextPath.getAndSet(this.paths.size()); index < this.paths.size(); index++)
+                this.finish(index, null);
+        }
+        
+        @Override
+        public boolean hasNext () {
+            
+            while (this.next == null && this.taken < this.paths.size()) {
+                
+                final int index = NBTBatchLoader.this.ordered ? this.taken : this.takeFinished();
+                final CompoundTag tag = this.results.get(index).join();
+                this.taken++;
+                
+                if (tag != null)
+                    this.next = new AbstractMap.SimpleImmutableEntry<Path, CompoundTag>(this.paths.get(index), tag);
+            }
+            
+            return this.next != null;
+        }
+        
+        @Override
+        public Map.Entry<Path, CompoundTag> next () {
+            
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+                
+            final Map.Entry<Path, CompoundTag> entry = this.next;
+            this.next = null;
+            return entry;
+        }
+        
+        /**
+         * Waits for the next file to finish.
+         *
+         * @return int The index of the file.
+         */
+        private int takeFinished () {
+            
+            try {
+                
+                return this.finished.take();
+            }
+            
+            catch (final InterruptedException e) {
+                
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a file to be read.", e);
+            }
+        }
+    }
+}
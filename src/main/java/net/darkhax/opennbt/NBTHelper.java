@@ -1,18 +1,34 @@
 package net.darkhax.opennbt;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Comparator;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.darkhax.opennbt.compression.Compression;
+import net.darkhax.opennbt.compression.CompressionFormat;
+import net.darkhax.opennbt.io.ByteBufferNBTReader;
+import net.darkhax.opennbt.io.NBTProjection;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
 import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.ListTag;
 import net.darkhax.opennbt.tags.Tag;
 import net.darkhax.opennbt.tags.TagCreateException;
 import net.darkhax.opennbt.tags.TagRegistry;
@@ -27,7 +43,7 @@ public class NBTHelper {
      * update will only take place when there is a change which potentially breaks
      * functionality.
      */
-    public static final String VERSION = "2.5.0";
+    public static final String VERSION = "2.6.0";
     
     /**
      * A standard Comparator for comparing two tags. For the first tag to be greater than the
@@ -38,7 +54,14 @@ public class NBTHelper {
     public static final Comparator<Tag> NBT_COMPARATOR = new NBTComparator();
     
     /**
-     * Reads the root CompoundTag from the given file.
+     * The executor which asynchronous reads and writes run on by default. Null when the built
+     * in executor is used.
+     */
+    private static volatile Executor asyncExecutor;
+    
+    /**
+     * Reads the root CompoundTag from the given file. The compression format of the file is
+     * detected automatically.
      *
      * @param path Path of the file.
      * @return CompoundTag The read compound tag.
@@ -49,14 +72,25 @@ public class NBTHelper {
     }
     
     /**
-     * Reads the root CompoundTag from the given file.
+     * Reads the root CompoundTag from the given file. The compression format of the file is
+     * detected automatically.
      *
      * @param file File to read from.
      * @return CompoundTag The read compound tag.
      */
     public static CompoundTag readFile (File file) {
         
-        return readFile(file, true);
+        try {
+            
+            return readCompoundFile(file, null);
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        return null;
     }
     
     /**
@@ -80,14 +114,169 @@ public class NBTHelper {
      */
     public static CompoundTag readFile (File file, boolean compressed) {
         
+        return readFile(file, compressed ? Compression.GZIP : Compression.NONE);
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file.
+     *
+     * @param path Path of the file.
+     * @param compression The compression used by the file.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readFile (String path, Compression compression) {
+        
+        return readFile(new File(path), compression);
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file.
+     *
+     * @param file File to read from.
+     * @param compression The compression used by the file.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readFile (File file, Compression compression) {
+        
         try {
             
-            InputStream in = new FileInputStream(file);
+            return readCompoundFile(file, compression);
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file lazily. The file is loaded into memory,
+     * but compound and list tags only decode their children when they are first accessed.
+     * Children which are never accessed are written back out by copying their original
+     * bytes. This is much faster when only a small part of a large file is needed.
+     *
+     * @param path Path of the file.
+     * @param compressed Whether the NBT file is compressed.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readFileLazy (String path, boolean compressed) {
+        
+        return readFileLazy(new File(path), compressed);
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file lazily. The file is loaded into memory,
+     * but compound and list tags only decode their children when they are first accessed.
+     * Children which are never accessed are written back out by copying their original
+     * bytes. This is much faster when only a small part of a large file is needed.
+     *
+     * @param file File to read from.
+     * @param compressed Whether the NBT file is compressed.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readFileLazy (File file, boolean compressed) {
+        
+        try (InputStream stream = new FileInputStream(file); InputStream in = (compressed ? Compression.GZIP : Compression.NONE).decompress(stream)) {
+            
+            final NBTWriter data = new NBTWriter();
+            final byte[] chunk = new byte[NBTReader.DEFAULT_BUFFER_SIZE];
             
-            if (compressed)
-                in = new GZIPInputStream(in);
+            for (int count = in.read(chunk); count != -1; count = in.read(chunk))
+                data.write(chunk, 0, count);
                 
-            final Tag tag = readTag(new DataInputStream(in));
+            final byte[] bytes = data.toByteArray();
+            final Tag tag = readTagLazy(bytes, 0, bytes.length);
+            
+            if (!(tag instanceof CompoundTag))
+                throw new IOException("Root tag is not a CompoundTag!");
+                
+            return (CompoundTag) tag;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Reads only the given paths from the root CompoundTag of a file. Each path uses a dot to
+     * separate the tag names, such as Level.Sections, and starts from the children of the
+     * root tag. Everything which is not part of a path is skipped without being decoded. See
+     * {@link NBTProjection} for more details.
+     *
+     * @param path Path of the file.
+     * @param compressed Whether the NBT file is compressed.
+     * @param paths The paths of the tags to read.
+     * @return CompoundTag The read compound tag, holding only the requested tags.
+     */
+    public static CompoundTag readFileProjected (String path, boolean compressed, String... paths) {
+        
+        return readFileProjected(new File(path), compressed, NBTProjection.of(paths));
+    }
+    
+    /**
+     * Reads only the parts of the root CompoundTag of a file which are included in a
+     * projection. Everything else is skipped without being decoded.
+     *
+     * @param file File to read from.
+     * @param compressed Whether the NBT file is compressed.
+     * @param projection The paths of the tags to read.
+     * @return CompoundTag The read compound tag, holding only the requested tags.
+     */
+    public static CompoundTag readFileProjected (File file, boolean compressed, NBTProjection projection) {
+        
+        try (InputStream stream = new FileInputStream(file); InputStream in = (compressed ? Compression.GZIP : Compression.NONE).decompress(stream)) {
+            
+            final CompoundTag tag = projection.read(new NBTReader(in));
+            
+            if (tag == null)
+                throw new IOException("Root tag is not a CompoundTag!");
+                
+            return tag;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given uncompressed file, by mapping the file into
+     * memory and decoding directly from the mapped buffer. This avoids copying the file
+     * through the heap, and allows repeated reads to be served from the page cache.
+     *
+     * @param path Path of the file.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readMappedFile (String path) {
+        
+        return readMappedFile(new File(path));
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given uncompressed file, by mapping the file into
+     * memory and decoding directly from the mapped buffer. This avoids copying the file
+     * through the heap, and allows repeated reads to be served from the page cache.
+     *
+     * @param file File to read from.
+     * @return CompoundTag The read compound tag.
+     */
+    public static CompoundTag readMappedFile (File file) {
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File is too large to be mapped!");
+                
+            final Tag tag = readTag(new ByteBufferNBTReader(channel.map(MapMode.READ_ONLY, 0, channel.size())));
             
             if (!(tag instanceof CompoundTag))
                 throw new IOException("Root tag is not a CompoundTag!");
@@ -146,39 +335,300 @@ public class NBTHelper {
      */
     public static void writeFile (CompoundTag tag, File file, boolean compressed) {
         
+        writeFile(tag, file, compressed ? Compression.GZIP : Compression.NONE);
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file.
+     *
+     * @param tag Tag to write.
+     * @param path Path to write to.
+     * @param compression The compression to use for the file.
+     */
+    public static void writeFile (CompoundTag tag, String path, Compression compression) {
+        
+        writeFile(tag, new File(path), compression);
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file.
+     *
+     * @param tag Tag to write.
+     * @param file File to write to.
+     * @param compression The compression to use for the file.
+     */
+    public static void writeFile (CompoundTag tag, File file, Compression compression) {
+        
         try {
             
-            if (!file.exists()) {
+            writeCompoundFile(tag, file, compression);
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file without blocking the calling thread. The
+     * file is read on the executor returned by {@link #getAsyncExecutor()}, and its
+     * compression format is detected automatically.
+     *
+     * @param path Path of the file.
+     * @return CompletableFuture<CompoundTag> A future which completes with the read compound
+     *         tag, or completes exceptionally if the file could not be read.
+     */
+    public static CompletableFuture<CompoundTag> readFileAsync (String path) {
+        
+        return readFileAsync(new File(path));
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file without blocking the calling thread. The
+     * file is read on the executor returned by {@link #getAsyncExecutor()}, and its
+     * compression format is detected automatically.
+     *
+     * @param file File to read from.
+     * @return CompletableFuture<CompoundTag> A future which completes with the read compound
+     *         tag, or completes exceptionally if the file could not be read.
+     */
+    public static CompletableFuture<CompoundTag> readFileAsync (File file) {
+        
+        return readFileAsync(file, null, getAsyncExecutor());
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file without blocking the calling thread. The
+     * file is read on the executor returned by {@link #getAsyncExecutor()}.
+     *
+     * @param file File to read from.
+     * @param compression The compression used by the file.
+     * @return CompletableFuture<CompoundTag> A future which completes with the read compound
+     *         tag, or completes exceptionally if the file could not be read.
+     */
+    public static CompletableFuture<CompoundTag> readFileAsync (File file, Compression compression) {
+        
+        return readFileAsync(file, compression, getAsyncExecutor());
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file without blocking the calling thread.
+     * Unlike {@link #readFile(File, Compression)}, errors are not printed. The future is
+     * completed exceptionally with the original exception instead.
+     *
+     * @param file File to read from.
+     * @param compression The compression used by the file, or null to detect it
+     *        automatically.
+     * @param executor The executor to read the file on.
+     * @return CompletableFuture<CompoundTag> A future which completes with the read compound
+     *         tag, or completes exceptionally if the file could not be read.
+     */
+    public static CompletableFuture<CompoundTag> readFileAsync (File file, Compression compression, Executor executor) {
+        
+        final CompletableFuture<CompoundTag> future = new CompletableFuture<CompoundTag>();
+        
+        try {
+            
+            executor.execute(() -> {
                 
-                if (file.getParentFile() != null && !file.getParentFile().exists())
-                    file.getParentFile().mkdirs();
+                try {
                     
-                file.createNewFile();
-            }
+                    future.complete(readCompoundFile(file, compression));
+                }
+                
+                catch (final Throwable e) {
+                    
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        
+        catch (final RejectedExecutionException e) {
             
-            OutputStream out = new FileOutputStream(file);
+            future.completeExceptionally(e);
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file without blocking the calling
+     * thread. The file is written on the executor returned by {@link #getAsyncExecutor()},
+     * using GZIP compression. The tag must not be modified until the future completes.
+     *
+     * @param tag Tag to write.
+     * @param path Path to write to.
+     * @return CompletableFuture<Void> A future which completes once the file has been
+     *         written, or completes exceptionally if the file could not be written.
+     */
+    public static CompletableFuture<Void> writeFileAsync (CompoundTag tag, String path) {
+        
+        return writeFileAsync(tag, new File(path));
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file without blocking the calling
+     * thread. The file is written on the executor returned by {@link #getAsyncExecutor()},
+     * using GZIP compression. The tag must not be modified until the future completes.
+     *
+     * @param tag Tag to write.
+     * @param file File to write to.
+     * @return CompletableFuture<Void> A future which completes once the file has been
+     *         written, or completes exceptionally if the file could not be written.
+     */
+    public static CompletableFuture<Void> writeFileAsync (CompoundTag tag, File file) {
+        
+        return writeFileAsync(tag, file, Compression.GZIP, getAsyncExecutor());
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file without blocking the calling
+     * thread. The file is written on the executor returned by {@link #getAsyncExecutor()}.
+     * The tag must not be modified until the future completes.
+     *
+     * @param tag Tag to write.
+     * @param file File to write to.
+     * @param compression The compression to use for the file.
+     * @return CompletableFuture<Void> A future which completes once the file has been
+     *         written, or completes exceptionally if the file could not be written.
+     */
+    public static CompletableFuture<Void> writeFileAsync (CompoundTag tag, File file, Compression compression) {
+        
+        return writeFileAsync(tag, file, compression, getAsyncExecutor());
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file without blocking the calling
+     * thread. Unlike {@link #writeFile(CompoundTag, File, Compression)}, errors are not
+     * printed. The future is completed exceptionally with the original exception instead.
+     * The tag must not be modified until the future completes.
+     *
+     * @param tag Tag to write.
+     * @param file File to write to.
+     * @param compression The compression to use for the file.
+     * @param executor The executor to write the file on.
+     * @return CompletableFuture<Void> A future which completes once the file has been
+     *         written, or completes exceptionally if the file could not be written.
+     */
+    public static CompletableFuture<Void> writeFileAsync (CompoundTag tag, File file, Compression compression, Executor executor) {
+        
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        
+        try {
             
-            if (compressed)
-                out = new GZIPOutputStream(out);
+            executor.execute(() -> {
                 
-            writeTag(new DataOutputStream(out), tag);
-            out.close();
+                try {
+                    
+                    writeCompoundFile(tag, file, compression);
+                    future.complete(null);
+                }
+                
+                catch (final Throwable e) {
+                    
+                    future.completeExceptionally(e);
+                }
+            });
         }
         
-        catch (final IOException e) {
+        catch (final RejectedExecutionException e) {
             
-            e.printStackTrace();
+            future.completeExceptionally(e);
         }
+        
+        return future;
     }
     
     /**
-     * Reads an NBT tag from a DataInputStream. This version of the write method handles IO
+     * Gets the executor which asynchronous reads and writes run on by default. Unless another
+     * executor has been set, this runs each task on a new virtual thread when the runtime
+     * supports them, or on a shared pool of daemon threads otherwise.
+     *
+     * @return Executor The default executor for asynchronous file access.
+     */
+    public static Executor getAsyncExecutor () {
+        
+        final Executor executor = asyncExecutor;
+        return executor != null ? executor : DefaultExecutor.INSTANCE;
+    }
+    
+    /**
+     * Sets the executor which asynchronous reads and writes run on by default.
+     *
+     * @param executor The new default executor, or null to use the built in executor.
+     */
+    public static void setAsyncExecutor (Executor executor) {
+        
+        asyncExecutor = executor;
+    }
+    
+    /**
+     * Reads the root CompoundTag from the given file, throwing any errors which occur.
+     *
+     * @param file File to read from.
+     * @param compression The compression used by the file, or null to detect it
+     *        automatically.
+     * @return CompoundTag The read compound tag.
+     * @throws IOException If the root tag is not a CompoundTag, or an I/O error occurs.
+     */
+    static CompoundTag readCompoundFile (File file, Compression compression) throws IOException {
+        
+        try (InputStream stream = compression == null ? new FileInputStream(file) : compression.open(file); InputStream in = compression == null ? Compression.autoDetect(stream) : stream) {
+            
+            final Tag tag = readTag(new NBTReader(in));
+            
+            if (!(tag instanceof CompoundTag))
+                throw new IOException("Root tag is not a CompoundTag!");
+                
+            return (CompoundTag) tag;
+        }
+    }
+    
+    /**
+     * Writes the given root CompoundTag to the given file, throwing any errors which occur.
+     * Uncompressed files are written through a FileChannel, so large arrays can be written
+     * without being copied into the buffer first.
+     *
+     * @param tag Tag to write.
+     * @param file File to write to.
+     * @param compression The compression to use for the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writeCompoundFile (CompoundTag tag, File file, Compression compression) throws IOException {
+        
+        if (!file.exists()) {
+            
+            if (file.getParentFile() != null && !file.getParentFile().exists())
+                file.getParentFile().mkdirs();
+                
+            file.createNewFile();
+        }
+        
+        if (compression.getFormat() == CompressionFormat.NONE) {
+            
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING); NBTWriter out = new NBTWriter(channel)) {
+                
+                writeTag(out, tag);
+            }
+            
+            return;
+        }
+        
+        try (OutputStream stream = new FileOutputStream(file); NBTWriter out = new NBTWriter(compression.compress(stream))) {
+            
+            writeTag(out, tag);
+        }
+    }
+    
+    /**
+     * Reads an NBT tag from an NBTReader. This version of the read method handles IO
      * exceptions with a standard printing of the stack trace.
      * 
-     * @param in Input stream to read from.
+     * @param in Reader to read from.
      * @return Tag The read tag, or null if the tag is an end tag or an IOException happened.
      */
-    public static Tag readTagThrowless (DataInputStream in) {
+    public static Tag readTagThrowless (NBTReader in) {
         
         try {
             
@@ -194,21 +644,21 @@ public class NBTHelper {
     }
     
     /**
-     * Reads an NBT tag from a DataInputStream. The first data read is the tag ID, the second
-     * is the name and the last is the tag data.
+     * Reads an NBT tag from an NBTReader. The first data read is the tag ID, the second is the
+     * name and the last is the tag data.
      *
-     * @param in Input stream to read from.
+     * @param in Reader to read from.
      * @return Tag The read tag, or null if the tag is an end tag.
      * @throws IOException If an I/O error occurs.
      */
-    public static Tag readTag (DataInputStream in) throws IOException {
+    public static Tag readTag (NBTReader in) throws IOException {
         
         final int id = in.readUnsignedByte();
         
         if (id == 0)
             return null;
             
-        final String name = in.readUTF();
+        final String name = in.readName();
         Tag tag;
         
         try {
@@ -226,13 +676,60 @@ public class NBTHelper {
     }
     
     /**
-     * Writes a tag to an output stream. This version of the write method handles IO exceptions
+     * Reads an NBT tag lazily from a section of a byte array. CompoundTag and ListTag only
+     * record where their children are, and decode each child when it is first accessed. All
+     * other tags are decoded straight away. The array is retained by the returned tag until
+     * it has been fully decoded, and must not be modified.
+     *
+     * @param data The array to read from.
+     * @param offset The index of the first byte of the tag.
+     * @param length The maximum amount of bytes which can be read.
+     * @return Tag The read tag, or null if the tag is an end tag.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    public static Tag readTagLazy (byte[] data, int offset, int length) throws IOException {
+        
+        final NBTReader in = new NBTReader(data, offset, length);
+        final int id = in.readUnsignedByte();
+        
+        if (id == 0)
+            return null;
+            
+        final String name = in.readName();
+        Tag tag;
+        
+        try {
+            
+            tag = TagRegistry.createInstance(id, name);
+        }
+        
+        catch (final TagCreateException e) {
+            
+            throw new IOException("Failed to create tag.", e);
+        }
+        
+        final int remaining = offset + length - in.getPosition();
+        
+        if (tag instanceof CompoundTag)
+            ((CompoundTag) tag).readLazy(data, in.getPosition(), remaining);
+            
+        else if (tag instanceof ListTag)
+            ((ListTag) tag).readLazy(data, in.getPosition(), remaining);
+            
+        else
+            tag.read(in);
+            
+        return tag;
+    }
+    
+    /**
+     * Writes a tag to an NBTWriter. This version of the write method handles IO exceptions
      * with a standard printing of the stack trace.
      * 
-     * @param out Output stream to write to.
+     * @param out Writer to write to.
      * @param tag Tag to write.
      */
-    public static void writeTagThrowless (DataOutputStream out, Tag tag) {
+    public static void writeTagThrowless (NBTWriter out, Tag tag) {
         
         try {
             
@@ -246,20 +743,111 @@ public class NBTHelper {
     }
     
     /**
-     * Writes a tag to an output stream. The first piece data to be written is the tag ID, the
+     * Writes a tag to an NBTWriter. The first piece data to be written is the tag ID, the
      * second is the tag name, and the third is the tag data.
      *
-     * @param out Output stream to write to.
+     * @param out Writer to write to.
      * @param tag Tag to write.
      * @throws IOException If an I/O error occurs.
      */
-    public static void writeTag (DataOutputStream out, Tag tag) throws IOException {
+    public static void writeTag (NBTWriter out, Tag tag) throws IOException {
         
         out.writeByte(TagRegistry.getIdFor(tag.getClass()));
         out.writeUTF(tag.getName());
         tag.write(out);
     }
     
+    /**
+     * Writes a tag into a new byte array, in the same format as
+     * {@link #writeTag(NBTWriter, Tag)}. The size of the tag is computed first, so the tag is
+     * encoded straight into an array of exactly the right size, without any copying.
+     *
+     * @param tag The tag to write.
+     * @return byte[] The encoded tag.
+     * @throws IOException If the tag could not be written.
+     */
+    public static byte[] toBytes (Tag tag) throws IOException {
+        
+        final byte[] bytes = new byte[tag.serializedSize()];
+        final NBTWriter out = new NBTWriter(bytes);
+        writeTag(out, tag);
+        return out.size() == bytes.length ? bytes : out.toByteArray();
+    }
+    
+    /**
+     * Writes a tag into a ByteBuffer, starting at its position, in the same format as
+     * {@link #writeTag(NBTWriter, Tag)}. The position of the buffer is moved past the tag.
+     * Both heap and direct buffers can be used.
+     *
+     * @param tag The tag to write.
+     * @param buffer The buffer to write into.
+     * @return int The amount of bytes which were written.
+     * @throws IOException If the tag could not be written.
+     * @throws BufferOverflowException If the tag does not fit in the remaining space of the
+     *         buffer. Nothing is written in this case.
+     */
+    public static int toBytes (Tag tag, ByteBuffer buffer) throws IOException {
+        
+        final int size = tag.serializedSize();
+        
+        if (buffer.remaining() < size)
+            throw new BufferOverflowException();
+            
+        final ByteBuffer target = buffer.duplicate();
+        final NBTWriter out = new NBTWriter(new ByteBufferOutputStream(target), Math.min(size, NBTWriter.DEFAULT_BUFFER_SIZE));
+        writeTag(out, tag);
+        out.flush();
+        
+        final int written = target.position() - buffer.position();
+        buffer.position(target.position());
+        return written;
+    }
+    
+    /**
+     * Reads a tag from a byte array, such as one created by {@link #toBytes(Tag)}.
+     *
+     * @param bytes The array to read from.
+     * @return Tag The read tag, or null if the tag is an end tag.
+     * @throws IOException If the data is malformed or ends too early.
+     */
+    public static Tag fromBytes (byte[] bytes) throws IOException {
+        
+        return fromBytes(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Reads a tag from a section of a byte array. The array is read directly, and is not
+     * copied.
+     *
+     * @param bytes The array to read from.
+     * @param offset The index of the first byte of the tag.
+     * @param length The amount of bytes which can be read.
+     * @return Tag The read tag, or null if the tag is an end tag.
+     * @throws IOException If the data is malformed or ends too early.
+     */
+    public static Tag fromBytes (byte[] bytes, int offset, int length) throws IOException {
+        
+        return readTag(new NBTReader(bytes, offset, length));
+    }
+    
+    /**
+     * Reads a tag from a ByteBuffer, starting at its position. The buffer is read directly,
+     * and its position is moved past the tag once it has been read. Both heap and direct
+     * buffers can be used.
+     *
+     * @param buffer The buffer to read from.
+     * @return Tag The read tag, or null if the tag is an end tag.
+     * @throws IOException If the data is malformed or ends too early. The position of the
+     *         buffer is not changed in this case.
+     */
+    public static Tag fromBytes (ByteBuffer buffer) throws IOException {
+        
+        final ByteBufferNBTReader in = new ByteBufferNBTReader(buffer);
+        final Tag tag = readTag(in);
+        buffer.position(in.getPosition());
+        return tag;
+    }
+    
     /**
      * Uses an array of tag names, to try and dig through the layers of a CompoundTag and get a
      * specific tag. This is not more efficient, however it is cleaner then doing it all by
@@ -285,4 +873,76 @@ public class NBTHelper {
                     
         return deepTag;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Holds the built in executor for asynchronous file access, so it is only created when it
+     * is first needed.
+     */
+    private static class DefaultExecutor {
+        
+        /**
+         * The built in executor.
+         */
+        private static final Executor INSTANCE = create();
+        
+        /**
+         * Creates an executor which runs each task on a new virtual thread. Virtual threads
+         * are looked up reflectively, as they are not available on older runtimes. When they
+         * are missing, a cached pool of daemon threads is used instead.
+         *
+         * @return Executor The built in executor.
+         */
+        private static Executor create () {
+            
+            try {
+                
+                return (ExecutorService) MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class)).invoke();
+            }
+            
+            catch (final Throwable e) {
+                
+                final AtomicInteger count = new AtomicInteger();
+                
+                return Executors.newCachedThreadPool(task -> {
+                    
+                    final Thread thread = new Thread(task, "OpenNBT IO " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+    
+    /**
+     * An OutputStream which writes into a ByteBuffer, used to point a writer at a buffer.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
+        
+        /**
+         * The buffer to write into.
+         */
+        private final ByteBuffer buffer;
+        
+        /**
+         * Creates a new stream.
+         *
+         * @param buffer The buffer to write into.
+         */
+        private ByteBufferOutputStream(ByteBuffer buffer) {
+            
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public void write (int value) {
+            
+            this.buffer.put((byte) value);
+        }
+        
+        @Override
+        public void write (byte[] bytes, int offset, int length) {
+            
+            this.buffer.put(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Constants and helpers for the block GZIP format. Data is split into blocks which are each
+ * compressed as an independent GZIP member, so blocks can be compressed and decompressed in
+ * parallel, and any block can be decompressed without reading the ones before it. Every data
+ * member carries a BC extra field holding its size, laid out the same way as in BGZF, and the
+ * output can be read by any standard GZIP reader. It is not a BGZF file, as the index and
+ * tail members do not carry that field and there is no BGZF end of file marker, so tools which
+ * expect BGZF must not be given it.
+ *
+ * After the data members, the sizes of every block are stored in the extra field of one or
+ * more empty index members. The file ends with an empty tail member of a fixed size, which
+ * records where the index starts. Empty members produce no data, so standard readers will
+ * simply ignore the index.
+ */
+final class BlockGzip {
+    
+    /**
+     * The largest amount of uncompressed data which can be stored in a block. This is the same
+     * limit used by BGZF, which guarantees that a compressed block fits in 64 KiB.
+     */
+    static final int MAX_BLOCK_SIZE = 0xff00;
+    
+    /**
+     * The size of the header of a data member.
+     */
+    static final int DATA_HEADER_SIZE = 18;
+    
+    /**
+     * The size of the trailer of a member.
+     */
+    static final int TRAILER_SIZE = 8;
+    
+    /**
+     * The largest amount of index entries which fit in the extra field of one index member.
+     */
+    static final int ENTRIES_PER_INDEX = (0xffff - 4) / 8;
+    
+    /**
+     * The size of the tail member, which points to the index.
+     */
+    static final int TAIL_SIZE = 12 + 4 + 12 + 2 + TRAILER_SIZE;
+    
+    /**
+     * The compressed form of an empty DEFLATE stream.
+     */
+    private static final byte[] EMPTY_DEFLATE = { 3, 0 };
+    
+    /**
+     * This class only holds static helpers.
+     */
+    private BlockGzip() {
+        
+    }
+    
+    /**
+     * Compresses a block of data into a complete GZIP member.
+     *
+     * @param data The array holding the block.
+     * @param length The amount of bytes in the block.
+     * @param level The compression level to use.
+     * @param strategy The compression strategy to use.
+     * @return byte[] The compressed member.
+     */
+    static byte[] compress (byte[] data, int length, int level, int strategy) {
+        
+        final Deflater deflater = CodecPool.acquireDeflater(level, strategy, true);
+        
+        try {
+            
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] member = new byte[DATA_HEADER_SIZE + length + (length >> 3) + 64];
+            int size = DATA_HEADER_SIZE;
+            
+            while (!deflater.finished()) {
+                
+                if (size == member.length - TRAILER_SIZE)
+                    member = Arrays.copyOf(member, member.length * 2);
+                    
+                size += deflater.deflate(member, size, member.length - TRAILER_SIZE - size);
+            }
+            
+            final CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            writeHeader(member, 6);
+            member[12] = 'B';
+            member[13] = 'C';
+            writeShortLE(member, 14, 2);
+            writeShortLE(member, 16, size + TRAILER_SIZE - 1);
+            writeIntLE(member, size, (int) crc.getValue());
+            writeIntLE(member, size + 4, length);
+            return Arrays.copyOf(member, size + TRAILER_SIZE);
+        }
+        
+        finally {
+            
+            CodecPool.releaseDeflater(deflater, true);
+        }
+    }
+    
+    /**
+     * Decompresses a data member which was written by {@link #compress(byte[], int, int, int)}.
+     *
+     * @param member The array holding the compressed member.
+     * @param size The expected amount of uncompressed bytes.
+     * @return byte[] The uncompressed block.
+     * @throws IOException If the member is not valid.
+     */
+    static byte[] decompress (byte[] member, int size) throws IOException {
+        
+        if (member.length < DATA_HEADER_SIZE + TRAILER_SIZE || (member[0] & 0xff) != 0x1f || (member[1] & 0xff) != 0x8b || member[2] != 8 || member[3] != 4)
+            throw new ZipException("Not a block GZIP member");
+            
+        final int start = 12 + readShortLE(member, 10);
+        final int end = member.length - TRAILER_SIZE;
+        final byte[] data = new byte[size];
+        final Inflater inflater = CodecPool.acquireInflater(true);
+        
+        try {
+            
+            inflater.setInput(member, start, end - start);
+            
+            if (inflater.inflate(data) != size || !inflater.finished())
+                throw new ZipException("Block GZIP member does not match the index");
+        }
+        
+        catch (final DataFormatException e) {
+            
+            throw new ZipException(e.getMessage());
+        }
+        
+        finally {
+            
+            CodecPool.releaseInflater(inflater, true);
+        }
+        
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        
+        if (readIntLE(member, end) != (int) crc.getValue() || readIntLE(member, end + 4) != size)
+            throw new ZipException("Corrupt GZIP trailer");
+            
+        return data;
+    }
+    
+    /**
+     * Creates an empty GZIP member with a single extra subfield.
+     *
+     * @param first The first ID byte of the subfield.
+     * @param second The second ID byte of the subfield.
+     * @param payload The contents of the subfield.
+     * @param length The amount of bytes in the subfield.
+     * @return byte[] The empty member.
+     */
+    static byte[] emptyMember (char first, char second, byte[] payload, int length) {
+        
+        final byte[] member = new byte[12 + 4 + length + EMPTY_DEFLATE.length + TRAILER_SIZE];
+        writeHeader(member, 4 + length);
+        member[12] = (byte) first;
+        member[13] = (byte) second;
+        writeShortLE(member, 14, length);
+        System.arraycopy(payload, 0, member, 16, length);
+        System.arraycopy(EMPTY_DEFLATE, 0, member, 16 + length, EMPTY_DEFLATE.length);
+        return member;
+    }
+    
+    /**
+     * Writes the fixed part of a member header, with the extra field flag set.
+     *
+     * @param member The array to write to.
+     * @param extra The length of the extra field.
+     */
+    private static void writeHeader (byte[] member, int extra) {
+        
+        member[0] = 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = 8;
+        member[3] = 4;
+        member[9] = (byte) 0xff;
+        writeShortLE(member, 10, extra);
+    }
+    
+    /**
+     * Writes a little endian short to an array.
+     *
+     * @param bytes The array to write to.
+     * @param offset The index to write at.
+     * @param value The value to write.
+     */
+    static void writeShortLE (byte[] bytes, int offset, int value) {
+        
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+    
+    /**
+     * Writes a little endian int to an array.
+     *
+     * @param bytes The array to write to.
+     * @param offset The index to write at.
+     * @param value The value to write.
+     */
+    static void writeIntLE (byte[] bytes, int offset, int value) {
+        
+        writeShortLE(bytes, offset, value);
+        writeShortLE(bytes, offset + 2, value >>> 16);
+    }
+    
+    /**
+     * Reads a little endian short from an array.
+     *
+     * @param bytes The array to read from.
+     * @param offset The index to read at.
+     * @return int The unsigned value which was read.
+     */
+    static int readShortLE (byte[] bytes, int offset) {
+        
+        return bytes[offset] & 0xff | (bytes[offset + 1] & 0xff) << 8;
+    }
+    
+    /**
+     * Reads a little endian int from an array.
+     *
+     * @param bytes The array to read from.
+     * @param offset The index to read at.
+     * @return int The value which was read.
+     */
+    static int readIntLE (byte[] bytes, int offset) {
+        
+        return readShortLE(bytes, offset) | readShortLE(bytes, offset + 2) << 16;
+    }
+}
@@ -0,0 +1,385 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipException;
+
+/**
+ * Random access to a file which was written by a {@link BlockGzipOutputStream}. The block
+ * index is read when the file is opened, after which any block can be decompressed on its
+ * own. Streams opened from the file can start at any uncompressed offset, and decompress the
+ * blocks ahead of the reader in parallel.
+ *
+ * Blocks are read using positional reads, so any amount of streams can be open on the same
+ * file at once, from any thread.
+ */
+public class BlockGzipFile implements Closeable {
+    
+    /**
+     * The channel which the file is read from.
+     */
+    private final FileChannel channel;
+    
+    /**
+     * The compressed offset of every block, followed by the offset of the index.
+     */
+    private final long[] compressedOffsets;
+    
+    /**
+     * The uncompressed offset of every block, followed by the uncompressed size of the file.
+     */
+    private final long[] offsets;
+    
+    /**
+     * Opens a block GZIP file, and reads its index.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the file is not a block GZIP file, or an I/O error occurs.
+     */
+    public BlockGzipFile(Path path) throws IOException {
+        
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        
+        try {
+            
+            final long size = this.channel.size();
+            
+            if (size < BlockGzip.TAIL_SIZE)
+                throw new ZipException("Not a block GZIP file");
+                
+            final byte[] tail = this.read(size - BlockGzip.TAIL_SIZE, BlockGzip.TAIL_SIZE);
+            final int blocks = BlockGzip.readIntLE(tail, 24);
+            final long indexStart = BlockGzip.readIntLE(tail, 16) & 0xffffffffL | (long) BlockGzip.readIntLE(tail, 20) << 32;
+            
+            if (tail[12] != 'O' || tail[13] != 'T' || BlockGzip.readShortLE(tail, 10) != 16 || blocks < 0 || indexStart < 0 || indexStart > size - BlockGzip.TAIL_SIZE)
+                throw new ZipException("Not a block GZIP file");
+                
+            this.compressedOffsets = new long[blocks + 1];
+            this.offsets = new long[blocks + 1];
+            long indexPosition = indexStart;
+            
+            for (int first = 0; first < blocks; first += BlockGzip.ENTRIES_PER_INDEX) {
+                
+                final int amount = Math.min(BlockGzip.ENTRIES_PER_INDEX, blocks - first);
+                final byte[] member = this.read(indexPosition, 16 + amount * 8);
+                
+                if (member[12] != 'O' || member[13] != 'I' || BlockGzip.readShortLE(member, 14) != amount * 8)
+                    throw new ZipException("Corrupt block GZIP index");
+                    
+                for (int entry = 0; entry < amount; entry++) {
+                    
+                    final int block = first + entry;
+                    this.compressedOffsets[block + 1] = this.compressedOffsets[block] + BlockGzip.readIntLE(member, 16 + entry * 8);
+                    this.offsets[block + 1] = this.offsets[block] + BlockGzip.readIntLE(member, 20 + entry * 8);
+                }
+                
+                indexPosition += member.length + 2 + BlockGzip.TRAILER_SIZE;
+            }
+            
+            if (this.compressedOffsets[blocks] != indexStart)
+                throw new ZipException("Corrupt block GZIP index");
+        }
+        
+        catch (final IOException e) {
+            
+            this.channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Gets the amount of blocks in the file.
+     *
+     * @return int The amount of blocks.
+     */
+    public int getBlockCount () {
+        
+        return this.offsets.length - 1;
+    }
+    
+    /**
+     * Gets the size of the uncompressed data.
+     *
+     * @return long The amount of uncompressed bytes in the file.
+     */
+    public long getSize () {
+        
+        return this.offsets[this.offsets.length - 1];
+    }
+    
+    /**
+     * Finds the block which holds an uncompressed offset.
+     *
+     * @param offset The uncompressed offset to find.
+     * @return int The index of the block holding the offset.
+     */
+    public int findBlock (long offset) {
+        
+        if (offset < 0 || offset >= this.getSize())
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside of the file.");
+            
+        final int found = Arrays.binarySearch(this.offsets, offset);
+        return found >= 0 ? found : -found - 2;
+    }
+    
+    /**
+     * Reads and decompresses a single block.
+     *
+     * @param block The index of the block.
+     * @return byte[] The uncompressed data of the block.
+     * @throws IOException If the block is not valid, or an I/O error occurs.
+     */
+    public byte[] readBlock (int block) throws IOException {
+        
+        final long start = this.compressedOffsets[block];
+        final byte[] member = this.read(start, (int) (this.compressedOffsets[block + 1] - start));
+        return BlockGzip.decompress(member, (int) (this.offsets[block + 1] - this.offsets[block]));
+    }
+    
+    /**
+     * Opens a stream which reads the uncompressed data from the start of the file, using the
+     * common ForkJoinPool to decompress blocks ahead of the reader.
+     *
+     * @return InputStream A stream of the uncompressed data.
+     */
+    public InputStream openStream () {
+        
+        return this.openStream(0, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Opens a stream which reads the uncompressed data starting from any offset. Closing the
+     * stream does not close the file.
+     *
+     * @param offset The uncompressed offset to start reading from.
+     * @param executor The executor to decompress blocks on.
+     * @param readAhead The amount of blocks to decompress ahead of the reader.
+     * @return InputStream A stream of the uncompressed data.
+     */
+    public InputStream openStream (long offset, Executor executor, int readAhead) {
+        
+        return new BlockStream(offset, executor, Math.max(1, readAhead), false);
+    }
+    
+    /**
+     * Opens a block GZIP file as a stream, decompressing its blocks in parallel using the
+     * common ForkJoinPool. Closing the stream closes the file.
+     *
+     * @param path The path of the file.
+     * @return InputStream A stream of the uncompressed data.
+     * @throws IOException If the file is not a block GZIP file, or an I/O error occurs.
+     */
+    public static InputStream newInputStream (Path path) throws IOException {
+        
+        return new BlockGzipFile(path).new BlockStream(0, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors(), true);
+    }
+    
+    /**
+     * Reads an exact amount of bytes from the file.
+     *
+     * @param position The position to read from.
+     * @param length The amount of bytes to read.
+     * @return byte[] The bytes which were read.
+     * @throws IOException If the end of the file is reached, or an I/O error occurs.
+     */
+    private byte[] read (long position, int length) throws IOException {
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        
+        while (buffer.hasRemaining())
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+                
+        return buffer.array();
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        this.channel.close();
+    }
+    
+    /**
+     * A stream which reads blocks in order, decompressing several blocks ahead of the reader.
+     */
+    private class BlockStream extends InputStream {
+        
+        /**
+         * The executor which blocks are decompressed on.
+         */
+        private final Executor executor;
+        
+        /**
+         * The maximum amount of blocks to decompress ahead of the reader.
+         */
+        private final int readAhead;
+        
+        /**
+         * Whether or not the file should be closed when the stream is closed.
+         */
+        private final boolean closeFile;
+        
+        /**
+         * Blocks which are being decompressed, in the order they will be read.
+         */
+        private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<CompletableFuture<byte[]>>();
+        
+        /**
+         * The index of the next block to start decompressing.
+         */
+        private int nextBlock;
+        
+        /**
+         * The data of the block currently being read.
+         */
+        private byte[] current = new byte[0];
+        
+        /**
+         * The position of the reader in the current block.
+         */
+        private int position;
+        
+        /**
+         * Whether or not the stream has been closed.
+         */
+        private boolean closed;
+        
+        /**
+         * Constructs a new stream, and starts decompressing the first blocks.
+         *
+         * @param offset The uncompressed offset to start reading from.
+         * @param executor The executor to decompress blocks on.
+         * @param readAhead The amount of blocks to decompress ahead of the reader.
+         * @param closeFile Whether to close the file when the stream is closed.
+         */
+        private BlockStream(long offset, Executor executor, int readAhead, boolean closeFile) {
+            
+            this.executor = executor;
+            this.readAhead = readAhead;
+            this.closeFile = closeFile;
+            
+            if (offset < BlockGzipFile.this.getSize()) {
+                
+                this.nextBlock = BlockGzipFile.this.findBlock(offset);
+                this.position = (int) (offset - BlockGzipFile.this.offsets[this.nextBlock]);
+                this.schedule();
+            }
+            
+            else
+                this.nextBlock = BlockGzipFile.this.getBlockCount();
+        }
+        
+        /**
+         * Starts decompressing blocks until enough blocks are ahead of the reader.
+         */
+        private void schedule () {
+            
+            while (this.pending.size() < this.readAhead && this.nextBlock < BlockGzipFile.this.getBlockCount()) {
+                
+                final int block = this.nextBlock++;
+                this.pending.add(CompletableFuture.supplyAsync(() -> {
+                    
+                    try {
+                        
+                        return BlockGzipFile.this.readBlock(block);
+                    }
+                    
+                    catch (final IOException e) {
+                        
+                        throw new CompletionException(e);
+                    }
+                }, this.executor));
+            }
+        }
+        
+        /**
+         * Makes sure that the current block has unread data, moving to the next block if
+         * needed.
+         *
+         * @return boolean Whether or not there is data to read.
+         * @throws IOException If a block could not be read.
+         */
+        private boolean advance () throws IOException {
+            
+            if (this.closed)
+                throw new IOException("Stream closed");
+                
+            while (this.position >= this.current.length) {
+                
+                if (this.pending.isEmpty())
+                    return false;
+                    
+                final int skipped = this.position - this.current.length;
+                
+                try {
+                    
+                    this.current = this.pending.poll().join();
+                }
+                
+                catch (final CompletionException e) {
+                    
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+                
+                this.position = skipped;
+                this.schedule();
+            }
+            
+            return true;
+        }
+        
+        @Override
+        public int read () throws IOException {
+            
+            return this.advance() ? this.current[this.position++] & 0xff : -1;
+        }
+        
+        @Override
+        public int read (byte[] bytes, int offset, int length) throws IOException {
+            
+            if (length == 0)
+                return 0;
+                
+            if (!this.advance())
+                return -1;
+                
+            final int count = Math.min(length, this.current.length - this.position);
+            System.arraycopy(this.current, this.position, bytes, offset, count);
+            this.position += count;
+            return count;
+        }
+        
+        @Override
+        public int available () throws IOException {
+            
+            return this.closed ? 0 : Math.max(0, this.current.length - this.position);
+        }
+        
+        @Override
+        public void close () throws IOException {
+            
+            if (this.closed)
+                return;
+                
+            this.closed = true;
+            this.pending.forEach(block -> block.cancel(false));
+            this.pending.clear();
+            
+            if (this.closeFile)
+                BlockGzipFile.this.close();
+        }
+    }
+}
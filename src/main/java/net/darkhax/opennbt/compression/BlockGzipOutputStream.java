@@ -0,0 +1,304 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A stream which compresses data into the block GZIP format. Data is split into blocks, and
+ * each block is compressed on an Executor while more data is being written, so compression
+ * can use every core rather than one. The compressed blocks are written in order, followed
+ * by the block index when the stream is finished.
+ *
+ * The output is valid GZIP data, and can be read by any GZIP reader. Files written by this
+ * stream can also be decompressed in parallel, and read from any offset, using a
+ * {@link BlockGzipFile}.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+    
+    /**
+     * The stream which compressed data is written to.
+     */
+    private final OutputStream out;
+    
+    /**
+     * The compression level to use.
+     */
+    private final int level;
+    
+    /**
+     * The compression strategy to use.
+     */
+    private final int strategy;
+    
+    /**
+     * The executor which blocks are compressed on.
+     */
+    private final Executor executor;
+    
+    /**
+     * The maximum amount of blocks which can be compressing at the same time.
+     */
+    private final int maxPending;
+    
+    /**
+     * Blocks which are being compressed, in the order they need to be written.
+     */
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<CompletableFuture<byte[]>>();
+    
+    /**
+     * The compressed and uncompressed size of every block written so far.
+     */
+    private int[] index = new int[256];
+    
+    /**
+     * The amount of blocks written so far.
+     */
+    private int blocks;
+    
+    /**
+     * The offset of the next member in the output.
+     */
+    private long position;
+    
+    /**
+     * The data of the block currently being filled.
+     */
+    private byte[] block;
+    
+    /**
+     * The amount of bytes in the current block.
+     */
+    private int count;
+    
+    /**
+     * Whether or not the index has been written.
+     */
+    private boolean finished;
+    
+    /**
+     * Constructs a new stream which compresses blocks using the common ForkJoinPool, with the
+     * default level and strategy.
+     *
+     * @param out The stream to write compressed data to.
+     */
+    public BlockGzipOutputStream(OutputStream out) {
+        
+        this(out, Compression.BLOCK_GZIP.getLevel(), Compression.BLOCK_GZIP.getStrategy());
+    }
+    
+    /**
+     * Constructs a new stream which compresses blocks using the common ForkJoinPool.
+     *
+     * @param out The stream to write compressed data to.
+     * @param level The compression level to use.
+     * @param strategy The compression strategy to use.
+     */
+    public BlockGzipOutputStream(OutputStream out, int level, int strategy) {
+        
+        this(out, level, strategy, BlockGzip.MAX_BLOCK_SIZE, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors() * 2);
+    }
+    
+    /**
+     * Constructs a new stream which compresses blocks using the given executor.
+     *
+     * @param out The stream to write compressed data to.
+     * @param level The compression level to use.
+     * @param strategy The compression strategy to use.
+     * @param blockSize The amount of uncompressed data in each block, up to 65280 bytes.
+     * @param executor The executor to compress blocks on.
+     * @param maxPending The maximum amount of blocks which can be compressing at the same
+     *        time. This limits the amount of memory used by the stream.
+     */
+    public BlockGzipOutputStream(OutputStream out, int level, int strategy, int blockSize, Executor executor, int maxPending) {
+        
+        if (blockSize <= 0 || blockSize > BlockGzip.MAX_BLOCK_SIZE)
+            throw new IllegalArgumentException("Block size must be between 1 and " + BlockGzip.MAX_BLOCK_SIZE);
+            
+        this.out = out;
+        this.level = level;
+        this.strategy = strategy;
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+        this.block = new byte[blockSize];
+    }
+    
+    @Override
+    public void write (int value) throws IOException {
+        
+        this.ensureOpen();
+        this.block[this.count++] = (byte) value;
+        
+        if (this.count == this.block.length)
+            this.submitBlock();
+    }
+    
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+        
+        this.ensureOpen();
+        
+        while (length > 0) {
+            
+            final int copied = Math.min(length, this.block.length - this.count);
+            System.arraycopy(bytes, offset, this.block, this.count, copied);
+            this.count += copied;
+            offset += copied;
+            length -= copied;
+            
+            if (this.count == this.block.length)
+                this.submitBlock();
+        }
+    }
+    
+    /**
+     * Ends the current block early, and waits for every block to be written. Flushing often
+     * creates small blocks, which compress poorly.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void flush () throws IOException {
+        
+        this.ensureOpen();
+        this.submitBlock();
+        
+        while (!this.pending.isEmpty())
+            this.writeBlock();
+            
+        this.out.flush();
+    }
+    
+    /**
+     * Writes all remaining blocks, followed by the block index. No more data can be written
+     * afterwards, but the underlying stream is not closed.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void finish () throws IOException {
+        
+        if (this.finished)
+            return;
+            
+        this.submitBlock();
+        
+        while (!this.pending.isEmpty())
+            this.writeBlock();
+            
+        final long indexStart = this.position;
+        final byte[] entries = new byte[BlockGzip.ENTRIES_PER_INDEX * 8];
+        
+        for (int first = 0; first < this.blocks; first += BlockGzip.ENTRIES_PER_INDEX) {
+            
+            final int amount = Math.min(BlockGzip.ENTRIES_PER_INDEX, this.blocks - first);
+            
+            for (int entry = 0; entry < amount * 2; entry++)
+                BlockGzip.writeIntLE(entries, entry * 4, this.index[first * 2 + entry]);
+                
+            this.writeMember(BlockGzip.emptyMember('O', 'I', entries, amount * 8));
+        }
+        
+        final byte[] tail = new byte[12];
+        BlockGzip.writeIntLE(tail, 0, (int) indexStart);
+        BlockGzip.writeIntLE(tail, 4, (int) (indexStart >>> 32));
+        BlockGzip.writeIntLE(tail, 8, this.blocks);
+        this.writeMember(BlockGzip.emptyMember('O', 'T', tail, tail.length));
+        this.finished = true;
+        this.block = null;
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        try {
+            
+            this.finish();
+        }
+        
+        finally {
+            
+            this.out.close();
+        }
+    }
+    
+    /**
+     * Checks that the index has not been written yet.
+     *
+     * @throws IOException If the stream has been finished.
+     */
+    private void ensureOpen () throws IOException {
+        
+        if (this.finished)
+            throw new IOException("Stream finished");
+    }
+    
+    /**
+     * Starts compressing the current block, if it holds any data. If too many blocks are
+     * already being compressed, the oldest one is written first.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void submitBlock () throws IOException {
+        
+        if (this.count == 0)
+            return;
+            
+        while (this.pending.size() >= this.maxPending)
+            this.writeBlock();
+            
+        final byte[] data = this.block;
+        final int length = this.count;
+        final CompletableFuture<byte[]> member = CompletableFuture.supplyAsync(() -> BlockGzip.compress(data, length, this.level, this.strategy), this.executor);
+        
+        if (this.blocks == this.index.length / 2)
+            this.index = Arrays.copyOf(this.index, this.index.length * 2);
+            
+        this.index[this.blocks * 2 + 1] = length;
+        this.blocks++;
+        this.pending.add(member);
+        this.block = new byte[data.length];
+        this.count = 0;
+    }
+    
+    /**
+     * Waits for the oldest block to be compressed, and writes it.
+     *
+     * @throws IOException If the block could not be compressed, or an I/O error occurs.
+     */
+    private void writeBlock () throws IOException {
+        
+        final int block = this.blocks - this.pending.size();
+        final byte[] member;
+        
+        try {
+            
+            member = this.pending.poll().join();
+        }
+        
+        catch (final CompletionException e) {
+            
+            throw new IOException("Failed to compress block " + block, e.getCause());
+        }
+        
+        this.index[block * 2] = member.length;
+        this.writeMember(member);
+    }
+    
+    /**
+     * Writes a complete member to the output.
+     *
+     * @param member The member to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeMember (byte[] member) throws IOException {
+        
+        this.out.write(member);
+        this.position += member.length;
+    }
+}
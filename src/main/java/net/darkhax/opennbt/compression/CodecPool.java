@@ -0,0 +1,105 @@
+package net.darkhax.opennbt.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of Inflater and Deflater instances. Each of these holds native zlib state which is
+ * expensive to allocate, and is only released when the instance is ended or finalized. By
+ * reusing instances between streams, compressing many small files does not allocate any new
+ * native memory. The pool is bounded, and instances released to a full pool are ended.
+ *
+ * Instances taken from the pool must be released exactly once, and must not be used after
+ * they have been released. The pool is thread safe.
+ */
+public class CodecPool {
+    
+    /**
+     * The maximum amount of instances of each kind which are kept in the pool.
+     */
+    private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    
+    /**
+     * Pooled deflaters which write a ZLIB header.
+     */
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<Deflater>(MAX_POOLED);
+    
+    /**
+     * Pooled deflaters which write raw DEFLATE data.
+     */
+    private static final BlockingQueue<Deflater> RAW_DEFLATERS = new ArrayBlockingQueue<Deflater>(MAX_POOLED);
+    
+    /**
+     * Pooled inflaters which expect a ZLIB header.
+     */
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<Inflater>(MAX_POOLED);
+    
+    /**
+     * Pooled inflaters which expect raw DEFLATE data.
+     */
+    private static final BlockingQueue<Inflater> RAW_INFLATERS = new ArrayBlockingQueue<Inflater>(MAX_POOLED);
+    
+    /**
+     * Takes a deflater from the pool, or creates a new one if the pool is empty.
+     *
+     * @param level The compression level to use, from 0 to 9, or -1 for the default level.
+     * @param strategy The compression strategy to use.
+     * @param nowrap Whether the deflater should write raw DEFLATE data, rather than ZLIB.
+     * @return Deflater A deflater which is ready to use.
+     */
+    public static Deflater acquireDeflater (int level, int strategy, boolean nowrap) {
+        
+        Deflater deflater = (nowrap ? RAW_DEFLATERS : DEFLATERS).poll();
+        
+        if (deflater == null)
+            deflater = new Deflater(level, nowrap);
+            
+        else
+            deflater.setLevel(level);
+            
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+    
+    /**
+     * Returns a deflater to the pool. If the pool is full, the deflater is ended instead.
+     *
+     * @param deflater The deflater to release.
+     * @param nowrap Whether the deflater writes raw DEFLATE data.
+     */
+    public static void releaseDeflater (Deflater deflater, boolean nowrap) {
+        
+        deflater.reset();
+        
+        if (!(nowrap ? RAW_DEFLATERS : DEFLATERS).offer(deflater))
+            deflater.end();
+    }
+    
+    /**
+     * Takes an inflater from the pool, or creates a new one if the pool is empty.
+     *
+     * @param nowrap Whether the inflater should expect raw DEFLATE data, rather than ZLIB.
+     * @return Inflater An inflater which is ready to use.
+     */
+    public static Inflater acquireInflater (boolean nowrap) {
+        
+        final Inflater inflater = (nowrap ? RAW_INFLATERS : INFLATERS).poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+    
+    /**
+     * Returns an inflater to the pool. If the pool is full, the inflater is ended instead.
+     *
+     * @param inflater The inflater to release.
+     * @param nowrap Whether the inflater expects raw DEFLATE data.
+     */
+    public static void releaseInflater (Inflater inflater, boolean nowrap) {
+        
+        inflater.reset();
+        
+        if (!(nowrap ? RAW_INFLATERS : INFLATERS).offer(inflater))
+            inflater.end();
+    }
+}
@@ -0,0 +1,303 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Describes how NBT data is compressed. This is made up of a {@link CompressionFormat}, along
+ * with the compression level and strategy which are used when writing. The level and
+ * strategy have no effect on reading, and any level can be read by any codec of the same
+ * format. Codecs are immutable, and can be shared between threads.
+ *
+ * All of the codecs use Inflater and Deflater instances from the {@link CodecPool}, so
+ * compressing or decompressing many files does not allocate new native zlib state for each
+ * one. Streams created by a codec must be closed to return their state to the pool.
+ */
+public class Compression {
+    
+    /**
+     * A codec which does not compress the data.
+     */
+    public static final Compression NONE = new Compression(CompressionFormat.NONE, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    
+    /**
+     * A codec which uses the GZIP format with the default level.
+     */
+    public static final Compression GZIP = new Compression(CompressionFormat.GZIP, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    
+    /**
+     * A codec which uses the ZLIB format with the default level.
+     */
+    public static final Compression ZLIB = new Compression(CompressionFormat.ZLIB, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    
+    /**
+     * A codec which uses raw DEFLATE data with the default level.
+     */
+    public static final Compression DEFLATE = new Compression(CompressionFormat.DEFLATE, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    
+    /**
+     * A codec which uses the block GZIP format with the default level.
+     */
+    public static final Compression BLOCK_GZIP = new Compression(CompressionFormat.BLOCK_GZIP, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    
+    /**
+     * The format of the compressed data.
+     */
+    private final CompressionFormat format;
+    
+    /**
+     * The compression level, from 0 to 9, or -1 for the default level.
+     */
+    private final int level;
+    
+    /**
+     * The compression strategy, as defined by Deflater.
+     */
+    private final int strategy;
+    
+    /**
+     * Creates a new codec.
+     *
+     * @param format The format of the compressed data.
+     * @param level The compression level.
+     * @param strategy The compression strategy.
+     */
+    private Compression(CompressionFormat format, int level, int strategy) {
+        
+        this.format = format;
+        this.level = level;
+        this.strategy = strategy;
+    }
+    
+    /**
+     * Gets the default codec for a format.
+     *
+     * @param format The format to get the codec for.
+     * @return Compression The codec for the format, using the default level and strategy.
+     */
+    public static Compression of (CompressionFormat format) {
+        
+        switch (format) {
+            
+            case GZIP:
+                return GZIP;
+                
+            case ZLIB:
+                return ZLIB;
+                
+            case DEFLATE:
+                return DEFLATE;
+                
+            case BLOCK_GZIP:
+                return BLOCK_GZIP;
+                
+            default:
+                return NONE;
+        }
+    }
+    
+    /**
+     * Creates a copy of this codec which uses a different compression level. Low levels are
+     * faster, while high levels produce smaller output.
+     *
+     * @param level The compression level, from 0 to 9, or -1 for the default level.
+     * @return Compression The new codec.
+     */
+    public Compression withLevel (int level) {
+        
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level " + level);
+            
+        return new Compression(this.format, level, this.strategy);
+    }
+    
+    /**
+     * Creates a copy of this codec which uses a different compression strategy.
+     *
+     * @param strategy The compression strategy, as defined by Deflater.
+     * @return Compression The new codec.
+     */
+    public Compression withStrategy (int strategy) {
+        
+        if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY)
+            throw new IllegalArgumentException("Invalid compression strategy " + strategy);
+            
+        return new Compression(this.format, this.level, strategy);
+    }
+    
+    /**
+     * Gets the format of the compressed data.
+     *
+     * @return CompressionFormat The format of the compressed data.
+     */
+    public CompressionFormat getFormat () {
+        
+        return this.format;
+    }
+    
+    /**
+     * Gets the compression level.
+     *
+     * @return int The compression level, from 0 to 9, or -1 for the default level.
+     */
+    public int getLevel () {
+        
+        return this.level;
+    }
+    
+    /**
+     * Gets the compression strategy.
+     *
+     * @return int The compression strategy, as defined by Deflater.
+     */
+    public int getStrategy () {
+        
+        return this.strategy;
+    }
+    
+    /**
+     * Wraps a stream so that data written to it is compressed. Closing the returned stream
+     * will close the given stream.
+     *
+     * @param out The stream to write compressed data to.
+     * @return OutputStream A stream which compresses data written to it.
+     * @throws IOException If an I/O error occurs.
+     */
+    public OutputStream compress (OutputStream out) throws IOException {
+        
+        switch (this.format) {
+            
+            case GZIP:
+                return new GzipOutputStream(out, this.level, this.strategy);
+                
+            case ZLIB:
+                return new PooledDeflaterOutputStream(out, this.level, this.strategy, false);
+                
+            case DEFLATE:
+                return new PooledDeflaterOutputStream(out, this.level, this.strategy, true);
+                
+            case BLOCK_GZIP:
+                return new BlockGzipOutputStream(out, this.level, this.strategy);
+                
+            default:
+                return out;
+        }
+    }
+    
+    /**
+     * Wraps a stream so that data read from it is decompressed. Closing the returned stream
+     * will close the given stream.
+     *
+     * @param in The stream to read compressed data from.
+     * @return InputStream A stream which decompresses data read from it.
+     * @throws IOException If an I/O error occurs, or the data does not match the format.
+     */
+    public InputStream decompress (InputStream in) throws IOException {
+        
+        switch (this.format) {
+            
+            case GZIP:
+            case BLOCK_GZIP:
+                return new GzipInputStream(in);
+                
+            case ZLIB:
+                return new PooledInflaterInputStream(in, false);
+                
+            case DEFLATE:
+                return new PooledInflaterInputStream(in, true);
+                
+            default:
+                return in;
+        }
+    }
+    
+    /**
+     * Opens a file, and decompresses it with this codec. Block GZIP files are decompressed in
+     * parallel using their index, while other formats are read the same way as
+     * {@link #decompress(InputStream)}.
+     *
+     * @param file The file to read.
+     * @return InputStream A stream which decompresses the file.
+     * @throws IOException If an I/O error occurs, or the data does not match the format.
+     */
+    public InputStream open (File file) throws IOException {
+        
+        if (this.format == CompressionFormat.BLOCK_GZIP)
+            return BlockGzipFile.newInputStream(file.toPath());
+            
+        final InputStream in = new FileInputStream(file);
+        
+        try {
+            
+            return this.decompress(in);
+        }
+        
+        catch (final IOException e) {
+            
+            in.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Detects the format of some data by looking at its first two bytes. GZIP data starts
+     * with a fixed magic number, and ZLIB data starts with a header which has a checksum. Raw
+     * DEFLATE data has no header, so any data which is not GZIP or ZLIB is considered to be
+     * uncompressed. Uncompressed NBT data starts with a tag ID, which can never look like a
+     * ZLIB header.
+     *
+     * @param first The first byte of the data.
+     * @param second The second byte of the data.
+     * @return CompressionFormat The detected format.
+     */
+    public static CompressionFormat detect (int first, int second) {
+        
+        if (first == 0x1f && second == 0x8b)
+            return CompressionFormat.GZIP;
+            
+        if ((first & 0x0f) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0)
+            return CompressionFormat.ZLIB;
+            
+        return CompressionFormat.NONE;
+    }
+    
+    /**
+     * Wraps a stream so that data read from it is decompressed, using the format detected
+     * from the first bytes of the stream. Closing the returned stream will close the given
+     * stream.
+     *
+     * @param in The stream to read data from.
+     * @return InputStream A stream which decompresses data read from it.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static InputStream autoDetect (InputStream in) throws IOException {
+        
+        final PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        final byte[] header = new byte[2];
+        int count = 0;
+        
+        while (count < 2) {
+            
+            final int read = pushback.read(header, count, 2 - count);
+            
+            if (read == -1)
+                break;
+                
+            count += read;
+        }
+        
+        pushback.unread(header, 0, count);
+        return count < 2 ? pushback : of(detect(header[0] & 0xFF, header[1] & 0xFF)).decompress(pushback);
+    }
+    
+    @Override
+    public String toString () {
+        
+        return this.format + "(level=" + this.level + ", strategy=" + this.strategy + ")";
+    }
+}
@@ -0,0 +1,38 @@
+package net.darkhax.opennbt.compression;
+
+/**
+ * The container formats which NBT data can be compressed with.
+ */
+public enum CompressionFormat {
+    
+    /**
+     * The data is stored without any compression.
+     */
+    NONE,
+    
+    /**
+     * The data is compressed with DEFLATE and wrapped in a GZIP container. This is the format
+     * used by most NBT files.
+     */
+    GZIP,
+    
+    /**
+     * The data is compressed with DEFLATE and wrapped in a ZLIB container. This is the format
+     * used by chunks in region files.
+     */
+    ZLIB,
+    
+    /**
+     * The data is compressed with DEFLATE, without any container. This format has no header,
+     * so it can not be detected automatically.
+     */
+    DEFLATE,
+    
+    /**
+     * The data is split into blocks which are compressed as independent GZIP members, followed
+     * by an index of the blocks. This is valid GZIP data, but it can also be compressed and
+     * decompressed in parallel, and read from any offset. When detected automatically, this
+     * format is read as {@link #GZIP}.
+     */
+    BLOCK_GZIP;
+}
@@ -0,0 +1,259 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * A stream which decompresses GZIP data, using an inflater from the {@link CodecPool}.
+ * Unlike GZIPInputStream, the inflater is reused rather than allocated for every stream.
+ * Data made of several GZIP members one after the other is read as a single stream, with
+ * the checksum and size of every member being verified. Like GZIPInputStream, bytes after a
+ * complete member which do not start a valid header are treated as the end of the stream.
+ */
+public class GzipInputStream extends PooledInflaterInputStream {
+    
+    /**
+     * The flag for a header which contains a CRC16 checksum.
+     */
+    private static final int FHCRC = 2;
+    
+    /**
+     * The flag for a header which contains extra fields.
+     */
+    private static final int FEXTRA = 4;
+    
+    /**
+     * The flag for a header which contains a file name.
+     */
+    private static final int FNAME = 8;
+    
+    /**
+     * The flag for a header which contains a comment.
+     */
+    private static final int FCOMMENT = 16;
+    
+    /**
+     * The checksum of the data from the current member.
+     */
+    private final CRC32 crc = new CRC32();
+    
+    /**
+     * The index of the first buffered byte which has not been used by the inflater, or by
+     * the trailer and header parser.
+     */
+    private int pending;
+    
+    /**
+     * The amount of buffered bytes which have not been used by the inflater, or by the
+     * trailer and header parser.
+     */
+    private int pendingCount;
+    
+    /**
+     * Whether or not the last member has been read.
+     */
+    private boolean eof;
+    
+    /**
+     * Constructs a new decompressing stream, and reads the first GZIP header. If the header is
+     * not valid, the stream is closed.
+     *
+     * @param in The stream to read compressed data from.
+     * @throws IOException If the header is not valid, or an I/O error occurs.
+     */
+    public GzipInputStream(InputStream in) throws IOException {
+        
+        super(in, true);
+        
+        try {
+            
+            final int first = this.nextByte();
+            
+            if (first == -1)
+                throw new EOFException("Unexpected end of GZIP header");
+                
+            this.readHeader(first);
+        }
+        
+        catch (final IOException e) {
+            
+            this.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public int read (byte[] bytes, int offset, int length) throws IOException {
+        
+        this.ensureOpen();
+        
+        while (!this.eof) {
+            
+            final int count = super.read(bytes, offset, length);
+            
+            if (count >= 0) {
+                
+                this.crc.update(bytes, offset, count);
+                return count;
+            }
+            
+            this.eof = this.readTrailer();
+        }
+        
+        return -1;
+    }
+    
+    @Override
+    public int available () throws IOException {
+        
+        return this.eof ? 0 : super.available();
+    }
+    
+    /**
+     * Reads the next byte of the GZIP container. Bytes which were buffered but not used by the
+     * inflater are consumed first.
+     *
+     * @return int The next byte, or -1 if the end of the stream has been reached.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int nextByte () throws IOException {
+        
+        if (this.pendingCount > 0) {
+            
+            this.pendingCount--;
+            return this.buf[this.pending++] & 0xFF;
+        }
+        
+        return this.in.read();
+    }
+    
+    /**
+     * Reads the next byte of a header or trailer, which must exist.
+     *
+     * @return int The next byte.
+     * @throws IOException If the end of the stream has been reached, or an I/O error occurs.
+     */
+    private int requireByte () throws IOException {
+        
+        final int value = this.nextByte();
+        
+        if (value == -1)
+            throw new EOFException("Unexpected end of GZIP stream");
+            
+        return value;
+    }
+    
+    /**
+     * Reads a little endian short from the container.
+     *
+     * @return int The unsigned value which was read.
+     * @throws IOException If the end of the stream has been reached, or an I/O error occurs.
+     */
+    private int readShortLE () throws IOException {
+        
+        return this.requireByte() | this.requireByte() << 8;
+    }
+    
+    /**
+     * Reads a little endian int from the container.
+     *
+     * @return int The value which was read.
+     * @throws IOException If the end of the stream has been reached, or an I/O error occurs.
+     */
+    private int readIntLE () throws IOException {
+        
+        return this.readShortLE() | this.readShortLE() << 16;
+    }
+    
+    /**
+     * Reads a GZIP member header, after its first byte has been read. The optional fields of
+     * the header are skipped.
+     *
+     * @param first The first byte of the header.
+     * @throws IOException If the header is not valid, or an I/O error occurs.
+     */
+    private void readHeader (int first) throws IOException {
+        
+        if (first != 0x1f || this.requireByte() != 0x8b)
+            throw new ZipException("Not in GZIP format");
+            
+        if (this.requireByte() != 8)
+            throw new ZipException("Unsupported GZIP compression method");
+            
+        final int flags = this.requireByte();
+        
+        for (int index = 0; index < 6; index++)
+            this.requireByte();
+            
+        if ((flags & FEXTRA) != 0)
+            for (int length = this.readShortLE(); length > 0; length--)
+                this.requireByte();
+                
+        if ((flags & FNAME) != 0)
+            this.skipString();
+            
+        if ((flags & FCOMMENT) != 0)
+            this.skipString();
+            
+        if ((flags & FHCRC) != 0)
+            this.readShortLE();
+    }
+    
+    /**
+     * Skips over a zero terminated string in a header.
+     *
+     * @throws IOException If the end of the stream has been reached, or an I/O error occurs.
+     */
+    private void skipString () throws IOException {
+        
+        int value = this.requireByte();
+        
+        while (value != 0)
+            value = this.requireByte();
+    }
+    
+    /**
+     * Reads the trailer of the current member, and the header of the next member if there is
+     * one. The inflater is then reset so it can decompress the next member. If the bytes after
+     * the trailer are not a valid header, they are ignored and the stream ends.
+     *
+     * @return boolean Whether or not the end of the stream has been reached.
+     * @throws IOException If the trailer does not match the data, or an I/O error occurs.
+     */
+    private boolean readTrailer () throws IOException {
+        
+        this.pendingCount = this.inf.getRemaining();
+        this.pending = this.len - this.pendingCount;
+        
+        if (this.readIntLE() != (int) this.crc.getValue() || this.readIntLE() != (int) this.inf.getBytesWritten())
+            throw new ZipException("Corrupt GZIP trailer");
+            
+        final int next = this.nextByte();
+        
+        if (next == -1)
+            return true;
+            
+        try {
+            
+            this.readHeader(next);
+        }
+        
+        catch (final IOException e) {
+            
+            // Padding or other data after the last member is not part of the stream.
+            return true;
+        }
+        
+        this.inf.reset();
+        this.crc.reset();
+        
+        if (this.pendingCount > 0)
+            this.inf.setInput(this.buf, this.pending, this.pendingCount);
+            
+        this.pendingCount = 0;
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * A stream which compresses data into the GZIP format, using a deflater from the
+ * {@link CodecPool}. Unlike GZIPOutputStream, the compression level and strategy can be
+ * chosen, and the deflater is reused rather than allocated for every stream.
+ */
+public class GzipOutputStream extends PooledDeflaterOutputStream {
+    
+    /**
+     * The header written at the start of every member. This is the same header written by
+     * GZIPOutputStream.
+     */
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0 };
+    
+    /**
+     * The checksum of the uncompressed data.
+     */
+    private final CRC32 crc = new CRC32();
+    
+    /**
+     * Whether or not the trailer has been written.
+     */
+    private boolean finished;
+    
+    /**
+     * Constructs a new compressing stream, and writes the GZIP header.
+     *
+     * @param out The stream to write compressed data to.
+     * @param level The compression level to use.
+     * @param strategy The compression strategy to use.
+     * @throws IOException If an I/O error occurs.
+     */
+    public GzipOutputStream(OutputStream out, int level, int strategy) throws IOException {
+        
+        super(out, level, strategy, true);
+        
+        try {
+            
+            out.write(HEADER);
+        }
+        
+        catch (final IOException e) {
+            
+            CodecPool.releaseDeflater(this.def, true);
+            throw e;
+        }
+    }
+    
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+        
+        super.write(bytes, offset, length);
+        this.crc.update(bytes, offset, length);
+    }
+    
+    @Override
+    public void finish () throws IOException {
+        
+        super.finish();
+        
+        if (!this.finished) {
+            
+            this.finished = true;
+            writeIntLE(this.out, (int) this.crc.getValue());
+            writeIntLE(this.out, (int) this.def.getBytesRead());
+        }
+    }
+    
+    /**
+     * Writes a little endian int to a stream.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeIntLE (OutputStream out, int value) throws IOException {
+        
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -0,0 +1,82 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import net.darkhax.opennbt.io.NBTWriter;
+
+/**
+ * A DeflaterOutputStream which borrows its deflater from the {@link CodecPool}, and returns
+ * it when the stream is closed.
+ */
+public class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    
+    /**
+     * Whether the deflater writes raw DEFLATE data, rather than ZLIB.
+     */
+    private final boolean nowrap;
+    
+    /**
+     * Whether or not the stream has been closed, and the deflater released.
+     */
+    private boolean closed;
+    
+    /**
+     * Constructs a new compressing stream.
+     *
+     * @param out The stream to write compressed data to.
+     * @param level The compression level to use.
+     * @param strategy The compression strategy to use.
+     * @param nowrap Whether to write raw DEFLATE data, rather than ZLIB.
+     */
+    public PooledDeflaterOutputStream(OutputStream out, int level, int strategy, boolean nowrap) {
+        
+        super(out, CodecPool.acquireDeflater(level, strategy, nowrap), NBTWriter.DEFAULT_BUFFER_SIZE);
+        this.nowrap = nowrap;
+    }
+    
+    /**
+     * Checks that the stream has not been closed. The deflater may already be in use by
+     * another stream once this one is closed, so it must not be touched.
+     *
+     * @throws IOException If the stream has been closed.
+     */
+    protected void ensureOpen () throws IOException {
+        
+        if (this.closed)
+            throw new IOException("Stream closed");
+    }
+    
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+        
+        this.ensureOpen();
+        super.write(bytes, offset, length);
+    }
+    
+    @Override
+    public void finish () throws IOException {
+        
+        this.ensureOpen();
+        super.finish();
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        if (this.closed)
+            return;
+            
+        try {
+            
+            super.close();
+        }
+        
+        finally {
+            
+            this.closed = true;
+            CodecPool.releaseDeflater(this.def, this.nowrap);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.darkhax.opennbt.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.darkhax.opennbt.io.NBTReader;
+
+/**
+ * An InflaterInputStream which borrows its inflater from the {@link CodecPool}, and returns
+ * it when the stream is closed.
+ */
+public class PooledInflaterInputStream extends InflaterInputStream {
+    
+    /**
+     * Whether the inflater expects raw DEFLATE data, rather than ZLIB.
+     */
+    private final boolean nowrap;
+    
+    /**
+     * Whether or not the stream has been closed, and the inflater released.
+     */
+    private boolean closed;
+    
+    /**
+     * Constructs a new decompressing stream.
+     *
+     * @param in The stream to read compressed data from.
+     * @param nowrap Whether to expect raw DEFLATE data, rather than ZLIB.
+     */
+    public PooledInflaterInputStream(InputStream in, boolean nowrap) {
+        
+        super(in, CodecPool.acquireInflater(nowrap), NBTReader.DEFAULT_BUFFER_SIZE);
+        this.nowrap = nowrap;
+    }
+    
+    /**
+     * Checks that the stream has not been closed. The inflater may already be in use by
+     * another stream once this one is closed, so it must not be touched.
+     *
+     * @throws IOException If the stream has been closed.
+     */
+    protected void ensureOpen () throws IOException {
+        
+        if (this.closed)
+            throw new IOException("Stream closed");
+    }
+    
+    @Override
+    public int read (byte[] bytes, int offset, int length) throws IOException {
+        
+        this.ensureOpen();
+        return super.read(bytes, offset, length);
+    }
+    
+    @Override
+    public int available () throws IOException {
+        
+        this.ensureOpen();
+        return super.available();
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        if (this.closed)
+            return;
+            
+        try {
+            
+            super.close();
+        }
+        
+        finally {
+            
+            this.closed = true;
+            CodecPool.releaseInflater(this.inf, this.nowrap);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package net.darkhax.opennbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An NBTReader which decodes directly from a ByteBuffer, rather than copying data into an
+ * array first. This is mainly intended for memory mapped files, where values can be read
+ * straight out of the page cache, but any kind of ByteBuffer can be used.
+ *
+ * The reader works on a duplicate of the buffer it is given, so the position of the
+ * original buffer is never changed.
+ */
+public class ByteBufferNBTReader extends NBTReader {
+    
+    /**
+     * The buffer which data is being decoded from.
+     */
+    private final ByteBuffer source;
+    
+    /**
+     * A scratch array which strings are copied into when the buffer has no backing array.
+     * Created when it is first needed.
+     */
+    private byte[] stringBytes;
+    
+    /**
+     * Constructs a new reader which decodes the remaining bytes of a ByteBuffer.
+     *
+     * @param source The buffer to read from.
+     */
+    public ByteBufferNBTReader(ByteBuffer source) {
+        
+        super(new byte[0]);
+        this.source = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+    
+    @Override
+    public int getPosition () {
+        
+        return this.source.position();
+    }
+    
+    /**
+     * Makes sure that at least the specified amount of bytes remain in the buffer.
+     *
+     * @param count The amount of bytes that need to be available.
+     * @throws EOFException If there are not enough bytes remaining.
+     */
+    private void check (int count) throws EOFException {
+        
+        if (this.source.remaining() < count)
+            throw new EOFException();
+    }
+    
+    @Override
+    public int read () throws IOException {
+        
+        return this.source.hasRemaining() ? this.source.get() & 0xFF : -1;
+    }
+    
+    @Override
+    public int read (byte[] bytes, int offset, int length) throws IOException {
+        
+        if (length == 0)
+            return 0;
+            
+        if (!this.source.hasRemaining())
+            return -1;
+            
+        final int count = Math.min(length, this.source.remaining());
+        this.source.get(bytes, offset, count);
+        return count;
+    }
+    
+    @Override
+    public int available () throws IOException {
+        
+        return this.source.remaining();
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        // Buffers do not hold any resources which need to be released.
+    }
+    
+    @Override
+    public void readFully (byte[] bytes, int offset, int length) throws IOException {
+        
+        this.check(length);
+        this.source.get(bytes, offset, length);
+    }
+    
+    @Override
+    public int skipBytes (int count) throws IOException {
+        
+        final int skipped = Math.max(0, Math.min(count, this.source.remaining()));
+        this.source.position(this.source.position() + skipped);
+        return skipped;
+    }
+    
+    @Override
+    public int readNameMatch (byte[][] names) throws IOException {
+        
+        final int length = this.readUnsignedShort();
+        this.check(length);
+        final int start = this.source.position();
+        int match = -1;
+        
+        for (int index = 0; index < names.length && match == -1; index++)
+            if (this.matches(names[index], start, length))
+                match = index;
+                
+        this.source.position(start + length);
+        return match;
+    }
+    
+    /**
+     * Checks if an encoded name is equal to a section of the buffer.
+     *
+     * @param name The encoded name to check.
+     * @param offset The index of the first byte to compare.
+     * @param length The amount of bytes in the section.
+     * @return boolean Whether or not the name and section are equal.
+     */
+    private boolean matches (byte[] name, int offset, int length) {
+        
+        if (name.length != length)
+            return false;
+            
+        for (int index = 0; index < length; index++)
+            if (name[index] != this.source.get(offset + index))
+                return false;
+                
+        return true;
+    }
+    
+    @Override
+    public String readUTF () throws IOException {
+        
+        return this.readString(false);
+    }
+    
+    @Override
+    public String readName () throws IOException {
+        
+        return this.readString(true);
+    }
+    
+    /**
+     * Reads a modified UTF-8 string. Strings are decoded straight from the backing array of
+     * the buffer if it has one, or are copied into a scratch array first if it does not.
+     *
+     * @param name Whether the string is a tag name, which should be looked up in the name
+     *        table.
+     * @return String The string which was read.
+     * @throws IOException If the end of the buffer is reached, or the string is malformed.
+     */
+    private String readString (boolean name) throws IOException {
+        
+        final int length = this.readUnsignedShort();
+        this.check(length);
+        final int start = this.source.position();
+        this.source.position(start + length);
+        
+        if (this.source.hasArray()) {
+            
+            final int offset = this.source.arrayOffset() + start;
+            return name ? this.decodeName(this.source.array(), offset, length) : this.decodeUTF(this.source.array(), offset, length);
+        }
+        
+        if (this.stringBytes == null || this.stringBytes.length < length)
+            this.stringBytes = new byte[Math.max(length, 256)];
+            
+        for (int index = 0; index < length; index++)
+            this.stringBytes[index] = this.source.get(start + index);
+            
+        return name ? this.decodeName(this.stringBytes, 0, length) : this.decodeUTF(this.stringBytes, 0, length);
+    }
+    
+    @Override
+    public byte readByte () throws IOException {
+        
+        this.check(1);
+        return this.source.get();
+    }
+    
+    @Override
+    public int readUnsignedByte () throws IOException {
+        
+        this.check(1);
+        return this.source.get() & 0xFF;
+    }
+    
+    @Override
+    public short readShort () throws IOException {
+        
+        this.check(2);
+        return this.source.getShort();
+    }
+    
+    @Override
+    public int readUnsignedShort () throws IOException {
+        
+        this.check(2);
+        return this.source.getShort() & 0xFFFF;
+    }
+    
+    @Override
+    public char readChar () throws IOException {
+        
+        this.check(2);
+        return this.source.getChar();
+    }
+    
+    @Override
+    public int readInt () throws IOException {
+        
+        this.check(4);
+        return this.source.getInt();
+    }
+    
+    @Override
+    public long readLong () throws IOException {
+        
+        this.check(8);
+        return this.source.getLong();
+    }
+    
+    @Override
+    public float readFloat () throws IOException {
+        
+        this.check(4);
+        return this.source.getFloat();
+    }
+    
+    @Override
+    public double readDouble () throws IOException {
+        
+        this.check(8);
+        return this.source.getDouble();
+    }
+    
+    @Override
+    public void readShorts (short[] values, int offset, int length) throws IOException {
+        
+        this.check(length << 1);
+        this.source.asShortBuffer().get(values, offset, length);
+        this.source.position(this.source.position() + (length << 1));
+    }
+    
+    @Override
+    public void readInts (int[] values, int offset, int length) throws IOException {
+        
+        this.check(length << 2);
+        this.source.asIntBuffer().get(values, offset, length);
+        this.source.position(this.source.position() + (length << 2));
+    }
+    
+    @Override
+    public void readLongs (long[] values, int offset, int length) throws IOException {
+        
+        this.check(length << 3);
+        this.source.asLongBuffer().get(values, offset, length);
+        this.source.position(this.source.position() + (length << 3));
+    }
+    
+    @Override
+    public void readFloats (float[] values, int offset, int length) throws IOException {
+        
+        this.check(length << 2);
+        this.source.asFloatBuffer().get(values, offset, length);
+        this.source.position(this.source.position() + (length << 2));
+    }
+    
+    @Override
+    public void readDoubles (double[] values, int offset, int length) throws IOException {
+        
+        this.check(length << 3);
+        this.source.asDoubleBuffer().get(values, offset, length);
+        this.source.position(this.source.position() + (length << 3));
+    }
+}
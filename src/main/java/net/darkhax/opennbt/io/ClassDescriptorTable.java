@@ -0,0 +1,118 @@
+package net.darkhax.opennbt.io;
+
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the Java serialization class descriptors used by one document. The first time a
+ * class is serialized within a document, its full descriptor is written along with its index
+ * in the table. Every later value of that class only writes the index. Each reader and writer
+ * owns one table, which is discarded when they are reset.
+ *
+ * Definitions always carry their index, so reading the same definition twice has no effect.
+ * This allows a section of a document to be decoded again later, as long as the reader which
+ * decodes it is given the table of the reader which first went over it.
+ */
+public final class ClassDescriptorTable {
+    
+    /**
+     * The largest amount of classes which can be stored in a table. Classes past this limit
+     * are written with their full descriptor every time.
+     */
+    public static final int MAX_SIZE = 0xFFFF;
+    
+    /**
+     * The indexes of the classes which have been written using this table.
+     */
+    private final Map<Class<?>, Integer> indexes = new HashMap<Class<?>, Integer>();
+    
+    /**
+     * The descriptors which have been read using this table, by index. Indexes which have not
+     * been defined yet are null.
+     */
+    private final List<ObjectStreamClass> descriptors = new ArrayList<ObjectStreamClass>();
+    
+    /**
+     * The amount of values which have been serialized or deserialized using this table.
+     */
+    private int values;
+    
+    /**
+     * Gets the index of a class which has already been written.
+     *
+     * @param descriptor The descriptor of the class.
+     * @return int The index of the class, or -1 if it has not been written yet.
+     */
+    public int indexOf (ObjectStreamClass descriptor) {
+        
+        final Integer index = this.indexes.get(descriptor.forClass());
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * Adds a class which is about to be written for the first time.
+     *
+     * @param descriptor The descriptor of the class.
+     * @return int The index given to the class, or -1 if the table is full.
+     */
+    public int add (ObjectStreamClass descriptor) {
+        
+        if (this.indexes.size() >= MAX_SIZE)
+            return -1;
+            
+        final int index = this.indexes.size();
+        this.indexes.put(descriptor.forClass(), index);
+        return index;
+    }
+    
+    /**
+     * Gets a descriptor which has been read.
+     *
+     * @param index The index of the descriptor.
+     * @return ObjectStreamClass The descriptor, or null if the index has not been defined.
+     */
+    public ObjectStreamClass get (int index) {
+        
+        return index >= 0 && index < this.descriptors.size() ? this.descriptors.get(index) : null;
+    }
+    
+    /**
+     * Stores a descriptor which has been read.
+     *
+     * @param index The index of the descriptor.
+     * @param descriptor The descriptor which was read.
+     */
+    public void put (int index, ObjectStreamClass descriptor) {
+        
+        if (index < 0 || index >= MAX_SIZE)
+            throw new IndexOutOfBoundsException("Invalid class descriptor index " + index);
+            
+        while (this.descriptors.size() <= index)
+            this.descriptors.add(null);
+            
+        this.descriptors.set(index, descriptor);
+    }
+    
+    /**
+     * Records that a value has been serialized or deserialized using this table.
+     */
+    public void countValue () {
+        
+        this.values++;
+    }
+    
+    /**
+     * Gets the amount of values which have been serialized or deserialized using this table.
+     * Comparing this before and after reading a section of a document shows whether that
+     * section depends on the table.
+     *
+     * @return int The amount of values.
+     */
+    public int getValueCount () {
+        
+        return this.values;
+    }
+}
@@ -0,0 +1,194 @@
+package net.darkhax.opennbt.io;
+
+import java.io.UTFDataFormatException;
+
+/**
+ * Helpers for the modified UTF-8 encoding used by DataInput and DataOutput, which is how
+ * all tag names and strings are stored. These work directly on the buffers of the readers and
+ * writers, so no temporary arrays need to be created for each string. Most names are plain
+ * ASCII, which is encoded as one byte per character, so the helpers check for this first and
+ * skip the full conversion when they can.
+ */
+final class ModifiedUTF8 {
+    
+    /**
+     * This class only holds static helpers.
+     */
+    private ModifiedUTF8() {
+        
+    }
+    
+    /**
+     * Counts the ASCII bytes at the start of an encoded string. These bytes each decode to a
+     * single character of the same value.
+     *
+     * @param bytes The array holding the encoded string.
+     * @param offset The index of the first byte of the string.
+     * @param length The amount of bytes in the string.
+     * @return int The amount of ASCII bytes before the first multi byte character.
+     */
+    static int countAscii (byte[] bytes, int offset, int length) {
+        
+        final int end = offset + length;
+        int index = offset;
+        
+        while (index < end && bytes[index] >= 0)
+            index++;
+            
+        return index - offset;
+    }
+    
+    /**
+     * Decodes a string which contains multi byte characters.
+     *
+     * @param bytes The array holding the encoded string.
+     * @param offset The index of the first byte of the string.
+     * @param length The amount of bytes in the string.
+     * @param ascii The amount of ASCII bytes at the start of the string, which are copied
+     *        without being checked.
+     * @param chars A scratch array to decode into, which must hold at least length
+     *        characters.
+     * @return String The decoded string.
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+     */
+    static String decode (byte[] bytes, int offset, int length, int ascii, char[] chars) throws UTFDataFormatException {
+        
+        final int end = offset + length;
+        int index = offset + ascii;
+        int count = 0;
+        
+        for (; count < ascii; count++)
+            chars[count] = (char) bytes[offset + count];
+            
+        while (index < end) {
+            
+            final int first = bytes[index] & 0xFF;
+            
+            switch (first >> 4) {
+                
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    chars[count++] = (char) first;
+                    index++;
+                    break;
+                    
+                case 12:
+                case 13:
+                    if (index + 2 > end)
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                        
+                    final int second = bytes[index + 1];
+                    
+                    if ((second & 0xC0) != 0x80)
+                        throw new UTFDataFormatException("malformed input around byte " + (index - offset));
+                        
+                    chars[count++] = (char) ((first & 0x1F) << 6 | second & 0x3F);
+                    index += 2;
+                    break;
+                    
+                case 14:
+                    if (index + 3 > end)
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                        
+                    final int middle = bytes[index + 1];
+                    final int last = bytes[index + 2];
+                    
+                    if ((middle & 0xC0) != 0x80 || (last & 0xC0) != 0x80)
+                        throw new UTFDataFormatException("malformed input around byte " + (index - offset));
+                        
+                    chars[count++] = (char) ((first & 0x0F) << 12 | (middle & 0x3F) << 6 | last & 0x3F);
+                    index += 3;
+                    break;
+                    
+                default:
+                    throw new UTFDataFormatException("malformed input around byte " + (index - offset));
+            }
+        }
+        
+        return new String(chars, 0, count);
+    }
+    
+    /**
+     * Writes the ASCII characters at the start of a string, one byte per character. The null
+     * character is not included, as modified UTF-8 stores it using two bytes.
+     *
+     * @param value The string to encode.
+     * @param bytes The array to write to, which must have room for every character.
+     * @param index The index to start writing at.
+     * @return int The amount of characters which were written.
+     */
+    static int encodeAscii (String value, byte[] bytes, int index) {
+        
+        final int length = value.length();
+        int count = 0;
+        
+        for (char character; count < length && (character = value.charAt(count)) != 0 && character < 0x80; count++)
+            bytes[index + count] = (byte) character;
+            
+        return count;
+    }
+    
+    /**
+     * Gets the amount of bytes needed to encode a string.
+     *
+     * @param value The string to measure.
+     * @return int The encoded length of the string, not including the length prefix.
+     */
+    static int encodedLength (String value) {
+        
+        final int length = value.length();
+        int encodedLength = length;
+        
+        for (int index = 0; index < length; index++) {
+            
+            final char character = value.charAt(index);
+            
+            if (character == 0 || character > 0x7F)
+                encodedLength += character > 0x07FF ? 2 : 1;
+        }
+        
+        return encodedLength;
+    }
+    
+    /**
+     * Encodes a whole string.
+     *
+     * @param value The string to encode.
+     * @param bytes The array to write to, which must have room for the encoded length.
+     * @param index The index to start writing at.
+     * @return int The index after the last byte which was written.
+     */
+    static int encode (String value, byte[] bytes, int index) {
+        
+        final int length = value.length();
+        
+        for (int charIndex = 0; charIndex < length; charIndex++) {
+            
+            final char character = value.charAt(charIndex);
+            
+            if (character >= 0x0001 && character <= 0x007F)
+                bytes[index++] = (byte) character;
+                
+            else if (character > 0x07FF) {
+                
+                bytes[index++] = (byte) (0xE0 | character >> 12 & 0x0F);
+                bytes[index++] = (byte) (0x80 | character >> 6 & 0x3F);
+                bytes[index++] = (byte) (0x80 | character & 0x3F);
+            }
+            
+            else {
+                
+                bytes[index++] = (byte) (0xC0 | character >> 6 & 0x1F);
+                bytes[index++] = (byte) (0x80 | character & 0x3F);
+            }
+        }
+        
+        return index;
+    }
+}
@@ -0,0 +1,659 @@
+package net.darkhax.opennbt.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.tags.ByteArrayTag;
+import net.darkhax.opennbt.tags.ByteTag;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleArrayTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.FloatArrayTag;
+import net.darkhax.opennbt.tags.FloatTag;
+import net.darkhax.opennbt.tags.IntArrayTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.LongArrayTag;
+import net.darkhax.opennbt.tags.LongTag;
+import net.darkhax.opennbt.tags.ShortArrayTag;
+import net.darkhax.opennbt.tags.ShortTag;
+import net.darkhax.opennbt.tags.StringArrayTag;
+import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.Tag;
+
+/**
+ * An incremental decoder for a sequence of root tags, such as the data received from a non
+ * blocking SocketChannel. Data can be handed to the decoder in pieces of any size, using
+ * {@link #feed(ByteBuffer)} or {@link #read(ReadableByteChannel)}, and every root tag which
+ * has been fully received can then be taken with {@link #poll()}.
+ *
+ * As data arrives, the decoder walks through the structure of the current root tag, and
+ * remembers where it stopped so that no byte is looked at twice. Only the current root tag
+ * is held in memory, and it is decoded as soon as its last byte arrives. The structure of a
+ * tag can only be followed for the built in tag types which have a known layout. Data which
+ * contains any other tags, such as SerializableTag, must be sent using
+ * {@link NBTFrameCodec} instead.
+ *
+ * A decoder which has thrown an exception is left in an unknown state, and must be reset
+ * before it can be used again. Decoders are not thread safe.
+ */
+public class NBTDecoder {
+    
+    /**
+     * The default limit on the size of a single root tag, in bytes.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+    
+    /**
+     * The deepest that compound and list tags can be nested.
+     */
+    private static final int MAX_DEPTH = 512;
+    
+    /**
+     * The initial size of the buffer, in bytes.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    
+    /**
+     * The frame value used to mark an open compound. Open lists store their remaining element
+     * count instead.
+     */
+    private static final int COMPOUND_FRAME = -1;
+    
+    /**
+     * The state for reading the ID of the next tag.
+     */
+    private static final int TAG_ID = 0;
+    
+    /**
+     * The state for reading the length of a tag name.
+     */
+    private static final int NAME_LENGTH = 1;
+    
+    /**
+     * The state for starting the payload of a tag.
+     */
+    private static final int PAYLOAD = 2;
+    
+    /**
+     * The state for reading the length of a string.
+     */
+    private static final int STRING_LENGTH = 3;
+    
+    /**
+     * The state for reading the amount of strings in a string array.
+     */
+    private static final int STRING_COUNT = 4;
+    
+    /**
+     * The state for reading the length of an array.
+     */
+    private static final int ARRAY_LENGTH = 5;
+    
+    /**
+     * The state for reading the element type and length of a list.
+     */
+    private static final int LIST_HEADER = 6;
+    
+    /**
+     * The state for finishing a value, after its payload has been skipped.
+     */
+    private static final int VALUE_END = 7;
+    
+    /**
+     * The state reached once the root tag has been finished.
+     */
+    private static final int DONE = 8;
+    
+    /**
+     * The largest root tag which will be accepted, in bytes.
+     */
+    private final int maxMessageSize;
+    
+    /**
+     * The reader used to decode finished root tags.
+     */
+    private final NBTReader reader = new NBTReader(new byte[0]);
+    
+    /**
+     * The root tags which have been decoded, but not taken yet.
+     */
+    private final Queue<Tag> tags = new ArrayDeque<Tag>();
+    
+    /**
+     * The buffer which received data is held in until its root tag is finished.
+     */
+    private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+    
+    /**
+     * The index of the first byte of the current root tag.
+     */
+    private int start;
+    
+    /**
+     * The index after the last byte which has been received.
+     */
+    private int limit;
+    
+    /**
+     * The amount of bytes of the current root tag which have already been walked through.
+     */
+    private int scanned;
+    
+    /**
+     * The amount of bytes which must be skipped before the next state is handled.
+     */
+    private long pending;
+    
+    /**
+     * The current state of the walk.
+     */
+    private int state = TAG_ID;
+    
+    /**
+     * The ID of the tag whose payload is being walked through.
+     */
+    private int id;
+    
+    /**
+     * The size in bytes of each element of the array being walked through.
+     */
+    private int elementSize;
+    
+    /**
+     * The amount of strings left to walk through in the current string or string array.
+     */
+    private int strings;
+    
+    /**
+     * A stack containing a frame for every open compound and list.
+     */
+    private int[] frames = new int[16];
+    
+    /**
+     * The amount of frames on the stack.
+     */
+    private int depth;
+    
+    /**
+     * Constructs a new decoder which accepts root tags up to the default size.
+     */
+    public NBTDecoder() {
+        
+        this(DEFAULT_MAX_MESSAGE_SIZE);
+    }
+    
+    /**
+     * Constructs a new decoder.
+     *
+     * @param maxMessageSize The largest root tag which will be accepted, in bytes. Larger
+     *        tags cause an IOException rather than being buffered.
+     */
+    public NBTDecoder(int maxMessageSize) {
+        
+        if (maxMessageSize <= 0)
+            throw new IllegalArgumentException("Invalid maximum message size " + maxMessageSize);
+            
+        this.maxMessageSize = maxMessageSize;
+    }
+    
+    /**
+     * Gets the largest root tag which will be accepted.
+     *
+     * @return int The maximum message size, in bytes.
+     */
+    public int getMaxMessageSize () {
+        
+        return this.maxMessageSize;
+    }
+    
+    /**
+     * Hands data to the decoder. Every remaining byte of the buffer is consumed, and any root
+     * tags which are finished by it are decoded.
+     *
+     * @param input The data to decode.
+     * @throws IOException If the data is malformed, or a root tag is too large.
+     */
+    public void feed (ByteBuffer input) throws IOException {
+        
+        while (input.hasRemaining()) {
+            
+            this.makeRoom();
+            final int count = Math.min(input.remaining(), this.data.length - this.limit);
+            input.get(this.data, this.limit, count);
+            this.limit += count;
+            this.process();
+        }
+    }
+    
+    /**
+     * Reads whatever data is available from a channel, and decodes it. The data is read
+     * straight into the buffer of the decoder. For a non blocking channel, this should be
+     * called until it returns zero or less.
+     *
+     * @param channel The channel to read from.
+     * @return int The amount of bytes which were read, or -1 if the channel has reached the
+     *         end of its data.
+     * @throws IOException If an I/O error occurs, the data is malformed, or a root tag is too
+     *         large.
+     */
+    public int read (ReadableByteChannel channel) throws IOException {
+        
+        this.makeRoom();
+        final int count = channel.read(ByteBuffer.wrap(this.data, this.limit, this.data.length - this.limit));
+        
+        if (count > 0) {
+            
+            this.limit += count;
+            this.process();
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Takes the next root tag which has been decoded.
+     *
+     * @return Tag The next root tag, or null if no tag has been finished yet.
+     */
+    public Tag poll () {
+        
+        return this.tags.poll();
+    }
+    
+    /**
+     * Gets the amount of bytes held for a root tag which has not been finished yet. When the
+     * other side closes the connection, anything other than zero means that the last tag was
+     * cut off.
+     *
+     * @return int The amount of buffered bytes.
+     */
+    public int getBufferedBytes () {
+        
+        return this.limit - this.start;
+    }
+    
+    /**
+     * Discards all buffered data and decoded tags, so the decoder can be used for a new
+     * connection, or after it has thrown an exception.
+     */
+    public void reset () {
+        
+        this.tags.clear();
+        this.start = 0;
+        this.limit = 0;
+        this.scanned = 0;
+        this.pending = 0;
+        this.state = TAG_ID;
+        this.depth = 0;
+    }
+    
+    /**
+     * Looks for the end of the current root tag in the buffered data. The position reached is
+     * remembered between calls, so each call only looks at the data which has arrived since
+     * the last one.
+     *
+     * @param data The buffer holding the received data.
+     * @param start The index of the first byte of the current root tag.
+     * @param limit The index after the last byte which has been received.
+     * @return int The index after the last byte of the root tag, or -1 if more data is
+     *         needed.
+     * @throws IOException If the data is malformed, or the root tag is too large.
+     */
+    protected int findEnd (byte[] data, int start, int limit) throws IOException {
+        
+        int index = start + this.scanned;
+        
+        while (true) {
+            
+            if (index - start + this.pending > this.maxMessageSize)
+                throw new IOException("NBT message is larger than the limit of " + this.maxMessageSize + " bytes.");
+                
+            if (this.pending > 0) {
+                
+                final int skipped = (int) Math.min(this.pending, limit - index);
+                index += skipped;
+                this.pending -= skipped;
+                
+                if (this.pending > 0)
+                    break;
+            }
+            
+            final int next = this.step(data, index, limit);
+            
+            if (next == -1)
+                break;
+                
+            index = next;
+            
+            if (this.state == DONE) {
+                
+                this.state = TAG_ID;
+                this.scanned = 0;
+                return index;
+            }
+        }
+        
+        this.scanned = index - start;
+        return -1;
+    }
+    
+    /**
+     * Decodes a finished root tag.
+     *
+     * @param data The buffer holding the received data.
+     * @param start The index of the first byte of the root tag.
+     * @param end The index after the last byte of the root tag.
+     * @return Tag The decoded tag, or null if it was an end tag.
+     * @throws IOException If the tag could not be decoded, or did not use every byte.
+     */
+    protected Tag decode (byte[] data, int start, int end) throws IOException {
+        
+        this.reader.reset(data, start, end - start);
+        final Tag tag = NBTHelper.readTag(this.reader);
+        
+        if (this.reader.getPosition() != end)
+            throw new IOException("NBT message has " + (end - this.reader.getPosition()) + " bytes left over after its root tag.");
+            
+        return tag;
+    }
+    
+    /**
+     * Decodes every root tag which has been finished, and drops their data from the buffer.
+     *
+     * @throws IOException If the data is malformed, or a root tag is too large.
+     */
+    private void process () throws IOException {
+        
+        int end;
+        
+        while (this.start < this.limit && (end = this.findEnd(this.data, this.start, this.limit)) != -1) {
+            
+            final Tag tag = this.decode(this.data, this.start, end);
+            
+            if (tag != null)
+                this.tags.add(tag);
+                
+            this.start = end;
+        }
+        
+        if (this.start == this.limit) {
+            
+            this.start = 0;
+            this.limit = 0;
+        }
+    }
+    
+    /**
+     * Makes sure that there is room for more data in the buffer, by moving the current root
+     * tag to the start of the buffer, or growing the buffer if it is already there.
+     */
+    private void makeRoom () {
+        
+        if (this.limit < this.data.length)
+            return;
+            
+        if (this.start > 0) {
+            
+            System.arraycopy(this.data, this.start, this.data, 0, this.limit - this.start);
+            this.limit -= this.start;
+            this.start = 0;
+        }
+        
+        else
+            this.data = Arrays.copyOf(this.data, this.data.length * 2);
+    }
+    
+    /**
+     * Handles the current state of the walk, if enough data has been received.
+     *
+     * @param data The buffer holding the received data.
+     * @param index The index of the next byte to look at.
+     * @param limit The index after the last byte which has been received.
+     * @return int The index after the bytes which were used, or -1 if more data is needed.
+     * @throws IOException If the data is malformed.
+     */
+    private int step (byte[] data, int index, int limit) throws IOException {
+        
+        final int available = limit - index;
+        
+        switch (this.state) {
+            
+            case TAG_ID:
+                if (available < 1)
+                    return -1;
+                    
+                this.id = data[index] & 0xFF;
+                
+                if (this.id != 0)
+                    this.state = NAME_LENGTH;
+                    
+                else if (this.depth == 0)
+                    this.state = DONE;
+                    
+                else {
+                    
+                    if (this.frames[this.depth - 1] == COMPOUND_FRAME)
+                        this.depth--;
+                        
+                    this.state = VALUE_END;
+                }
+                
+                return index + 1;
+                
+            case NAME_LENGTH:
+                if (available < 2)
+                    return -1;
+                    
+                this.pending = readShort(data, index);
+                this.state = PAYLOAD;
+                return index + 2;
+                
+            case PAYLOAD:
+                this.startPayload();
+                return index;
+                
+            case STRING_LENGTH:
+                if (available < 2)
+                    return -1;
+                    
+                this.pending = readShort(data, index);
+                this.state = --this.strings > 0 ? STRING_LENGTH : VALUE_END;
+                return index + 2;
+                
+            case STRING_COUNT:
+                if (available < 4)
+                    return -1;
+                    
+                this.strings = readLength(data, index);
+                this.state = this.strings > 0 ? STRING_LENGTH : VALUE_END;
+                return index + 4;
+                
+            case ARRAY_LENGTH:
+                if (available < 4)
+                    return -1;
+                    
+                this.pending = (long) readLength(data, index) * this.elementSize;
+                this.state = VALUE_END;
+                return index + 4;
+                
+            case LIST_HEADER:
+                if (available < 5)
+                    return -1;
+                    
+                final int count = readLength(data, index + 1);
+                
+                if (count > 0) {
+                    
+                    this.push(count);
+                    this.state = TAG_ID;
+                }
+                
+                else
+                    this.state = VALUE_END;
+                    
+                return index + 5;
+                
+            case VALUE_END:
+                this.endValue();
+                return index;
+                
+            default:
+                throw new IllegalStateException("Invalid decoder state " + this.state);
+        }
+    }
+    
+    /**
+     * Starts walking through the payload of the current tag.
+     *
+     * @throws IOException If the tag does not have a known layout, or is nested too deeply.
+     */
+    private void startPayload () throws IOException {
+        
+        this.state = VALUE_END;
+        
+        switch (this.id) {
+            
+            case ByteTag.ID:
+                this.pending = 1;
+                break;
+                
+            case ShortTag.ID:
+                this.pending = 2;
+                break;
+                
+            case IntTag.ID:
+            case FloatTag.ID:
+                this.pending = 4;
+                break;
+                
+            case LongTag.ID:
+            case DoubleTag.ID:
+                this.pending = 8;
+                break;
+                
+            case StringTag.ID:
+                this.strings = 1;
+                this.state = STRING_LENGTH;
+                break;
+                
+            case StringArrayTag.ID:
+                this.state = STRING_COUNT;
+                break;
+                
+            case ByteArrayTag.ID:
+                this.startArray(1);
+                break;
+                
+            case ShortArrayTag.ID:
+                this.startArray(2);
+                break;
+                
+            case IntArrayTag.ID:
+            case FloatArrayTag.ID:
+                this.startArray(4);
+                break;
+                
+            case LongArrayTag.ID:
+            case DoubleArrayTag.ID:
+                this.startArray(8);
+                break;
+                
+            case CompoundTag.ID:
+                this.push(COMPOUND_FRAME);
+                this.state = TAG_ID;
+                break;
+                
+            case ListTag.ID:
+                this.state = LIST_HEADER;
+                break;
+                
+            default:
+                throw new IOException("Tag ID " + this.id + " can not be decoded incrementally. Use NBTFrameCodec to send it instead.");
+        }
+    }
+    
+    /**
+     * Starts walking through an array.
+     *
+     * @param elementSize The size in bytes of each element.
+     */
+    private void startArray (int elementSize) {
+        
+        this.elementSize = elementSize;
+        this.state = ARRAY_LENGTH;
+    }
+    
+    /**
+     * Finishes a value. The next state depends on what the value was inside of.
+     */
+    private void endValue () {
+        
+        if (this.depth == 0)
+            this.state = DONE;
+            
+        else if (this.frames[this.depth - 1] == COMPOUND_FRAME)
+            this.state = TAG_ID;
+            
+        else if (--this.frames[this.depth - 1] > 0)
+            this.state = TAG_ID;
+            
+        else {
+            
+            this.depth--;
+            this.state = VALUE_END;
+        }
+    }
+    
+    /**
+     * Opens a compound or list.
+     *
+     * @param frame The frame to push.
+     * @throws IOException If the data is nested too deeply.
+     */
+    private void push (int frame) throws IOException {
+        
+        if (this.depth == MAX_DEPTH)
+            throw new IOException("NBT data is nested more than " + MAX_DEPTH + " levels deep.");
+            
+        if (this.depth == this.frames.length)
+            this.frames = Arrays.copyOf(this.frames, this.depth * 2);
+            
+        this.frames[this.depth++] = frame;
+    }
+    
+    /**
+     * Reads an unsigned big-endian short.
+     *
+     * @param data The array to read from.
+     * @param index The index of the first byte.
+     * @return int The value which was read.
+     */
+    private static int readShort (byte[] data, int index) {
+        
+        return (data[index] & 0xFF) << 8 | data[index + 1] & 0xFF;
+    }
+    
+    /**
+     * Reads the length prefix of an array or list.
+     *
+     * @param data The array to read from.
+     * @param index The index of the first byte.
+     * @return int The length which was read.
+     * @throws IOException If the length is negative.
+     */
+    private static int readLength (byte[] data, int index) throws IOException {
+        
+        final int length = (data[index] & 0xFF) << 24 | (data[index + 1] & 0xFF) << 16 | (data[index + 2] & 0xFF) << 8 | data[index + 3] & 0xFF;
+        
+        if (length < 0)
+            throw new IOException("Negative length " + length + " found in NBT data.");
+            
+        return length;
+    }
+}
@@ -0,0 +1,51 @@
+package net.darkhax.opennbt.io;
+
+/**
+ * The types of events which can be produced by an {@link NBTEventReader}.
+ */
+public enum NBTEvent {
+    
+    /**
+     * The start of a named CompoundTag. Its children follow, and are closed by an
+     * {@link #END_COMPOUND} event.
+     */
+    START_COMPOUND,
+    
+    /**
+     * The end of the most recently started CompoundTag.
+     */
+    END_COMPOUND,
+    
+    /**
+     * The start of a named ListTag. The element type and size are available, and the
+     * elements follow before an {@link #END_LIST} event.
+     */
+    START_LIST,
+    
+    /**
+     * The end of the most recently started ListTag.
+     */
+    END_LIST,
+    
+    /**
+     * A named number or string value.
+     */
+    VALUE,
+    
+    /**
+     * A named array. The length of the array is available, and the payload can be read using
+     * the matching read method, or will be skipped when moving to the next event.
+     */
+    ARRAY,
+    
+    /**
+     * A named tag which has no dedicated event, such as a custom tag. The tag is decoded
+     * fully, and is available as a Tag object.
+     */
+    TAG,
+    
+    /**
+     * The end of the data. No more events will be produced.
+     */
+    END_DOCUMENT;
+}
@@ -0,0 +1,761 @@
+package net.darkhax.opennbt.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.tags.ByteArrayTag;
+import net.darkhax.opennbt.tags.ByteTag;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleArrayTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.FloatArrayTag;
+import net.darkhax.opennbt.tags.FloatTag;
+import net.darkhax.opennbt.tags.IntArrayTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.LongArrayTag;
+import net.darkhax.opennbt.tags.LongTag;
+import net.darkhax.opennbt.tags.ShortArrayTag;
+import net.darkhax.opennbt.tags.ShortTag;
+import net.darkhax.opennbt.tags.StringArrayTag;
+import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.Tag;
+import net.darkhax.opennbt.tags.TagCreateException;
+import net.darkhax.opennbt.tags.TagRegistry;
+
+/**
+ * A pull parser for NBT data. Rather than building a tree of tags, the data is exposed as a
+ * sequence of events which are produced one at a time by {@link #next()}. Values can be read
+ * from the current event using the accessor methods, and array payloads are only read if
+ * they are asked for, so large files can be scanned using a constant amount of memory.
+ *
+ * A typical loop looks like this:
+ *
+ * <pre>
+ * NBTEvent event;
+ *
+ * while ((event = reader.next()) != NBTEvent.END_DOCUMENT)
+ *     if (event == NBTEvent.VALUE &amp;&amp; "Health".equals(reader.getName()))
+ *         health = reader.getFloat();
+ * </pre>
+ */
+public class NBTEventReader implements Closeable {
+    
+    /**
+     * The frame value used to mark an open compound. Open lists store their remaining element
+     * count instead.
+     */
+    private static final int COMPOUND_FRAME = -1;
+    
+    /**
+     * The reader which data is decoded from.
+     */
+    private final NBTReader in;
+    
+    /**
+     * A stack containing a frame for every open compound and list.
+     */
+    private int[] frames = new int[16];
+    
+    /**
+     * The amount of open compounds and lists.
+     */
+    private int depth;
+    
+    /**
+     * Whether or not the root tag has been started.
+     */
+    private boolean started;
+    
+    /**
+     * The current event.
+     */
+    private NBTEvent event;
+    
+    /**
+     * The ID of the tag for the current event.
+     */
+    private int tagId;
+    
+    /**
+     * The name of the tag for the current event.
+     */
+    private String name;
+    
+    /**
+     * The value of the current event, if it is a byte, short, int or long.
+     */
+    private long integerValue;
+    
+    /**
+     * The value of the current event, if it is a float or double.
+     */
+    private double decimalValue;
+    
+    /**
+     * The value of the current event, if it is a string.
+     */
+    private String stringValue;
+    
+    /**
+     * The tag for the current event, if it is a {@link NBTEvent#TAG} event.
+     */
+    private Tag tag;
+    
+    /**
+     * The element type ID of the current list.
+     */
+    private int listType;
+    
+    /**
+     * The amount of elements in the current list.
+     */
+    private int listSize;
+    
+    /**
+     * The length of the current array.
+     */
+    private int arrayLength;
+    
+    /**
+     * Whether or not the payload of the current array still needs to be read or skipped.
+     */
+    private boolean payloadPending;
+    
+    /**
+     * Constructs a new event reader which reads from an NBTReader.
+     *
+     * @param in The reader to read from.
+     */
+    public NBTEventReader(NBTReader in) {
+        
+        this.in = in;
+    }
+    
+    /**
+     * Moves to the next event. If the current event is an array whose payload was not read,
+     * the payload is skipped.
+     *
+     * @return NBTEvent The new current event.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    public NBTEvent next () throws IOException {
+        
+        if (this.event == NBTEvent.END_DOCUMENT)
+            return this.event;
+            
+        if (this.payloadPending)
+            this.skipArrayPayload();
+            
+        this.tag = null;
+        this.stringValue = null;
+        
+        if (this.depth == 0) {
+            
+            if (this.started)
+                return this.event = NBTEvent.END_DOCUMENT;
+                
+            this.started = true;
+            final int id = this.in.readUnsignedByte();
+            return id == 0 ? (this.event = NBTEvent.END_DOCUMENT) : this.readEntry(id);
+        }
+        
+        final int frame = this.frames[this.depth - 1];
+        
+        if (frame == COMPOUND_FRAME) {
+            
+            final int id = this.in.readUnsignedByte();
+            return id == 0 ? this.close(NBTEvent.END_COMPOUND, CompoundTag.ID) : this.readEntry(id);
+        }
+        
+        if (frame == 0)
+            return this.close(NBTEvent.END_LIST, ListTag.ID);
+            
+        this.frames[this.depth - 1] = frame - 1;
+        final int id = this.in.readUnsignedByte();
+        
+        if (id == 0)
+            throw new IOException("ListTag contains an end tag.");
+            
+        return this.readEntry(id);
+    }
+    
+    /**
+     * Skips the rest of the current compound or list, moving straight to its end event. For
+     * array events the payload is skipped. Nothing happens for any other event.
+     *
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    public void skipValue () throws IOException {
+        
+        if (this.event == NBTEvent.START_COMPOUND) {
+            
+            for (int id = this.in.readUnsignedByte(); id != 0; id = this.in.readUnsignedByte()) {
+                
+                this.in.skipUTF();
+                this.in.skipPayload(id);
+            }
+            
+            this.close(NBTEvent.END_COMPOUND, CompoundTag.ID);
+        }
+        
+        else if (this.event == NBTEvent.START_LIST) {
+            
+            for (int remaining = this.frames[this.depth - 1]; remaining > 0; remaining--) {
+                
+                final int id = this.in.readUnsignedByte();
+                
+                if (id != 0) {
+                    
+                    this.in.skipUTF();
+                    this.in.skipPayload(id);
+                }
+            }
+            
+            this.close(NBTEvent.END_LIST, ListTag.ID);
+        }
+        
+        else if (this.payloadPending)
+            this.skipArrayPayload();
+    }
+    
+    /**
+     * Decodes the current event into a Tag. For compound and list events, the rest of the
+     * compound or list is decoded, and the reader moves to its end event.
+     *
+     * @return Tag The decoded tag.
+     * @throws IOException If an I/O error occurs, the data is malformed, or the current event
+     *         does not represent a tag.
+     */
+    public Tag readTag () throws IOException {
+        
+        switch (this.event) {
+            
+            case VALUE:
+                switch (this.tagId) {
+                    
+                    case ByteTag.ID:
+                        return new ByteTag(this.name, this.getByte());
+                        
+                    case ShortTag.ID:
+                        return new ShortTag(this.name, this.getShort());
+                        
+                    case IntTag.ID:
+                        return new IntTag(this.name, this.getInt());
+                        
+                    case LongTag.ID:
+                        return new LongTag(this.name, this.getLong());
+                        
+                    case FloatTag.ID:
+                        return new FloatTag(this.name, this.getFloat());
+                        
+                    case DoubleTag.ID:
+                        return new DoubleTag(this.name, this.getDouble());
+                        
+                    default:
+                        return new StringTag(this.name, this.getString());
+                }
+                
+            case ARRAY:
+                switch (this.tagId) {
+                    
+                    case ByteArrayTag.ID:
+                        return new ByteArrayTag(this.name, this.readByteArray());
+                        
+                    case ShortArrayTag.ID:
+                        return new ShortArrayTag(this.name, this.readShortArray());
+                        
+                    case IntArrayTag.ID:
+                        return new IntArrayTag(this.name, this.readIntArray());
+                        
+                    case LongArrayTag.ID:
+                        return new LongArrayTag(this.name, this.readLongArray());
+                        
+                    case FloatArrayTag.ID:
+                        return new FloatArrayTag(this.name, this.readFloatArray());
+                        
+                    case DoubleArrayTag.ID:
+                        return new DoubleArrayTag(this.name, this.readDoubleArray());
+                        
+                    default:
+                        return new StringArrayTag(this.name, this.readStringArray());
+                }
+                
+            case START_COMPOUND:
+                final CompoundTag compound = new CompoundTag(this.name);
+                compound.read(this.in);
+                this.close(NBTEvent.END_COMPOUND, CompoundTag.ID);
+                return compound;
+                
+            case START_LIST:
+                final ListTag list = new ListTag(this.name, TagRegistry.getClassFor(this.listType));
+                
+                for (int remaining = this.frames[this.depth - 1]; remaining > 0; remaining--)
+                    list.add(NBTHelper.readTag(this.in));
+                    
+                this.close(NBTEvent.END_LIST, ListTag.ID);
+                return list;
+                
+            case TAG:
+                return this.tag;
+                
+            default:
+                throw new IOException("Event " + this.event + " does not represent a tag.");
+        }
+    }
+    
+    /**
+     * Gets the current event.
+     *
+     * @return NBTEvent The current event, or null if {@link #next()} has not been called.
+     */
+    public NBTEvent getEvent () {
+        
+        return this.event;
+    }
+    
+    /**
+     * Gets the amount of compounds and lists which are currently open.
+     *
+     * @return int The current depth.
+     */
+    public int getDepth () {
+        
+        return this.depth;
+    }
+    
+    /**
+     * Gets the ID of the tag for the current event. For end events, this is the ID of the
+     * compound or list being closed.
+     *
+     * @return int The current tag ID.
+     */
+    public int getTagId () {
+        
+        return this.tagId;
+    }
+    
+    /**
+     * Gets the name of the tag for the current event. This is null for end events.
+     *
+     * @return String The current tag name.
+     */
+    public String getName () {
+        
+        return this.name;
+    }
+    
+    /**
+     * Gets the current value as a byte. Any number value can be read, and will be converted.
+     *
+     * @return byte The current value.
+     */
+    public byte getByte () {
+        
+        return (byte) this.getLong();
+    }
+    
+    /**
+     * Gets the current value as a short. Any number value can be read, and will be converted.
+     *
+     * @return short The current value.
+     */
+    public short getShort () {
+        
+        return (short) this.getLong();
+    }
+    
+    /**
+     * Gets the current value as an int. Any number value can be read, and will be converted.
+     *
+     * @return int The current value.
+     */
+    public int getInt () {
+        
+        return (int) this.getLong();
+    }
+    
+    /**
+     * Gets the current value as a long. Any number value can be read, and will be converted.
+     *
+     * @return long The current value.
+     */
+    public long getLong () {
+        
+        this.checkNumber();
+        return this.isDecimal() ? (long) this.decimalValue : this.integerValue;
+    }
+    
+    /**
+     * Gets the current value as a float. Any number value can be read, and will be converted.
+     *
+     * @return float The current value.
+     */
+    public float getFloat () {
+        
+        return (float) this.getDouble();
+    }
+    
+    /**
+     * Gets the current value as a double. Any number value can be read, and will be
+     * converted.
+     *
+     * @return double The current value.
+     */
+    public double getDouble () {
+        
+        this.checkNumber();
+        return this.isDecimal() ? this.decimalValue : this.integerValue;
+    }
+    
+    /**
+     * Gets the current value as a string.
+     *
+     * @return String The current value.
+     */
+    public String getString () {
+        
+        if (this.event != NBTEvent.VALUE || this.tagId != StringTag.ID)
+            throw new IllegalStateException("The current event is not a string value.");
+            
+        return this.stringValue;
+    }
+    
+    /**
+     * Gets the decoded tag for a {@link NBTEvent#TAG} event.
+     *
+     * @return Tag The current tag.
+     */
+    public Tag getTag () {
+        
+        if (this.event != NBTEvent.TAG)
+            throw new IllegalStateException("The current event is not a tag.");
+            
+        return this.tag;
+    }
+    
+    /**
+     * Gets the element type ID of the current list.
+     *
+     * @return int The element type ID.
+     */
+    public int getListType () {
+        
+        if (this.event != NBTEvent.START_LIST)
+            throw new IllegalStateException("The current event is not the start of a list.");
+            
+        return this.listType;
+    }
+    
+    /**
+     * Gets the amount of elements in the current list.
+     *
+     * @return int The size of the list.
+     */
+    public int getListSize () {
+        
+        if (this.event != NBTEvent.START_LIST)
+            throw new IllegalStateException("The current event is not the start of a list.");
+            
+        return this.listSize;
+    }
+    
+    /**
+     * Gets the length of the current array.
+     *
+     * @return int The length of the array.
+     */
+    public int getArrayLength () {
+        
+        if (this.event != NBTEvent.ARRAY)
+            throw new IllegalStateException("The current event is not an array.");
+            
+        return this.arrayLength;
+    }
+    
+    /**
+     * Reads the payload of the current byte array.
+     *
+     * @return byte[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] readByteArray () throws IOException {
+        
+        final byte[] values = new byte[this.startPayload(ByteArrayTag.ID)];
+        this.in.readFully(values);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current short array.
+     *
+     * @return short[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public short[] readShortArray () throws IOException {
+        
+        final short[] values = new short[this.startPayload(ShortArrayTag.ID)];
+        this.in.readShorts(values, 0, values.length);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current int array.
+     *
+     * @return int[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public int[] readIntArray () throws IOException {
+        
+        final int[] values = new int[this.startPayload(IntArrayTag.ID)];
+        this.in.readInts(values, 0, values.length);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current long array.
+     *
+     * @return long[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long[] readLongArray () throws IOException {
+        
+        final long[] values = new long[this.startPayload(LongArrayTag.ID)];
+        this.in.readLongs(values, 0, values.length);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current float array.
+     *
+     * @return float[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public float[] readFloatArray () throws IOException {
+        
+        final float[] values = new float[this.startPayload(FloatArrayTag.ID)];
+        this.in.readFloats(values, 0, values.length);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current double array.
+     *
+     * @return double[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public double[] readDoubleArray () throws IOException {
+        
+        final double[] values = new double[this.startPayload(DoubleArrayTag.ID)];
+        this.in.readDoubles(values, 0, values.length);
+        return values;
+    }
+    
+    /**
+     * Reads the payload of the current string array.
+     *
+     * @return String[] The array payload.
+     * @throws IOException If an I/O error occurs.
+     */
+    public String[] readStringArray () throws IOException {
+        
+        final String[] values = new String[this.startPayload(StringArrayTag.ID)];
+        
+        for (int index = 0; index < values.length; index++)
+            values[index] = this.in.readUTF();
+            
+        return values;
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        this.in.close();
+    }
+    
+    /**
+     * Reads the name and value of a tag, and updates the current event.
+     *
+     * @param id The ID of the tag.
+     * @return NBTEvent The new current event.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    private NBTEvent readEntry (int id) throws IOException {
+        
+        this.tagId = id;
+        this.name = this.in.readName();
+        
+        switch (id) {
+            
+            case ByteTag.ID:
+                this.integerValue = this.in.readByte();
+                return this.event = NBTEvent.VALUE;
+                
+            case ShortTag.ID:
+                this.integerValue = this.in.readShort();
+                return this.event = NBTEvent.VALUE;
+                
+            case IntTag.ID:
+                this.integerValue = this.in.readInt();
+                return this.event = NBTEvent.VALUE;
+                
+            case LongTag.ID:
+                this.integerValue = this.in.readLong();
+                return this.event = NBTEvent.VALUE;
+                
+            case FloatTag.ID:
+                this.decimalValue = this.in.readFloat();
+                return this.event = NBTEvent.VALUE;
+                
+            case DoubleTag.ID:
+                this.decimalValue = this.in.readDouble();
+                return this.event = NBTEvent.VALUE;
+                
+            case StringTag.ID:
+                this.stringValue = this.in.readUTF();
+                return this.event = NBTEvent.VALUE;
+                
+            case ByteArrayTag.ID:
+            case ShortArrayTag.ID:
+            case IntArrayTag.ID:
+            case LongArrayTag.ID:
+            case FloatArrayTag.ID:
+            case DoubleArrayTag.ID:
+            case StringArrayTag.ID:
+                this.arrayLength = this.in.readInt();
+                
+                if (this.arrayLength < 0)
+                    throw new IOException("Negative array length " + this.arrayLength + " found in NBT data.");
+                    
+                this.payloadPending = true;
+                return this.event = NBTEvent.ARRAY;
+                
+            case CompoundTag.ID:
+                this.push(COMPOUND_FRAME);
+                return this.event = NBTEvent.START_COMPOUND;
+                
+            case ListTag.ID:
+                this.listType = this.in.readUnsignedByte();
+                this.listSize = this.in.readInt();
+                
+                if (this.listSize < 0)
+                    throw new IOException("Negative list size " + this.listSize + " found in NBT data.");
+                    
+                this.push(this.listSize);
+                return this.event = NBTEvent.START_LIST;
+                
+            default:
+                try {
+                    
+                    this.tag = TagRegistry.createInstance(id, this.name);
+                }
+                
+                catch (final TagCreateException e) {
+                    
+                    throw new IOException("Failed to create tag.", e);
+                }
+                
+                this.tag.read(this.in);
+                return this.event = NBTEvent.TAG;
+        }
+    }
+    
+    /**
+     * Opens a new compound or list frame.
+     *
+     * @param frame The frame value to push.
+     */
+    private void push (int frame) {
+        
+        if (this.depth == this.frames.length)
+            this.frames = Arrays.copyOf(this.frames, this.depth * 2);
+            
+        this.frames[this.depth++] = frame;
+    }
+    
+    /**
+     * Closes the current compound or list frame, and updates the current event.
+     *
+     * @param event The end event to produce.
+     * @param id The ID of the tag being closed.
+     * @return NBTEvent The new current event.
+     */
+    private NBTEvent close (NBTEvent event, int id) {
+        
+        this.depth--;
+        this.tagId = id;
+        this.name = null;
+        return this.event = event;
+    }
+    
+    /**
+     * Checks that the current event is a number value.
+     */
+    private void checkNumber () {
+        
+        if (this.event != NBTEvent.VALUE || this.tagId == StringTag.ID)
+            throw new IllegalStateException("The current event is not a number value.");
+    }
+    
+    /**
+     * Checks if the current value is a float or double.
+     *
+     * @return boolean Whether or not the current value is a decimal.
+     */
+    private boolean isDecimal () {
+        
+        return this.tagId == FloatTag.ID || this.tagId == DoubleTag.ID;
+    }
+    
+    /**
+     * Checks that the payload of the current array can be read, and marks it as read.
+     *
+     * @param id The expected array tag ID.
+     * @return int The length of the array.
+     */
+    private int startPayload (int id) {
+        
+        if (!this.payloadPending || this.tagId != id)
+            throw new IllegalStateException("The current event is not an unread array of the requested type.");
+            
+        this.payloadPending = false;
+        return this.arrayLength;
+    }
+    
+    /**
+     * Skips the payload of the current array.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void skipArrayPayload () throws IOException {
+        
+        this.payloadPending = false;
+        
+        switch (this.tagId) {
+            
+            case ByteArrayTag.ID:
+                this.in.skipFully(this.arrayLength);
+                break;
+                
+            case ShortArrayTag.ID:
+                this.in.skipFully(this.arrayLength * 2L);
+                break;
+                
+            case IntArrayTag.ID:
+            case FloatArrayTag.ID:
+                this.in.skipFully(this.arrayLength * 4L);
+                break;
+                
+            case LongArrayTag.ID:
+            case DoubleArrayTag.ID:
+                this.in.skipFully(this.arrayLength * 8L);
+                break;
+                
+            default:
+                for (int remaining = this.arrayLength; remaining > 0; remaining--)
+                    this.in.skipUTF();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package net.darkhax.opennbt.io;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.tags.Tag;
+
+/**
+ * Encodes and decodes root tags as length prefixed frames. Each frame starts with the length
+ * of the tag as a four byte big-endian int, followed by the tag in the same format as
+ * {@link NBTHelper#writeTag(NBTWriter, Tag)}.
+ *
+ * Frames are decoded in the same way as {@link NBTDecoder}, except that the end of each tag
+ * is found from its length prefix rather than by walking through its structure. This makes
+ * finding the end of a frame cheap, and allows frames to hold any registered tag, including
+ * SerializableTag and tags added by other projects.
+ */
+public class NBTFrameCodec extends NBTDecoder {
+    
+    /**
+     * The size of the length prefix, in bytes.
+     */
+    public static final int HEADER_SIZE = 4;
+    
+    /**
+     * Constructs a new decoder which accepts frames up to the default size.
+     */
+    public NBTFrameCodec() {
+        
+        super();
+    }
+    
+    /**
+     * Constructs a new decoder.
+     *
+     * @param maxFrameSize The largest tag which will be accepted, in bytes, not including
+     *        the length prefix. Larger frames cause an IOException rather than being
+     *        buffered.
+     */
+    public NBTFrameCodec(int maxFrameSize) {
+        
+        super(maxFrameSize);
+    }
+    
+    /**
+     * Encodes a tag as a frame. The tag is written straight into an array of the right size.
+     *
+     * @param tag The tag to encode.
+     * @return ByteBuffer A buffer holding the frame, ready to be written to a channel.
+     * @throws IOException If the tag could not be written.
+     */
+    public static ByteBuffer encode (Tag tag) throws IOException {
+        
+        final byte[] bytes = new byte[HEADER_SIZE + tag.serializedSize()];
+        final NBTWriter out = new NBTWriter(bytes);
+        out.writeInt(0);
+        NBTHelper.writeTag(out, tag);
+        
+        final ByteBuffer frame = ByteBuffer.wrap(out.size() == bytes.length ? bytes : out.toByteArray());
+        frame.putInt(0, frame.remaining() - HEADER_SIZE);
+        return frame;
+    }
+    
+    /**
+     * Encodes a tag as a frame into a buffer, starting at its position. The position of the
+     * buffer is moved past the frame.
+     *
+     * @param tag The tag to encode.
+     * @param buffer The buffer to write into.
+     * @return int The amount of bytes which were written, including the length prefix.
+     * @throws IOException If the tag could not be written.
+     * @throws BufferOverflowException If the frame does not fit in the remaining space of
+     *         the buffer. Nothing is written in this case.
+     */
+    public static int encode (Tag tag, ByteBuffer buffer) throws IOException {
+        
+        if (buffer.remaining() < HEADER_SIZE)
+            throw new BufferOverflowException();
+            
+        final ByteBuffer body = buffer.duplicate();
+        body.position(buffer.position() + HEADER_SIZE);
+        final int length = NBTHelper.toBytes(tag, body);
+        
+        buffer.putInt(length);
+        buffer.position(body.position());
+        return HEADER_SIZE + length;
+    }
+    
+    @Override
+    protected int findEnd (byte[] data, int start, int limit) throws IOException {
+        
+        if (limit - start < HEADER_SIZE)
+            return -1;
+            
+        final int length = (data[start] & 0xFF) << 24 | (data[start + 1] & 0xFF) << 16 | (data[start + 2] & 0xFF) << 8 | data[start + 3] & 0xFF;
+        
+        if (length < 0 || length > this.getMaxMessageSize())
+            throw new IOException("Invalid NBT frame length " + length + ". The limit is " + this.getMaxMessageSize() + " bytes.");
+            
+        return limit - start - HEADER_SIZE >= length ? start + HEADER_SIZE + length : -1;
+    }
+    
+    @Override
+    protected Tag decode (byte[] data, int start, int end) throws IOException {
+        
+        return super.decode(data, start + HEADER_SIZE, end);
+    }
+}
@@ -0,0 +1,294 @@
+package net.darkhax.opennbt.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.Tag;
+import net.darkhax.opennbt.tags.TagCreateException;
+import net.darkhax.opennbt.tags.TagRegistry;
+
+/**
+ * A set of paths which should be decoded from NBT data, with everything else being skipped.
+ * Each path is a series of tag names starting from the children of the root tag, such as
+ * Level.Sections. The tag at the end of a path is decoded fully, along with the compound
+ * tags which lead to it. When a path passes through a list of compound tags, every element
+ * of the list is projected using the rest of the path.
+ *
+ * Data which is not part of any path is skipped at the byte level, without creating any tags
+ * or strings. Tag names are matched by comparing their encoded bytes, so skipped names are
+ * never decoded either. A projection can be reused for any amount of reads, but should not
+ * be modified while it is being used.
+ */
+public class NBTProjection {
+    
+    /**
+     * The node for the children of the root tag.
+     */
+    private final Node root = new Node();
+    
+    /**
+     * Creates a projection from paths which use a dot to separate each tag name, such as
+     * Data.Player.Pos. Names which contain a dot can be added using
+     * {@link #include(String...)}.
+     *
+     * @param paths The paths to include.
+     * @return NBTProjection A projection which includes the given paths.
+     */
+    public static NBTProjection of (String... paths) {
+        
+        final NBTProjection projection = new NBTProjection();
+        
+        for (final String path : paths)
+            projection.include(path.split("\\."));
+            
+        return projection;
+    }
+    
+    /**
+     * Adds a path to the projection. If no names are given, the whole tree is included.
+     *
+     * @param steps The names of the tags along the path, starting from the children of the
+     *        root tag.
+     * @return NBTProjection The same projection, so calls can be chained.
+     */
+    public NBTProjection include (String... steps) {
+        
+        Node node = this.root;
+        
+        for (final String step : steps) {
+            
+            if (node.complete)
+                return this;
+                
+            node = node.child(step);
+        }
+        
+        node.complete = true;
+        node.clear();
+        return this;
+    }
+    
+    /**
+     * Reads a root CompoundTag, decoding only the parts of it which are included in the
+     * projection.
+     *
+     * @param in The reader to read from.
+     * @return CompoundTag The projected tag, or null if the data starts with an end tag.
+     * @throws IOException If an I/O error occurs, or the root tag is not a CompoundTag.
+     */
+    public CompoundTag read (NBTReader in) throws IOException {
+        
+        final int id = in.readUnsignedByte();
+        
+        if (id == 0)
+            return null;
+            
+        if (id != CompoundTag.ID)
+            throw new IOException("Root tag is not a CompoundTag!");
+            
+        final CompoundTag tag = new CompoundTag(in.readName());
+        
+        if (this.root.complete)
+            tag.read(in);
+            
+        else
+            readCompound(in, tag, this.root);
+            
+        return tag;
+    }
+    
+    /**
+     * Reads the payload of a CompoundTag, keeping only the children which are part of a path.
+     *
+     * @param in The reader to read from.
+     * @param tag The tag to add the children to.
+     * @param node The node which describes the children to keep.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    private static void readCompound (NBTReader in, CompoundTag tag, Node node) throws IOException {
+        
+        for (int id = in.readUnsignedByte(); id != 0; id = in.readUnsignedByte()) {
+            
+            final int index = in.readNameMatch(node.encoded);
+            
+            if (index == -1) {
+                
+                in.skipPayload(id);
+                continue;
+            }
+            
+            final Node child = node.children[index];
+            final String name = node.names[index];
+            
+            if (child.complete) {
+                
+                final Tag value = create(id, name);
+                value.read(in);
+                tag.setTag(value);
+            }
+            
+            else if (id == CompoundTag.ID) {
+                
+                final CompoundTag value = new CompoundTag(name);
+                readCompound(in, value, child);
+                tag.setTag(value);
+            }
+            
+            else if (id == ListTag.ID)
+                readList(in, tag, name, child);
+                
+            else
+                in.skipPayload(id);
+        }
+    }
+    
+    /**
+     * Reads the payload of a ListTag which is part of a path. If the list holds compound
+     * tags, every element is projected. Any other list can not contain the rest of the path,
+     * so it is skipped.
+     *
+     * @param in The reader to read from.
+     * @param parent The tag to add the list to.
+     * @param name The name of the list.
+     * @param node The node which describes the elements to keep.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    private static void readList (NBTReader in, CompoundTag parent, String name, Node node) throws IOException {
+        
+        final int type = in.readUnsignedByte();
+        final int count = in.readInt();
+        
+        if (count < 0)
+            throw new IOException("Negative length " + count + " found in NBT data.");
+            
+        final ListTag list = type == CompoundTag.ID ? new ListTag(name, CompoundTag.class) : null;
+        
+        for (int index = 0; index < count; index++) {
+            
+            final int id = in.readUnsignedByte();
+            
+            if (id != type)
+                throw new IOException("Tag type cannot differ from ListTag type.");
+                
+            if (list != null) {
+                
+                final CompoundTag element = new CompoundTag(in.readName());
+                readCompound(in, element, node);
+                list.add(element);
+            }
+            
+            else {
+                
+                in.skipUTF();
+                in.skipPayload(id);
+            }
+        }
+        
+        if (list != null)
+            parent.setTag(list);
+    }
+    
+    /**
+     * Creates an empty tag using the tag registry.
+     *
+     * @param id The ID of the tag.
+     * @param name The name of the tag.
+     * @return Tag The new tag.
+     * @throws IOException If the tag could not be created.
+     */
+    private static Tag create (int id, String name) throws IOException {
+        
+        try {
+            
+            return TagRegistry.createInstance(id, name);
+        }
+        
+        catch (final TagCreateException e) {
+            
+            throw new IOException("Failed to create tag.", e);
+        }
+    }
+    
+    /**
+     * A node in the tree of paths. Each node describes which children of a tag should be
+     * kept, with the names of the children stored both as strings and as encoded bytes.
+     */
+    private static class Node {
+        
+        /**
+         * The names of the children to keep.
+         */
+        private String[] names = new String[0];
+        
+        /**
+         * The names of the children to keep, encoded as modified UTF-8.
+         */
+        private byte[][] encoded = new byte[0][];
+        
+        /**
+         * The nodes for the children to keep.
+         */
+        private Node[] children = new Node[0];
+        
+        /**
+         * Whether or not the tag is decoded fully.
+         */
+        private boolean complete;
+        
+        /**
+         * Gets the node for a child, creating it if it does not exist yet.
+         *
+         * @param name The name of the child.
+         * @return Node The node for the child.
+         */
+        private Node child (String name) {
+            
+            for (int index = 0; index < this.names.length; index++)
+                if (this.names[index].equals(name))
+                    return this.children[index];
+                    
+            final int size = this.names.length;
+            final Node child = new Node();
+            this.names = Arrays.copyOf(this.names, size + 1);
+            this.encoded = Arrays.copyOf(this.encoded, size + 1);
+            this.children = Arrays.copyOf(this.children, size + 1);
+            this.names[size] = name;
+            this.encoded[size] = encode(name);
+            this.children[size] = child;
+            return child;
+        }
+        
+        /**
+         * Removes all children from the node.
+         */
+        private void clear () {
+            
+            this.names = new String[0];
+            this.encoded = new byte[0][];
+            this.children = new Node[0];
+        }
+        
+        /**
+         * Encodes a name as modified UTF-8, without the length prefix.
+         *
+         * @param name The name to encode.
+         * @return byte[] The encoded name.
+         */
+        private static byte[] encode (String name) {
+            
+            try (NBTWriter out = new NBTWriter()) {
+                
+                out.writeUTF(name);
+                final byte[] bytes = out.toByteArray();
+                return Arrays.copyOfRange(bytes, 2, bytes.length);
+            }
+            
+            catch (final IOException e) {
+                
+                throw new IllegalArgumentException("Name can not be encoded: " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,923 @@
+package net.darkhax.opennbt.io;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import net.darkhax.opennbt.tags.ByteArrayTag;
+import net.darkhax.opennbt.tags.ByteTag;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleArrayTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.FloatArrayTag;
+import net.darkhax.opennbt.tags.FloatTag;
+import net.darkhax.opennbt.tags.IntArrayTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.LongArrayTag;
+import net.darkhax.opennbt.tags.LongTag;
+import net.darkhax.opennbt.tags.ShortArrayTag;
+import net.darkhax.opennbt.tags.ShortTag;
+import net.darkhax.opennbt.tags.StringArrayTag;
+import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.TagCreateException;
+import net.darkhax.opennbt.tags.TagRegistry;
+
+/**
+ * A buffered decoder for NBT data. Rather than going through a chain of streams for every
+ * primitive, data is pulled from the source in large chunks into a reusable byte array, and
+ * values are decoded directly from that array using a position cursor. A reader can be
+ * pointed at a new source using one of the reset methods, allowing the same buffer to be
+ * reused for many files.
+ *
+ * The source of a reader may be an InputStream, a blocking ReadableByteChannel, or a byte
+ * array which is decoded in place. Readers are not thread safe.
+ */
+public class NBTReader extends InputStream implements DataInput {
+    
+    /**
+     * The default size of the internal buffer, in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The stream which data is being read from. Null if the reader is not stream backed.
+     */
+    private InputStream stream;
+    
+    /**
+     * The channel which data is being read from. Null if the reader is not channel backed.
+     */
+    private ReadableByteChannel channel;
+    
+    /**
+     * The buffer owned by this reader. This is kept separate from the active buffer, so that
+     * array backed readers never write into the array they were given.
+     */
+    private byte[] ownBuffer;
+    
+    /**
+     * The array which data is currently being decoded from.
+     */
+    protected byte[] buffer;
+    
+    /**
+     * The position of the next byte to decode within the buffer.
+     */
+    protected int position;
+    
+    /**
+     * The index after the last valid byte within the buffer.
+     */
+    protected int limit;
+    
+    /**
+     * A scratch array which strings with multi byte characters are decoded into. Created when
+     * it is first needed.
+     */
+    private char[] chars;
+    
+    /**
+     * The table which tag names are looked up in. Null if names are not shared.
+     */
+    private NameTable names = NameTable.SHARED;
+    
+    /**
+     * The class descriptors of the document being read. Created when it is first needed, and
+     * discarded when the reader is reset.
+     */
+    private ClassDescriptorTable classDescriptors;
+    
+    /**
+     * Constructs a new reader which reads from an InputStream, using the default buffer size.
+     *
+     * @param stream The stream to read from.
+     */
+    public NBTReader(InputStream stream) {
+        
+        this(stream, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructs a new reader which reads from an InputStream.
+     *
+     * @param stream The stream to read from.
+     * @param bufferSize The size of the internal buffer, in bytes.
+     */
+    public NBTReader(InputStream stream, int bufferSize) {
+        
+        this.ownBuffer = new byte[Math.max(bufferSize, 16)];
+        this.reset(stream);
+    }
+    
+    /**
+     * Constructs a new reader which reads from a blocking channel, using the default buffer
+     * size.
+     *
+     * @param channel The channel to read from.
+     */
+    public NBTReader(ReadableByteChannel channel) {
+        
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructs a new reader which reads from a blocking channel.
+     *
+     * @param channel The channel to read from.
+     * @param bufferSize The size of the internal buffer, in bytes.
+     */
+    public NBTReader(ReadableByteChannel channel, int bufferSize) {
+        
+        this.ownBuffer = new byte[Math.max(bufferSize, 16)];
+        this.reset(channel);
+    }
+    
+    /**
+     * Constructs a new reader which decodes directly from a byte array. The array is not
+     * copied, and is never modified by the reader.
+     *
+     * @param data The array to read from.
+     */
+    public NBTReader(byte[] data) {
+        
+        this(data, 0, data.length);
+    }
+    
+    /**
+     * Constructs a new reader which decodes directly from a section of a byte array. The
+     * array is not copied, and is never modified by the reader.
+     *
+     * @param data The array to read from.
+     * @param offset The index of the first byte to read.
+     * @param length The amount of bytes which can be read.
+     */
+    public NBTReader(byte[] data, int offset, int length) {
+        
+        this.reset(data, offset, length);
+    }
+    
+    /**
+     * Points this reader at a new stream. Any data still buffered from the previous source is
+     * discarded.
+     *
+     * @param stream The stream to read from.
+     */
+    public void reset (InputStream stream) {
+        
+        this.useOwnBuffer();
+        this.stream = stream;
+        this.channel = null;
+        this.classDescriptors = null;
+    }
+    
+    /**
+     * Points this reader at a new blocking channel. Any data still buffered from the previous
+     * source is discarded.
+     *
+     * @param channel The channel to read from.
+     */
+    public void reset (ReadableByteChannel channel) {
+        
+        this.useOwnBuffer();
+        this.stream = null;
+        this.channel = channel;
+        this.classDescriptors = null;
+    }
+    
+    /**
+     * Points this reader at a section of a byte array. Any data still buffered from the
+     * previous source is discarded.
+     *
+     * @param data The array to read from.
+     * @param offset The index of the first byte to read.
+     * @param length The amount of bytes which can be read.
+     */
+    public void reset (byte[] data, int offset, int length) {
+        
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("Invalid range " + offset + "+" + length + " for array of length " + data.length);
+            
+        this.stream = null;
+        this.channel = null;
+        this.buffer = data;
+        this.position = offset;
+        this.limit = offset + length;
+        this.classDescriptors = null;
+    }
+    
+    /**
+     * Gets the position of the reader within its buffer. When reading from a byte array, this
+     * is the index of the next byte within that array.
+     *
+     * @return int The position of the next byte to be read.
+     */
+    public int getPosition () {
+        
+        return this.position;
+    }
+    
+    /**
+     * Switches the active buffer back to the buffer owned by this reader, and discards its
+     * contents.
+     */
+    private void useOwnBuffer () {
+        
+        if (this.ownBuffer == null)
+            this.ownBuffer = new byte[DEFAULT_BUFFER_SIZE];
+            
+        this.buffer = this.ownBuffer;
+        this.position = 0;
+        this.limit = 0;
+    }
+    
+    /**
+     * Makes sure that at least the specified amount of bytes are available in the buffer.
+     *
+     * @param count The amount of bytes that need to be available.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    protected final void require (int count) throws IOException {
+        
+        if (this.limit - this.position < count && !this.fill(count))
+            throw new EOFException();
+    }
+    
+    /**
+     * Moves any unread bytes to the start of the buffer, and then reads from the source until
+     * the requested amount of bytes are available. The buffer will grow if it is too small to
+     * hold the requested amount.
+     *
+     * @param count The amount of bytes that need to be available.
+     * @return boolean Whether or not the requested amount of bytes could be made available.
+     * @throws IOException If an I/O error occurs.
+     */
+    private boolean fill (int count) throws IOException {
+        
+        if (this.stream == null && this.channel == null)
+            return false;
+            
+        final int remaining = this.limit - this.position;
+        
+        if (this.buffer.length < count) {
+            
+            final byte[] grown = new byte[Math.max(count, this.buffer.length * 2)];
+            System.arraycopy(this.buffer, this.position, grown, 0, remaining);
+            this.buffer = grown;
+            this.ownBuffer = grown;
+        }
+        
+        else if (this.position > 0)
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+            
+        this.position = 0;
+        this.limit = remaining;
+        
+        while (this.limit < count) {
+            
+            final int read = this.readSource(this.buffer, this.limit, this.buffer.length - this.limit);
+            
+            if (read < 0)
+                return false;
+                
+            this.limit += read;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Reads bytes from the underlying source, bypassing the buffer.
+     *
+     * @param bytes The array to read into.
+     * @param offset The index to start writing to.
+     * @param length The maximum amount of bytes to read.
+     * @return int The amount of bytes read, or -1 if the end of the source has been reached.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int readSource (byte[] bytes, int offset, int length) throws IOException {
+        
+        if (this.stream != null)
+            return this.stream.read(bytes, offset, length);
+            
+        if (this.channel != null)
+            return this.channel.read(ByteBuffer.wrap(bytes, offset, length));
+            
+        return -1;
+    }
+    
+    @Override
+    public int read () throws IOException {
+        
+        if (this.position == this.limit && !this.fill(1))
+            return -1;
+            
+        return this.buffer[this.position++] & 0xFF;
+    }
+    
+    @Override
+    public int read (byte[] bytes, int offset, int length) throws IOException {
+        
+        if (length == 0)
+            return 0;
+            
+        final int available = this.limit - this.position;
+        
+        if (available == 0) {
+            
+            if (length >= this.buffer.length)
+                return this.readSource(bytes, offset, length);
+                
+            if (!this.fill(1))
+                return -1;
+                
+            return this.read(bytes, offset, length);
+        }
+        
+        final int count = Math.min(available, length);
+        System.arraycopy(this.buffer, this.position, bytes, offset, count);
+        this.position += count;
+        return count;
+    }
+    
+    @Override
+    public int available () throws IOException {
+        
+        return this.limit - this.position;
+    }
+    
+    @Override
+    public long skip (long count) throws IOException {
+        
+        return this.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        if (this.stream != null)
+            this.stream.close();
+            
+        if (this.channel != null)
+            this.channel.close();
+    }
+    
+    @Override
+    public void readFully (byte[] bytes) throws IOException {
+        
+        this.readFully(bytes, 0, bytes.length);
+    }
+    
+    @Override
+    public void readFully (byte[] bytes, int offset, int length) throws IOException {
+        
+        final int buffered = Math.min(this.limit - this.position, length);
+        System.arraycopy(this.buffer, this.position, bytes, offset, buffered);
+        this.position += buffered;
+        offset += buffered;
+        length -= buffered;
+        
+        if (length == 0)
+            return;
+            
+        if (length < this.buffer.length) {
+            
+            this.require(length);
+            System.arraycopy(this.buffer, this.position, bytes, offset, length);
+            this.position += length;
+            return;
+        }
+        
+        while (length > 0) {
+            
+            final int read = this.readSource(bytes, offset, length);
+            
+            if (read < 0)
+                throw new EOFException();
+                
+            offset += read;
+            length -= read;
+        }
+    }
+    
+    @Override
+    public int skipBytes (int count) throws IOException {
+        
+        int skipped = 0;
+        
+        while (skipped < count) {
+            
+            if (this.position == this.limit && !this.fill(1))
+                break;
+                
+            final int step = Math.min(this.limit - this.position, count - skipped);
+            this.position += step;
+            skipped += step;
+        }
+        
+        return skipped;
+    }
+    
+    /**
+     * Skips over an exact amount of bytes.
+     *
+     * @param count The amount of bytes to skip.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void skipFully (long count) throws IOException {
+        
+        while (count > 0) {
+            
+            final int skipped = this.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+            
+            if (skipped <= 0)
+                throw new EOFException();
+                
+            count -= skipped;
+        }
+    }
+    
+    /**
+     * Skips over a string which was written by {@link NBTWriter#writeUTF(String)}, without
+     * decoding it.
+     *
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void skipUTF () throws IOException {
+        
+        this.skipFully(this.readUnsignedShort());
+    }
+    
+    /**
+     * Reads a string which was written by {@link NBTWriter#writeUTF(String)}, and compares
+     * its encoded bytes against a set of candidates without decoding it. This allows tag
+     * names to be matched without creating any strings.
+     *
+     * @param names The candidate names, encoded as modified UTF-8 without a length prefix.
+     * @return int The index of the first candidate which matches the string, or -1 if none
+     *         of them match.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public int readNameMatch (byte[][] names) throws IOException {
+        
+        final int length = this.readUnsignedShort();
+        this.require(length);
+        int match = -1;
+        
+        for (int index = 0; index < names.length && match == -1; index++)
+            if (matches(names[index], this.buffer, this.position, length))
+                match = index;
+                
+        this.position += length;
+        return match;
+    }
+    
+    /**
+     * Checks if an encoded name is equal to a section of a byte array.
+     *
+     * @param name The encoded name to check.
+     * @param bytes The array to compare against.
+     * @param offset The index of the first byte to compare.
+     * @param length The amount of bytes in the section.
+     * @return boolean Whether or not the name and section are equal.
+     */
+    private static boolean matches (byte[] name, byte[] bytes, int offset, int length) {
+        
+        if (name.length != length)
+            return false;
+            
+        for (int index = 0; index < length; index++)
+            if (name[index] != bytes[offset + index])
+                return false;
+                
+        return true;
+    }
+    
+    /**
+     * Skips over the payload of a tag, without creating any tags or strings. Compound and list
+     * tags are skipped recursively, and length prefixed payloads are skipped in one step. Tags
+     * which are not built into the library have no known layout, so they are read and
+     * discarded instead.
+     *
+     * @param id The ID of the tag whose payload should be skipped.
+     * @throws IOException If the payload could not be skipped.
+     */
+    public void skipPayload (int id) throws IOException {
+        
+        switch (id) {
+            
+            case ByteTag.ID:
+                this.skipFully(1);
+                break;
+                
+            case ShortTag.ID:
+                this.skipFully(2);
+                break;
+                
+            case IntTag.ID:
+            case FloatTag.ID:
+                this.skipFully(4);
+                break;
+                
+            case LongTag.ID:
+            case DoubleTag.ID:
+                this.skipFully(8);
+                break;
+                
+            case StringTag.ID:
+                this.skipUTF();
+                break;
+                
+            case ByteArrayTag.ID:
+                this.skipFully(this.readLength());
+                break;
+                
+            case ShortArrayTag.ID:
+                this.skipFully(this.readLength() * 2L);
+                break;
+                
+            case IntArrayTag.ID:
+            case FloatArrayTag.ID:
+                this.skipFully(this.readLength() * 4L);
+                break;
+                
+            case LongArrayTag.ID:
+            case DoubleArrayTag.ID:
+                this.skipFully(this.readLength() * 8L);
+                break;
+                
+            case StringArrayTag.ID:
+                for (int count = this.readLength(); count > 0; count--)
+                    this.skipUTF();
+                    
+                break;
+                
+            case CompoundTag.ID:
+                for (int child = this.readUnsignedByte(); child != 0; child = this.readUnsignedByte()) {
+                    
+                    this.skipUTF();
+                    this.skipPayload(child);
+                }
+                
+                break;
+                
+            case ListTag.ID:
+                this.readUnsignedByte();
+                
+                for (int count = this.readLength(); count > 0; count--) {
+                    
+                    final int element = this.readUnsignedByte();
+                    
+                    if (element != 0) {
+                        
+                        this.skipUTF();
+                        this.skipPayload(element);
+                    }
+                }
+                
+                break;
+                
+            default:
+                try {
+                    
+                    TagRegistry.createInstance(id, "").read(this);
+                }
+                
+                catch (final TagCreateException e) {
+                    
+                    throw new IOException("Can not skip unknown tag ID " + id, e);
+                }
+        }
+    }
+    
+    /**
+     * Reads the length prefix of an array or list.
+     *
+     * @return int The length which was read.
+     * @throws IOException If the length is negative, or an I/O error occurs.
+     */
+    private int readLength () throws IOException {
+        
+        final int length = this.readInt();
+        
+        if (length < 0)
+            throw new IOException("Negative length " + length + " found in NBT data.");
+            
+        return length;
+    }
+    
+    @Override
+    public boolean readBoolean () throws IOException {
+        
+        return this.readByte() != 0;
+    }
+    
+    @Override
+    public byte readByte () throws IOException {
+        
+        this.require(1);
+        return this.buffer[this.position++];
+    }
+    
+    @Override
+    public int readUnsignedByte () throws IOException {
+        
+        this.require(1);
+        return this.buffer[this.position++] & 0xFF;
+    }
+    
+    @Override
+    public short readShort () throws IOException {
+        
+        return (short) this.readUnsignedShort();
+    }
+    
+    @Override
+    public int readUnsignedShort () throws IOException {
+        
+        this.require(2);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        this.position = index + 2;
+        return (bytes[index] & 0xFF) << 8 | bytes[index + 1] & 0xFF;
+    }
+    
+    @Override
+    public char readChar () throws IOException {
+        
+        return (char) this.readUnsignedShort();
+    }
+    
+    @Override
+    public int readInt () throws IOException {
+        
+        this.require(4);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        this.position = index + 4;
+        return bytes[index] << 24 | (bytes[index + 1] & 0xFF) << 16 | (bytes[index + 2] & 0xFF) << 8 | bytes[index + 3] & 0xFF;
+    }
+    
+    @Override
+    public long readLong () throws IOException {
+        
+        this.require(8);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        this.position = index + 8;
+        
+        final int high = bytes[index] << 24 | (bytes[index + 1] & 0xFF) << 16 | (bytes[index + 2] & 0xFF) << 8 | bytes[index + 3] & 0xFF;
+        final int low = bytes[index + 4] << 24 | (bytes[index + 5] & 0xFF) << 16 | (bytes[index + 6] & 0xFF) << 8 | bytes[index + 7] & 0xFF;
+        return (long) high << 32 | low & 0xFFFFFFFFL;
+    }
+    
+    @Override
+    public float readFloat () throws IOException {
+        
+        return Float.intBitsToFloat(this.readInt());
+    }
+    
+    @Override
+    public double readDouble () throws IOException {
+        
+        return Double.longBitsToDouble(this.readLong());
+    }
+    
+    /**
+     * Reads a block of big-endian short values into an array. The values are converted in bulk
+     * straight out of the buffer, rather than being decoded one at a time.
+     *
+     * @param values The array to read into.
+     * @param offset The index of the first value to read into.
+     * @param length The amount of values to read.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void readShorts (short[] values, int offset, int length) throws IOException {
+        
+        while (length > 0) {
+            
+            this.require(2);
+            final int count = Math.min(length, this.limit - this.position >> 1);
+            ByteBuffer.wrap(this.buffer, this.position, count << 1).asShortBuffer().get(values, offset, count);
+            this.position += count << 1;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Reads a block of big-endian int values into an array. The values are converted in bulk
+     * straight out of the buffer, rather than being decoded one at a time.
+     *
+     * @param values The array to read into.
+     * @param offset The index of the first value to read into.
+     * @param length The amount of values to read.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void readInts (int[] values, int offset, int length) throws IOException {
+        
+        while (length > 0) {
+            
+            this.require(4);
+            final int count = Math.min(length, this.limit - this.position >> 2);
+            ByteBuffer.wrap(this.buffer, this.position, count << 2).asIntBuffer().get(values, offset, count);
+            this.position += count << 2;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Reads a block of big-endian long values into an array. The values are converted in bulk
+     * straight out of the buffer, rather than being decoded one at a time.
+     *
+     * @param values The array to read into.
+     * @param offset The index of the first value to read into.
+     * @param length The amount of values to read.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void readLongs (long[] values, int offset, int length) throws IOException {
+        
+        while (length > 0) {
+            
+            this.require(8);
+            final int count = Math.min(length, this.limit - this.position >> 3);
+            ByteBuffer.wrap(this.buffer, this.position, count << 3).asLongBuffer().get(values, offset, count);
+            this.position += count << 3;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Reads a block of big-endian float values into an array. The values are converted in bulk
+     * straight out of the buffer, rather than being decoded one at a time.
+     *
+     * @param values The array to read into.
+     * @param offset The index of the first value to read into.
+     * @param length The amount of values to read.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void readFloats (float[] values, int offset, int length) throws IOException {
+        
+        while (length > 0) {
+            
+            this.require(4);
+            final int count = Math.min(length, this.limit - this.position >> 2);
+            ByteBuffer.wrap(this.buffer, this.position, count << 2).asFloatBuffer().get(values, offset, count);
+            this.position += count << 2;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Reads a block of big-endian double values into an array. The values are converted in bulk
+     * straight out of the buffer, rather than being decoded one at a time.
+     *
+     * @param values The array to read into.
+     * @param offset The index of the first value to read into.
+     * @param length The amount of values to read.
+     * @throws IOException If the end of the source is reached, or an I/O error occurs.
+     */
+    public void readDoubles (double[] values, int offset, int length) throws IOException {
+        
+        while (length > 0) {
+            
+            this.require(8);
+            final int count = Math.min(length, this.limit - this.position >> 3);
+            ByteBuffer.wrap(this.buffer, this.position, count << 3).asDoubleBuffer().get(values, offset, count);
+            this.position += count << 3;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    @Override
+    public String readLine () throws IOException {
+        
+        final StringBuilder builder = new StringBuilder();
+        int next;
+        
+        while ((next = this.read()) != -1 && next != '\n')
+            if (next != '\r')
+                builder.append((char) next);
+                
+        return next == -1 && builder.length() == 0 ? null : builder.toString();
+    }
+    
+    @Override
+    public String readUTF () throws IOException {
+        
+        final int length = this.readUnsignedShort();
+        this.require(length);
+        final int start = this.position;
+        this.position += length;
+        return this.decodeUTF(this.buffer, start, length);
+    }
+    
+    /**
+     * Reads the name of a tag. This is encoded in the same way as {@link #readUTF()}, but
+     * the canonical instance of the name is returned from the name table of this reader.
+     *
+     * @return String The name which was read.
+     * @throws IOException If an I/O error occurs, or the name is malformed.
+     */
+    public String readName () throws IOException {
+        
+        final int length = this.readUnsignedShort();
+        this.require(length);
+        final int start = this.position;
+        this.position += length;
+        return this.decodeName(this.buffer, start, length);
+    }
+    
+    /**
+     * Gets the table which tag names are looked up in.
+     *
+     * @return NameTable The name table of this reader, or null if names are not shared.
+     */
+    public NameTable getNameTable () {
+        
+        return this.names;
+    }
+    
+    /**
+     * Sets the table which tag names are looked up in.
+     *
+     * @param names The new name table, or null to decode a new String for every name.
+     */
+    public void setNameTable (NameTable names) {
+        
+        this.names = names;
+    }
+    
+    /**
+     * Gets the table of Java serialization class descriptors for the document being read.
+     *
+     * @return ClassDescriptorTable The class descriptor table of this reader.
+     */
+    public ClassDescriptorTable getClassDescriptors () {
+        
+        if (this.classDescriptors == null)
+            this.classDescriptors = new ClassDescriptorTable();
+            
+        return this.classDescriptors;
+    }
+    
+    /**
+     * Sets the table of Java serialization class descriptors. This is used when a section of
+     * a document is read again by another reader, which needs the descriptors defined before
+     * that section.
+     *
+     * @param classDescriptors The table to use, or null to start a new one.
+     */
+    public void setClassDescriptors (ClassDescriptorTable classDescriptors) {
+        
+        this.classDescriptors = classDescriptors;
+    }
+    
+    /**
+     * Decodes a tag name from an array, using the name table if there is one.
+     *
+     * @param bytes The array holding the encoded name.
+     * @param offset The index of the first byte of the name.
+     * @param length The amount of bytes in the name.
+     * @return String The decoded name.
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+     */
+    protected final String decodeName (byte[] bytes, int offset, int length) throws UTFDataFormatException {
+        
+        final String name = this.names != null ? this.names.get(bytes, offset, length) : null;
+        return name != null ? name : this.decodeUTF(bytes, offset, length);
+    }
+    
+    /**
+     * Decodes a modified UTF-8 string from an array. ASCII strings are copied straight into a
+     * new String, while other strings are decoded through a scratch array which is reused
+     * between calls.
+     *
+     * @param bytes The array holding the encoded string.
+     * @param offset The index of the first byte of the string.
+     * @param length The amount of bytes in the string.
+     * @return String The decoded string.
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+     */
+    protected final String decodeUTF (byte[] bytes, int offset, int length) throws UTFDataFormatException {
+        
+        final int ascii = ModifiedUTF8.countAscii(bytes, offset, length);
+        
+        if (ascii == length)
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            
+        if (this.chars == null || this.chars.length < length)
+            this.chars = new char[Math.max(length, 256)];
+            
+        return ModifiedUTF8.decode(bytes, offset, length, ascii, this.chars);
+    }
+}
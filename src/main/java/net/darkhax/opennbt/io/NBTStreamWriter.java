@@ -0,0 +1,497 @@
+package net.darkhax.opennbt.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.darkhax.opennbt.tags.ByteArrayTag;
+import net.darkhax.opennbt.tags.ByteTag;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleArrayTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.FloatArrayTag;
+import net.darkhax.opennbt.tags.FloatTag;
+import net.darkhax.opennbt.tags.IntArrayTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.LongArrayTag;
+import net.darkhax.opennbt.tags.LongTag;
+import net.darkhax.opennbt.tags.ShortArrayTag;
+import net.darkhax.opennbt.tags.ShortTag;
+import net.darkhax.opennbt.tags.StringArrayTag;
+import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.Tag;
+import net.darkhax.opennbt.tags.TagRegistry;
+
+/**
+ * A streaming writer for NBT data. Rather than building a tree of tags and then writing it,
+ * values are encoded straight to an NBTWriter as they are given. The output is identical to
+ * writing the equivalent tree using {@link net.darkhax.opennbt.NBTHelper#writeTag}.
+ *
+ * Compound and list tags are opened with a begin method, and closed with {@link #end()}.
+ * Lists must be given their element type and size up front, and every element written to a
+ * list must be of that type. The writer checks the nesting of the data as it is written, and
+ * throws an exception if a tag is written in a place where it is not allowed. A typical
+ * writer looks like this:
+ *
+ * <pre>
+ * writer.beginCompound("Player")
+ *       .writeString("Name", "Steve")
+ *       .beginList("Pos", DoubleTag.ID, 3)
+ *       .writeDouble("x", 0.5).writeDouble("y", 64).writeDouble("z", 0.5)
+ *       .end()
+ *       .end();
+ * </pre>
+ */
+public class NBTStreamWriter implements Closeable, Flushable {
+    
+    /**
+     * The frame value used to mark an open compound. Open lists store their remaining element
+     * count instead.
+     */
+    private static final int COMPOUND_FRAME = -1;
+    
+    /**
+     * The writer which data is encoded to.
+     */
+    private final NBTWriter out;
+    
+    /**
+     * A stack containing a frame for every open compound and list.
+     */
+    private int[] frames = new int[16];
+    
+    /**
+     * A stack containing the element type of every open list. Entries for compounds are not
+     * used.
+     */
+    private int[] types = new int[16];
+    
+    /**
+     * The amount of open compounds and lists.
+     */
+    private int depth;
+    
+    /**
+     * Constructs a new streaming writer which encodes to an NBTWriter.
+     *
+     * @param out The writer to encode to.
+     */
+    public NBTStreamWriter(NBTWriter out) {
+        
+        this.out = out;
+    }
+    
+    /**
+     * Gets the amount of compounds and lists which are currently open.
+     *
+     * @return int The current nesting depth.
+     */
+    public int getDepth () {
+        
+        return this.depth;
+    }
+    
+    /**
+     * Starts a new CompoundTag. Any tags written until the matching {@link #end()} will be
+     * children of the compound.
+     *
+     * @param name The name of the compound.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter beginCompound (String name) throws IOException {
+        
+        this.writeHeader(CompoundTag.ID, name);
+        this.push(COMPOUND_FRAME, 0);
+        return this;
+    }
+    
+    /**
+     * Starts a new ListTag. Exactly the given amount of elements must be written, each of the
+     * given type, before the matching {@link #end()}.
+     *
+     * @param name The name of the list.
+     * @param type The ID of the tags held by the list.
+     * @param count The amount of elements in the list.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter beginList (String name, int type, int count) throws IOException {
+        
+        if (count < 0)
+            throw new IllegalArgumentException("ListTag size can not be negative.");
+            
+        if (TagRegistry.getClassFor(type) == null)
+            throw new IllegalArgumentException("Unknown tag ID in ListTag " + type);
+            
+        // Empty lists are written with an element ID of 0, the same as an empty ListTag.
+        this.writeHeader(ListTag.ID, name);
+        this.out.writeByte(count == 0 ? 0 : type);
+        this.out.writeInt(count);
+        this.push(count, type);
+        return this;
+    }
+    
+    /**
+     * Starts a new ListTag. Exactly the given amount of elements must be written, each of the
+     * given type, before the matching {@link #end()}.
+     *
+     * @param name The name of the list.
+     * @param type The class of the tags held by the list.
+     * @param count The amount of elements in the list.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter beginList (String name, Class<? extends Tag> type, int count) throws IOException {
+        
+        return this.beginList(name, TagRegistry.getIdFor(type), count);
+    }
+    
+    /**
+     * Ends the most recently started compound or list. For a compound, the closing end tag is
+     * written. For a list, every element must have been written.
+     *
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter end () throws IOException {
+        
+        if (this.depth == 0)
+            throw new IllegalStateException("There is no open tag to end.");
+            
+        final int frame = this.frames[this.depth - 1];
+        
+        if (frame == COMPOUND_FRAME)
+            this.out.writeByte(0);
+            
+        else if (frame > 0)
+            throw new IllegalStateException("ListTag was ended with " + frame + " elements missing.");
+            
+        this.depth--;
+        return this;
+    }
+    
+    /**
+     * Writes a ByteTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeByte (String name, byte value) throws IOException {
+        
+        this.writeHeader(ByteTag.ID, name);
+        this.out.writeByte(value);
+        return this;
+    }
+    
+    /**
+     * Writes a boolean as a ByteTag, in the same way as
+     * {@link CompoundTag#setBoolean(String, boolean)}.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeBoolean (String name, boolean value) throws IOException {
+        
+        return this.writeByte(name, (byte) (value ? 1 : 0));
+    }
+    
+    /**
+     * Writes a ShortTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeShort (String name, short value) throws IOException {
+        
+        this.writeHeader(ShortTag.ID, name);
+        this.out.writeShort(value);
+        return this;
+    }
+    
+    /**
+     * Writes an IntTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeInt (String name, int value) throws IOException {
+        
+        this.writeHeader(IntTag.ID, name);
+        this.out.writeInt(value);
+        return this;
+    }
+    
+    /**
+     * Writes a LongTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeLong (String name, long value) throws IOException {
+        
+        this.writeHeader(LongTag.ID, name);
+        this.out.writeLong(value);
+        return this;
+    }
+    
+    /**
+     * Writes a FloatTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeFloat (String name, float value) throws IOException {
+        
+        this.writeHeader(FloatTag.ID, name);
+        this.out.writeFloat(value);
+        return this;
+    }
+    
+    /**
+     * Writes a DoubleTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeDouble (String name, double value) throws IOException {
+        
+        this.writeHeader(DoubleTag.ID, name);
+        this.out.writeDouble(value);
+        return this;
+    }
+    
+    /**
+     * Writes a StringTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeString (String name, String value) throws IOException {
+        
+        this.writeHeader(StringTag.ID, name);
+        this.out.writeUTF(value);
+        return this;
+    }
+    
+    /**
+     * Writes a ByteArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeByteArray (String name, byte[] value) throws IOException {
+        
+        this.writeHeader(ByteArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.write(value);
+        return this;
+    }
+    
+    /**
+     * Writes a ShortArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeShortArray (String name, short[] value) throws IOException {
+        
+        this.writeHeader(ShortArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.writeShorts(value, 0, value.length);
+        return this;
+    }
+    
+    /**
+     * Writes an IntArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeIntArray (String name, int[] value) throws IOException {
+        
+        this.writeHeader(IntArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.writeInts(value, 0, value.length);
+        return this;
+    }
+    
+    /**
+     * Writes a LongArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeLongArray (String name, long[] value) throws IOException {
+        
+        this.writeHeader(LongArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.writeLongs(value, 0, value.length);
+        return this;
+    }
+    
+    /**
+     * Writes a FloatArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeFloatArray (String name, float[] value) throws IOException {
+        
+        this.writeHeader(FloatArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.writeFloats(value, 0, value.length);
+        return this;
+    }
+    
+    /**
+     * Writes a DoubleArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeDoubleArray (String name, double[] value) throws IOException {
+        
+        this.writeHeader(DoubleArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        this.out.writeDoubles(value, 0, value.length);
+        return this;
+    }
+    
+    /**
+     * Writes a StringArrayTag.
+     *
+     * @param name The name of the tag.
+     * @param value The value of the tag.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeStringArray (String name, String[] value) throws IOException {
+        
+        this.writeHeader(StringArrayTag.ID, name);
+        this.out.writeInt(value.length);
+        
+        for (final String element : value)
+            this.out.writeUTF(element);
+            
+        return this;
+    }
+    
+    /**
+     * Writes an existing tag, along with all of its children. This can be used to mix tag
+     * objects, including custom tags, with streamed data.
+     *
+     * @param tag The tag to write.
+     * @return NBTStreamWriter The same writer, so calls can be chained.
+     * @throws IOException If an I/O error occurs.
+     */
+    public NBTStreamWriter writeTag (Tag tag) throws IOException {
+        
+        final int id = TagRegistry.getIdFor(tag.getClass());
+        
+        if (id == -1)
+            throw new IllegalArgumentException("Tag " + tag.getClass().getName() + " has not been registered.");
+            
+        this.writeHeader(id, tag.getName());
+        tag.write(this.out);
+        return this;
+    }
+    
+    /**
+     * Writes the ID and name of a new tag, after checking that the tag is allowed in the
+     * current position.
+     *
+     * @param id The ID of the tag.
+     * @param name The name of the tag.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeHeader (int id, String name) throws IOException {
+        
+        if (this.depth > 0) {
+            
+            final int frame = this.frames[this.depth - 1];
+            
+            if (frame != COMPOUND_FRAME) {
+                
+                if (frame == 0)
+                    throw new IllegalStateException("ListTag has no elements remaining.");
+                    
+                if (id != this.types[this.depth - 1])
+                    throw new IllegalArgumentException("Tag type cannot differ from ListTag type.");
+                    
+                this.frames[this.depth - 1] = frame - 1;
+            }
+        }
+        
+        this.out.writeByte(id);
+        this.out.writeUTF(name);
+    }
+    
+    /**
+     * Opens a new compound or list frame.
+     *
+     * @param frame The frame value to push.
+     * @param type The element type of a list.
+     */
+    private void push (int frame, int type) {
+        
+        if (this.depth == this.frames.length) {
+            
+            this.frames = Arrays.copyOf(this.frames, this.depth * 2);
+            this.types = Arrays.copyOf(this.types, this.depth * 2);
+        }
+        
+        this.frames[this.depth] = frame;
+        this.types[this.depth++] = type;
+    }
+    
+    @Override
+    public void flush () throws IOException {
+        
+        this.out.flush();
+    }
+    
+    /**
+     * Closes the underlying writer. Every compound and list must have been ended first.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close () throws IOException {
+        
+        this.out.close();
+        
+        if (this.depth != 0)
+            throw new IllegalStateException("Writer was closed with " + this.depth + " tags still open.");
+    }
+}
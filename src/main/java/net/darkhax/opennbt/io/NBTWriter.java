@@ -0,0 +1,731 @@
+package net.darkhax.opennbt.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A buffered encoder for NBT data. Values are encoded directly into a reusable byte array,
+ * which is handed to the underlying stream or channel in large blocks once it fills up. When
+ * a writer has no destination, the array grows as needed so that a whole tree can be encoded
+ * into memory and retrieved with {@link #toByteArray()}.
+ *
+ * When writing to a channel, large arrays skip the buffer. Their values are converted in bulk
+ * into a reusable direct buffer, which is handed to the channel along with any buffered
+ * headers in a single gathering write. This avoids copying the array into the buffer first,
+ * and lets the channel write straight from native memory.
+ *
+ * A writer can be pointed at a new destination using one of the reset methods, allowing the
+ * same buffer to be reused for many files. Writers are not thread safe.
+ */
+public class NBTWriter extends OutputStream implements DataOutput {
+    
+    /**
+     * The default size of the internal buffer, in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The stream which data is being written to. Null if the writer is not stream backed.
+     */
+    private OutputStream stream;
+    
+    /**
+     * The amount of bytes an array must take up to be written to a channel directly, rather
+     * than through the buffer.
+     */
+    private static final int DIRECT_WRITE_THRESHOLD = 8 * 1024;
+    
+    /**
+     * The channel which data is being written to. Null if the writer is not channel backed.
+     */
+    private WritableByteChannel channel;
+    
+    /**
+     * The direct buffer which large arrays are converted into before being written to the
+     * channel. Created when it is first needed.
+     */
+    private ByteBuffer directBuffer;
+    
+    /**
+     * The buffers passed to a gathering write, which hold the buffered bytes followed by the
+     * array being written.
+     */
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    
+    /**
+     * The array which data is encoded into.
+     */
+    protected byte[] buffer;
+    
+    /**
+     * The position of the next byte to encode within the buffer.
+     */
+    protected int position;
+    
+    /**
+     * The class descriptors of the document being written. Created when it is first needed,
+     * and discarded when the writer is reset.
+     */
+    private ClassDescriptorTable classDescriptors;
+    
+    /**
+     * Constructs a new writer which encodes into memory, using the default buffer size as
+     * the initial capacity.
+     */
+    public NBTWriter() {
+        
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructs a new writer which encodes into memory.
+     *
+     * @param capacity The initial capacity of the buffer, in bytes.
+     */
+    public NBTWriter(int capacity) {
+        
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+    
+    /**
+     * Constructs a new writer which encodes into memory, starting with an existing array as
+     * its buffer. As long as the data fits, it is encoded straight into the array. If more
+     * data is written, the buffer grows into a new array, and the given array is left with
+     * whatever was written before that.
+     *
+     * @param buffer The array to encode into.
+     */
+    public NBTWriter(byte[] buffer) {
+        
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Constructs a new writer which writes to an OutputStream, using the default buffer size.
+     *
+     * @param stream The stream to write to.
+     */
+    public NBTWriter(OutputStream stream) {
+        
+        this(stream, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructs a new writer which writes to an OutputStream.
+     *
+     * @param stream The stream to write to.
+     * @param bufferSize The size of the internal buffer, in bytes.
+     */
+    public NBTWriter(OutputStream stream, int bufferSize) {
+        
+        this(bufferSize);
+        this.stream = stream;
+    }
+    
+    /**
+     * Constructs a new writer which writes to a blocking channel, using the default buffer
+     * size.
+     *
+     * @param channel The channel to write to.
+     */
+    public NBTWriter(WritableByteChannel channel) {
+        
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructs a new writer which writes to a blocking channel.
+     *
+     * @param channel The channel to write to.
+     * @param bufferSize The size of the internal buffer, in bytes.
+     */
+    public NBTWriter(WritableByteChannel channel, int bufferSize) {
+        
+        this(bufferSize);
+        this.channel = channel;
+    }
+    
+    /**
+     * Discards all buffered data, and detaches the writer from its destination so that it
+     * encodes into memory.
+     */
+    public void reset () {
+        
+        this.stream = null;
+        this.channel = null;
+        this.position = 0;
+        this.classDescriptors = null;
+    }
+    
+    /**
+     * Discards all buffered data, and points the writer at a new stream.
+     *
+     * @param stream The stream to write to.
+     */
+    public void reset (OutputStream stream) {
+        
+        this.reset();
+        this.stream = stream;
+    }
+    
+    /**
+     * Discards all buffered data, and points the writer at a new blocking channel.
+     *
+     * @param channel The channel to write to.
+     */
+    public void reset (WritableByteChannel channel) {
+        
+        this.reset();
+        this.channel = channel;
+    }
+    
+    /**
+     * Gets the table of Java serialization class descriptors for the document being written.
+     *
+     * @return ClassDescriptorTable The class descriptor table of this writer.
+     */
+    public ClassDescriptorTable getClassDescriptors () {
+        
+        if (this.classDescriptors == null)
+            this.classDescriptors = new ClassDescriptorTable();
+            
+        return this.classDescriptors;
+    }
+    
+    /**
+     * Gets the amount of bytes currently held in the buffer. For a writer which encodes into
+     * memory, this is the total amount of bytes written since the last reset.
+     *
+     * @return int The amount of buffered bytes.
+     */
+    public int size () {
+        
+        return this.position;
+    }
+    
+    /**
+     * Gets the amount of bytes a string takes up in modified UTF-8, as written by
+     * {@link #writeUTF(String)}.
+     *
+     * @param value The string to measure.
+     * @return int The encoded length of the string, including the two byte length prefix.
+     */
+    public static int getUTFLength (String value) {
+        
+        return 2 + ModifiedUTF8.encodedLength(value);
+    }
+    
+    /**
+     * Creates a copy of the bytes currently held in the buffer.
+     *
+     * @return byte[] A copy of the buffered bytes.
+     */
+    public byte[] toByteArray () {
+        
+        return Arrays.copyOf(this.buffer, this.position);
+    }
+    
+    /**
+     * Writes the bytes currently held in the buffer to a stream. The buffer is left
+     * untouched.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo (OutputStream out) throws IOException {
+        
+        out.write(this.buffer, 0, this.position);
+    }
+    
+    /**
+     * Makes sure that there is room for at least the specified amount of bytes in the buffer.
+     *
+     * @param count The amount of bytes that need to fit.
+     * @throws IOException If an I/O error occurs while flushing the buffer.
+     */
+    protected final void ensure (int count) throws IOException {
+        
+        if (this.buffer.length - this.position < count)
+            this.makeRoom(count);
+    }
+    
+    /**
+     * Makes room in the buffer, by flushing it to the destination if there is one, and
+     * growing it if it is still too small.
+     *
+     * @param count The amount of bytes that need to fit.
+     * @throws IOException If an I/O error occurs while flushing the buffer.
+     */
+    private void makeRoom (int count) throws IOException {
+        
+        if (this.hasDestination())
+            this.flushBuffer();
+            
+        if (this.buffer.length - this.position < count)
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + count));
+    }
+    
+    /**
+     * Checks if the writer has a stream or channel to flush data to.
+     *
+     * @return boolean Whether or not the writer has a destination.
+     */
+    private boolean hasDestination () {
+        
+        return this.stream != null || this.channel != null;
+    }
+    
+    /**
+     * Hands the buffered bytes to the destination, and empties the buffer. Does nothing for a
+     * writer which encodes into memory.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    protected void flushBuffer () throws IOException {
+        
+        if (this.position == 0 || !this.hasDestination())
+            return;
+            
+        this.writeDestination(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+    
+    /**
+     * Writes bytes to the destination, bypassing the buffer.
+     *
+     * @param bytes The array to write from.
+     * @param offset The index of the first byte to write.
+     * @param length The amount of bytes to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeDestination (byte[] bytes, int offset, int length) throws IOException {
+        
+        if (this.stream != null)
+            this.stream.write(bytes, offset, length);
+            
+        else {
+            
+            final ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            
+            while (wrapped.hasRemaining())
+                this.channel.write(wrapped);
+        }
+    }
+    
+    /**
+     * Checks if an array should be written to the channel directly, rather than through the
+     * buffer.
+     *
+     * @param length The amount of values in the array.
+     * @param shift The size of each value, as a power of two.
+     * @return boolean Whether or not the array should be written directly.
+     */
+    private boolean writesDirect (int length, int shift) {
+        
+        return this.channel != null && (long) length << shift >= DIRECT_WRITE_THRESHOLD;
+    }
+    
+    /**
+     * Writes an array to the channel, bypassing the buffer. The values are converted into the
+     * direct buffer one block at a time, and each block is written along with anything still
+     * held in the buffer.
+     *
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @param shift The size of each value, as a power of two.
+     * @param converter Copies a block of values into the direct buffer.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeDirect (int offset, int length, int shift, BlockConverter converter) throws IOException {
+        
+        if (this.directBuffer == null)
+            this.directBuffer = ByteBuffer.allocateDirect(Math.max(this.buffer.length, DIRECT_WRITE_THRESHOLD));
+            
+        while (length > 0) {
+            
+            final int count = Math.min(length, this.directBuffer.capacity() >> shift);
+            this.directBuffer.clear();
+            converter.convert(this.directBuffer, offset, count);
+            this.directBuffer.limit(count << shift);
+            this.directBuffer.position(0);
+            this.writeGathered(this.directBuffer);
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Writes the buffered bytes followed by a block of data to the channel, and empties the
+     * buffer. Channels which support gathering writes receive both in a single call.
+     *
+     * @param block The data to write after the buffered bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeGathered (ByteBuffer block) throws IOException {
+        
+        final ByteBuffer buffered = ByteBuffer.wrap(this.buffer, 0, this.position);
+        this.position = 0;
+        
+        if (this.channel instanceof GatheringByteChannel) {
+            
+            this.gather[0] = buffered;
+            this.gather[1] = block;
+            
+            try {
+                
+                while (block.hasRemaining())
+                    ((GatheringByteChannel) this.channel).write(this.gather);
+            }
+            
+            finally {
+                
+                this.gather[0] = null;
+                this.gather[1] = null;
+            }
+        }
+        
+        else {
+            
+            while (buffered.hasRemaining())
+                this.channel.write(buffered);
+                
+            while (block.hasRemaining())
+                this.channel.write(block);
+        }
+    }
+    
+    @Override
+    public void flush () throws IOException {
+        
+        this.flushBuffer();
+        
+        if (this.stream != null)
+            this.stream.flush();
+    }
+    
+    @Override
+    public void close () throws IOException {
+        
+        this.flushBuffer();
+        
+        if (this.stream != null)
+            this.stream.close();
+            
+        if (this.channel != null)
+            this.channel.close();
+    }
+    
+    @Override
+    public void write (int value) throws IOException {
+        
+        this.ensure(1);
+        this.buffer[this.position++] = (byte) value;
+    }
+    
+    @Override
+    public void write (byte[] bytes) throws IOException {
+        
+        this.write(bytes, 0, bytes.length);
+    }
+    
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 0)) {
+            
+            this.writeDirect(offset, length, 0, (target, start, count) -> target.put(bytes, start, count));
+            return;
+        }
+        
+        if (length >= this.buffer.length && this.hasDestination()) {
+            
+            this.flushBuffer();
+            this.writeDestination(bytes, offset, length);
+            return;
+        }
+        
+        this.ensure(length);
+        System.arraycopy(bytes, offset, this.buffer, this.position, length);
+        this.position += length;
+    }
+    
+    @Override
+    public void writeBoolean (boolean value) throws IOException {
+        
+        this.write(value ? 1 : 0);
+    }
+    
+    @Override
+    public void writeByte (int value) throws IOException {
+        
+        this.write(value);
+    }
+    
+    @Override
+    public void writeShort (int value) throws IOException {
+        
+        this.ensure(2);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        bytes[index] = (byte) (value >>> 8);
+        bytes[index + 1] = (byte) value;
+        this.position = index + 2;
+    }
+    
+    @Override
+    public void writeChar (int value) throws IOException {
+        
+        this.writeShort(value);
+    }
+    
+    @Override
+    public void writeInt (int value) throws IOException {
+        
+        this.ensure(4);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+        this.position = index + 4;
+    }
+    
+    @Override
+    public void writeLong (long value) throws IOException {
+        
+        this.ensure(8);
+        final byte[] bytes = this.buffer;
+        final int index = this.position;
+        bytes[index] = (byte) (value >>> 56);
+        bytes[index + 1] = (byte) (value >>> 48);
+        bytes[index + 2] = (byte) (value >>> 40);
+        bytes[index + 3] = (byte) (value >>> 32);
+        bytes[index + 4] = (byte) (value >>> 24);
+        bytes[index + 5] = (byte) (value >>> 16);
+        bytes[index + 6] = (byte) (value >>> 8);
+        bytes[index + 7] = (byte) value;
+        this.position = index + 8;
+    }
+    
+    @Override
+    public void writeFloat (float value) throws IOException {
+        
+        this.writeInt(Float.floatToIntBits(value));
+    }
+    
+    @Override
+    public void writeDouble (double value) throws IOException {
+        
+        this.writeLong(Double.doubleToLongBits(value));
+    }
+    
+    /**
+     * Writes a block of short values as big-endian bytes. The values are converted in bulk
+     * straight into the buffer, rather than being encoded one at a time.
+     *
+     * @param values The array to write from.
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeShorts (short[] values, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 1)) {
+            
+            this.writeDirect(offset, length, 1, (target, start, count) -> target.asShortBuffer().put(values, start, count));
+            return;
+        }
+        
+        while (length > 0) {
+            
+            this.ensure(this.hasDestination() ? 2 : length << 1);
+            final int count = Math.min(length, this.buffer.length - this.position >> 1);
+            ByteBuffer.wrap(this.buffer, this.position, count << 1).asShortBuffer().put(values, offset, count);
+            this.position += count << 1;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Writes a block of int values as big-endian bytes. The values are converted in bulk
+     * straight into the buffer, rather than being encoded one at a time.
+     *
+     * @param values The array to write from.
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeInts (int[] values, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 2)) {
+            
+            this.writeDirect(offset, length, 2, (target, start, count) -> target.asIntBuffer().put(values, start, count));
+            return;
+        }
+        
+        while (length > 0) {
+            
+            this.ensure(this.hasDestination() ? 4 : length << 2);
+            final int count = Math.min(length, this.buffer.length - this.position >> 2);
+            ByteBuffer.wrap(this.buffer, this.position, count << 2).asIntBuffer().put(values, offset, count);
+            this.position += count << 2;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Writes a block of long values as big-endian bytes. The values are converted in bulk
+     * straight into the buffer, rather than being encoded one at a time.
+     *
+     * @param values The array to write from.
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeLongs (long[] values, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 3)) {
+            
+            this.writeDirect(offset, length, 3, (target, start, count) -> target.asLongBuffer().put(values, start, count));
+            return;
+        }
+        
+        while (length > 0) {
+            
+            this.ensure(this.hasDestination() ? 8 : length << 3);
+            final int count = Math.min(length, this.buffer.length - this.position >> 3);
+            ByteBuffer.wrap(this.buffer, this.position, count << 3).asLongBuffer().put(values, offset, count);
+            this.position += count << 3;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Writes a block of float values as big-endian bytes. The values are converted in bulk
+     * straight into the buffer, rather than being encoded one at a time.
+     *
+     * @param values The array to write from.
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeFloats (float[] values, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 2)) {
+            
+            this.writeDirect(offset, length, 2, (target, start, count) -> target.asFloatBuffer().put(values, start, count));
+            return;
+        }
+        
+        while (length > 0) {
+            
+            this.ensure(this.hasDestination() ? 4 : length << 2);
+            final int count = Math.min(length, this.buffer.length - this.position >> 2);
+            ByteBuffer.wrap(this.buffer, this.position, count << 2).asFloatBuffer().put(values, offset, count);
+            this.position += count << 2;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Writes a block of double values as big-endian bytes. The values are converted in bulk
+     * straight into the buffer, rather than being encoded one at a time.
+     *
+     * @param values The array to write from.
+     * @param offset The index of the first value to write.
+     * @param length The amount of values to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeDoubles (double[] values, int offset, int length) throws IOException {
+        
+        if (this.writesDirect(length, 3)) {
+            
+            this.writeDirect(offset, length, 3, (target, start, count) -> target.asDoubleBuffer().put(values, start, count));
+            return;
+        }
+        
+        while (length > 0) {
+            
+            this.ensure(this.hasDestination() ? 8 : length << 3);
+            final int count = Math.min(length, this.buffer.length - this.position >> 3);
+            ByteBuffer.wrap(this.buffer, this.position, count << 3).asDoubleBuffer().put(values, offset, count);
+            this.position += count << 3;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    @Override
+    public void writeBytes (String value) throws IOException {
+        
+        final int length = value.length();
+        this.ensure(length);
+        
+        for (int index = 0; index < length; index++)
+            this.buffer[this.position++] = (byte) value.charAt(index);
+    }
+    
+    @Override
+    public void writeChars (String value) throws IOException {
+        
+        final int length = value.length();
+        
+        for (int index = 0; index < length; index++)
+            this.writeChar(value.charAt(index));
+    }
+    
+    @Override
+    public void writeUTF (String value) throws IOException {
+        
+        final int length = value.length();
+        
+        if (length <= 65535) {
+            
+            this.ensure(length + 2);
+            
+            if (ModifiedUTF8.encodeAscii(value, this.buffer, this.position + 2) == length) {
+                
+                this.buffer[this.position] = (byte) (length >>> 8);
+                this.buffer[this.position + 1] = (byte) length;
+                this.position += length + 2;
+                return;
+            }
+        }
+        
+        final int encodedLength = ModifiedUTF8.encodedLength(value);
+        
+        if (encodedLength > 65535)
+            throw new UTFDataFormatException("Encoded string is too long: " + encodedLength + " bytes");
+            
+        this.ensure(encodedLength + 2);
+        this.buffer[this.position] = (byte) (encodedLength >>> 8);
+        this.buffer[this.position + 1] = (byte) encodedLength;
+        this.position = ModifiedUTF8.encode(value, this.buffer, this.position + 2);
+    }
+    
+    /**
+     * Copies a block of values from an array into a buffer, in big-endian order.
+     */
+    private interface BlockConverter {
+        
+        /**
+         * Copies a block of values into the buffer, starting at its position.
+         *
+         * @param target The buffer to copy into.
+         * @param offset The index of the first value to copy.
+         * @param count The amount of values to copy.
+         */
+        void convert (ByteBuffer target, int offset, int count);
+    }
+}
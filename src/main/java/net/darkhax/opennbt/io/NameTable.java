@@ -0,0 +1,157 @@
+package net.darkhax.opennbt.io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A table of canonical tag names. NBT files repeat the same few hundred names many times
+ * over, and decoding each one into a new String wastes both time and memory. When a reader
+ * decodes a name, it first looks for an equal name in its table, and reuses that instance if
+ * one is found. This also means that names read from different files are usually the same
+ * instance, so map lookups between them can succeed on the identity check alone.
+ *
+ * The table has a fixed size, and each name can only live in one slot, so a new name simply
+ * replaces whatever was in its slot before. This keeps the memory used by the table bounded,
+ * no matter how many unique names are read, and names which are no longer used by any tag
+ * are eventually replaced and collected. Only ASCII names are stored. Tables are thread
+ * safe, and do not use any locks.
+ */
+public class NameTable {
+    
+    /**
+     * The table which is used by readers unless they are given another one.
+     */
+    public static final NameTable SHARED = new NameTable(4096);
+    
+    /**
+     * The longest name which will be stored in a table. Longer names are rarely repeated.
+     */
+    public static final int MAX_NAME_LENGTH = 64;
+    
+    /**
+     * The slots of the table. Strings are immutable, so they can be shared between threads
+     * without any synchronization.
+     */
+    private final String[] names;
+    
+    /**
+     * The mask which is applied to a hash to find its slot.
+     */
+    private final int mask;
+    
+    /**
+     * Constructs a new table.
+     *
+     * @param capacity The amount of slots in the table. This is rounded up to a power of two.
+     */
+    public NameTable(int capacity) {
+        
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid name table capacity " + capacity);
+            
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.names = new String[Math.max(size, 1)];
+        this.mask = this.names.length - 1;
+    }
+    
+    /**
+     * Gets the canonical instance of an encoded name.
+     *
+     * @param bytes The array holding the encoded name.
+     * @param offset The index of the first byte of the name.
+     * @param length The amount of bytes in the name.
+     * @return String The canonical name, or null if the name can not be stored because it is
+     *         too long or is not ASCII.
+     */
+    public String get (byte[] bytes, int offset, int length) {
+        
+        if (length > MAX_NAME_LENGTH)
+            return null;
+            
+        int hash = 0;
+        
+        for (int index = offset; index < offset + length; index++) {
+            
+            final byte value = bytes[index];
+            
+            if (value <= 0)
+                return null;
+                
+            hash = 31 * hash + value;
+        }
+        
+        final int slot = slot(hash) & this.mask;
+        final String existing = this.names[slot];
+        
+        if (existing != null && matches(existing, bytes, offset, length))
+            return existing;
+            
+        final String name = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        this.names[slot] = name;
+        return name;
+    }
+    
+    /**
+     * Gets the canonical instance of a name. If the name can not be stored, it is returned
+     * as it is.
+     *
+     * @param name The name to look up.
+     * @return String The canonical name.
+     */
+    public String get (String name) {
+        
+        final int length = name.length();
+        
+        if (length > MAX_NAME_LENGTH)
+            return name;
+            
+        for (int index = 0; index < length; index++) {
+            
+            final char character = name.charAt(index);
+            
+            if (character == 0 || character > 0x7F)
+                return name;
+        }
+        
+        final int slot = slot(name.hashCode()) & this.mask;
+        final String existing = this.names[slot];
+        
+        if (name.equals(existing))
+            return existing;
+            
+        this.names[slot] = name;
+        return name;
+    }
+    
+    /**
+     * Spreads the bits of a hash, so that names which only differ in their last characters
+     * are less likely to share a slot.
+     *
+     * @param hash The hash of the name, as computed by String#hashCode.
+     * @return int The spread hash.
+     */
+    private static int slot (int hash) {
+        
+        return hash ^ hash >>> 16;
+    }
+    
+    /**
+     * Checks if a name is equal to an encoded ASCII name.
+     *
+     * @param name The name to compare.
+     * @param bytes The array holding the encoded name.
+     * @param offset The index of the first byte of the name.
+     * @param length The amount of bytes in the name.
+     * @return boolean Whether or not the names are equal.
+     */
+    private static boolean matches (String name, byte[] bytes, int offset, int length) {
+        
+        if (name.length() != length)
+            return false;
+            
+        for (int index = 0; index < length; index++)
+            if (name.charAt(index) != bytes[offset + index])
+                return false;
+                
+        return true;
+    }
+}
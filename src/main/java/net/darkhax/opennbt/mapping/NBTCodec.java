@@ -0,0 +1,65 @@
+package net.darkhax.opennbt.mapping;
+
+import java.io.IOException;
+
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+import net.darkhax.opennbt.tags.CompoundTag;
+
+/**
+ * Converts objects of one class to and from compound tags. Codecs can encode straight to and
+ * from the NBT stream, without building a tree of tags, or convert to and from a CompoundTag.
+ * Codecs for classes marked with {@link NBTSerializable} are generated at compile time by the
+ * OpenNBT processor.
+ *
+ * Fields which hold null are left out when writing. Fields with no matching tag, or with a
+ * tag of the wrong type, are left at their default value when reading.
+ *
+ * @param <T> The class of object handled by the codec.
+ */
+public interface NBTCodec<T> {
+    
+    /**
+     * Gets the class of object handled by the codec.
+     *
+     * @return Class The class of object handled by the codec.
+     */
+    Class<T> getType ();
+    
+    /**
+     * Writes an object as the payload of a compound tag, which is each of its fields followed
+     * by the end tag. The ID and name of the compound should already have been written.
+     *
+     * @param out The writer to write to.
+     * @param value The object to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    void write (NBTWriter out, T value) throws IOException;
+    
+    /**
+     * Reads an object from the payload of a compound tag, after its ID and name have been
+     * read. Tags which do not match a field are skipped.
+     *
+     * @param in The reader to read from.
+     * @return T The object which was read.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    T read (NBTReader in) throws IOException;
+    
+    /**
+     * Converts an object into a new compound tag.
+     *
+     * @param name The name of the tag.
+     * @param value The object to convert.
+     * @return CompoundTag A new compound tag holding the fields of the object.
+     */
+    CompoundTag toTag (String name, T value);
+    
+    /**
+     * Creates an object from a compound tag.
+     *
+     * @param tag The tag to read from.
+     * @return T A new object holding the values from the tag.
+     */
+    T fromTag (CompoundTag tag);
+}
@@ -0,0 +1,789 @@
+package net.darkhax.opennbt.mapping;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+import net.darkhax.opennbt.tags.ByteArrayTag;
+import net.darkhax.opennbt.tags.ByteTag;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleArrayTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.FloatArrayTag;
+import net.darkhax.opennbt.tags.FloatTag;
+import net.darkhax.opennbt.tags.IntArrayTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.LongArrayTag;
+import net.darkhax.opennbt.tags.LongTag;
+import net.darkhax.opennbt.tags.ShortArrayTag;
+import net.darkhax.opennbt.tags.ShortTag;
+import net.darkhax.opennbt.tags.StringArrayTag;
+import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.Tag;
+
+/**
+ * Maps objects of any class to and from compound tags at run time, for classes which can not
+ * be marked with {@link NBTSerializable}. The first time a class is mapped, its fields are
+ * looked up once, and a getter and setter MethodHandle is created for each of them along with
+ * a converter for its type. This plan is cached on the class through a ClassValue, so mapping
+ * an object afterwards does not use reflection. Classes marked with NBTSerializable use their
+ * generated codec instead, when it is on the class path.
+ *
+ * Every field declared by the class and its superclasses is mapped, except for static and
+ * transient fields. Fields can hold primitives and their boxed forms, except for char, as well
+ * as String, enums, arrays, collections, maps with String keys, and other objects, which are
+ * mapped as nested compound tags. Primitive arrays use the matching array tag, and other
+ * arrays and collections are written as list tags. Mapped classes need a constructor which
+ * takes no arguments. Null values, including null elements of collections, are left out.
+ */
+public final class NBTMapper {
+    
+    /**
+     * The suffix added to the name of a class to get the name of its generated codec.
+     */
+    private static final String GENERATED_SUFFIX = "_NBTCodec";
+    
+    /**
+     * The codec used for each class, created the first time the class is mapped.
+     */
+    private static final ClassValue<NBTCodec<?>> CODECS = new ClassValue<NBTCodec<?>>() {
+        
+        @Override
+        protected NBTCodec<?> computeValue (Class<?> type) {
+            
+            final NBTCodec<?> generated = findGeneratedCodec(type);
+            return generated != null ? generated : new MappedCodec<>(type);
+        }
+    };
+    
+    /**
+     * The converters for types with a fixed tag, by class.
+     */
+    private static final Map<Class<?>, Converter> CONVERTERS = new LinkedHashMap<Class<?>, Converter>();
+    
+    static {
+        
+        final Converter byteConverter = new Converter(ByteTag.class, (name, value) -> new ByteTag(name, (Byte) value), tag -> ((ByteTag) tag).getValue());
+        final Converter shortConverter = new Converter(ShortTag.class, (name, value) -> new ShortTag(name, (Short) value), tag -> ((ShortTag) tag).getValue());
+        final Converter intConverter = new Converter(IntTag.class, (name, value) -> new IntTag(name, (Integer) value), tag -> ((IntTag) tag).getValue());
+        final Converter longConverter = new Converter(LongTag.class, (name, value) -> new LongTag(name, (Long) value), tag -> ((LongTag) tag).getValue());
+        final Converter floatConverter = new Converter(FloatTag.class, (name, value) -> new FloatTag(name, (Float) value), tag -> ((FloatTag) tag).getValue());
+        final Converter doubleConverter = new Converter(DoubleTag.class, (name, value) -> new DoubleTag(name, (Double) value), tag -> ((DoubleTag) tag).getValue());
+        final Converter booleanConverter = new Converter(ByteTag.class, (name, value) -> new ByteTag(name, (byte) ((Boolean) value ? 1 : 0)), tag -> ((ByteTag) tag).getValue() != 0);
+        
+        CONVERTERS.put(byte.class, byteConverter);
+        CONVERTERS.put(Byte.class, byteConverter);
+        CONVERTERS.put(short.class, shortConverter);
+        CONVERTERS.put(Short.class, shortConverter);
+        CONVERTERS.put(int.class, intConverter);
+        CONVERTERS.put(Integer.class, intConverter);
+        CONVERTERS.put(long.class, longConverter);
+        CONVERTERS.put(Long.class, longConverter);
+        CONVERTERS.put(float.class, floatConverter);
+        CONVERTERS.put(Float.class, floatConverter);
+        CONVERTERS.put(double.class, doubleConverter);
+        CONVERTERS.put(Double.class, doubleConverter);
+        CONVERTERS.put(boolean.class, booleanConverter);
+        CONVERTERS.put(Boolean.class, booleanConverter);
+        CONVERTERS.put(String.class, new Converter(StringTag.class, (name, value) -> new StringTag(name, (String) value), tag -> ((StringTag) tag).getValue()));
+        
+        CONVERTERS.put(byte[].class, new Converter(ByteArrayTag.class, (name, value) -> new ByteArrayTag(name, (byte[]) value), tag -> ((ByteArrayTag) tag).getValue()));
+        CONVERTERS.put(short[].class, new Converter(ShortArrayTag.class, (name, value) -> new ShortArrayTag(name, (short[]) value), tag -> ((ShortArrayTag) tag).getValue()));
+        CONVERTERS.put(int[].class, new Converter(IntArrayTag.class, (name, value) -> new IntArrayTag(name, (int[]) value), tag -> ((IntArrayTag) tag).getValue()));
+        CONVERTERS.put(long[].class, new Converter(LongArrayTag.class, (name, value) -> new LongArrayTag(name, (long[]) value), tag -> ((LongArrayTag) tag).getValue()));
+        CONVERTERS.put(float[].class, new Converter(FloatArrayTag.class, (name, value) -> new FloatArrayTag(name, (float[]) value), tag -> ((FloatArrayTag) tag).getValue()));
+        CONVERTERS.put(double[].class, new Converter(DoubleArrayTag.class, (name, value) -> new DoubleArrayTag(name, (double[]) value), tag -> ((DoubleArrayTag) tag).getValue()));
+        CONVERTERS.put(String[].class, new Converter(StringArrayTag.class, (name, value) -> new StringArrayTag(name, (String[]) value), tag -> ((StringArrayTag) tag).getValue()));
+        CONVERTERS.put(boolean[].class, new Converter(ByteArrayTag.class, NBTMapper::toByteArrayTag, NBTMapper::toBooleans));
+    }
+    
+    /**
+     * Gets the codec used to map a class. This is the generated codec for classes marked with
+     * NBTSerializable, if it can be found, and a codec built from the fields of the class
+     * otherwise.
+     *
+     * @param type The class to map.
+     * @param <T> The class to map.
+     * @return NBTCodec The codec for the class.
+     * @throws IllegalArgumentException If the class can not be mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> NBTCodec<T> getCodec (Class<T> type) {
+        
+        return (NBTCodec<T>) CODECS.get(type);
+    }
+    
+    /**
+     * Converts an object into a new compound tag, using the codec for its class.
+     *
+     * @param name The name of the tag.
+     * @param value The object to convert.
+     * @return CompoundTag A new compound tag holding the fields of the object.
+     * @throws IllegalArgumentException If the class of the object can not be mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public static CompoundTag toTag (String name, Object value) {
+        
+        return getCodec((Class<Object>) value.getClass()).toTag(name, value);
+    }
+    
+    /**
+     * Creates an object from a compound tag.
+     *
+     * @param tag The tag to read from.
+     * @param type The class of object to create.
+     * @param <T> The class of object to create.
+     * @return T A new object holding the values from the tag.
+     * @throws IllegalArgumentException If the class can not be mapped.
+     */
+    public static <T> T fromTag (CompoundTag tag, Class<T> type) {
+        
+        return getCodec(type).fromTag(tag);
+    }
+    
+    /**
+     * Finds the codec generated for a class marked with NBTSerializable.
+     *
+     * @param type The class to find the codec for.
+     * @return NBTCodec The generated codec, or null if the class is not marked or the codec
+     *         can not be found.
+     */
+    private static NBTCodec<?> findGeneratedCodec (Class<?> type) {
+        
+        if (!type.isAnnotationPresent(NBTSerializable.class))
+            return null;
+            
+        try {
+            
+            final Class<?> codec = Class.forName(type.getName().replace('$', '_') + GENERATED_SUFFIX, true, type.getClassLoader());
+            final Object instance = codec.getField("INSTANCE").get(null);
+            return instance instanceof NBTCodec && ((NBTCodec<?>) instance).getType() == type ? (NBTCodec<?>) instance : null;
+        }
+        
+        catch (final ReflectiveOperationException | LinkageError e) {
+            
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the converter for a type, which may be generic.
+     *
+     * @param type The type to convert.
+     * @param owner The field being mapped, used for error messages.
+     * @return Converter The converter for the type.
+     * @throws IllegalArgumentException If the type can not be mapped.
+     */
+    private static Converter getConverter (Type type, Field owner) {
+        
+        if (type instanceof WildcardType)
+            return getConverter(((WildcardType) type).getUpperBounds()[0], owner);
+            
+        final Class<?> raw = getRawType(type, owner);
+        final Converter fixed = CONVERTERS.get(raw);
+        
+        if (fixed != null)
+            return fixed;
+            
+        if (raw.isEnum())
+            return createEnumConverter(raw);
+            
+        if (raw.isArray()) {
+            
+            final Type component = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType() : raw.getComponentType();
+            return createArrayConverter(raw.getComponentType(), getConverter(component, owner));
+        }
+        
+        if (Collection.class.isAssignableFrom(raw))
+            return createCollectionConverter(getCollectionFactory(raw, owner), getConverter(getTypeArgument(type, 0, owner), owner));
+            
+        if (Map.class.isAssignableFrom(raw)) {
+            
+            if (getRawType(getTypeArgument(type, 0, owner), owner) != String.class)
+                throw new IllegalArgumentException("Field " + owner + " can not be mapped, as only maps with String keys are supported.");
+                
+            return createMapConverter(getMapFactory(raw, owner), getConverter(getTypeArgument(type, 1, owner), owner));
+        }
+        
+        if (raw.isPrimitive() || raw.isInterface() || Modifier.isAbstract(raw.getModifiers()))
+            throw new IllegalArgumentException("Field " + owner + " can not be mapped, as " + raw.getName() + " is not supported.");
+            
+        return new Converter(CompoundTag.class, (name, value) -> NBTMapper.getCodec(raw).toTag(name, cast(value)), tag -> NBTMapper.getCodec(raw).fromTag((CompoundTag) tag));
+    }
+    
+    /**
+     * Creates the converter for an enum, which is stored as the name of the constant.
+     * Unknown names are read as null.
+     *
+     * @param type The enum class.
+     * @return Converter The converter for the enum.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Converter createEnumConverter (Class<?> type) {
+        
+        return new Converter(StringTag.class, (name, value) -> new StringTag(name, ((Enum<?>) value).name()), tag -> {
+            
+            try {
+                
+                return Enum.valueOf((Class<? extends Enum>) type, ((StringTag) tag).getValue());
+            }
+            
+            catch (final IllegalArgumentException e) {
+                
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Creates the converter for an array of objects, which is stored as a list tag.
+     *
+     * @param component The component class of the array.
+     * @param elements The converter for the elements of the array.
+     * @return Converter The converter for the array.
+     */
+    private static Converter createArrayConverter (Class<?> component, Converter elements) {
+        
+        return new Converter(ListTag.class, (name, value) -> {
+            
+            final ListTag list = new ListTag(name, elements.tag);
+            
+            for (int index = 0; index < Array.getLength(value); index++) {
+                
+                final Object element = Array.get(value, index);
+                
+                if (element != null)
+                    list.add(elements.toTag("", element));
+            }
+            
+            return list;
+        }, tag -> {
+            
+            final List<Tag> list = ((ListTag) tag).getValue();
+            final Object array = Array.newInstance(component, list.size());
+            
+            for (int index = 0; index < list.size(); index++)
+                Array.set(array, index, elements.fromTag(list.get(index)));
+                
+            return array;
+        });
+    }
+    
+    /**
+     * Creates the converter for a collection, which is stored as a list tag.
+     *
+     * @param factory Creates new collections of the right class.
+     * @param elements The converter for the elements of the collection.
+     * @return Converter The converter for the collection.
+     */
+    private static Converter createCollectionConverter (Supplier<Collection<Object>> factory, Converter elements) {
+        
+        return new Converter(ListTag.class, (name, value) -> {
+            
+            final ListTag list = new ListTag(name, elements.tag);
+            
+            for (final Object element : (Collection<?>) value)
+                if (element != null)
+                    list.add(elements.toTag("", element));
+                    
+            return list;
+        }, tag -> {
+            
+            final Collection<Object> collection = factory.get();
+            
+            for (final Tag element : ((ListTag) tag).getValue()) {
+                
+                final Object value = elements.fromTag(element);
+                
+                if (value != null)
+                    collection.add(value);
+            }
+            
+            return collection;
+        });
+    }
+    
+    /**
+     * Creates the converter for a map with String keys, which is stored as a compound tag.
+     *
+     * @param factory Creates new maps of the right class.
+     * @param values The converter for the values of the map.
+     * @return Converter The converter for the map.
+     */
+    private static Converter createMapConverter (Supplier<Map<String, Object>> factory, Converter values) {
+        
+        return new Converter(CompoundTag.class, (name, value) -> {
+            
+            final CompoundTag compound = new CompoundTag(name);
+            
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                if (entry.getKey() != null && entry.getValue() != null)
+                    compound.setTag(values.toTag((String) entry.getKey(), entry.getValue()));
+                    
+            return compound;
+        }, tag -> {
+            
+            final Map<String, Object> map = factory.get();
+            
+            for (final Tag element : (CompoundTag) tag) {
+                
+                final Object value = values.fromTag(element);
+                
+                if (value != null)
+                    map.put(element.getName(), value);
+            }
+            
+            return map;
+        });
+    }
+    
+    /**
+     * Gets a factory for a class of collection. Interfaces use a standard implementation.
+     *
+     * @param type The class of collection.
+     * @param owner The field being mapped, used for error messages.
+     * @return Supplier A factory which creates new collections.
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Collection<Object>> getCollectionFactory (Class<?> type, Field owner) {
+        
+        if (type.isAssignableFrom(ArrayList.class))
+            return ArrayList::new;
+            
+        if (type.isAssignableFrom(LinkedHashSet.class))
+            return LinkedHashSet::new;
+            
+        if (type.isAssignableFrom(TreeSet.class) && SortedSet.class.isAssignableFrom(type))
+            return TreeSet::new;
+            
+        final MethodHandle constructor = findConstructor(type, owner);
+        return () -> (Collection<Object>) construct(constructor);
+    }
+    
+    /**
+     * Gets a factory for a class of map. Interfaces use a standard implementation.
+     *
+     * @param type The class of map.
+     * @param owner The field being mapped, used for error messages.
+     * @return Supplier A factory which creates new maps.
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Map<String, Object>> getMapFactory (Class<?> type, Field owner) {
+        
+        if (type.isAssignableFrom(LinkedHashMap.class))
+            return LinkedHashMap::new;
+            
+        if (type.isAssignableFrom(TreeMap.class) && SortedMap.class.isAssignableFrom(type))
+            return TreeMap::new;
+            
+        final MethodHandle constructor = findConstructor(type, owner);
+        return () -> (Map<String, Object>) construct(constructor);
+    }
+    
+    /**
+     * Gets the class of a type.
+     *
+     * @param type The type.
+     * @param owner The field being mapped, used for error messages.
+     * @return Class The class of the type.
+     * @throws IllegalArgumentException If the type is a type variable.
+     */
+    private static Class<?> getRawType (Type type, Field owner) {
+        
+        if (type instanceof Class)
+            return (Class<?>) type;
+            
+        if (type instanceof ParameterizedType)
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+            
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(getRawType(((GenericArrayType) type).getGenericComponentType(), owner), 0).getClass();
+            
+        if (type instanceof WildcardType)
+            return getRawType(((WildcardType) type).getUpperBounds()[0], owner);
+            
+        throw new IllegalArgumentException("Field " + owner + " can not be mapped, as its type " + type.getTypeName() + " is not concrete.");
+    }
+    
+    /**
+     * Gets a type argument of a generic type.
+     *
+     * @param type The generic type.
+     * @param index The index of the type argument.
+     * @param owner The field being mapped, used for error messages.
+     * @return Type The type argument.
+     * @throws IllegalArgumentException If the type is raw.
+     */
+    private static Type getTypeArgument (Type type, int index, Field owner) {
+        
+        if (!(type instanceof ParameterizedType))
+            throw new IllegalArgumentException("Field " + owner + " can not be mapped, as its type " + type.getTypeName() + " has no type arguments.");
+            
+        return ((ParameterizedType) type).getActualTypeArguments()[index];
+    }
+    
+    /**
+     * Finds the constructor of a class which takes no arguments.
+     *
+     * @param type The class.
+     * @param owner The field being mapped, used for error messages. Can be null.
+     * @return MethodHandle A handle which calls the constructor and returns an Object.
+     * @throws IllegalArgumentException If the class has no such constructor.
+     */
+    private static MethodHandle findConstructor (Class<?> type, Field owner) {
+        
+        try {
+            
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        }
+        
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            
+            throw new IllegalArgumentException((owner != null ? "Field " + owner : type.getName()) + " can not be mapped, as " + type.getName() + " has no usable constructor which takes no arguments.", e);
+        }
+    }
+    
+    /**
+     * Calls a constructor handle created by {@link #findConstructor(Class, Field)}.
+     *
+     * @param constructor The constructor to call.
+     * @return Object The new object.
+     */
+    private static Object construct (MethodHandle constructor) {
+        
+        try {
+            
+            return constructor.invokeExact();
+        }
+        
+        catch (final RuntimeException | Error e) {
+            
+            throw e;
+        }
+        
+        catch (final Throwable e) {
+            
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Casts an object to any type, for passing to a codec of an unknown class.
+     *
+     * @param value The object to cast.
+     * @param <T> The type to cast to.
+     * @return T The object.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T cast (Object value) {
+        
+        return (T) value;
+    }
+    
+    /**
+     * Stores a boolean array as a byte array tag.
+     *
+     * @param name The name of the tag.
+     * @param value The boolean array.
+     * @return Tag The new tag.
+     */
+    private static Tag toByteArrayTag (String name, Object value) {
+        
+        final boolean[] booleans = (boolean[]) value;
+        final byte[] bytes = new byte[booleans.length];
+        
+        for (int index = 0; index < booleans.length; index++)
+            bytes[index] = (byte) (booleans[index] ? 1 : 0);
+            
+        return new ByteArrayTag(name, bytes);
+    }
+    
+    /**
+     * Reads a boolean array from a byte array tag.
+     *
+     * @param tag The tag to read.
+     * @return Object The boolean array.
+     */
+    private static Object toBooleans (Tag tag) {
+        
+        final byte[] bytes = ((ByteArrayTag) tag).getValue();
+        final boolean[] booleans = new boolean[bytes.length];
+        
+        for (int index = 0; index < bytes.length; index++)
+            booleans[index] = bytes[index] != 0;
+            
+        return booleans;
+    }
+    
+    /**
+     * Converts the values of one type to and from tags.
+     */
+    private static final class Converter {
+        
+        /**
+         * The class of tag the values are stored as.
+         */
+        private final Class<? extends Tag> tag;
+        
+        /**
+         * The function which creates a tag from a value.
+         */
+        private final BiFunction<String, Object, Tag> writer;
+        
+        /**
+         * The function which reads a value from a tag of the right class.
+         */
+        private final Function<Tag, Object> reader;
+        
+        /**
+         * Creates a new converter.
+         *
+         * @param tag The class of tag the values are stored as.
+         * @param writer The function which creates a tag from a value.
+         * @param reader The function which reads a value from a tag of the right class.
+         */
+        private Converter(Class<? extends Tag> tag, BiFunction<String, Object, Tag> writer, Function<Tag, Object> reader) {
+            
+            this.tag = tag;
+            this.writer = writer;
+            this.reader = reader;
+        }
+        
+        /**
+         * Creates a tag from a value.
+         *
+         * @param name The name of the tag.
+         * @param value The value, which is never null.
+         * @return Tag The new tag.
+         */
+        private Tag toTag (String name, Object value) {
+            
+            return this.writer.apply(name, value);
+        }
+        
+        /**
+         * Reads a value from a tag.
+         *
+         * @param tag The tag to read.
+         * @return Object The value, or null if the tag is not of the right class.
+         */
+        private Object fromTag (Tag tag) {
+            
+            return this.tag.isInstance(tag) ? this.reader.apply(tag) : null;
+        }
+    }
+    
+    /**
+     * A field which is mapped to a tag.
+     */
+    private static final class Property {
+        
+        /**
+         * The name of the tag.
+         */
+        private final String name;
+        
+        /**
+         * Gets the value of the field, with the type (Object)Object.
+         */
+        private final MethodHandle getter;
+        
+        /**
+         * Sets the value of the field, with the type (Object,Object)void.
+         */
+        private final MethodHandle setter;
+        
+        /**
+         * The converter for the type of the field.
+         */
+        private final Converter converter;
+        
+        /**
+         * Creates a new property for a field.
+         *
+         * @param field The field to map.
+         * @throws IllegalArgumentException If the field can not be mapped.
+         */
+        private Property(Field field) {
+            
+            final NBTName name = field.getAnnotation(NBTName.class);
+            this.name = name != null ? name.value() : field.getName();
+            this.converter = getConverter(field.getGenericType(), field);
+            
+            try {
+                
+                field.setAccessible(true);
+                final MethodHandles.Lookup lookup = MethodHandles.lookup();
+                this.getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+                this.setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+            
+            catch (final ReflectiveOperationException | RuntimeException e) {
+                
+                throw new IllegalArgumentException("Field " + field + " can not be accessed.", e);
+            }
+        }
+    }
+    
+    /**
+     * A codec which maps the fields of a class through MethodHandles.
+     *
+     * @param <T> The class of object handled by the codec.
+     */
+    private static final class MappedCodec<T> implements NBTCodec<T> {
+        
+        /**
+         * The class of object handled by the codec.
+         */
+        private final Class<T> type;
+        
+        /**
+         * Calls the constructor of the class which takes no arguments.
+         */
+        private final MethodHandle constructor;
+        
+        /**
+         * The mapped fields of the class.
+         */
+        private final Property[] properties;
+        
+        /**
+         * Creates the codec for a class, looking up each of its fields.
+         *
+         * @param type The class to map.
+         * @throws IllegalArgumentException If the class or one of its fields can not be mapped.
+         */
+        private MappedCodec(Class<T> type) {
+            
+            if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers()))
+                throw new IllegalArgumentException(type.getName() + " can not be mapped, as it is not a concrete class.");
+                
+            this.type = type;
+            this.constructor = findConstructor(type, null);
+            
+            final List<Property> properties = new ArrayList<Property>();
+            final Set<String> names = new LinkedHashSet<String>();
+            
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass())
+                for (final Field field : current.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                        
+                        final Property property = new Property(field);
+                        
+                        if (!names.add(property.name))
+                            throw new IllegalArgumentException("Field " + field + " can not be mapped, as another field is already mapped to the tag " + property.name + ".");
+                            
+                        properties.add(property);
+                    }
+                    
+            this.properties = properties.toArray(new Property[properties.size()]);
+        }
+        
+        @Override
+        public Class<T> getType () {
+            
+            return this.type;
+        }
+        
+        @Override
+        public void write (NBTWriter out, T value) throws IOException {
+            
+            this.toTag("", value).write(out);
+        }
+        
+        @Override
+        public T read (NBTReader in) throws IOException {
+            
+            final CompoundTag tag = new CompoundTag("");
+            tag.read(in);
+            return this.fromTag(tag);
+        }
+        
+        @Override
+        public CompoundTag toTag (String name, T value) {
+            
+            final CompoundTag tag = new CompoundTag(name);
+            
+            try {
+                
+                for (final Property property : this.properties) {
+                    
+                    final Object field = (Object) property.getter.invokeExact((Object) value);
+                    
+                    if (field != null)
+                        tag.setTag(property.converter.toTag(property.name, field));
+                }
+            }
+            
+            catch (final RuntimeException | Error e) {
+                
+                throw e;
+            }
+            
+            catch (final Throwable e) {
+                
+                throw new IllegalStateException(e);
+            }
+            
+            return tag;
+        }
+        
+        @Override
+        public T fromTag (CompoundTag tag) {
+            
+            final T value = this.type.cast(construct(this.constructor));
+            
+            try {
+                
+                for (final Property property : this.properties) {
+                    
+                    final Tag child = tag.getTag(property.name);
+                    final Object field = child != null ? property.converter.fromTag(child) : null;
+                    
+                    if (field != null)
+                        property.setter.invokeExact((Object) value, field);
+                }
+            }
+            
+            catch (final RuntimeException | Error e) {
+                
+                throw e;
+            }
+            
+            catch (final Throwable e) {
+                
+                throw new IllegalStateException(e);
+            }
+            
+            return value;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package net.darkhax.opennbt.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets the name of the tag which a field is mapped to. Fields without this annotation use
+ * their own name.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NBTName {
+    
+    /**
+     * The name of the tag.
+     *
+     * @return String The name of the tag.
+     */
+    String value ();
+}
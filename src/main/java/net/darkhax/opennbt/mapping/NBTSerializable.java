@@ -0,0 +1,24 @@
+package net.darkhax.opennbt.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or record which is mapped to a CompoundTag. When the OpenNBT processor is on
+ * the compile class path, an {@link NBTCodec} named after the class with a {@code _NBTCodec}
+ * suffix is generated for it in the same package. Nested classes are named after each class
+ * they are nested in, such as {@code Outer_Inner_NBTCodec}.
+ *
+ * Every field declared by the class is mapped, except for static and transient fields. Fields
+ * which are private are accessed through their getter and setter. Classes need a constructor
+ * which takes no arguments, and records are created through their canonical constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface NBTSerializable {
+    
+}
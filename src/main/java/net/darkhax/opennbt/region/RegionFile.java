@@ -0,0 +1,460 @@
+package net.darkhax.opennbt.region;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.compression.Compression;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.Tag;
+
+/**
+ * A file which stores up to 1024 CompoundTags in a 32 by 32 grid, using the same layout as
+ * the Anvil region format. The file is made of 4 KiB sectors. The first sector holds the
+ * location of every chunk, and the second holds the time each chunk was last written. Each
+ * chunk takes up one or more whole sectors, starting with its length and a byte which
+ * describes its compression.
+ *
+ * The headers are memory mapped, so looking up a chunk does not need any extra reads. Free
+ * sectors are tracked in memory, and a chunk which still fits in its old sectors is written
+ * back in place. Region files are thread safe.
+ */
+public class RegionFile implements Closeable {
+    
+    /**
+     * The size of a sector in bytes.
+     */
+    public static final int SECTOR_SIZE = 4096;
+    
+    /**
+     * The largest amount of sectors a single chunk can use.
+     */
+    public static final int MAX_CHUNK_SECTORS = 255;
+    
+    /**
+     * The compression ID for chunks stored as GZIP data.
+     */
+    public static final int COMPRESSION_GZIP = 1;
+    
+    /**
+     * The compression ID for chunks stored as ZLIB data.
+     */
+    public static final int COMPRESSION_ZLIB = 2;
+    
+    /**
+     * The compression ID for chunks stored without compression.
+     */
+    public static final int COMPRESSION_NONE = 3;
+    
+    /**
+     * The size of the header which is written before the data of each chunk.
+     */
+    private static final int CHUNK_HEADER_SIZE = 5;
+    
+    /**
+     * The channel which the file is accessed through.
+     */
+    private final FileChannel channel;
+    
+    /**
+     * The mapped location and timestamp headers.
+     */
+    private final MappedByteBuffer header;
+    
+    /**
+     * The sectors which are currently used by the headers or by chunks.
+     */
+    private final BitSet usedSectors = new BitSet();
+    
+    /**
+     * The compression used for chunks when none is given.
+     */
+    private final Compression defaultCompression;
+    
+    /**
+     * Opens a region file, creating it if it does not exist. New chunks are compressed using
+     * ZLIB.
+     *
+     * @param file The file to open.
+     * @throws IOException If an I/O error occurs.
+     */
+    public RegionFile(File file) throws IOException {
+        
+        this(file, Compression.ZLIB);
+    }
+    
+    /**
+     * Opens a region file, creating it if it does not exist.
+     *
+     * @param file The file to open.
+     * @param defaultCompression The compression to use for chunks when none is given. This
+     *        must be GZIP, ZLIB or NONE.
+     * @throws IOException If an I/O error occurs.
+     */
+    public RegionFile(File file, Compression defaultCompression) throws IOException {
+        
+        getCompressionId(defaultCompression);
+        this.defaultCompression = defaultCompression;
+        
+        if (file.getParentFile() != null && !file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+            
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        try {
+            
+            if (this.channel.size() < SECTOR_SIZE * 2)
+                this.channel.write(ByteBuffer.allocate((int) (SECTOR_SIZE * 2 - this.channel.size())), this.channel.size());
+                
+            this.header = this.channel.map(MapMode.READ_WRITE, 0, SECTOR_SIZE * 2);
+            this.usedSectors.set(0, 2);
+            final long sectors = (this.channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            
+            for (int index = 0; index < 1024; index++) {
+                
+                final int location = this.header.getInt(index * 4);
+                final int offset = location >>> 8;
+                final int count = location & 0xff;
+                
+                if (location == 0)
+                    continue;
+                    
+                if (offset < 2 || offset + count > sectors)
+                    throw new IOException("Chunk " + index + " in region file " + file + " is outside of the file.");
+                    
+                this.usedSectors.set(offset, offset + count);
+            }
+        }
+        
+        catch (final IOException e) {
+            
+            this.channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Checks if a chunk has been written.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @return boolean Whether or not the chunk exists.
+     */
+    public synchronized boolean hasChunk (int x, int z) {
+        
+        return this.header.getInt(getIndex(x, z) * 4) != 0;
+    }
+    
+    /**
+     * Checks if the file is still open. A file is closed when it is closed directly, or when
+     * a thread is interrupted while accessing it.
+     *
+     * @return boolean Whether or not the file is open.
+     */
+    public boolean isOpen () {
+        
+        return this.channel.isOpen();
+    }
+    
+    /**
+     * Gets the time a chunk was last written.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @return int The time the chunk was written in seconds since the epoch, or 0 if the
+     *         chunk does not exist.
+     */
+    public synchronized int getTimestamp (int x, int z) {
+        
+        return this.header.getInt(SECTOR_SIZE + getIndex(x, z) * 4);
+    }
+    
+    /**
+     * Reads a chunk.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @return CompoundTag The chunk, or null if it does not exist.
+     * @throws IOException If the chunk is not valid, or an I/O error occurs.
+     */
+    public CompoundTag readChunk (int x, int z) throws IOException {
+        
+        final byte[] data;
+        
+        synchronized (this) {
+            
+            final int location = this.header.getInt(getIndex(x, z) * 4);
+            
+            if (location == 0)
+                return null;
+                
+            final long position = (long) (location >>> 8) * SECTOR_SIZE;
+            final ByteBuffer chunkHeader = this.read(position, CHUNK_HEADER_SIZE);
+            final int length = chunkHeader.getInt();
+            
+            if (length <= 0 || length + 4 > (location & 0xff) * SECTOR_SIZE)
+                throw new IOException("Chunk " + x + ", " + z + " has an invalid length of " + length);
+                
+            data = this.read(position + 4, length).array();
+        }
+        
+        final Tag tag;
+        
+        if (data[0] == COMPRESSION_NONE)
+            tag = NBTHelper.readTag(new NBTReader(data, 1, data.length - 1));
+            
+        else
+            try (InputStream in = getCompression(data[0]).decompress(new ByteArrayInputStream(data, 1, data.length - 1))) {
+                
+                tag = NBTHelper.readTag(new NBTReader(in));
+            }
+            
+        if (!(tag instanceof CompoundTag))
+            throw new IOException("Root tag is not a CompoundTag!");
+            
+        return (CompoundTag) tag;
+    }
+    
+    /**
+     * Writes a chunk using the default compression of the file.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @param tag The chunk to write.
+     * @throws IOException If the chunk is too large, or an I/O error occurs.
+     */
+    public void writeChunk (int x, int z, CompoundTag tag) throws IOException {
+        
+        this.writeChunk(x, z, tag, this.defaultCompression);
+    }
+    
+    /**
+     * Writes a chunk. If the chunk fits in the sectors it used before, it is written in place.
+     * Otherwise it is moved to the first free space which is large enough.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @param tag The chunk to write.
+     * @param compression The compression to use. This must be GZIP, ZLIB or NONE.
+     * @throws IOException If the chunk is too large, or an I/O error occurs.
+     */
+    public void writeChunk (int x, int z, CompoundTag tag, Compression compression) throws IOException {
+        
+        final NBTWriter data = new NBTWriter();
+        data.writeInt(0);
+        data.writeByte(getCompressionId(compression));
+        
+        try (OutputStream out = compression.compress(data); NBTWriter writer = new NBTWriter(out)) {
+            
+            NBTHelper.writeTag(writer, tag);
+        }
+        
+        final int sectors = (data.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        
+        if (sectors > MAX_CHUNK_SECTORS)
+            throw new IOException("Chunk " + x + ", " + z + " is too large to be stored in a region file.");
+            
+        final int length = data.size() - 4;
+        data.write(new byte[sectors * SECTOR_SIZE - data.size()]);
+        final ByteBuffer buffer = ByteBuffer.wrap(data.toByteArray());
+        buffer.putInt(0, length);
+        
+        synchronized (this) {
+            
+            final int index = getIndex(x, z);
+            final int location = this.header.getInt(index * 4);
+            int offset = location >>> 8;
+            final int count = location & 0xff;
+            
+            if (location != 0 && count >= sectors)
+                this.usedSectors.clear(offset + sectors, offset + count);
+                
+            else {
+                
+                if (location != 0)
+                    this.usedSectors.clear(offset, offset + count);
+                    
+                offset = this.findFreeSectors(sectors);
+                this.usedSectors.set(offset, offset + sectors);
+            }
+            
+            this.write((long) offset * SECTOR_SIZE, buffer);
+            this.header.putInt(index * 4, offset << 8 | sectors);
+            this.header.putInt(SECTOR_SIZE + index * 4, (int) (System.currentTimeMillis() / 1000L));
+        }
+    }
+    
+    /**
+     * Removes a chunk, and frees the sectors it used.
+     *
+     * @param x The x position of the chunk. Only the lowest 5 bits are used.
+     * @param z The z position of the chunk. Only the lowest 5 bits are used.
+     * @throws ClosedChannelException If the region file has been closed.
+     */
+    public synchronized void removeChunk (int x, int z) throws ClosedChannelException {
+        
+        // The header mapping outlives the channel, so check it explicitly.
+        if (!this.channel.isOpen())
+            throw new ClosedChannelException();
+            
+        final int index = getIndex(x, z);
+        final int location = this.header.getInt(index * 4);
+        
+        if (location != 0)
+            this.usedSectors.clear(location >>> 8, (location >>> 8) + (location & 0xff));
+            
+        this.header.putInt(index * 4, 0);
+        this.header.putInt(SECTOR_SIZE + index * 4, 0);
+    }
+    
+    /**
+     * Writes all changes to the storage device.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void flush () throws IOException {
+        
+        this.header.force();
+        this.channel.force(false);
+    }
+    
+    @Override
+    public synchronized void close () throws IOException {
+        
+        if (this.channel.isOpen()) {
+            
+            this.header.force();
+            this.channel.close();
+        }
+    }
+    
+    /**
+     * Finds the first run of free sectors which is large enough. Sectors past the end of the
+     * file are always free.
+     *
+     * @param count The amount of sectors needed.
+     * @return int The first sector of the run.
+     */
+    private int findFreeSectors (int count) {
+        
+        int start = this.usedSectors.nextClearBit(0);
+        
+        while (true) {
+            
+            final int end = this.usedSectors.nextSetBit(start);
+            
+            if (end == -1 || end - start >= count)
+                return start;
+                
+            start = this.usedSectors.nextClearBit(end);
+        }
+    }
+    
+    /**
+     * Reads an exact amount of bytes from the file.
+     *
+     * @param position The position to read from.
+     * @param length The amount of bytes to read.
+     * @return ByteBuffer A buffer holding the bytes which were read.
+     * @throws IOException If the end of the file is reached, or an I/O error occurs.
+     */
+    private ByteBuffer read (long position, int length) throws IOException {
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        
+        while (buffer.hasRemaining())
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+                
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Writes the whole contents of a buffer to the file.
+     *
+     * @param position The position to write to.
+     * @param buffer The buffer to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void write (long position, ByteBuffer buffer) throws IOException {
+        
+        while (buffer.hasRemaining())
+            this.channel.write(buffer, position + buffer.position());
+    }
+    
+    /**
+     * Gets the index of a chunk in the headers.
+     *
+     * @param x The x position of the chunk.
+     * @param z The z position of the chunk.
+     * @return int The index of the chunk.
+     */
+    private static int getIndex (int x, int z) {
+        
+        return (x & 31) + (z & 31) * 32;
+    }
+    
+    /**
+     * Gets the compression ID which is stored for a codec.
+     *
+     * @param compression The codec to get the ID of.
+     * @return int The compression ID.
+     */
+    private static int getCompressionId (Compression compression) {
+        
+        switch (compression.getFormat()) {
+            
+            case GZIP:
+                return COMPRESSION_GZIP;
+                
+            case ZLIB:
+                return COMPRESSION_ZLIB;
+                
+            case NONE:
+                return COMPRESSION_NONE;
+                
+            default:
+                throw new IllegalArgumentException("Region files do not support " + compression.getFormat() + " compression.");
+        }
+    }
+    
+    /**
+     * Gets the codec for a stored compression ID.
+     *
+     * @param id The compression ID.
+     * @return Compression The codec for the ID.
+     * @throws IOException If the ID is not known.
+     */
+    private static Compression getCompression (int id) throws IOException {
+        
+        switch (id) {
+            
+            case COMPRESSION_GZIP:
+                return Compression.GZIP;
+                
+            case COMPRESSION_ZLIB:
+                return Compression.ZLIB;
+                
+            case COMPRESSION_NONE:
+                return Compression.NONE;
+                
+            default:
+                throw new IOException("Unknown chunk compression type " + id);
+        }
+    }
+}
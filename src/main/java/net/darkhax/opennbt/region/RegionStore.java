@@ -0,0 +1,262 @@
+package net.darkhax.opennbt.region;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.darkhax.opennbt.compression.Compression;
+import net.darkhax.opennbt.tags.CompoundTag;
+
+/**
+ * A directory of region files, which stores CompoundTag chunks by their chunk position. Each
+ * region file holds a 32 by 32 area of chunks, and is named after the region it covers, such
+ * as r.0.-1.mca. Recently used region files are kept open, and the least recently used file
+ * is closed once too many are open. Region stores are thread safe, and a chunk which is being
+ * read or written while its region file is closed will simply open the file again.
+ */
+public class RegionStore implements Closeable {
+    
+    /**
+     * The default amount of region files to keep open.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+    
+    /**
+     * The directory which region files are stored in.
+     */
+    private final File directory;
+    
+    /**
+     * The compression to use for new chunks.
+     */
+    private final Compression compression;
+    
+    /**
+     * The maximum amount of region files to keep open.
+     */
+    private final int cacheSize;
+    
+    /**
+     * The open region files, ordered from least to most recently used.
+     */
+    private final Map<String, RegionFile> regions = new LinkedHashMap<String, RegionFile>(16, 0.75f, true);
+    
+    /**
+     * Constructs a new store which compresses chunks with ZLIB, and uses the default cache
+     * size.
+     *
+     * @param directory The directory to store region files in.
+     */
+    public RegionStore(File directory) {
+        
+        this(directory, Compression.ZLIB, DEFAULT_CACHE_SIZE);
+    }
+    
+    /**
+     * Constructs a new store.
+     *
+     * @param directory The directory to store region files in.
+     * @param compression The compression to use for new chunks. This must be GZIP, ZLIB or
+     *        NONE.
+     * @param cacheSize The maximum amount of region files to keep open.
+     */
+    public RegionStore(File directory, Compression compression, int cacheSize) {
+        
+        if (cacheSize <= 0)
+            throw new IllegalArgumentException("Cache size must be positive.");
+            
+        this.directory = directory;
+        this.compression = compression;
+        this.cacheSize = cacheSize;
+    }
+    
+    /**
+     * Checks if a chunk has been written.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @return boolean Whether or not the chunk exists.
+     * @throws IOException If the region file could not be opened.
+     */
+    public boolean hasChunk (int chunkX, int chunkZ) throws IOException {
+        
+        final RegionFile region = this.getRegion(chunkX, chunkZ, false);
+        return region != null && region.hasChunk(chunkX, chunkZ);
+    }
+    
+    /**
+     * Reads a chunk.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @return CompoundTag The chunk, or null if it does not exist.
+     * @throws IOException If the chunk is not valid, or an I/O error occurs.
+     */
+    public CompoundTag readChunk (int chunkX, int chunkZ) throws IOException {
+        
+        while (true) {
+            
+            final RegionFile region = this.getRegion(chunkX, chunkZ, false);
+            
+            try {
+                
+                return region != null ? region.readChunk(chunkX, chunkZ) : null;
+            }
+            
+            catch (final ClosedChannelException e) {
+                
+                // Unless this thread was interrupted, the file was closed by another thread.
+                if (Thread.currentThread().isInterrupted())
+                    throw e;
+            }
+        }
+    }
+    
+    /**
+     * Writes a chunk, creating its region file if needed.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @param tag The chunk to write.
+     * @throws IOException If the chunk is too large, or an I/O error occurs.
+     */
+    public void writeChunk (int chunkX, int chunkZ, CompoundTag tag) throws IOException {
+        
+        while (true)
+            try {
+                
+                this.getRegion(chunkX, chunkZ, true).writeChunk(chunkX, chunkZ, tag);
+                return;
+            }
+            
+            catch (final ClosedChannelException e) {
+                
+                // Unless this thread was interrupted, the file was closed by another thread.
+                if (Thread.currentThread().isInterrupted())
+                    throw e;
+            }
+    }
+    
+    /**
+     * Removes a chunk, if it exists.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @throws IOException If the region file could not be opened.
+     */
+    public void removeChunk (int chunkX, int chunkZ) throws IOException {
+        
+        while (true) {
+            
+            final RegionFile region = this.getRegion(chunkX, chunkZ, false);
+            
+            try {
+                
+                if (region != null)
+                    region.removeChunk(chunkX, chunkZ);
+                    
+                return;
+            }
+            
+            catch (final ClosedChannelException e) {
+                
+                // Unless this thread was interrupted, the file was closed by another thread.
+                if (Thread.currentThread().isInterrupted())
+                    throw e;
+            }
+        }
+    }
+    
+    /**
+     * Writes the changes of every open region file to the storage device.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void flush () throws IOException {
+        
+        for (final RegionFile region : this.regions.values())
+            region.flush();
+    }
+    
+    /**
+     * Closes every open region file. The store can still be used afterwards, and will open
+     * region files again as needed.
+     *
+     * @throws IOException If a region file could not be closed.
+     */
+    @Override
+    public synchronized void close () throws IOException {
+        
+        IOException error = null;
+        
+        for (final RegionFile region : this.regions.values())
+            try {
+                
+                region.close();
+            }
+            
+            catch (final IOException e) {
+                
+                if (error == null)
+                    error = e;
+            }
+            
+        this.regions.clear();
+        
+        if (error != null)
+            throw error;
+    }
+    
+    /**
+     * Gets the file which holds a chunk.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @return File The region file for the chunk.
+     */
+    public File getRegionFile (int chunkX, int chunkZ) {
+        
+        return new File(this.directory, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+    }
+    
+    /**
+     * Gets the open region file which holds a chunk, opening it if needed.
+     *
+     * @param chunkX The x position of the chunk.
+     * @param chunkZ The z position of the chunk.
+     * @param create Whether to create the region file if it does not exist.
+     * @return RegionFile The region file, or null if it does not exist and create is false.
+     * @throws IOException If the region file could not be opened.
+     */
+    private synchronized RegionFile getRegion (int chunkX, int chunkZ, boolean create) throws IOException {
+        
+        final File file = this.getRegionFile(chunkX, chunkZ);
+        final String key = file.getName();
+        RegionFile region = this.regions.get(key);
+        
+        if (region == null || !region.isOpen()) {
+            
+            if (!create && !file.exists())
+                return null;
+                
+            if (region != null)
+                this.regions.remove(key);
+                
+            if (this.regions.size() >= this.cacheSize) {
+                
+                final Iterator<RegionFile> eldest = this.regions.values().iterator();
+                eldest.next().close();
+                eldest.remove();
+            }
+            
+            region = new RegionFile(file, this.compression);
+            this.regions.put(key, region);
+        }
+        
+        return region;
+    }
+}
@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A tag holding an array of bytes.
  */
 public class ByteArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 7;
+    
     /**
      * The Byte array held by the tag.
      */
@@ -48,10 +54,13 @@ public class ByteArrayTag extends Tag {
      */
     public void setValue (byte[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -73,6 +82,7 @@ public class ByteArrayTag extends Tag {
      */
     public void setValue (int index, byte value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -87,19 +97,27 @@ public class ByteArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new byte[in.readInt()];
+        this.markModified();
         in.readFully(this.value);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
         out.write(this.value);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        return 4 + this.value.length;
+    }
+    
     @Override
     public ByteArrayTag clone () {
         
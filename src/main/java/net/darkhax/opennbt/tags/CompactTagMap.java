@@ -0,0 +1,800 @@
+package net.darkhax.opennbt.tags;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * The map used to hold the children of a compound tag. Keys and values are kept in two flat
+ * arrays in insertion order, so there is no entry object per child. Small maps are first
+ * searched linearly by identity, which finds keys passed as the same String constants without
+ * hashing them. Other lookups, and every lookup in a map with more than
+ * {@link #INDEX_THRESHOLD} keys, use an open addressing table of indexes into the key array.
+ *
+ * The key array and its table are described by a shape. Compounds which are built by adding
+ * the same keys in the same order share one immutable shape, so millions of compounds with the
+ * same layout only store their keys once. Adding a key moves the map to the next shape, and
+ * any change which can not be shared, such as adding more than {@link #MAX_SHARED_KEYS} keys,
+ * gives the map its own copy of the arrays. Like LinkedHashMap, this map is not thread safe.
+ *
+ * Every tag put into the map is told that it is held by the owner of the map, and every
+ * change made to the map, including removals made through its views, clears the cached size
+ * of the owner.
+ */
+final class CompactTagMap extends AbstractMap<String, Tag> {
+    
+    /**
+     * The largest amount of keys which are searched linearly. Larger maps only use their hash
+     * table, and maps which do not have a shape only create one past this size.
+     */
+    static final int INDEX_THRESHOLD = 8;
+    
+    /**
+     * The largest amount of keys which can be held by a shared shape.
+     */
+    static final int MAX_SHARED_KEYS = 32;
+    
+    /**
+     * The largest amount of shared shapes which will be created. Shapes are never discarded,
+     * so this stops documents with many unique keys from filling the shape tree.
+     */
+    static final int MAX_SHAPES = 16384;
+    
+    /**
+     * The amount of shared shapes which have been created.
+     */
+    private static final AtomicInteger SHAPE_COUNT = new AtomicInteger();
+    
+    /**
+     * The value array used by empty maps.
+     */
+    private static final Tag[] NO_VALUES = new Tag[0];
+    
+    /**
+     * The tag which holds this map, or null if the map is not held by a tag.
+     */
+    private final Tag owner;
+    
+    /**
+     * The shared shape which describes the keys, or null if the map owns its keys.
+     */
+    private Shape shape;
+    
+    /**
+     * The keys of the map, in insertion order. This is the array of the shape when the map
+     * has one, and can be longer than the size of the map otherwise.
+     */
+    private String[] keys;
+    
+    /**
+     * The hash table of the keys, holding one more than the index of each key. This is the
+     * table of the shape when the map has one, and is null for small maps without a shape.
+     */
+    private int[] index;
+    
+    /**
+     * The values of the map, in the same order as the keys.
+     */
+    private Tag[] values;
+    
+    /**
+     * The amount of entries in the map.
+     */
+    private int size;
+    
+    /**
+     * The amount of times keys have been added or removed, used to detect changes made while
+     * iterating.
+     */
+    private int modCount;
+    
+    /**
+     * Creates an empty map.
+     *
+     * @param owner The tag which holds the map, or null if it is not held by a tag.
+     */
+    CompactTagMap(Tag owner) {
+        
+        this.owner = owner;
+        this.shape = Shape.EMPTY;
+        this.keys = Shape.EMPTY.keys;
+        this.values = NO_VALUES;
+    }
+    
+    /**
+     * Creates a map holding the entries of another map. Copying another CompactTagMap shares
+     * its shape, and only copies the values.
+     *
+     * @param owner The tag which holds the map, or null if it is not held by a tag.
+     * @param map The map to copy.
+     */
+    CompactTagMap(Tag owner, Map<String, ? extends Tag> map) {
+        
+        this(owner);
+        
+        if (map instanceof CompactTagMap) {
+            
+            final CompactTagMap other = (CompactTagMap) map;
+            this.shape = other.shape;
+            this.keys = other.shape != null ? other.keys : Arrays.copyOf(other.keys, other.size);
+            this.index = other.shape != null || other.index == null ? other.index : other.index.clone();
+            this.values = Arrays.copyOf(other.values, other.size);
+            this.size = other.size;
+            
+            for (int position = 0; position < this.size; position++)
+                this.adopt(this.values[position]);
+        }
+        
+        else
+            this.putAll(map);
+    }
+    
+    @Override
+    public int size () {
+        
+        return this.size;
+    }
+    
+    @Override
+    public boolean containsKey (Object key) {
+        
+        return this.indexOf(key) >= 0;
+    }
+    
+    @Override
+    public Tag get (Object key) {
+        
+        final int position = this.indexOf(key);
+        return position >= 0 ? this.values[position] : null;
+    }
+    
+    @Override
+    public Tag put (String key, Tag value) {
+        
+        final int position = this.indexOf(key);
+        
+        if (position >= 0) {
+            
+            final Tag previous = this.values[position];
+            this.values[position] = value;
+            this.release(previous);
+            this.adopt(value);
+            this.changed();
+            return previous;
+        }
+        
+        this.append(key, value);
+        this.adopt(value);
+        this.changed();
+        return null;
+    }
+    
+    @Override
+    public Tag remove (Object key) {
+        
+        final int position = this.indexOf(key);
+        
+        if (position < 0)
+            return null;
+            
+        final Tag previous = this.values[position];
+        this.removeAt(position);
+        return previous;
+    }
+    
+    @Override
+    public void clear () {
+        
+        for (int position = 0; position < this.size; position++)
+            this.release(this.values[position]);
+            
+        this.shape = Shape.EMPTY;
+        this.keys = Shape.EMPTY.keys;
+        this.index = null;
+        this.values = NO_VALUES;
+        this.size = 0;
+        this.modCount++;
+        this.changed();
+    }
+    
+    @Override
+    public void forEach (BiConsumer<? super String, ? super Tag> action) {
+        
+        final int expected = this.modCount;
+        
+        for (int position = 0; position < this.size && expected == this.modCount; position++)
+            action.accept(this.keys[position], this.values[position]);
+            
+        if (expected != this.modCount)
+            throw new ConcurrentModificationException();
+    }
+    
+    @Override
+    public void replaceAll (BiFunction<? super String, ? super Tag, ? extends Tag> function) {
+        
+        final int expected = this.modCount;
+        
+        for (int position = 0; position < this.size && expected == this.modCount; position++) {
+            
+            final Tag previous = this.values[position];
+            this.values[position] = function.apply(this.keys[position], previous);
+            this.release(previous);
+            this.adopt(this.values[position]);
+        }
+        
+        if (expected != this.modCount)
+            throw new ConcurrentModificationException();
+            
+        this.changed();
+    }
+    
+    /**
+     * Gets the value of a key, decoding it first if it was read lazily. Decoding a value does
+     * not change its size, so the cached size of the owner is kept.
+     *
+     * @param key The key to find.
+     * @return Tag The decoded value, or null if the key is not in the map.
+     */
+    Tag getDecoded (Object key) {
+        
+        final int position = this.indexOf(key);
+        return position >= 0 ? this.decodeAt(position) : null;
+    }
+    
+    /**
+     * Checks whether a key is in the map, using a hash which was computed ahead of time.
+     *
+     * @param key The key to find.
+     * @param hash The hash code of the key.
+     * @return boolean Whether the key is in the map.
+     */
+    boolean containsKey (String key, int hash) {
+        
+        return this.indexOf(key, hash) >= 0;
+    }
+    
+    /**
+     * Gets the value of a key, using a hash which was computed ahead of time.
+     *
+     * @param key The key to find.
+     * @param hash The hash code of the key.
+     * @return Tag The value, or null if the key is not in the map.
+     */
+    Tag get (String key, int hash) {
+        
+        final int position = this.indexOf(key, hash);
+        return position >= 0 ? this.values[position] : null;
+    }
+    
+    /**
+     * Gets the value of a key, using a hash which was computed ahead of time, and decodes it
+     * first if it was read lazily.
+     *
+     * @param key The key to find.
+     * @param hash The hash code of the key.
+     * @return Tag The decoded value, or null if the key is not in the map.
+     */
+    Tag getDecoded (String key, int hash) {
+        
+        final int position = this.indexOf(key, hash);
+        return position >= 0 ? this.decodeAt(position) : null;
+    }
+    
+    /**
+     * Removes a key, using a hash which was computed ahead of time.
+     *
+     * @param key The key to remove.
+     * @param hash The hash code of the key.
+     * @return Tag The value of the key, or null if it was not in the map.
+     */
+    Tag remove (String key, int hash) {
+        
+        final int position = this.indexOf(key, hash);
+        
+        if (position < 0)
+            return null;
+            
+        final Tag previous = this.values[position];
+        this.removeAt(position);
+        return previous;
+    }
+    
+    /**
+     * Decodes every value which was read lazily.
+     */
+    void decodeAll () {
+        
+        for (int position = 0; position < this.size; position++)
+            this.decodeAt(position);
+    }
+    
+    @Override
+    public Set<Map.Entry<String, Tag>> entrySet () {
+        
+        return new EntrySet();
+    }
+    
+    /**
+     * Finds the position of a key.
+     *
+     * @param key The key to find.
+     * @return int The index of the key in the key array, or -1 if it is not in the map.
+     */
+    private int indexOf (Object key) {
+        
+        return this.indexOf(key, key != null ? key.hashCode() : 0);
+    }
+    
+    /**
+     * Finds the position of a key. Keys are compared by identity first, so canonical names
+     * are found without comparing their characters, and other keys are only compared when
+     * their hash codes match.
+     *
+     * @param key The key to find.
+     * @param hash The hash code of the key.
+     * @return int The index of the key in the key array, or -1 if it is not in the map.
+     */
+    private int indexOf (Object key, int hash) {
+        
+        if (this.size <= INDEX_THRESHOLD) {
+            
+            for (int position = 0; position < this.size; position++)
+                if (this.keys[position] == key)
+                    return position;
+                    
+            if (this.index == null) {
+                
+                for (int position = 0; position < this.size; position++) {
+                    
+                    final String other = this.keys[position];
+                    
+                    if (other != null && other.hashCode() == hash && other.equals(key))
+                        return position;
+                }
+                
+                return -1;
+            }
+        }
+        
+        final int mask = this.index.length - 1;
+        
+        for (int slot = spread(hash) & mask;; slot = slot + 1 & mask) {
+            
+            final int entry = this.index[slot];
+            
+            if (entry == 0)
+                return -1;
+                
+            final String other = this.keys[entry - 1];
+            
+            if (other == key || other != null && other.hashCode() == hash && other.equals(key))
+                return entry - 1;
+        }
+    }
+    
+    /**
+     * Decodes the value at a position if it was read lazily.
+     *
+     * @param position The index of the value.
+     * @return Tag The decoded value.
+     */
+    private Tag decodeAt (int position) {
+        
+        final Tag tag = this.values[position];
+        
+        if (!(tag instanceof LazyTag))
+            return tag;
+            
+        final Tag decoded = ((LazyTag) tag).decode();
+        this.values[position] = decoded;
+        this.release(tag);
+        this.adopt(decoded);
+        return decoded;
+    }
+    
+    /**
+     * Records that the owner holds a tag.
+     *
+     * @param tag The tag which was put into the map.
+     */
+    private void adopt (Tag tag) {
+        
+        if (this.owner != null && tag != null)
+            tag.addParent(this.owner);
+    }
+    
+    /**
+     * Records that the owner no longer holds a tag.
+     *
+     * @param tag The tag which was taken out of the map.
+     */
+    private void release (Tag tag) {
+        
+        if (this.owner != null && tag != null)
+            tag.removeParent(this.owner);
+    }
+    
+    /**
+     * Clears the cached size of the owner after the map has been changed.
+     */
+    private void changed () {
+        
+        if (this.owner != null)
+            this.owner.markModified();
+    }
+    
+    /**
+     * Adds a key which is not in the map yet.
+     *
+     * @param key The key to add.
+     * @param value The value of the key.
+     */
+    private void append (String key, Tag value) {
+        
+        if (this.values.length == this.size)
+            this.values = Arrays.copyOf(this.values, grow(this.size));
+            
+        if (this.shape != null) {
+            
+            final Shape next = this.shape.with(key);
+            
+            if (next != null) {
+                
+                this.useShape(next);
+                this.values[this.size++] = value;
+                this.modCount++;
+                return;
+            }
+            
+            this.detach();
+        }
+        
+        if (this.keys.length == this.size)
+            this.keys = Arrays.copyOf(this.keys, grow(this.size));
+            
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size++;
+        this.modCount++;
+        
+        if (this.size > INDEX_THRESHOLD) {
+            
+            if (this.index == null || this.size * 2 > this.index.length)
+                this.index = createIndex(this.keys, this.size);
+                
+            else
+                insert(this.index, key, this.size - 1);
+        }
+    }
+    
+    /**
+     * Removes the entry at a position, keeping the order of the other entries.
+     *
+     * @param position The index of the entry to remove.
+     */
+    private void removeAt (int position) {
+        
+        this.release(this.values[position]);
+        this.changed();
+        final int moved = this.size - position - 1;
+        System.arraycopy(this.values, position + 1, this.values, position, moved);
+        this.values[this.size - 1] = null;
+        
+        if (this.shape != null) {
+            
+            Shape next = Shape.EMPTY;
+            
+            for (int other = 0; other < this.size && next != null; other++)
+                if (other != position)
+                    next = next.with(this.keys[other]);
+                    
+            if (next != null) {
+                
+                this.useShape(next);
+                this.size--;
+                this.modCount++;
+                return;
+            }
+            
+            this.detach();
+        }
+        
+        System.arraycopy(this.keys, position + 1, this.keys, position, moved);
+        this.size--;
+        this.keys[this.size] = null;
+        this.index = this.size > INDEX_THRESHOLD ? createIndex(this.keys, this.size) : null;
+        this.modCount++;
+    }
+    
+    /**
+     * Switches to a shared shape.
+     *
+     * @param next The shape to use.
+     */
+    private void useShape (Shape next) {
+        
+        this.shape = next;
+        this.keys = next.keys;
+        this.index = next.index;
+    }
+    
+    /**
+     * Gives the map its own copy of the arrays of its shape, so they can be changed.
+     */
+    private void detach () {
+        
+        this.keys = Arrays.copyOf(this.keys, grow(this.size));
+        this.index = this.size > INDEX_THRESHOLD ? this.index.clone() : null;
+        this.shape = null;
+    }
+    
+    /**
+     * Gets the capacity to grow an array to.
+     *
+     * @param size The amount of entries the array holds.
+     * @return int The new capacity of the array.
+     */
+    private static int grow (int size) {
+        
+        return size < 4 ? 4 : size + (size >> 1);
+    }
+    
+    /**
+     * Gets the hash of a key.
+     *
+     * @param key The key.
+     * @return int The hash of the key, with its high bits mixed into its low bits.
+     */
+    private static int hash (Object key) {
+        
+        return spread(key != null ? key.hashCode() : 0);
+    }
+    
+    /**
+     * Mixes the high bits of a hash code into its low bits, which are used to pick a slot.
+     *
+     * @param hash The hash code.
+     * @return int The mixed hash.
+     */
+    private static int spread (int hash) {
+        
+        return hash ^ hash >>> 16;
+    }
+    
+    /**
+     * Creates the hash table for some keys. The table is at least twice as large as the amount
+     * of keys.
+     *
+     * @param keys The keys to index.
+     * @param size The amount of keys.
+     * @return int[] The new table.
+     */
+    private static int[] createIndex (String[] keys, int size) {
+        
+        final int[] index = new int[Integer.highestOneBit(size * 4 - 1)];
+        
+        for (int position = 0; position < size; position++)
+            insert(index, keys[position], position);
+            
+        return index;
+    }
+    
+    /**
+     * Adds a key to a hash table.
+     *
+     * @param index The table to add to.
+     * @param key The key to add.
+     * @param position The index of the key in the key array.
+     */
+    private static void insert (int[] index, String key, int position) {
+        
+        final int mask = index.length - 1;
+        int slot = hash(key) & mask;
+        
+        while (index[slot] != 0)
+            slot = slot + 1 & mask;
+            
+        index[slot] = position + 1;
+    }
+    
+    /**
+     * An immutable layout of keys, which is shared by every map which added the same keys in
+     * the same order. Shapes form a tree, where each shape remembers the shape reached by
+     * adding each key to it.
+     */
+    private static final class Shape {
+        
+        /**
+         * The shape of an empty map, which is the root of the tree.
+         */
+        private static final Shape EMPTY = new Shape(new String[0]);
+        
+        /**
+         * The keys of the shape, in insertion order.
+         */
+        private final String[] keys;
+        
+        /**
+         * The hash table of the keys, or null if the shape is empty.
+         */
+        private final int[] index;
+        
+        /**
+         * The shapes reached by adding a key to this shape, created when first needed.
+         */
+        private volatile Map<String, Shape> transitions;
+        
+        /**
+         * Creates a new shape.
+         *
+         * @param keys The keys of the shape.
+         */
+        private Shape(String[] keys) {
+            
+            this.keys = keys;
+            this.index = keys.length > 0 ? createIndex(keys, keys.length) : null;
+        }
+        
+        /**
+         * Gets the shape reached by adding a key to this shape.
+         *
+         * @param key The key to add, which is not in this shape.
+         * @return Shape The shared shape with the key added, or null if it can not be shared.
+         */
+        private Shape with (String key) {
+            
+            if (key == null || this.keys.length >= MAX_SHARED_KEYS)
+                return null;
+                
+            Map<String, Shape> transitions = this.transitions;
+            
+            if (transitions == null)
+                synchronized (this) {
+                    
+                    if (this.transitions == null)
+                        this.transitions = new ConcurrentHashMap<String, Shape>(4);
+                        
+                    transitions = this.transitions;
+                }
+                
+            final Shape existing = transitions.get(key);
+            
+            if (existing != null)
+                return existing;
+                
+            if (SHAPE_COUNT.get() >= MAX_SHAPES)
+                return null;
+                
+            final String[] keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+            keys[this.keys.length] = key;
+            final Shape created = new Shape(keys);
+            final Shape raced = transitions.putIfAbsent(key, created);
+            
+            if (raced != null)
+                return raced;
+                
+            SHAPE_COUNT.incrementAndGet();
+            return created;
+        }
+    }
+    
+    /**
+     * An entry returned by the entry set, which writes changes to its value through to the
+     * map.
+     */
+    private final class MapEntry extends AbstractMap.SimpleEntry<String, Tag> {
+        
+        /**
+         * The serialization version of the entry.
+         */
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * Creates a new entry.
+         *
+         * @param position The index of the entry in the map.
+         */
+        private MapEntry(int position) {
+            
+            super(CompactTagMap.this.keys[position], CompactTagMap.this.values[position]);
+        }
+        
+        @Override
+        public Tag setValue (Tag value) {
+            
+            if (CompactTagMap.this.containsKey(this.getKey()))
+                CompactTagMap.this.put(this.getKey(), value);
+                
+            return super.setValue(value);
+        }
+    }
+    
+    /**
+     * A view of the entries of the map.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Tag>> {
+        
+        @Override
+        public int size () {
+            
+            return CompactTagMap.this.size;
+        }
+        
+        @Override
+        public void clear () {
+            
+            CompactTagMap.this.clear();
+        }
+        
+        @Override
+        public Iterator<Map.Entry<String, Tag>> iterator () {
+            
+            return new EntryIterator();
+        }
+    }
+    
+    /**
+     * Iterates over the entries of the map in insertion order.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, Tag>> {
+        
+        /**
+         * The index of the next entry.
+         */
+        private int next;
+        
+        /**
+         * The index of the last entry returned, or -1 if it has been removed.
+         */
+        private int last = -1;
+        
+        /**
+         * The modification count of the map which this iterator expects.
+         */
+        private int expected = CompactTagMap.this.modCount;
+        
+        @Override
+        public boolean hasNext () {
+            
+            return this.next < CompactTagMap.this.size;
+        }
+        
+        @Override
+        public Map.Entry<String, Tag> next () {
+            
+            if (this.expected != CompactTagMap.this.modCount)
+                throw new ConcurrentModificationException();
+                
+            if (this.next >= CompactTagMap.this.size)
+                throw new NoSuchElementException();
+                
+            this.last = this.next++;
+            return new MapEntry(this.last);
+        }
+        
+        @Override
+        public void remove () {
+            
+            if (this.last < 0)
+                throw new IllegalStateException();
+                
+            if (this.expected != CompactTagMap.this.modCount)
+                throw new ConcurrentModificationException();
+                
+            CompactTagMap.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expected = CompactTagMap.this.modCount;
+        }
+    }
+}
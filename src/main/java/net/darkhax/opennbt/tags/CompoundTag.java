@@ -1,12 +1,11 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -14,16 +13,34 @@ import java.util.Map;
 import java.util.Set;
 
 import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
 
 /**
  * A compound tag which contains a bunch of other tags.
  */
 public class CompoundTag extends Tag implements Iterable<Tag> {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 10;
+    
     /**
      * A map containing tagged values.
      */
-    private Map<String, Tag> value;
+    private CompactTagMap value;
+    
+    /**
+     * Whether or not the map may contain children which have not been decoded yet.
+     */
+    private boolean lazy;
+    
+    /**
+     * The size of the payload when it was last computed, or -1 if it has not been computed
+     * since the tag or one of its children last changed.
+     */
+    private int cachedSize = -1;
     
     /**
      * Creates a tag with the specified name.
@@ -32,7 +49,8 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public CompoundTag(String name) {
         
-        this(name, new LinkedHashMap<String, Tag>());
+        super(name);
+        this.value = new CompactTagMap(this);
     }
     
     /**
@@ -44,13 +62,14 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
     public CompoundTag(String name, Map<String, Tag> value) {
         
         super(name);
-        this.value = new LinkedHashMap<String, Tag>(value);
+        this.value = new CompactTagMap(this, value);
     }
     
     @Override
     public Map<String, Tag> getValue () {
         
-        return new LinkedHashMap<String, Tag>(this.value);
+        this.decodeAll();
+        return this.isFrozen() ? Collections.unmodifiableMap(this.value) : new LinkedHashMap<String, Tag>(this.value);
     }
     
     /**
@@ -60,7 +79,10 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setValue (Map<String, Tag> value) {
         
-        this.value = new LinkedHashMap<String, Tag>(value);
+        this.checkMutable();
+        this.value.clear();
+        this.value.putAll(value);
+        this.lazy = false;
     }
     
     /**
@@ -84,6 +106,17 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
         return this.value.containsKey(tagName);
     }
     
+    /**
+     * Checks that the compound tag contains a tag with the name of a key.
+     *
+     * @param key The key of the tag to check for.
+     * @return boolean Whether the compound tag contains a tag with the name of the key.
+     */
+    public boolean hasTag (NBTKey key) {
+        
+        return this.value.containsKey(key.getName(), key.hashCode());
+    }
+    
     /**
      * Checks if a stored Tag has a value equal to the passed object. This will also check that
      * a tag with the passed name exists, and that it has a non-null value.
@@ -111,7 +144,18 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public <T extends Tag> T getTag (String tagName) {
         
-        return (T) this.value.get(tagName);
+        return (T) this.find(tagName);
+    }
+    
+    /**
+     * Gets the tag with the name of a key.
+     *
+     * @param key The key of the tag.
+     * @return Tag The tag with the name of the key.
+     */
+    public <T extends Tag> T getTag (NBTKey key) {
+        
+        return (T) this.find(key);
     }
     
     /**
@@ -122,7 +166,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public <T extends Tag> T setTag (T tag) {
         
-        return (T) this.value.put(tag.getName(), tag);
+        return (T) LazyTag.resolve(this.put(tag.getName(), tag));
     }
     
     /**
@@ -134,18 +178,63 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public byte getByte (String name) {
         
-        return this.value.containsKey(name) ? (byte) this.value.get(name).getValue() : 0;
+        final Tag tag = this.find(name);
+        return tag != null ? ((ByteTag) tag).getAsByte() : 0;
+    }
+    
+    /**
+     * Gets a byte from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the byte tag.
+     * @return byte The stored byte.
+     */
+    public byte getByte (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((ByteTag) tag).getAsByte() : 0;
     }
     
     /**
      * Sets a byte to the Compound Tag.
+     * If a byte tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the byte under.
      * @param value The byte value to store.
      */
     public void setByte (String name, byte value) {
         
-        this.value.put(name, new ByteTag(name, value));
+        this.setByte(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets a byte to the Compound Tag using a key.
+     * 
+     * @param key The key to store the byte under.
+     * @param value The byte value to store.
+     */
+    public void setByte (NBTKey key, byte value) {
+        
+        this.setByte(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets a byte to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the byte under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The byte value to store.
+     */
+    private void setByte (String name, Tag tag, byte value) {
+        
+        if (tag instanceof ByteTag && tag.isOnlyHeldBy(this))
+            ((ByteTag) tag).setValue(value);
+            
+        else
+            this.put(name, new ByteTag(name, value));
     }
     
     /**
@@ -157,18 +246,91 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public short getShort (String name) {
         
-        return this.value.containsKey(name) ? (short) this.value.get(name).getValue() : 0;
+        final Tag tag = this.find(name);
+        return tag != null ? ((ShortTag) tag).getAsShort() : 0;
+    }
+    
+    /**
+     * Gets a short from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the short tag.
+     * @return short The stored short.
+     */
+    public short getShort (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((ShortTag) tag).getAsShort() : 0;
+    }
+    
+    /**
+     * Gets a short from the Compound Tag. Any byte tag stored under the name is widened to a
+     * short. If no tag is found with the given name, 0 will be returned.
+     * 
+     * @param name The name of the tag.
+     * @return short The stored value, as a short.
+     * @throws ClassCastException If the tag can not be widened to a short.
+     */
+    public short getAsShort (String name) {
+        
+        final NumericTag tag = asNumber(this.find(name), ShortTag.ID);
+        return tag != null ? tag.getAsShort() : 0;
+    }
+    
+    /**
+     * Gets a short from the Compound Tag using a key. Any byte tag stored under the name is
+     * widened to a short. If no tag is found with the name of the key, 0 will be returned.
+     * 
+     * @param key The key of the tag.
+     * @return short The stored value, as a short.
+     * @throws ClassCastException If the tag can not be widened to a short.
+     */
+    public short getAsShort (NBTKey key) {
+        
+        final NumericTag tag = asNumber(this.find(key), ShortTag.ID);
+        return tag != null ? tag.getAsShort() : 0;
     }
     
     /**
      * Sets a short to the Compound Tag.
+     * If a short tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the short under.
      * @param value The short value to store.
      */
     public void setShort (String name, short value) {
         
-        this.value.put(name, new ShortTag(name, value));
+        this.setShort(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets a short to the Compound Tag using a key.
+     * 
+     * @param key The key to store the short under.
+     * @param value The short value to store.
+     */
+    public void setShort (NBTKey key, short value) {
+        
+        this.setShort(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets a short to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the short under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The short value to store.
+     */
+    private void setShort (String name, Tag tag, short value) {
+        
+        if (tag instanceof ShortTag && tag.isOnlyHeldBy(this))
+            ((ShortTag) tag).setValue(value);
+            
+        else
+            this.put(name, new ShortTag(name, value));
     }
     
     /**
@@ -180,18 +342,92 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public int getInt (String name) {
         
-        return this.value.containsKey(name) ? (int) this.value.get(name).getValue() : 0;
+        final Tag tag = this.find(name);
+        return tag != null ? ((IntTag) tag).getAsInt() : 0;
+    }
+    
+    /**
+     * Gets an int from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the int tag.
+     * @return int The stored int.
+     */
+    public int getInt (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((IntTag) tag).getAsInt() : 0;
+    }
+    
+    /**
+     * Gets an int from the Compound Tag. Any byte or short tag stored under the name is
+     * widened to an int. If no tag is found with the given name, 0 will be returned.
+     * 
+     * @param name The name of the tag.
+     * @return int The stored value, as an int.
+     * @throws ClassCastException If the tag can not be widened to an int.
+     */
+    public int getAsInt (String name) {
+        
+        final NumericTag tag = asNumber(this.find(name), IntTag.ID);
+        return tag != null ? tag.getAsInt() : 0;
+    }
+    
+    /**
+     * Gets an int from the Compound Tag using a key. Any byte or short tag stored under the
+     * name is widened to an int. If no tag is found with the name of the key, 0 will be
+     * returned.
+     * 
+     * @param key The key of the tag.
+     * @return int The stored value, as an int.
+     * @throws ClassCastException If the tag can not be widened to an int.
+     */
+    public int getAsInt (NBTKey key) {
+        
+        final NumericTag tag = asNumber(this.find(key), IntTag.ID);
+        return tag != null ? tag.getAsInt() : 0;
     }
     
     /**
      * Sets an int to the Compound Tag.
+     * If an int tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the int under.
      * @param value The int value to store.
      */
     public void setInt (String name, int value) {
         
-        this.value.put(name, new IntTag(name, value));
+        this.setInt(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets an int to the Compound Tag using a key.
+     * 
+     * @param key The key to store the int under.
+     * @param value The int value to store.
+     */
+    public void setInt (NBTKey key, int value) {
+        
+        this.setInt(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets an int to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the int under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The int value to store.
+     */
+    private void setInt (String name, Tag tag, int value) {
+        
+        if (tag instanceof IntTag && tag.isOnlyHeldBy(this))
+            ((IntTag) tag).setValue(value);
+            
+        else
+            this.put(name, new IntTag(name, value));
     }
     
     /**
@@ -203,18 +439,92 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public long getLong (String name) {
         
-        return this.value.containsKey(name) ? (long) this.value.get(name).getValue() : 0;
+        final Tag tag = this.find(name);
+        return tag != null ? ((LongTag) tag).getAsLong() : 0;
+    }
+    
+    /**
+     * Gets a long from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the long tag.
+     * @return long The stored long.
+     */
+    public long getLong (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((LongTag) tag).getAsLong() : 0;
+    }
+    
+    /**
+     * Gets a long from the Compound Tag. Any byte, short or int tag stored under the name is
+     * widened to a long. If no tag is found with the given name, 0 will be returned.
+     * 
+     * @param name The name of the tag.
+     * @return long The stored value, as a long.
+     * @throws ClassCastException If the tag can not be widened to a long.
+     */
+    public long getAsLong (String name) {
+        
+        final NumericTag tag = asNumber(this.find(name), LongTag.ID);
+        return tag != null ? tag.getAsLong() : 0;
+    }
+    
+    /**
+     * Gets a long from the Compound Tag using a key. Any byte, short or int tag stored under
+     * the name is widened to a long. If no tag is found with the name of the key, 0 will be
+     * returned.
+     * 
+     * @param key The key of the tag.
+     * @return long The stored value, as a long.
+     * @throws ClassCastException If the tag can not be widened to a long.
+     */
+    public long getAsLong (NBTKey key) {
+        
+        final NumericTag tag = asNumber(this.find(key), LongTag.ID);
+        return tag != null ? tag.getAsLong() : 0;
     }
     
     /**
      * Sets a long to the Compound Tag.
+     * If a long tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the long under.
      * @param value The long to store.
      */
     public void setLong (String name, long value) {
         
-        this.value.put(name, new LongTag(name, value));
+        this.setLong(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets a long to the Compound Tag using a key.
+     * 
+     * @param key The key to store the long under.
+     * @param value The long value to store.
+     */
+    public void setLong (NBTKey key, long value) {
+        
+        this.setLong(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets a long to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the long under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The long value to store.
+     */
+    private void setLong (String name, Tag tag, long value) {
+        
+        if (tag instanceof LongTag && tag.isOnlyHeldBy(this))
+            ((LongTag) tag).setValue(value);
+            
+        else
+            this.put(name, new LongTag(name, value));
     }
     
     /**
@@ -226,18 +536,92 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public float getFloat (String name) {
         
-        return this.value.containsKey(name) ? (float) this.value.get(name).getValue() : 0;
+        final Tag tag = this.find(name);
+        return tag != null ? ((FloatTag) tag).getAsFloat() : 0;
+    }
+    
+    /**
+     * Gets a float from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the float tag.
+     * @return float The stored float.
+     */
+    public float getFloat (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((FloatTag) tag).getAsFloat() : 0;
+    }
+    
+    /**
+     * Gets a float from the Compound Tag. Any byte, short, int or long tag stored under the
+     * name is widened to a float. If no tag is found with the given name, 0 will be returned.
+     * 
+     * @param name The name of the tag.
+     * @return float The stored value, as a float.
+     * @throws ClassCastException If the tag can not be widened to a float.
+     */
+    public float getAsFloat (String name) {
+        
+        final NumericTag tag = asNumber(this.find(name), FloatTag.ID);
+        return tag != null ? tag.getAsFloat() : 0;
+    }
+    
+    /**
+     * Gets a float from the Compound Tag using a key. Any byte, short, int or long tag stored
+     * under the name is widened to a float. If no tag is found with the name of the key, 0
+     * will be returned.
+     * 
+     * @param key The key of the tag.
+     * @return float The stored value, as a float.
+     * @throws ClassCastException If the tag can not be widened to a float.
+     */
+    public float getAsFloat (NBTKey key) {
+        
+        final NumericTag tag = asNumber(this.find(key), FloatTag.ID);
+        return tag != null ? tag.getAsFloat() : 0;
     }
     
     /**
      * Sets a float to the Compound Tag.
+     * If a float tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the float under.
      * @param value The float value to store.
      */
     public void setFloat (String name, float value) {
         
-        this.value.put(name, new FloatTag(name, value));
+        this.setFloat(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets a float to the Compound Tag using a key.
+     * 
+     * @param key The key to store the float under.
+     * @param value The float value to store.
+     */
+    public void setFloat (NBTKey key, float value) {
+        
+        this.setFloat(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets a float to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the float under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The float value to store.
+     */
+    private void setFloat (String name, Tag tag, float value) {
+        
+        if (tag instanceof FloatTag && tag.isOnlyHeldBy(this))
+            ((FloatTag) tag).setValue(value);
+            
+        else
+            this.put(name, new FloatTag(name, value));
     }
     
     /**
@@ -249,18 +633,93 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public double getDouble (String name) {
         
-        return this.value.containsKey(name) ? (double) this.value.get(name).getValue() : 0d;
+        final Tag tag = this.find(name);
+        return tag != null ? ((DoubleTag) tag).getAsDouble() : 0d;
+    }
+    
+    /**
+     * Gets a double from the Compound Tag using a key. If no tag is found with the name of the
+     * key, 0 will be returned.
+     * 
+     * @param key The key of the double tag.
+     * @return double The stored double.
+     */
+    public double getDouble (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? ((DoubleTag) tag).getAsDouble() : 0d;
+    }
+    
+    /**
+     * Gets a double from the Compound Tag. Any byte, short, int, long or float tag stored
+     * under the name is widened to a double. If no tag is found with the given name, 0d will
+     * be returned.
+     * 
+     * @param name The name of the tag.
+     * @return double The stored value, as a double.
+     * @throws ClassCastException If the tag can not be widened to a double.
+     */
+    public double getAsDouble (String name) {
+        
+        final NumericTag tag = asNumber(this.find(name), DoubleTag.ID);
+        return tag != null ? tag.getAsDouble() : 0d;
+    }
+    
+    /**
+     * Gets a double from the Compound Tag using a key. Any byte, short, int, long or float tag
+     * stored under the name is widened to a double. If no tag is found with the name of the
+     * key, 0d will be returned.
+     * 
+     * @param key The key of the tag.
+     * @return double The stored value, as a double.
+     * @throws ClassCastException If the tag can not be widened to a double.
+     */
+    public double getAsDouble (NBTKey key) {
+        
+        final NumericTag tag = asNumber(this.find(key), DoubleTag.ID);
+        return tag != null ? tag.getAsDouble() : 0d;
     }
     
     /**
      * Sets a double to the Compound Tag.
+     * If a double tag stored under the name is held only by this compound, its value is
+     * changed in place. Otherwise it is replaced by a new tag, so a tag which is shared with
+     * another compound or list is never changed.
      * 
      * @param name The name to store the double under.
      * @param value The double value to store.
      */
     public void setDouble (String name, double value) {
         
-        this.value.put(name, new DoubleTag(name, value));
+        this.setDouble(name, this.find(name), value);
+    }
+    
+    /**
+     * Sets a double to the Compound Tag using a key.
+     * 
+     * @param key The key to store the double under.
+     * @param value The double value to store.
+     */
+    public void setDouble (NBTKey key, double value) {
+        
+        this.setDouble(key.getName(), this.find(key), value);
+    }
+    
+    /**
+     * Sets a double to the Compound Tag, changing the stored tag in place if this compound is
+     * the only one which holds it.
+     * 
+     * @param name The name to store the double under.
+     * @param tag The tag which is stored under the name, or null if there is none.
+     * @param value The double value to store.
+     */
+    private void setDouble (String name, Tag tag, double value) {
+        
+        if (tag instanceof DoubleTag && tag.isOnlyHeldBy(this))
+            ((DoubleTag) tag).setValue(value);
+            
+        else
+            this.put(name, new DoubleTag(name, value));
     }
     
     /**
@@ -272,7 +731,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public byte[] getByteArray (String name) {
         
-        return this.value.containsKey(name) ? (byte[]) this.value.get(name).getValue() : new byte[0];
+        return this.value.containsKey(name) ? (byte[]) this.find(name).getValue() : new byte[0];
     }
     
     /**
@@ -283,7 +742,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setByteArray (String name, byte[] value) {
         
-        this.value.put(name, new ByteArrayTag(name, value));
+        this.put(name, new ByteArrayTag(name, value));
     }
     
     /**
@@ -295,7 +754,20 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public String getString (String name) {
         
-        return this.value.containsKey(name) ? (String) this.value.get(name).getValue() : "";
+        return this.value.containsKey(name) ? (String) this.find(name).getValue() : "";
+    }
+    
+    /**
+     * Gets a String from the Compound Tag using a key. If no tag is found with the name of the
+     * key, an empty string will be returned.
+     * 
+     * @param key The key of the String tag.
+     * @return String The stored String.
+     */
+    public String getString (NBTKey key) {
+        
+        final Tag tag = this.find(key);
+        return tag != null ? (String) tag.getValue() : "";
     }
     
     /**
@@ -306,7 +778,18 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setString (String name, String value) {
         
-        this.value.put(name, new StringTag(name, value));
+        this.put(name, new StringTag(name, value));
+    }
+    
+    /**
+     * Sets a String to the Compound Tag using a key.
+     * 
+     * @param key The key to store the String under.
+     * @param value The String value to store.
+     */
+    public void setString (NBTKey key, String value) {
+        
+        this.setString(key.getName(), value);
     }
     
     /**
@@ -319,7 +802,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
     
     public List<Tag> getTagList (String name) {
         
-        return this.value.containsKey(name) ? (List<Tag>) this.value.get(name).getValue() : new ArrayList<Tag>();
+        return this.value.containsKey(name) ? (List<Tag>) this.find(name).getValue() : new ArrayList<Tag>();
     }
     
     /**
@@ -330,7 +813,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setTagList (String name, List<Tag> value) {
         
-        this.value.put(name, new ListTag(name, value));
+        this.put(name, new ListTag(name, value));
     }
     
     /**
@@ -342,7 +825,19 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public CompoundTag getCompoundTag (String name) {
         
-        return this.value.containsKey(name) ? (CompoundTag) this.value.get(name) : null;
+        return this.value.containsKey(name) ? (CompoundTag) this.find(name) : null;
+    }
+    
+    /**
+     * Gets a CompoundTag from the CompoundTag using a key. If no CompoundTag is found with the
+     * name of the key, null will be returned.
+     * 
+     * @param key The key of the CompoundTag tag.
+     * @return CompoundTag The stored CompoundTag.
+     */
+    public CompoundTag getCompoundTag (NBTKey key) {
+        
+        return (CompoundTag) this.find(key);
     }
     
     /**
@@ -353,7 +848,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setCompoundTag (String name, CompoundTag value) {
         
-        this.value.put(name, value);
+        this.put(name, value);
     }
     
     /**
@@ -365,7 +860,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public int[] getIntArray (String name) {
         
-        return this.value.containsKey(name) ? (int[]) this.value.get(name).getValue() : new int[0];
+        return this.value.containsKey(name) ? (int[]) this.find(name).getValue() : new int[0];
     }
     
     /**
@@ -376,7 +871,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setIntArray (String name, int[] value) {
         
-        this.value.put(name, new IntArrayTag(name, value));
+        this.put(name, new IntArrayTag(name, value));
     }
     
     /**
@@ -388,7 +883,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public double[] getDoubleArray (String name) {
         
-        return this.value.containsKey(name) ? (double[]) this.value.get(name).getValue() : new double[0];
+        return this.value.containsKey(name) ? (double[]) this.find(name).getValue() : new double[0];
     }
     
     /**
@@ -399,7 +894,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setDoubleArray (String name, double[] value) {
         
-        this.value.put(name, new DoubleArrayTag(name, value));
+        this.put(name, new DoubleArrayTag(name, value));
     }
     
     /**
@@ -411,7 +906,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public float[] getFloatArray (String name) {
         
-        return this.value.containsKey(name) ? (float[]) this.value.get(name).getValue() : new float[0];
+        return this.value.containsKey(name) ? (float[]) this.find(name).getValue() : new float[0];
     }
     
     /**
@@ -422,7 +917,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setFloatArray (String name, float[] value) {
         
-        this.value.put(name, new FloatArrayTag(name, value));
+        this.put(name, new FloatArrayTag(name, value));
     }
     
     /**
@@ -434,7 +929,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public long[] getLongArray (String name) {
         
-        return this.value.containsKey(name) ? (long[]) this.value.get(name).getValue() : new long[0];
+        return this.value.containsKey(name) ? (long[]) this.find(name).getValue() : new long[0];
     }
     
     /**
@@ -445,7 +940,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setLongArray (String name, long[] value) {
         
-        this.value.put(name, new LongArrayTag(name, value));
+        this.put(name, new LongArrayTag(name, value));
     }
     
     /**
@@ -457,7 +952,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public Serializable[] getSerializableArray (String name) {
         
-        return this.value.containsKey(name) ? (Serializable[]) this.value.get(name).getValue() : new Serializable[0];
+        return this.value.containsKey(name) ? (Serializable[]) this.find(name).getValue() : new Serializable[0];
     }
     
     /**
@@ -468,7 +963,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setSerializableArray (String name, Serializable[] value) {
         
-        this.value.put(name, new SerializableArrayTag(name, value));
+        this.put(name, new SerializableArrayTag(name, value));
     }
     
     /**
@@ -480,7 +975,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public Serializable getSerializable (String name) {
         
-        return this.value.containsKey(name) ? (Serializable) this.value.get(name) : null;
+        return this.value.containsKey(name) ? (Serializable) this.find(name) : null;
     }
     
     /**
@@ -491,7 +986,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setSerializableTag (String name, Serializable value) {
         
-        this.value.put(name, new SerializableTag(name, value));
+        this.put(name, new SerializableTag(name, value));
     }
     
     /**
@@ -503,7 +998,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public short[] getShortArray (String name) {
         
-        return this.value.containsKey(name) ? (short[]) this.value.get(name).getValue() : new short[0];
+        return this.value.containsKey(name) ? (short[]) this.find(name).getValue() : new short[0];
     }
     
     /**
@@ -514,7 +1009,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setShortArray (String name, short[] value) {
         
-        this.value.put(name, new ShortArrayTag(name, value));
+        this.put(name, new ShortArrayTag(name, value));
     }
     
     /**
@@ -526,7 +1021,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public String[] getStringArray (String name) {
         
-        return this.value.containsKey(name) ? (String[]) this.value.get(name).getValue() : new String[0];
+        return this.value.containsKey(name) ? (String[]) this.find(name).getValue() : new String[0];
     }
     
     /**
@@ -537,7 +1032,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void setStringArray (String name, String[] value) {
         
-        this.value.put(name, new StringArrayTag(name, value));
+        this.put(name, new StringArrayTag(name, value));
     }
     
     /**
@@ -575,7 +1070,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public boolean[] getBooleanArray (String name) {
         
-        final byte[] bytes = this.value.containsKey(name) ? (byte[]) this.value.get(name).getValue() : new byte[0];
+        final byte[] bytes = this.value.containsKey(name) ? (byte[]) this.find(name).getValue() : new byte[0];
         final boolean[] booleans = new boolean[bytes.length];
         
         for (int index = 0; index < bytes.length; index++)
@@ -597,7 +1092,7 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
         for (int index = 0; index < value.length; index++)
             bytes[index] = (byte) (value[index] ? 1 : 0);
             
-        this.value.put(name, new ByteArrayTag(name, bytes));
+        this.put(name, new ByteArrayTag(name, bytes));
     }
     
     /**
@@ -608,26 +1103,87 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public <T extends Tag> T removeTag (String tagName) {
         
-        return (T) this.value.remove(tagName);
+        this.checkMutable();
+        return (T) LazyTag.resolve(this.value.remove(tagName));
+    }
+    
+    /**
+     * Removes a tag from this compound tag using a key.
+     *
+     * @param key The key of the tag to remove.
+     * @return Tag The removed tag.
+     */
+    public <T extends Tag> T removeTag (NBTKey key) {
+        
+        this.checkMutable();
+        return (T) LazyTag.resolve(this.value.remove(key.getName(), key.hashCode()));
+    }
+    
+    /**
+     * Creates a frozen copy of this compound tag with a tag put into it, replacing any tag with
+     * the same name. This tag is frozen first if it is not already. The copy holds the same
+     * child tags as this one rather than copies of them, but it still copies the table which
+     * holds them, so each call takes time and memory in proportion to the amount of children.
+     * This can be used to build a new version of a frozen tree, by replacing each compound tag
+     * along the path to the changed tag. Compounds with many children which change often are
+     * better built while mutable, and frozen once they are complete.
+     *
+     * @param tag The tag to put into the copy, which is frozen as well.
+     * @return CompoundTag The new compound tag.
+     */
+    public CompoundTag with (Tag tag) {
+        
+        this.freeze();
+        final CompoundTag copy = new CompoundTag(this.getName(), this.value);
+        copy.value.put(tag.getName(), tag.freeze());
+        return copy.freeze();
+    }
+    
+    /**
+     * Creates a frozen copy of this compound tag with a tag removed from it. This tag is frozen
+     * first if it is not already. Like {@link #with(Tag)}, the copy holds the same child tags,
+     * but copies the table which holds them.
+     *
+     * @param tagName The name of the tag to leave out of the copy.
+     * @return CompoundTag The new compound tag, or this tag if it has no tag with that name.
+     */
+    public CompoundTag without (String tagName) {
+        
+        this.freeze();
+        
+        if (!this.value.containsKey(tagName))
+            return this;
+            
+        final CompoundTag copy = new CompoundTag(this.getName(), this.value);
+        copy.value.remove(tagName);
+        return copy.freeze();
     }
     
     /**
-     * Gets a set of keys in this compound tag.
+     * Gets a set of keys in this compound tag. Tags can be removed through the set.
      *
      * @return Set<String> The compound tag's key set.
      */
     public Set<String> keySet () {
         
+        if (this.isFrozen())
+            return Collections.unmodifiableSet(this.value.keySet());
+            
         return this.value.keySet();
     }
     
     /**
-     * Gets a collection of tags in this compound tag.
+     * Gets a collection of tags in this compound tag. Tags can be removed through the
+     * collection.
      *
      * @return Collection<Tag> This compound tag's tags.
      */
     public Collection<Tag> values () {
         
+        if (this.isFrozen())
+            return Collections.unmodifiableCollection(this.value.values());
+            
+        this.decodeAll();
         return this.value.values();
     }
     
@@ -646,7 +1202,9 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
      */
     public void clear () {
         
+        this.checkMutable();
         this.value.clear();
+        this.lazy = false;
     }
     
     @Override
@@ -656,8 +1214,9 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         final List<Tag> tags = new ArrayList<Tag>();
         
         try {
@@ -675,21 +1234,171 @@ public class CompoundTag extends Tag implements Iterable<Tag> {
         tags.forEach(tag -> this.setTag(tag));
     }
     
+    /**
+     * Reads the payload of this tag lazily from a section of a byte array. Rather than
+     * decoding every child up front, only the location of each child is recorded, and a child
+     * is decoded the first time it is accessed. Children which are never accessed are written
+     * back out by copying their original bytes. The array is retained by this tag until every
+     * child has been decoded, and must not be modified.
+     *
+     * @param source The array to read from.
+     * @param offset The index of the first byte of the payload.
+     * @param length The maximum amount of bytes which can be read.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    public void readLazy (byte[] source, int offset, int length) throws IOException {
+        
+        this.checkMutable();
+        final NBTReader in = new NBTReader(source, offset, length);
+        final boolean empty = this.value.isEmpty();
+        
+        try {
+            
+            for (int id = in.readUnsignedByte(); id != 0; id = in.readUnsignedByte()) {
+                
+                final Tag tag = LazyTag.read(in, source, id);
+                this.put(tag.getName(), tag);
+                this.lazy |= tag instanceof LazyTag;
+            }
+            
+            // The containers of a lazy tag cached its size before it was decoded, so this tag
+            // must start with a cached size too, or its first change would not reach them.
+            if (empty)
+                this.cachedSize = in.getPosition() - offset;
+        }
+        
+        catch (final EOFException e) {
+            
+            throw new IOException("Closing EndTag was not found!");
+        }
+    }
+    
+    /**
+     * Puts a tag into the map. The map clears the cached size of this tag and its containers.
+     *
+     * @param tagName The name to put the tag under.
+     * @param tag The tag to put.
+     * @return Tag The previous tag with that name, or null if there wasn't one.
+     */
+    private Tag put (String tagName, Tag tag) {
+        
+        this.checkMutable();
+        return this.value.put(tagName, tag);
+    }
+    
+    /**
+     * Gets a child tag, decoding it first if it was read lazily.
+     *
+     * @param tagName The name of the tag.
+     * @return Tag The tag with the specified name, or null if there is no such tag.
+     */
+    private Tag find (String tagName) {
+        
+        return this.lazy ? this.value.getDecoded(tagName) : this.value.get(tagName);
+    }
+    
+    /**
+     * Gets a child tag using a key, decoding it first if it was read lazily. The key is
+     * looked up with the hash it computed when it was created.
+     *
+     * @param key The key of the tag.
+     * @return Tag The tag with the name of the key, or null if there is no such tag.
+     */
+    private Tag find (NBTKey key) {
+        
+        return this.lazy ? this.value.getDecoded(key.getName(), key.hashCode()) : this.value.get(key.getName(), key.hashCode());
+    }
+    
+    /**
+     * Checks that a child tag holds a number which can be widened to a type.
+     *
+     * @param tag The child tag, or null if there is none.
+     * @param widest The ID of the type to widen to. Byte, short, int, long, float and double
+     *        tags have increasing IDs, so every number tag with an ID up to this one can be
+     *        widened to it without a cast.
+     * @return NumericTag The tag, or null if there is no tag.
+     * @throws ClassCastException If the tag is not a number tag which can be widened.
+     */
+    private static NumericTag asNumber (Tag tag, int widest) {
+        
+        if (tag == null)
+            return null;
+            
+        final int id = TagRegistry.getIdFor(tag.getClass());
+        
+        if (!(tag instanceof NumericTag) || id < ByteTag.ID || id > widest)
+            throw new ClassCastException(tag.getClass().getName() + " can not be widened to " + TagRegistry.getClassFor(widest).getName());
+            
+        return (NumericTag) tag;
+    }
+    
+    /**
+     * Decodes every child which was read lazily.
+     */
+    private void decodeAll () {
+        
+        if (this.lazy) {
+            
+            this.value.decodeAll();
+            this.lazy = false;
+        }
+    }
+    
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         for (final Tag tag : this.value.values())
-            NBTHelper.writeTag(out, tag);
+            LazyTag.write(out, tag);
             
         out.writeByte(0);
     }
     
     @Override
-    public CompoundTag clone () {
+    public int payloadSize () {
         
-        final Map<String, Tag> newMap = new LinkedHashMap<String, Tag>();
-        this.value.entrySet().forEach(entry -> newMap.put(entry.getKey(), entry.getValue().clone()));
+        final int cached = this.cachedSize;
+        
+        if (cached != -1)
+            return cached;
+            
+        int size = 1;
+        
+        for (final Tag tag : this.value.values())
+            size += tag.serializedSize();
+            
+        this.cachedSize = size;
+        return size;
+    }
+    
+    @Override
+    protected boolean clearCachedSize () {
+        
+        if (this.cachedSize == -1)
+            return false;
+            
+        this.cachedSize = -1;
+        return true;
+    }
+    
+    @Override
+    public CompoundTag freeze () {
+        
+        if (!this.isFrozen()) {
+            
+            this.decodeAll();
+            this.value.forEach((name, tag) -> tag.freeze());
+            super.freeze();
+        }
+        
+        return this;
+    }
+    
+    @Override
+    public CompoundTag clone () {
         
-        return new CompoundTag(this.getName(), newMap);
+        final CompoundTag copy = new CompoundTag(this.getName(), this.value);
+        copy.value.replaceAll((name, tag) -> tag.clone());
+        copy.lazy = this.lazy;
+        return copy;
     }
 }
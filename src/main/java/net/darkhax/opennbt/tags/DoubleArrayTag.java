@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A tag for holding an array of double values.
  */
 public class DoubleArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 60;
+    
     private double[] value;
     
     /**
@@ -46,10 +52,13 @@ public class DoubleArrayTag extends Tag {
      */
     public void setValue (double[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -71,6 +80,7 @@ public class DoubleArrayTag extends Tag {
      */
     public void setValue (int index, double value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -85,21 +95,25 @@ public class DoubleArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new double[in.readInt()];
-        
-        for (int index = 0; index < this.value.length; index++)
-            this.value[index] = in.readDouble();
+        this.markModified();
+        in.readDoubles(this.value, 0, this.value.length);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
+        out.writeDoubles(this.value, 0, this.value.length);
+    }
+    
+    @Override
+    public int payloadSize () {
         
-        for (final double element : this.value)
-            out.writeDouble(element);
+        return 4 + this.value.length * 8;
     }
     
     @Override
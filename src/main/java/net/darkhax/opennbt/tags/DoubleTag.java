@@ -1,13 +1,19 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A tag for holding a doubel value.
  */
-public class DoubleTag extends Tag {
+public class DoubleTag extends Tag implements NumericTag {
+    
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 6;
     
     /**
      * The double value held by the tag.
@@ -49,24 +55,68 @@ public class DoubleTag extends Tag {
      */
     public void setValue (double value) {
         
+        this.checkMutable();
         this.value = value;
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public byte getAsByte () {
         
+        return (byte) this.value;
+    }
+    
+    @Override
+    public short getAsShort () {
+        
+        return (short) this.value;
+    }
+    
+    @Override
+    public int getAsInt () {
+        
+        return (int) this.value;
+    }
+    
+    @Override
+    public long getAsLong () {
+        
+        return (long) this.value;
+    }
+    
+    @Override
+    public float getAsFloat () {
+        
+        return (float) this.value;
+    }
+    
+    @Override
+    public double getAsDouble () {
+        
+        return this.value;
+    }
+    
+    @Override
+    public void read (NBTReader in) throws IOException {
+        
+        this.checkMutable();
         this.value = in.readDouble();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeDouble(this.value);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        return 8;
+    }
+    
     @Override
     public DoubleTag clone () {
         
-        return new DoubleTag(this.getName(), this.getValue());
+        return new DoubleTag(this.getName(), this.value);
     }
 }
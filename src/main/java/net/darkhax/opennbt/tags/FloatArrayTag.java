@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A tag for holding a float array.
  */
 public class FloatArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 61;
+    
     /**
      * The float array held by the tag.
      */
@@ -49,10 +55,13 @@ public class FloatArrayTag extends Tag {
      */
     public void setValue (float[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -74,6 +83,7 @@ public class FloatArrayTag extends Tag {
      */
     public void setValue (int index, float value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -88,21 +98,25 @@ public class FloatArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new float[in.readInt()];
-        
-        for (int index = 0; index < this.value.length; index++)
-            this.value[index] = in.readFloat();
+        this.markModified();
+        in.readFloats(this.value, 0, this.value.length);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
+        out.writeFloats(this.value, 0, this.value.length);
+    }
+    
+    @Override
+    public int payloadSize () {
         
-        for (final float element : this.value)
-            out.writeFloat(element);
+        return 4 + this.value.length * 4;
     }
     
     @Override
@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A tag for holding an integer array.
  */
 public class IntArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 11;
+    
     /**
      * The int array value held by the tag.
      */
@@ -49,10 +55,13 @@ public class IntArrayTag extends Tag {
      */
     public void setValue (int[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -74,6 +83,7 @@ public class IntArrayTag extends Tag {
      */
     public void setValue (int index, int value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -88,21 +98,25 @@ public class IntArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new int[in.readInt()];
-        
-        for (int index = 0; index < this.value.length; index++)
-            this.value[index] = in.readInt();
+        this.markModified();
+        in.readInts(this.value, 0, this.value.length);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
+        out.writeInts(this.value, 0, this.value.length);
+    }
+    
+    @Override
+    public int payloadSize () {
         
-        for (final int element : this.value)
-            out.writeInt(element);
+        return 4 + this.value.length * 4;
     }
     
     @Override
@@ -0,0 +1,231 @@
+package net.darkhax.opennbt.tags;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.io.ClassDescriptorTable;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
+/**
+ * A placeholder for a tag which has not been decoded yet. Lazily read compound and list tags
+ * hold these in place of their children, and swap them out for the real tag the first time
+ * the child is accessed. Until then, the placeholder only records where the child is found
+ * in the source array, and writes those bytes back out verbatim.
+ *
+ * Placeholders are never seen outside of their compound or list tag, which resolve them
+ * before handing out any child. The class is not visible outside of this package, and can
+ * not be registered with the {@link TagRegistry}, so the registry never creates one and
+ * nothing ever reads into one.
+ */
+final class LazyTag extends Tag {
+    
+    /**
+     * The ID of the tag being held.
+     */
+    private final int id;
+    
+    /**
+     * The array which the tag is decoded from. This must never be modified.
+     */
+    private final byte[] source;
+    
+    /**
+     * The index of the first byte of the tag, which is its ID.
+     */
+    private final int start;
+    
+    /**
+     * The index of the first byte of the tag payload.
+     */
+    private final int payload;
+    
+    /**
+     * The index after the last byte of the tag.
+     */
+    private final int end;
+    
+    /**
+     * Creates a new placeholder for a tag.
+     *
+     * @param name The name of the tag.
+     * @param id The ID of the tag.
+     * @param source The array which the tag is decoded from.
+     * @param start The index of the first byte of the tag.
+     * @param payload The index of the first byte of the tag payload.
+     * @param end The index after the last byte of the tag.
+     */
+    private LazyTag(String name, int id, byte[] source, int start, int payload, int end) {
+        
+        super(name);
+        this.id = id;
+        this.source = source;
+        this.start = start;
+        this.payload = payload;
+        this.end = end;
+    }
+    
+    /**
+     * Reads the next tag from an array backed reader, after its ID has been read. Tags with a
+     * small fixed size are decoded straight away, as a placeholder would not be any cheaper.
+     * All other tags are skipped over, and a placeholder is returned in their place. Tags
+     * which hold Java serialized values are decoded in full instead, as those values refer to
+     * class descriptors defined elsewhere in the document, so their bytes can not be copied
+     * into another document.
+     *
+     * @param in The reader to read from. This must read from the source array.
+     * @param source The array which the reader is reading from.
+     * @param id The ID of the tag, which has already been read.
+     * @return Tag The decoded tag, or a placeholder for it.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    static Tag read (NBTReader in, byte[] source, int id) throws IOException {
+        
+        final int start = in.getPosition() - 1;
+        final String name = in.readName();
+        
+        if (id >= ByteTag.ID && id <= DoubleTag.ID) {
+            
+            final Tag tag = create(id, name);
+            tag.read(in);
+            return tag;
+        }
+        
+        final int payload = in.getPosition();
+        final ClassDescriptorTable table = in.getClassDescriptors();
+        final int values = table.getValueCount();
+        in.skipPayload(id);
+        
+        if (table.getValueCount() != values) {
+            
+            final NBTReader reader = new NBTReader(source, payload, in.getPosition() - payload);
+            reader.setNameTable(in.getNameTable());
+            reader.setClassDescriptors(table);
+            final Tag tag = create(id, name);
+            tag.read(reader);
+            return tag;
+        }
+        
+        return new LazyTag(name, id, source, start, payload, in.getPosition());
+    }
+    
+    /**
+     * Writes a tag in the same way as {@link NBTHelper#writeTag(NBTWriter, Tag)}, except that
+     * placeholders are written by copying their original bytes.
+     *
+     * @param out The writer to write to.
+     * @param tag The tag to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void write (NBTWriter out, Tag tag) throws IOException {
+        
+        if (tag instanceof LazyTag) {
+            
+            final LazyTag lazy = (LazyTag) tag;
+            out.write(lazy.source, lazy.start, lazy.end - lazy.start);
+        }
+        
+        else
+            NBTHelper.writeTag(out, tag);
+    }
+    
+    /**
+     * Gets the real tag for a tag which may be a placeholder.
+     *
+     * @param tag The tag to resolve.
+     * @return Tag The decoded tag, or the given tag if it is not a placeholder.
+     */
+    static Tag resolve (Tag tag) {
+        
+        return tag instanceof LazyTag ? ((LazyTag) tag).decode() : tag;
+    }
+    
+    /**
+     * Decodes the tag being held. Compound and list tags are decoded lazily as well, so only
+     * their direct children are looked at.
+     *
+     * @return Tag The decoded tag.
+     */
+    Tag decode () {
+        
+        try {
+            
+            final Tag tag = create(this.id, this.getName());
+            
+            if (tag instanceof CompoundTag)
+                ((CompoundTag) tag).readLazy(this.source, this.payload, this.end - this.payload);
+                
+            else if (tag instanceof ListTag)
+                ((ListTag) tag).readLazy(this.source, this.payload, this.end - this.payload);
+                
+            else
+                tag.read(new NBTReader(this.source, this.payload, this.end - this.payload));
+                
+            return tag;
+        }
+        
+        catch (final IOException e) {
+            
+            throw new UncheckedIOException("Failed to decode lazy tag " + this.getName(), e);
+        }
+    }
+    
+    /**
+     * Creates an empty tag using the tag registry.
+     *
+     * @param id The ID of the tag.
+     * @param name The name of the tag.
+     * @return Tag The new tag.
+     * @throws IOException If the tag could not be created.
+     */
+    private static Tag create (int id, String name) throws IOException {
+        
+        try {
+            
+            return TagRegistry.createInstance(id, name);
+        }
+        
+        catch (final TagCreateException e) {
+            
+            throw new IOException("Failed to create tag.", e);
+        }
+    }
+    
+    @Override
+    public Object getValue () {
+        
+        return this.decode().getValue();
+    }
+    
+    @Override
+    public void read (NBTReader in) throws IOException {
+        
+        // Placeholders are never created by the registry, so nothing generic can reach this.
+        throw new IllegalStateException("Tag " + this.getName() + " is a placeholder for a lazily read tag, and can not be read into.");
+    }
+    
+    @Override
+    public void write (NBTWriter out) throws IOException {
+        
+        out.write(this.source, this.payload, this.end - this.payload);
+    }
+    
+    @Override
+    public int serializedSize () {
+        
+        return this.end - this.start;
+    }
+    
+    @Override
+    public int payloadSize () {
+        
+        return this.end - this.payload;
+    }
+    
+    @Override
+    public Tag clone () {
+        
+        return this;
+    }
+}
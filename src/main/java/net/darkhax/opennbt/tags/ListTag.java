@@ -1,19 +1,25 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
 
 /**
  * A Tag for holding a List of other tags.
  */
 public class ListTag extends Tag implements Iterable<Tag> {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 9;
+    
     /**
      * The type of tag held by the tag.
      */
@@ -24,12 +30,23 @@ public class ListTag extends Tag implements Iterable<Tag> {
      */
     private List<Tag> value;
     
+    /**
+     * Whether or not the list may contain elements which have not been decoded yet.
+     */
+    private boolean lazy;
+    
+    /**
+     * The size of the payload when it was last computed, or -1 if it has not been computed
+     * since the tag or one of its elements last changed.
+     */
+    private int cachedSize = -1;
+    
     /**
      * Creates a tag with the specified name.
      *
      * @param name The name of the tag.
      */
-    private ListTag(String name) {
+    ListTag(String name) {
         super(name);
     }
     
@@ -74,12 +91,14 @@ public class ListTag extends Tag implements Iterable<Tag> {
         
         this.type = type;
         this.value = new ArrayList<Tag>(value);
+        this.value.forEach(tag -> tag.addParent(this));
     }
     
     @Override
     public List<Tag> getValue () {
         
-        return new ArrayList<Tag>(this.value);
+        this.decodeAll();
+        return this.isFrozen() ? Collections.unmodifiableList(this.value) : new ArrayList<Tag>(this.value);
     }
     
     /**
@@ -89,11 +108,17 @@ public class ListTag extends Tag implements Iterable<Tag> {
      */
     public void setValue (List<Tag> value) {
         
+        this.checkMutable();
+        
         for (final Tag tag : value)
             if (tag.getClass() != this.type)
                 throw new IllegalArgumentException("Tag type cannot differ from ListTag type.");
                 
+        this.releaseAll();
         this.value = new ArrayList<Tag>(value);
+        this.value.forEach(tag -> tag.addParent(this));
+        this.lazy = false;
+        this.markModified();
     }
     
     /**
@@ -114,10 +139,15 @@ public class ListTag extends Tag implements Iterable<Tag> {
      */
     public boolean add (Tag tag) {
         
+        this.checkMutable();
+        
         if (tag.getClass() != this.type)
             throw new IllegalArgumentException("Tag type cannot differ from ListTag type.");
             
-        return this.value.add(tag);
+        this.value.add(tag);
+        tag.addParent(this);
+        this.markModified();
+        return true;
     }
     
     /**
@@ -128,7 +158,16 @@ public class ListTag extends Tag implements Iterable<Tag> {
      */
     public boolean remove (Tag tag) {
         
-        return this.value.remove(tag);
+        this.checkMutable();
+        this.decodeAll();
+        final int index = this.value.indexOf(tag);
+        
+        if (index == -1)
+            return false;
+            
+        this.value.remove(index).removeParent(this);
+        this.markModified();
+        return true;
     }
     
     /**
@@ -140,7 +179,7 @@ public class ListTag extends Tag implements Iterable<Tag> {
     @SuppressWarnings("unchecked")
     public <T extends Tag> T get (int index) {
         
-        return (T) this.value.get(index);
+        return (T) (this.lazy ? this.decodeAt(index) : this.value.get(index));
     }
     
     /**
@@ -156,15 +195,22 @@ public class ListTag extends Tag implements Iterable<Tag> {
     @Override
     public Iterator<Tag> iterator () {
         
-        return this.value.iterator();
+        if (this.isFrozen())
+            return Collections.unmodifiableList(this.value).iterator();
+            
+        this.decodeAll();
+        return new ElementIterator(this.value.iterator());
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         final int id = in.readUnsignedByte();
         this.type = TagRegistry.getClassFor(id);
+        this.releaseAll();
         this.value = new ArrayList<Tag>();
+        this.markModified();
         
         if (id != 0 && this.type == null)
             throw new IOException("Unknown tag ID in ListTag " + id);
@@ -175,8 +221,99 @@ public class ListTag extends Tag implements Iterable<Tag> {
             this.add(NBTHelper.readTag(in));
     }
     
+    /**
+     * Reads the payload of this tag lazily from a section of a byte array. Rather than
+     * decoding every element up front, only the location of each element is recorded, and an
+     * element is decoded the first time it is accessed. Elements which are never accessed are
+     * written back out by copying their original bytes. The array is retained by this tag
+     * until every element has been decoded, and must not be modified.
+     *
+     * @param source The array to read from.
+     * @param offset The index of the first byte of the payload.
+     * @param length The maximum amount of bytes which can be read.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    public void readLazy (byte[] source, int offset, int length) throws IOException {
+        
+        this.checkMutable();
+        final NBTReader in = new NBTReader(source, offset, length);
+        final int id = in.readUnsignedByte();
+        this.type = TagRegistry.getClassFor(id);
+        this.releaseAll();
+        this.value = new ArrayList<Tag>();
+        this.lazy = false;
+        this.markModified();
+        
+        if (id != 0 && this.type == null)
+            throw new IOException("Unknown tag ID in ListTag " + id);
+            
+        final int count = in.readInt();
+        
+        for (int index = 0; index < count; index++) {
+            
+            final int elementId = in.readUnsignedByte();
+            
+            if (elementId != id)
+                throw new IOException("Tag type cannot differ from ListTag type.");
+                
+            final Tag tag = LazyTag.read(in, source, elementId);
+            this.value.add(tag);
+            tag.addParent(this);
+            this.lazy |= tag instanceof LazyTag;
+        }
+        
+        // The containers of a lazy tag cached its size before it was decoded, so this tag must
+        // start with a cached size too, or its first change would not reach them.
+        this.cachedSize = in.getPosition() - offset;
+    }
+    
+    /**
+     * Decodes every element which was read lazily.
+     */
+    private void decodeAll () {
+        
+        if (this.lazy) {
+            
+            for (int index = 0; index < this.value.size(); index++)
+                this.decodeAt(index);
+                
+            this.lazy = false;
+        }
+    }
+    
+    /**
+     * Gets the element at an index, decoding it first if it was read lazily. Decoding an
+     * element does not change its size, so the cached size of this tag is kept.
+     *
+     * @param index The index of the element.
+     * @return Tag The decoded element.
+     */
+    private Tag decodeAt (int index) {
+        
+        final Tag tag = this.value.get(index);
+        
+        if (!(tag instanceof LazyTag))
+            return tag;
+            
+        final Tag decoded = ((LazyTag) tag).decode();
+        this.value.set(index, decoded);
+        tag.removeParent(this);
+        decoded.addParent(this);
+        return decoded;
+    }
+    
+    /**
+     * Records that this tag no longer holds any of its current elements.
+     */
+    private void releaseAll () {
+        
+        if (this.value != null)
+            for (final Tag tag : this.value)
+                tag.removeParent(this);
+    }
+    
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         if (this.value.isEmpty())
             out.writeByte(0);
@@ -192,14 +329,175 @@ public class ListTag extends Tag implements Iterable<Tag> {
         }
         
         out.writeInt(this.value.size());
-        this.value.forEach(tag -> NBTHelper.writeTagThrowless(out, tag));
+        
+        for (final Tag tag : this.value)
+            LazyTag.write(out, tag);
+    }
+    
+    @Override
+    public int payloadSize () {
+        
+        final int cached = this.cachedSize;
+        
+        if (cached != -1)
+            return cached;
+            
+        int size = 5;
+        
+        for (final Tag tag : this.value)
+            size += tag.serializedSize();
+            
+        this.cachedSize = size;
+        return size;
+    }
+    
+    @Override
+    protected boolean clearCachedSize () {
+        
+        if (this.cachedSize == -1)
+            return false;
+            
+        this.cachedSize = -1;
+        return true;
+    }
+    
+    @Override
+    public ListTag freeze () {
+        
+        if (!this.isFrozen()) {
+            
+            this.decodeAll();
+            this.value.forEach(Tag::freeze);
+            super.freeze();
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Creates a frozen copy of this list tag with the element at an index replaced. This tag is
+     * frozen first if it is not already. The copy holds the same elements as this one rather
+     * than copies of them, but it still copies the list which holds them, so each call takes
+     * time and memory in proportion to the size of the list. Lists which change often are
+     * better built while mutable, and frozen once they are complete.
+     *
+     * @param index The index of the element to replace.
+     * @param tag The new element, which is frozen as well.
+     * @return ListTag The new list tag.
+     * @throws IllegalArgumentException If the tag is not of the element type of the list.
+     */
+    public ListTag with (int index, Tag tag) {
+        
+        final ListTag copy = this.frozenCopy(tag);
+        copy.value.set(index, tag.freeze());
+        return copy.freeze();
+    }
+    
+    /**
+     * Creates a frozen copy of this list tag with an element added to the end. This tag is
+     * frozen first if it is not already. Like {@link #with(int, Tag)}, the copy holds the same
+     * elements, but copies the list which holds them.
+     *
+     * @param tag The element to add, which is frozen as well.
+     * @return ListTag The new list tag.
+     * @throws IllegalArgumentException If the tag is not of the element type of the list.
+     */
+    public ListTag withAdded (Tag tag) {
+        
+        final ListTag copy = this.frozenCopy(tag);
+        copy.value.add(tag.freeze());
+        return copy.freeze();
+    }
+    
+    /**
+     * Creates a frozen copy of this list tag with the element at an index removed. This tag is
+     * frozen first if it is not already. Like {@link #with(int, Tag)}, the copy holds the same
+     * elements, but copies the list which holds them.
+     *
+     * @param index The index of the element to remove.
+     * @return ListTag The new list tag.
+     */
+    public ListTag without (int index) {
+        
+        final ListTag copy = this.frozenCopy(null);
+        copy.value.remove(index);
+        return copy.freeze();
+    }
+    
+    /**
+     * Freezes this list tag, and creates an unfrozen copy of it which holds the same elements.
+     *
+     * @param tag The tag which will be put into the copy, or null if no tag will be.
+     * @return ListTag The new list tag.
+     * @throws IllegalArgumentException If the tag is not of the element type of the list.
+     */
+    private ListTag frozenCopy (Tag tag) {
+        
+        if (tag != null && this.type != null && tag.getClass() != this.type)
+            throw new IllegalArgumentException("Tag type cannot differ from ListTag type.");
+            
+        this.freeze();
+        final ListTag copy = new ListTag(this.getName(), tag != null && this.type == null ? tag.getClass() : this.type);
+        copy.value.addAll(this.value);
+        return copy;
     }
     
     @Override
     public ListTag clone () {
         
+        this.decodeAll();
         final List<Tag> newList = new ArrayList<Tag>();
         this.value.forEach(value -> newList.add(value));
         return new ListTag(this.getName(), newList);
     }
-}
\ No newline at end of file
+    
+    /**
+     * An iterator over the elements of a mutable list tag. Elements removed through it are no
+     * longer held by the tag, and clear its cached size.
+     */
+    private class ElementIterator implements Iterator<Tag> {
+        
+        /**
+         * The iterator over the backing list.
+         */
+        private final Iterator<Tag> iterator;
+        
+        /**
+         * The element which was last returned, or null if there is none.
+         */
+        private Tag last;
+        
+        /**
+         * Creates a new iterator.
+         *
+         * @param iterator The iterator over the backing list.
+         */
+        private ElementIterator(Iterator<Tag> iterator) {
+            
+            this.iterator = iterator;
+        }
+        
+        @Override
+        public boolean hasNext () {
+            
+            return this.iterator.hasNext();
+        }
+        
+        @Override
+        public Tag next () {
+            
+            this.last = this.iterator.next();
+            return this.last;
+        }
+        
+        @Override
+        public void remove () {
+            
+            ListTag.this.checkMutable();
+            this.iterator.remove();
+            this.last.removeParent(ListTag.this);
+            this.last = null;
+            ListTag.this.markModified();
+        }
+    }
+}
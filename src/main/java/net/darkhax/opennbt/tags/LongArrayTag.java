@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag for holding a long array.
  */
 public class LongArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 12;
+    
     /**
      * The long array value held by the tag.
      */
@@ -47,10 +53,13 @@ public class LongArrayTag extends Tag {
      */
     public void setValue (long[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -72,6 +81,7 @@ public class LongArrayTag extends Tag {
      */
     public void setValue (int index, long value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -86,19 +96,25 @@ public class LongArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new long[in.readInt()];
-        for (int index = 0; index < this.value.length; index++)
-            this.value[index] = in.readLong();
+        this.markModified();
+        in.readLongs(this.value, 0, this.value.length);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
-        for (final long element : this.value)
-            out.writeLong(element);
+        out.writeLongs(this.value, 0, this.value.length);
+    }
+    
+    @Override
+    public int payloadSize () {
+        
+        return 4 + this.value.length * 8;
     }
     
     @Override
@@ -1,13 +1,19 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag for holding a Long value.
  */
-public class LongTag extends Tag {
+public class LongTag extends Tag implements NumericTag {
+    
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 4;
     
     /**
      * The Long value held by the tag.
@@ -43,6 +49,7 @@ public class LongTag extends Tag {
      */
     public void setValue (long value) {
         
+        this.checkMutable();
         this.value = value;
     }
     
@@ -53,20 +60,63 @@ public class LongTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public byte getAsByte () {
         
+        return (byte) this.value;
+    }
+    
+    @Override
+    public short getAsShort () {
+        
+        return (short) this.value;
+    }
+    
+    @Override
+    public int getAsInt () {
+        
+        return (int) this.value;
+    }
+    
+    @Override
+    public long getAsLong () {
+        
+        return this.value;
+    }
+    
+    @Override
+    public float getAsFloat () {
+        
+        return (float) this.value;
+    }
+    
+    @Override
+    public double getAsDouble () {
+        
+        return (double) this.value;
+    }
+    
+    @Override
+    public void read (NBTReader in) throws IOException {
+        
+        this.checkMutable();
         this.value = in.readLong();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeLong(this.value);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        return 8;
+    }
+    
     @Override
     public LongTag clone () {
         
-        return new LongTag(this.getName(), this.getValue());
+        return new LongTag(this.getName(), this.value);
     }
 }
@@ -0,0 +1,73 @@
+package net.darkhax.opennbt.tags;
+
+import net.darkhax.opennbt.io.NameTable;
+
+/**
+ * A handle for a tag name which is looked up often. The name is resolved to its canonical
+ * instance from the shared {@link NameTable} when the key is created, which is the same
+ * instance readers use for decoded names, and its hash is computed up front. Keys are meant
+ * to be created once and kept in a constant, such as {@code NBTKey.of("Pos")}, and can then be
+ * passed to the CompoundTag methods which accept them.
+ */
+public final class NBTKey {
+    
+    /**
+     * The canonical name of the key.
+     */
+    private final String name;
+    
+    /**
+     * The hash of the name.
+     */
+    private final int hash;
+    
+    /**
+     * Creates a new key.
+     *
+     * @param name The canonical name of the key.
+     */
+    private NBTKey(String name) {
+        
+        this.name = name;
+        this.hash = name.hashCode();
+    }
+    
+    /**
+     * Creates a key for a tag name.
+     *
+     * @param name The tag name.
+     * @return NBTKey The key for the name.
+     */
+    public static NBTKey of (String name) {
+        
+        return new NBTKey(NameTable.SHARED.get(name));
+    }
+    
+    /**
+     * Gets the name of the key.
+     *
+     * @return String The canonical name of the key.
+     */
+    public String getName () {
+        
+        return this.name;
+    }
+    
+    @Override
+    public int hashCode () {
+        
+        return this.hash;
+    }
+    
+    @Override
+    public boolean equals (Object object) {
+        
+        return object == this || object instanceof NBTKey && this.hash == ((NBTKey) object).hash && this.name.equals(((NBTKey) object).name);
+    }
+    
+    @Override
+    public String toString () {
+        
+        return this.name;
+    }
+}
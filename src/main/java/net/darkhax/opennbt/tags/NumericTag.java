@@ -0,0 +1,51 @@
+package net.darkhax.opennbt.tags;
+
+/**
+ * A tag which holds a single number. The value can be read as any primitive number type
+ * without being boxed, and is converted using the same rules as a Java cast, so reading a
+ * value as a smaller type can lose information.
+ */
+public interface NumericTag {
+    
+    /**
+     * Gets the value of the tag as a byte.
+     *
+     * @return byte The value of the tag, cast to a byte.
+     */
+    byte getAsByte ();
+    
+    /**
+     * Gets the value of the tag as a short.
+     *
+     * @return short The value of the tag, cast to a short.
+     */
+    short getAsShort ();
+    
+    /**
+     * Gets the value of the tag as an int.
+     *
+     * @return int The value of the tag, cast to an int.
+     */
+    int getAsInt ();
+    
+    /**
+     * Gets the value of the tag as a long.
+     *
+     * @return long The value of the tag, cast to a long.
+     */
+    long getAsLong ();
+    
+    /**
+     * Gets the value of the tag as a float.
+     *
+     * @return float The value of the tag, cast to a float.
+     */
+    float getAsFloat ();
+    
+    /**
+     * Gets the value of the tag as a double.
+     *
+     * @return double The value of the tag, cast to a double.
+     */
+    double getAsDouble ();
+}
@@ -1,17 +1,28 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
- * A Tag for holding an array of Serializable objects.
+ * A Tag for holding an array of Serializable objects. Each object is written in the same way
+ * as the value of a {@link SerializableTag}.
  */
 public class SerializableArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 63;
+    
+    /**
+     * The first byte of the payload. Older versions started the payload with the length of
+     * the array, whose first byte is never this value.
+     */
+    private static final int FORMAT = 0x80;
+    
     /**
      * The array of Serializable objects held by the tag.
      */
@@ -52,10 +63,13 @@ public class SerializableArrayTag extends Tag {
      */
     public void setValue (Serializable[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -77,7 +91,9 @@ public class SerializableArrayTag extends Tag {
      */
     public void setValue (int index, Serializable value) {
         
+        this.checkMutable();
         this.value[index] = value;
+        this.markModified();
     }
     
     /**
@@ -91,31 +107,36 @@ public class SerializableArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
+        
+        this.checkMutable();
+        final int format = in.readUnsignedByte();
         
-        this.value = new Serializable[in.readInt()];
-        final ObjectInputStream str = new ObjectInputStream(in);
+        if (format != FORMAT) {
+            
+            final int length = format << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            this.value = ValueCodecRegistry.readLegacyArray(in, length);
+        }
         
-        for (int index = 0; index < this.value.length; index++)
-            try {
-                
-                this.value[index] = (Serializable) str.readObject();
-            }
+        else {
+            
+            this.value = new Serializable[in.readInt()];
             
-            catch (final ClassNotFoundException e) {
-                
-                throw new IOException("Class not found while reading SerializableArrayTag!", e);
-            }
+            for (int index = 0; index < this.value.length; index++)
+                this.value[index] = ValueCodecRegistry.read(in);
+        }
+        
+        this.markModified();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
+        out.writeByte(FORMAT);
         out.writeInt(this.value.length);
-        final ObjectOutputStream str = new ObjectOutputStream(out);
         
         for (final Serializable element : this.value)
-            str.writeObject(element);
+            ValueCodecRegistry.write(out, element);
     }
     
     @Override
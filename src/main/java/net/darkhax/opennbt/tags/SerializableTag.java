@@ -1,17 +1,22 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
- * A Tag for holding a Serializable object.
+ * A Tag for holding a Serializable object. The object is written using the codec registered
+ * for its class in {@link ValueCodecRegistry}, or with Java serialization if it has none.
  */
 public class SerializableTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 64;
+    
     /**
      * The Serializable object held by the tag.
      */
@@ -46,7 +51,9 @@ public class SerializableTag extends Tag {
      */
     public void setValue (Serializable value) {
         
+        this.checkMutable();
         this.value = value;
+        this.markModified();
     }
     
     @Override
@@ -56,26 +63,17 @@ public class SerializableTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
-        
-        final ObjectInputStream str = new ObjectInputStream(in);
-        
-        try {
-            
-            this.value = (Serializable) str.readObject();
-        }
+    public void read (NBTReader in) throws IOException {
         
-        catch (final ClassNotFoundException e) {
-            
-            throw new IOException("Class not found while reading SerializableTag!", e);
-        }
+        this.checkMutable();
+        this.value = ValueCodecRegistry.read(in);
+        this.markModified();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
-        final ObjectOutputStream str = new ObjectOutputStream(out);
-        str.writeObject(this.value);
+        ValueCodecRegistry.write(out, this.value);
     }
     
     @Override
@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag for holding an array of shorts.
  */
 public class ShortArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 65;
+    
     /**
      * The short array value held by this tag.
      */
@@ -43,10 +49,13 @@ public class ShortArrayTag extends Tag {
      */
     public void setValue (short[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     @Override
@@ -74,6 +83,7 @@ public class ShortArrayTag extends Tag {
      */
     public void setValue (int index, short value) {
         
+        this.checkMutable();
         this.value[index] = value;
     }
     
@@ -88,19 +98,25 @@ public class ShortArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new short[in.readInt()];
-        for (int index = 0; index < this.value.length; index++)
-            this.value[index] = in.readShort();
+        this.markModified();
+        in.readShorts(this.value, 0, this.value.length);
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
-        for (final short element : this.value)
-            out.writeShort(element);
+        out.writeShorts(this.value, 0, this.value.length);
+    }
+    
+    @Override
+    public int payloadSize () {
+        
+        return 4 + this.value.length * 2;
     }
     
     @Override
@@ -1,13 +1,19 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag which holds a short value.
  */
-public class ShortTag extends Tag {
+public class ShortTag extends Tag implements NumericTag {
+    
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 2;
     
     /**
      * The short value held by this tag.
@@ -43,6 +49,7 @@ public class ShortTag extends Tag {
      */
     public void setValue (short value) {
         
+        this.checkMutable();
         this.value = value;
     }
     
@@ -53,20 +60,63 @@ public class ShortTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public byte getAsByte () {
+        
+        return (byte) this.value;
+    }
+    
+    @Override
+    public short getAsShort () {
+        
+        return this.value;
+    }
+    
+    @Override
+    public int getAsInt () {
+        
+        return (int) this.value;
+    }
+    
+    @Override
+    public long getAsLong () {
         
+        return (long) this.value;
+    }
+    
+    @Override
+    public float getAsFloat () {
+        
+        return (float) this.value;
+    }
+    
+    @Override
+    public double getAsDouble () {
+        
+        return (double) this.value;
+    }
+    
+    @Override
+    public void read (NBTReader in) throws IOException {
+        
+        this.checkMutable();
         this.value = in.readShort();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeShort(this.value);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        return 2;
+    }
+    
     @Override
     public ShortTag clone () {
         
-        return new ShortTag(this.getName(), this.getValue());
+        return new ShortTag(this.getName(), this.value);
     }
 }
@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag which contains an array of String.
  */
 public class StringArrayTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 66;
+    
     /**
      * The value stored by this String array.
      */
@@ -49,10 +55,13 @@ public class StringArrayTag extends Tag {
      */
     public void setValue (String[] value) {
         
+        this.checkMutable();
+        
         if (value == null)
             return;
             
         this.value = value.clone();
+        this.markModified();
     }
     
     /**
@@ -74,7 +83,9 @@ public class StringArrayTag extends Tag {
      */
     public void setValue (int index, String value) {
         
+        this.checkMutable();
         this.value[index] = value;
+        this.markModified();
     }
     
     /**
@@ -88,16 +99,18 @@ public class StringArrayTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = new String[in.readInt()];
+        this.markModified();
         
         for (int index = 0; index < this.value.length; index++)
             this.value[index] = in.readUTF();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeInt(this.value.length);
         
@@ -105,6 +118,17 @@ public class StringArrayTag extends Tag {
             out.writeUTF(element);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        int size = 4;
+        
+        for (final String element : this.value)
+            size += NBTWriter.getUTFLength(element);
+            
+        return size;
+    }
+    
     @Override
     public StringArrayTag clone () {
         
@@ -1,14 +1,20 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
 /**
  * A Tag for holding a String value.
  */
 public class StringTag extends Tag {
     
+    /**
+     * The ID used to identify this type of tag.
+     */
+    public static final int ID = 8;
+    
     /**
      * The string value held by this tag.
      */
@@ -43,7 +49,9 @@ public class StringTag extends Tag {
      */
     public void setValue (String value) {
         
+        this.checkMutable();
         this.value = value;
+        this.markModified();
     }
     
     @Override
@@ -53,17 +61,25 @@ public class StringTag extends Tag {
     }
     
     @Override
-    public void read (DataInputStream in) throws IOException {
+    public void read (NBTReader in) throws IOException {
         
+        this.checkMutable();
         this.value = in.readUTF();
+        this.markModified();
     }
     
     @Override
-    public void write (DataOutputStream out) throws IOException {
+    public void write (NBTWriter out) throws IOException {
         
         out.writeUTF(this.value);
     }
     
+    @Override
+    public int payloadSize () {
+        
+        return NBTWriter.getUTFLength(this.value);
+    }
+    
     @Override
     public StringTag clone () {
         
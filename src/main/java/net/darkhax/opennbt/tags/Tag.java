@@ -1,9 +1,12 @@
 package net.darkhax.opennbt.tags;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
 
 /**
  * The foundation for all NBT tag objects.
@@ -15,6 +18,18 @@ public abstract class Tag implements Cloneable {
      */
     private final String name;
     
+    /**
+     * Whether the tag has been frozen, and can no longer be changed.
+     */
+    private volatile boolean frozen;
+    
+    /**
+     * The containers which hold this tag, and are told when it changes size. This is null if
+     * there are none, the container itself if there is one, and an array of them otherwise.
+     * Frozen tags never change, so they do not track their containers.
+     */
+    private Object parents;
+    
     /**
      * Constructs a new Tag with the specified name.
      * 
@@ -43,20 +58,208 @@ public abstract class Tag implements Cloneable {
     public abstract Object getValue ();
     
     /**
-     * Reads the tag from an input stream.
+     * Checks whether this tag has been frozen by {@link #freeze()}.
+     *
+     * @return boolean Whether the tag is frozen.
+     */
+    public final boolean isFrozen () {
+        
+        return this.frozen;
+    }
+    
+    /**
+     * Freezes this tag, so that it can no longer be changed. Compound and list tags also
+     * freeze every child, decoding any children which were read lazily. A frozen tree can be
+     * read by any number of threads at once without locking, once it has been handed to them,
+     * and its children can be shared between trees. Tags which are already frozen are skipped,
+     * so freezing a tree built from frozen subtrees only visits the new tags. Objects held by a
+     * SerializableTag can not be frozen, and must not be changed once their tag is shared.
+     *
+     * @return Tag This tag.
+     */
+    public Tag freeze () {
+        
+        this.parents = null;
+        this.frozen = true;
+        return this;
+    }
+    
+    /**
+     * Reads the tag from an NBTReader.
      *
-     * @param in Stream to write to.
+     * @param in Reader to read from.
      * @throws IOException If an I/O error occurs.
      */
-    public abstract void read (DataInputStream in) throws IOException;
+    public abstract void read (NBTReader in) throws IOException;
     
     /**
-     * Writes this tag to an output stream.
+     * Writes this tag to an NBTWriter.
      *
-     * @param out Stream to write to.
+     * @param out Writer to write to.
      * @throws IOException If an I/O error occurs.
      */
-    public abstract void write (DataOutputStream out) throws IOException;
+    public abstract void write (NBTWriter out) throws IOException;
+    
+    /**
+     * Gets the exact amount of bytes this tag takes up when it is written with
+     * {@link net.darkhax.opennbt.NBTHelper#writeTag(NBTWriter, Tag)}, including its ID and
+     * name. This can be used to size a buffer before writing a tag into it.
+     *
+     * @return int The serialized size of the tag, in bytes.
+     */
+    public int serializedSize () {
+        
+        return 1 + NBTWriter.getUTFLength(this.name) + this.payloadSize();
+    }
+    
+    /**
+     * Gets the exact amount of bytes written by {@link #write(NBTWriter)}. The built in tags
+     * compute this directly, and compound and list tags cache it until one of the tags they
+     * hold is changed. The default implementation writes the tag into memory and measures it,
+     * so tags added by other projects are always measured correctly, and can override this to
+     * be faster. Changes made directly to a mutable value, such as the object held by a
+     * SerializableTag, are not noticed by the cache. Java serialized values are measured as if
+     * they were the first in their document, so within a document that has already described
+     * their classes, they can take up fewer bytes than this.
+     *
+     * @return int The size of the tag payload, in bytes.
+     */
+    public int payloadSize () {
+        
+        final NBTWriter out = new NBTWriter(256);
+        
+        try {
+            
+            this.write(out);
+        }
+        
+        catch (final IOException e) {
+            
+            throw new UncheckedIOException("Failed to measure tag " + this.name, e);
+        }
+        
+        return out.size();
+    }
+    
+    /**
+     * Records that this tag has been changed in a way which can change its serialized size.
+     * Tags which can change size must call this whenever they do. The cached size of this tag
+     * is cleared, along with the cached size of every container which holds it, directly or
+     * through other containers. Containers whose size was already cleared are not visited
+     * again, as their own containers have been cleared as well.
+     */
+    protected void markModified () {
+        
+        if (this.clearCachedSize()) {
+            
+            final Object parents = this.parents;
+            
+            if (parents instanceof Tag)
+                ((Tag) parents).markModified();
+                
+            else if (parents != null)
+                for (final Tag parent : (Tag[]) parents)
+                    parent.markModified();
+        }
+    }
+    
+    /**
+     * Clears the size cached by this tag, if it caches one. Tags which cache their size must
+     * override this, and return false if the cache was already clear.
+     *
+     * @return boolean Whether the containers of this tag need to clear their sizes as well.
+     */
+    protected boolean clearCachedSize () {
+        
+        return true;
+    }
+    
+    /**
+     * Records that this tag has been put into a container. Containers must call this for
+     * every tag they hold, and {@link #removeParent(Tag)} for every tag they let go of.
+     *
+     * @param parent The container which now holds this tag.
+     */
+    final void addParent (Tag parent) {
+        
+        if (this.frozen)
+            return;
+            
+        final Object parents = this.parents;
+        
+        if (parents == null)
+            this.parents = parent;
+            
+        else if (parents instanceof Tag)
+            this.parents = new Tag[] { (Tag) parents, parent };
+            
+        else {
+            
+            final Tag[] array = Arrays.copyOf((Tag[]) parents, ((Tag[]) parents).length + 1);
+            array[array.length - 1] = parent;
+            this.parents = array;
+        }
+    }
+    
+    /**
+     * Records that this tag has been taken out of a container. A tag which was added to the
+     * same container more than once must be removed once for each time.
+     *
+     * @param parent The container which no longer holds this tag.
+     */
+    final void removeParent (Tag parent) {
+        
+        final Object parents = this.parents;
+        
+        if (parents == parent)
+            this.parents = null;
+            
+        else if (parents instanceof Tag[]) {
+            
+            final Tag[] array = (Tag[]) parents;
+            
+            for (int index = 0; index < array.length; index++)
+                if (array[index] == parent) {
+                    
+                    if (array.length == 2)
+                        this.parents = array[1 - index];
+                        
+                    else {
+                        
+                        final Tag[] smaller = new Tag[array.length - 1];
+                        System.arraycopy(array, 0, smaller, 0, index);
+                        System.arraycopy(array, index + 1, smaller, index, smaller.length - index);
+                        this.parents = smaller;
+                    }
+                    
+                    return;
+                }
+        }
+    }
+    
+    /**
+     * Checks whether a container is the only one which holds this tag. Frozen tags do not
+     * track their containers, so this is always false for them.
+     *
+     * @param parent The container to check for.
+     * @return boolean Whether the container holds this tag, and nothing else does.
+     */
+    final boolean isOnlyHeldBy (Tag parent) {
+        
+        return this.parents == parent;
+    }
+    
+    /**
+     * Checks that this tag can be changed. Every method which changes a tag must call this
+     * before making any change.
+     *
+     * @throws UnsupportedOperationException If the tag is frozen.
+     */
+    protected final void checkMutable () {
+        
+        if (this.frozen)
+            throw new UnsupportedOperationException("Tag " + this.name + " is frozen and can not be changed.");
+    }
     
     @Override
     public abstract Tag clone ();
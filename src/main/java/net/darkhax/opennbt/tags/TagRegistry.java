@@ -1,23 +1,67 @@
 package net.darkhax.opennbt.tags;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * A registry which maps tag classes and their ids.
+ *
+ * Tags with an ID from 0 to 255, which covers every ID that can be written, are looked up in
+ * an array indexed by their ID, and each ID holds a factory which creates new tags without
+ * any reflection. The ID of a tag class is cached on the class itself through a ClassValue.
+ * Registering replaces the tables with updated copies, so lookups never need a lock and
+ * always see a complete registry, even while another thread is registering a tag.
  */
 public class TagRegistry {
     
     /**
-     * A map which handles ID to tag class conversions.
+     * The amount of IDs which are stored in the array. IDs outside of this range are stored
+     * in a map instead.
      */
-    private static final Map<Integer, Class<? extends Tag>> idToTag = new HashMap<Integer, Class<? extends Tag>>();
+    private static final int ARRAY_SIZE = 256;
     
     /**
-     * A map which handles tag class to ID conversions.
+     * The entries for IDs from 0 to 255, indexed by ID. Replaced with a new copy whenever a
+     * tag is registered.
      */
-    private static final Map<Class<? extends Tag>, Integer> tagToId = new HashMap<Class<? extends Tag>, Integer>();
+    private static volatile Entry[] idToTag = new Entry[ARRAY_SIZE];
+    
+    /**
+     * The entries for IDs outside of the array. Replaced with a new copy whenever a tag is
+     * registered.
+     */
+    private static volatile Map<Integer, Entry> otherIds = new HashMap<Integer, Entry>();
+    
+    /**
+     * The entries for every registered class. Replaced with a new copy whenever a tag is
+     * registered.
+     */
+    private static volatile Map<Class<?>, Entry> tagToId = new HashMap<Class<?>, Entry>();
+    
+    /**
+     * The entry used for classes which have not been registered.
+     */
+    private static final Entry UNREGISTERED = new Entry(-1, null, null);
+    
+    /**
+     * A cache of the entry for each class, so writing a tag does not need a map lookup.
+     * Classes which are not registered are mapped to {@link #UNREGISTERED}.
+     */
+    private static final ClassValue<Entry> CLASS_ENTRIES = new ClassValue<Entry>() {
+        
+        @Override
+        protected Entry computeValue (Class<?> type) {
+            
+            final Entry entry = tagToId.get(type);
+            return entry != null ? entry : UNREGISTERED;
+        }
+    };
     
     /**
      * The last ID to be found by the getNextID method.
@@ -26,80 +70,115 @@ public class TagRegistry {
     
     static {
         
-        register(1, ByteTag.class);
-        register(2, ShortTag.class);
-        register(3, IntTag.class);
-        register(4, LongTag.class);
-        register(5, FloatTag.class);
-        register(6, DoubleTag.class);
-        register(7, ByteArrayTag.class);
-        register(8, StringTag.class);
-        register(9, ListTag.class);
-        register(10, CompoundTag.class);
-        register(11, IntArrayTag.class);
-        register(12, LongArrayTag.class);
-        
-        register(60, DoubleArrayTag.class);
-        register(61, FloatArrayTag.class);
-        register(63, SerializableArrayTag.class);
-        register(64, SerializableTag.class);
-        register(65, ShortArrayTag.class);
-        register(66, StringArrayTag.class);
+        register(ByteTag.ID, ByteTag.class, ByteTag::new);
+        register(ShortTag.ID, ShortTag.class, ShortTag::new);
+        register(IntTag.ID, IntTag.class, IntTag::new);
+        register(LongTag.ID, LongTag.class, LongTag::new);
+        register(FloatTag.ID, FloatTag.class, FloatTag::new);
+        register(DoubleTag.ID, DoubleTag.class, DoubleTag::new);
+        register(ByteArrayTag.ID, ByteArrayTag.class, ByteArrayTag::new);
+        register(StringTag.ID, StringTag.class, StringTag::new);
+        register(ListTag.ID, ListTag.class, ListTag::new);
+        register(CompoundTag.ID, CompoundTag.class, CompoundTag::new);
+        register(IntArrayTag.ID, IntArrayTag.class, IntArrayTag::new);
+        register(LongArrayTag.ID, LongArrayTag.class, LongArrayTag::new);
+        
+        register(DoubleArrayTag.ID, DoubleArrayTag.class, DoubleArrayTag::new);
+        register(FloatArrayTag.ID, FloatArrayTag.class, FloatArrayTag::new);
+        register(SerializableArrayTag.ID, SerializableArrayTag.class, SerializableArrayTag::new);
+        register(SerializableTag.ID, SerializableTag.class, SerializableTag::new);
+        register(ShortArrayTag.ID, ShortArrayTag.class, ShortArrayTag::new);
+        register(StringArrayTag.ID, StringArrayTag.class, StringArrayTag::new);
     }
     
     /**
      * Registers a tag class into the system. If the ID or Class has already been used, an
-     * exception will be thrown.
-     * 
+     * exception will be thrown. Tags are created using the constructor of the class which
+     * takes a String name. The constructor is looked up once, when the tag is registered.
+     *
      * @param id The ID to register the tag under.
      * @param tag The Tag class to register.
      * @throws TagRegisterException Thrown if the ID or Tag has already been used.
      */
     public static void register (int id, Class<? extends Tag> tag) throws TagRegisterException {
         
-        if (idToTag.containsKey(id))
-            throw new TagRegisterException("Tag ID " + id + " is already in use by " + idToTag.get(id).getSimpleName() + ".");
+        register(id, tag, createFactory(tag));
+    }
+    
+    /**
+     * Registers a tag class into the system, along with a factory which creates new instances
+     * of the tag. If the ID or Class has already been used, an exception will be thrown.
+     *
+     * @param id The ID to register the tag under.
+     * @param tag The Tag class to register.
+     * @param factory A function which creates a new tag with the given name, such as a
+     *        reference to the constructor of the tag.
+     * @throws TagRegisterException Thrown if the ID or Tag has already been used, or the Tag
+     *         is the placeholder used by lazy reads.
+     */
+    public static synchronized void register (int id, Class<? extends Tag> tag, Function<String, ? extends Tag> factory) throws TagRegisterException {
+        
+        if (tag == LazyTag.class)
+            throw new TagRegisterException("Lazy tag placeholders can not be registered.");
+            
+        final Entry existing = getEntry(id);
+        
+        if (existing != null)
+            throw new TagRegisterException("Tag ID " + id + " is already in use by " + existing.type.getSimpleName() + ".");
             
         if (tagToId.containsKey(tag))
             throw new TagRegisterException("Tag " + tag.getSimpleName() + " is already registered.");
             
-        idToTag.put(id, tag);
-        tagToId.put(tag, id);
+        final Entry entry = new Entry(id, tag, factory);
+        
+        if (id >= 0 && id < ARRAY_SIZE) {
+            
+            final Entry[] entries = Arrays.copyOf(idToTag, ARRAY_SIZE);
+            entries[id] = entry;
+            idToTag = entries;
+        }
+        
+        else {
+            
+            final Map<Integer, Entry> entries = new HashMap<Integer, Entry>(otherIds);
+            entries.put(id, entry);
+            otherIds = entries;
+        }
+        
+        final Map<Class<?>, Entry> classes = new HashMap<Class<?>, Entry>(tagToId);
+        classes.put(tag, entry);
+        tagToId = classes;
+        CLASS_ENTRIES.remove(tag);
     }
     
     /**
      * Gets a class that is associated with a tag ID.
-     * 
+     *
      * @param id The tag ID to search for.
      * @return Class The Class of the Tag associated with the ID.
      */
     public static Class<? extends Tag> getClassFor (int id) {
         
-        if (!idToTag.containsKey(id))
-            return null;
-            
-        return idToTag.get(id);
+        final Entry entry = getEntry(id);
+        return entry != null ? entry.type : null;
     }
     
     /**
      * Gets an ID from its associated Tag class.
-     * 
+     *
      * @param clazz The Class to search for.
      * @return int The ID associated with the Tag class. -1 means the class has no associated
      *         ID.
      */
     public static int getIdFor (Class<? extends Tag> clazz) {
         
-        if (!tagToId.containsKey(clazz))
-            return -1;
-            
-        return tagToId.get(clazz);
+        return CLASS_ENTRIES.get(clazz).id;
     }
     
     /**
-     * Creates a new instance of the tag with the specified ID using the basic string
-     * constructor.
-     * 
+     * Creates a new instance of the tag with the specified ID, using the factory it was
+     * registered with.
+     *
      * @param id The ID of the tag to create.
      * @param tagName The name to give this tag.
      * @return Tag The newly created Tag.
@@ -107,18 +186,22 @@ public class TagRegistry {
      */
     public static Tag createInstance (int id, String tagName) throws TagCreateException {
         
-        final Class<? extends Tag> clazz = getClassFor(id);
+        final Entry entry = getEntry(id);
         
+        if (entry == null)
+            throw new TagCreateException("No tag is registered with ID " + id + ".");
+            
+        if (entry.factory == null)
+            throw new TagCreateException("Failed to create instance of tag " + entry.type.getSimpleName() + ". It has no constructor which takes a String name.");
+            
         try {
             
-            final Constructor<? extends Tag> constructor = clazz.getDeclaredConstructor(String.class);
-            constructor.setAccessible(true);
-            return constructor.newInstance(tagName);
+            return entry.factory.apply(tagName);
         }
         
-        catch (final Exception exception) {
+        catch (final RuntimeException exception) {
             
-            throw new TagCreateException("Failed to create instance of tag " + clazz.getSimpleName() + ".", exception);
+            throw new TagCreateException("Failed to create instance of tag " + entry.type.getSimpleName() + ".", exception);
         }
     }
     
@@ -127,18 +210,106 @@ public class TagRegistry {
      * (except for -1), this method will only try to generate a positive ID. If there are no
      * positive ID values remain, an exception will be thrown. That is extremely unlikely, as
      * there are 2147483647 positive ID values.
-     * 
+     *
      * @return int An unused ID value to use for the tag registry.
      */
-    public static int getNextID () {
+    public static synchronized int getNextID () {
         
-        for (int id = lastID; lastID < Integer.MAX_VALUE; id++)
-            if (!idToTag.containsKey(id)) {
+        for (int id = lastID; id < Integer.MAX_VALUE; id++)
+            if (getEntry(id) == null) {
                 
-                lastID = id++;
+                lastID = id;
                 return id;
             }
             
         throw new TagIdException();
     }
+    
+    /**
+     * Gets the registry entry for an ID.
+     *
+     * @param id The ID to look up.
+     * @return Entry The entry for the ID, or null if the ID is not registered.
+     */
+    private static Entry getEntry (int id) {
+        
+        return id >= 0 && id < ARRAY_SIZE ? idToTag[id] : otherIds.get(id);
+    }
+    
+    /**
+     * Creates a factory which calls the String constructor of a tag class through a
+     * MethodHandle. The constructor does not need to be public.
+     *
+     * @param tag The tag class to create a factory for.
+     * @return Function<String, Tag> The factory, or null if the class has no usable
+     *         constructor. Creating a tag without a factory will fail.
+     */
+    private static Function<String, Tag> createFactory (Class<? extends Tag> tag) {
+        
+        try {
+            
+            final Constructor<? extends Tag> constructor = tag.getDeclaredConstructor(String.class);
+            constructor.setAccessible(true);
+            final MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Tag.class, String.class));
+            
+            return name -> {
+                
+                try {
+                    
+                    return (Tag) handle.invokeExact(name);
+                }
+                
+                catch (final RuntimeException | Error e) {
+                    
+                    throw e;
+                }
+                
+                catch (final Throwable e) {
+                    
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+        
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            
+            return null;
+        }
+    }
+    
+    /**
+     * A registered tag, holding its ID, class and factory.
+     */
+    private static class Entry {
+        
+        /**
+         * The ID of the tag.
+         */
+        private final int id;
+        
+        /**
+         * The class of the tag.
+         */
+        private final Class<? extends Tag> type;
+        
+        /**
+         * The factory which creates new instances of the tag. Null if the tag has no
+         * constructor which takes a String name.
+         */
+        private final Function<String, ? extends Tag> factory;
+        
+        /**
+         * Creates a new entry.
+         *
+         * @param id The ID of the tag.
+         * @param type The class of the tag.
+         * @param factory The factory which creates new instances of the tag.
+         */
+        private Entry(int id, Class<? extends Tag> type, Function<String, ? extends Tag> factory) {
+            
+            this.id = id;
+            this.type = type;
+            this.factory = factory;
+        }
+    }
 }
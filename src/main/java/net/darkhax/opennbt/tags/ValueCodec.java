@@ -0,0 +1,35 @@
+package net.darkhax.opennbt.tags;
+
+import java.io.IOException;
+
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
+/**
+ * Encodes the values of one class held by a SerializableTag or SerializableArrayTag, in place
+ * of Java serialization. Codecs are registered with {@link ValueCodecRegistry}, and are used
+ * for values of exactly that class.
+ *
+ * @param <T> The class of value handled by the codec.
+ */
+public interface ValueCodec<T> {
+    
+    /**
+     * Writes a value. The value is never null.
+     *
+     * @param out The writer to write to.
+     * @param value The value to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    void write (NBTWriter out, T value) throws IOException;
+    
+    /**
+     * Reads a value written by {@link #write(NBTWriter, Object)}. This must read exactly the
+     * bytes which were written.
+     *
+     * @param in The reader to read from.
+     * @return T The value which was read.
+     * @throws IOException If an I/O error occurs, or the data is malformed.
+     */
+    T read (NBTReader in) throws IOException;
+}
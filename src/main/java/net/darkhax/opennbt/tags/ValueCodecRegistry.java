@@ -0,0 +1,702 @@
+package net.darkhax.opennbt.tags;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import net.darkhax.opennbt.io.ClassDescriptorTable;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTWriter;
+
+/**
+ * A registry of the codecs used for the values held by SerializableTag and
+ * SerializableArrayTag, and of the classes which Java serialization may create while reading
+ * them.
+ *
+ * Each value starts with a marker byte. Values with a codec registered for their exact class
+ * are written by that codec, after the key it was registered with. All other values fall back
+ * to Java serialization, without a stream header, and with class descriptors shared through
+ * the {@link ClassDescriptorTable} of the reader or writer, so each class is only described
+ * once per document. Values written by older versions, which are complete object streams, can
+ * still be read.
+ *
+ * Java serialization can create any serializable class on the class path, which is unsafe for
+ * data from untrusted sources. Reading only resolves classes which are on the allow list. By
+ * default this holds the boxed primitives, String, and the common collections and value
+ * classes from java.util and java.math. Like {@link TagRegistry}, registering replaces the
+ * tables with updated copies, so lookups never need a lock.
+ */
+public final class ValueCodecRegistry {
+    
+    /**
+     * The marker for a null value.
+     */
+    private static final int NULL = 0;
+    
+    /**
+     * The marker for a value written by a registered codec.
+     */
+    private static final int CODEC = 1;
+    
+    /**
+     * The marker for a value written with Java serialization, sharing class descriptors with
+     * the rest of the document.
+     */
+    private static final int SERIALIZED = 2;
+    
+    /**
+     * The first byte of the object stream magic number, which starts values written by older
+     * versions.
+     */
+    private static final int LEGACY = 0xAC;
+    
+    /**
+     * The marker for a class descriptor which is written in full, because the table is full.
+     */
+    private static final int DESCRIPTOR_INLINE = 0;
+    
+    /**
+     * The marker for a class descriptor which is written in full, along with its new index in
+     * the table.
+     */
+    private static final int DESCRIPTOR_DEFINITION = 1;
+    
+    /**
+     * The marker for a class descriptor which is written as the index of an earlier
+     * definition.
+     */
+    private static final int DESCRIPTOR_REFERENCE = 2;
+    
+    /**
+     * The entries for every registered key. Replaced with a new copy whenever a codec is
+     * registered.
+     */
+    private static volatile Map<String, Entry> keys = new HashMap<String, Entry>();
+    
+    /**
+     * The entries for every registered class. Replaced with a new copy whenever a codec is
+     * registered.
+     */
+    private static volatile Map<Class<?>, Entry> types = new HashMap<Class<?>, Entry>();
+    
+    /**
+     * The entry used for classes which do not have a codec.
+     */
+    private static final Entry UNREGISTERED = new Entry(null, null);
+    
+    /**
+     * A cache of the entry for each class, so writing a value does not need a map lookup.
+     * Classes without a codec are mapped to {@link #UNREGISTERED}.
+     */
+    private static final ClassValue<Entry> CLASS_ENTRIES = new ClassValue<Entry>() {
+        
+        @Override
+        protected Entry computeValue (Class<?> type) {
+            
+            final Entry entry = types.get(type);
+            return entry != null ? entry : UNREGISTERED;
+        }
+    };
+    
+    /**
+     * The names of the classes which may be deserialized. Replaced with a new copy whenever a
+     * class is allowed.
+     */
+    private static volatile Set<String> allowedClasses = new HashSet<String>();
+    
+    /**
+     * The packages whose classes may be deserialized, each ending with a dot. Replaced with a
+     * new copy whenever a package is allowed.
+     */
+    private static volatile String[] allowedPackages = new String[0];
+    
+    static {
+        
+        register("byte", Byte.class, new SimpleCodec<Byte>((out, value) -> out.writeByte(value), NBTReader::readByte));
+        register("short", Short.class, new SimpleCodec<Short>((out, value) -> out.writeShort(value), NBTReader::readShort));
+        register("int", Integer.class, new SimpleCodec<Integer>(NBTWriter::writeInt, NBTReader::readInt));
+        register("long", Long.class, new SimpleCodec<Long>(NBTWriter::writeLong, NBTReader::readLong));
+        register("float", Float.class, new SimpleCodec<Float>(NBTWriter::writeFloat, NBTReader::readFloat));
+        register("double", Double.class, new SimpleCodec<Double>(NBTWriter::writeDouble, NBTReader::readDouble));
+        register("boolean", Boolean.class, new SimpleCodec<Boolean>(NBTWriter::writeBoolean, NBTReader::readBoolean));
+        register("char", Character.class, new SimpleCodec<Character>((out, value) -> out.writeChar(value), NBTReader::readChar));
+        register("string", String.class, new SimpleCodec<String>(ValueCodecRegistry::writeString, ValueCodecRegistry::readString));
+        register("uuid", UUID.class, new SimpleCodec<UUID>((out, value) -> {
+            
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }, in -> new UUID(in.readLong(), in.readLong())));
+        
+        allowClasses(String.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Character.class, Number.class, Enum.class);
+        allowClasses(BigInteger.class, BigDecimal.class, UUID.class, Date.class);
+        allowClasses(ArrayList.class, LinkedList.class, ArrayDeque.class, HashMap.class, LinkedHashMap.class, TreeMap.class, HashSet.class, LinkedHashSet.class, TreeSet.class);
+    }
+    
+    /**
+     * Registers a codec for a class of value. The codec is used for values of exactly that
+     * class, and not for its subclasses.
+     *
+     * @param key The key which identifies the codec in written data. This should be short, as
+     *        it is written with every value, and must never change once data has been written
+     *        with it.
+     * @param type The class of value handled by the codec.
+     * @param codec The codec to register.
+     * @param <T> The class of value handled by the codec.
+     * @throws IllegalArgumentException If the key or class already has a codec.
+     */
+    public static synchronized <T extends Serializable> void register (String key, Class<T> type, ValueCodec<T> codec) {
+        
+        if (keys.containsKey(key))
+            throw new IllegalArgumentException("Value codec key " + key + " is already in use.");
+            
+        if (types.containsKey(type))
+            throw new IllegalArgumentException("Class " + type.getName() + " already has a value codec.");
+            
+        final Entry entry = new Entry(key, codec);
+        
+        final Map<String, Entry> newKeys = new HashMap<String, Entry>(keys);
+        newKeys.put(key, entry);
+        keys = newKeys;
+        
+        final Map<Class<?>, Entry> newTypes = new HashMap<Class<?>, Entry>(types);
+        newTypes.put(type, entry);
+        types = newTypes;
+        CLASS_ENTRIES.remove(type);
+    }
+    
+    /**
+     * Gets the codec registered for a class of value.
+     *
+     * @param type The class to look up.
+     * @return ValueCodec The codec for the class, or null if values of the class use Java
+     *         serialization.
+     */
+    public static ValueCodec<?> getCodec (Class<?> type) {
+        
+        return CLASS_ENTRIES.get(type).codec;
+    }
+    
+    /**
+     * Allows classes to be deserialized. Arrays of allowed classes are allowed as well.
+     *
+     * @param classes The classes to allow.
+     */
+    public static synchronized void allowClasses (Class<?>... classes) {
+        
+        final Set<String> allowed = new HashSet<String>(allowedClasses);
+        
+        for (final Class<?> type : classes)
+            allowed.add(type.getName());
+            
+        allowedClasses = allowed;
+    }
+    
+    /**
+     * Allows every class in a package, and in the packages within it, to be deserialized.
+     * This should only be used for packages which are fully trusted.
+     *
+     * @param name The name of the package, such as {@code com.example.data}.
+     */
+    public static synchronized void allowPackage (String name) {
+        
+        final String[] allowed = Arrays.copyOf(allowedPackages, allowedPackages.length + 1);
+        allowed[allowedPackages.length] = name + ".";
+        allowedPackages = allowed;
+    }
+    
+    /**
+     * Checks if a class may be deserialized. Arrays are allowed if their component class is,
+     * and arrays of primitives are always allowed.
+     *
+     * @param name The binary name of the class, as returned by Class#getName.
+     * @return boolean Whether or not the class may be deserialized.
+     */
+    public static boolean isAllowed (String name) {
+        
+        int start = 0;
+        
+        while (start < name.length() && name.charAt(start) == '[')
+            start++;
+            
+        if (start > 0) {
+            
+            if (name.length() == start + 1)
+                return true;
+                
+            if (name.charAt(start) != 'L' || !name.endsWith(";"))
+                return false;
+                
+            name = name.substring(start + 1, name.length() - 1);
+        }
+        
+        if (allowedClasses.contains(name))
+            return true;
+            
+        for (final String prefix : allowedPackages)
+            if (name.startsWith(prefix))
+                return true;
+                
+        return false;
+    }
+    
+    /**
+     * Writes a value, using its codec if it has one.
+     *
+     * @param out The writer to write to.
+     * @param value The value to write. Can be null.
+     * @throws IOException If an I/O error occurs.
+     */
+    @SuppressWarnings("unchecked")
+    static void write (NBTWriter out, Serializable value) throws IOException {
+        
+        if (value == null) {
+            
+            out.writeByte(NULL);
+            return;
+        }
+        
+        final Entry entry = CLASS_ENTRIES.get(value.getClass());
+        
+        if (entry != UNREGISTERED) {
+            
+            out.writeByte(CODEC);
+            out.writeUTF(entry.key);
+            ((ValueCodec<Serializable>) entry.codec).write(out, value);
+        }
+        
+        else {
+            
+            final ClassDescriptorTable table = out.getClassDescriptors();
+            table.countValue();
+            out.writeByte(SERIALIZED);
+            
+            final ObjectOutputStream stream = new TableOutput(new WriterOutput(out), table);
+            stream.writeObject(value);
+            stream.flush();
+        }
+    }
+    
+    /**
+     * Reads a value written by {@link #write(NBTWriter, Serializable)}, or by an older
+     * version.
+     *
+     * @param in The reader to read from.
+     * @return Serializable The value which was read.
+     * @throws IOException If an I/O error occurs, the data is malformed, or the value uses a
+     *         class which is not allowed.
+     */
+    static Serializable read (NBTReader in) throws IOException {
+        
+        final int marker = in.readUnsignedByte();
+        
+        switch (marker) {
+            
+            case NULL:
+                return null;
+                
+            case CODEC:
+                final String key = in.readName();
+                final Entry entry = keys.get(key);
+                
+                if (entry == null)
+                    throw new IOException("No value codec is registered for key " + key + ".");
+                    
+                return (Serializable) entry.codec.read(in);
+                
+            case SERIALIZED:
+                final ClassDescriptorTable table = in.getClassDescriptors();
+                table.countValue();
+                return readObject(new TableInput(in, table));
+                
+            case LEGACY:
+                return readObject(new FilteredInput(new SequenceInputStream(new ByteArrayInputStream(new byte[] { (byte) LEGACY }), in)));
+                
+            default:
+                throw new IOException("Invalid serializable value marker " + marker + ".");
+        }
+    }
+    
+    /**
+     * Reads the values of a SerializableArrayTag written by an older version, which are held
+     * in a single object stream.
+     *
+     * @param in The reader to read from, positioned at the start of the object stream.
+     * @param length The amount of values in the array.
+     * @return Serializable[] The values which were read.
+     * @throws IOException If an I/O error occurs, the data is malformed, or a value uses a
+     *         class which is not allowed.
+     */
+    static Serializable[] readLegacyArray (NBTReader in, int length) throws IOException {
+        
+        final Serializable[] values = new Serializable[length];
+        final ObjectInputStream stream = new FilteredInput(in);
+        
+        for (int index = 0; index < length; index++)
+            values[index] = readObject(stream);
+            
+        return values;
+    }
+    
+    /**
+     * Reads an object from an object stream.
+     *
+     * @param stream The stream to read from.
+     * @return Serializable The object which was read.
+     * @throws IOException If an I/O error occurs, or the class of the object is not found.
+     */
+    private static Serializable readObject (ObjectInputStream stream) throws IOException {
+        
+        try {
+            
+            return (Serializable) stream.readObject();
+        }
+        
+        catch (final ClassNotFoundException e) {
+            
+            throw new IOException("Class not found while reading a serializable value!", e);
+        }
+    }
+    
+    /**
+     * Writes a string of any length as UTF-8, after its length in bytes.
+     *
+     * @param out The writer to write to.
+     * @param value The string to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writeString (NBTWriter out, String value) throws IOException {
+        
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a string written by {@link #writeString(NBTWriter, String)}.
+     *
+     * @param in The reader to read from.
+     * @return String The string which was read.
+     * @throws IOException If an I/O error occurs, or the length is invalid.
+     */
+    private static String readString (NBTReader in) throws IOException {
+        
+        final int length = in.readInt();
+        
+        if (length < 0)
+            throw new IOException("Invalid string length " + length + ".");
+            
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * A registered codec, holding its key.
+     */
+    private static class Entry {
+        
+        /**
+         * The key of the codec.
+         */
+        private final String key;
+        
+        /**
+         * The codec.
+         */
+        private final ValueCodec<?> codec;
+        
+        /**
+         * Creates a new entry.
+         *
+         * @param key The key of the codec.
+         * @param codec The codec.
+         */
+        private Entry(String key, ValueCodec<?> codec) {
+            
+            this.key = key;
+            this.codec = codec;
+        }
+    }
+    
+    /**
+     * Writes a value for a {@link SimpleCodec}.
+     *
+     * @param <T> The class of value.
+     */
+    private interface Encoder<T> {
+        
+        /**
+         * Writes a value.
+         *
+         * @param out The writer to write to.
+         * @param value The value to write.
+         * @throws IOException If an I/O error occurs.
+         */
+        void write (NBTWriter out, T value) throws IOException;
+    }
+    
+    /**
+     * Reads a value for a {@link SimpleCodec}.
+     *
+     * @param <T> The class of value.
+     */
+    private interface Decoder<T> {
+        
+        /**
+         * Reads a value.
+         *
+         * @param in The reader to read from.
+         * @return T The value which was read.
+         * @throws IOException If an I/O error occurs.
+         */
+        T read (NBTReader in) throws IOException;
+    }
+    
+    /**
+     * A codec made from a pair of functions, used for the built in codecs.
+     *
+     * @param <T> The class of value handled by the codec.
+     */
+    private static final class SimpleCodec<T> implements ValueCodec<T> {
+        
+        /**
+         * The function which writes values.
+         */
+        private final Encoder<T> encoder;
+        
+        /**
+         * The function which reads values.
+         */
+        private final Decoder<T> decoder;
+        
+        /**
+         * Creates a new codec.
+         *
+         * @param encoder The function which writes values.
+         * @param decoder The function which reads values.
+         */
+        private SimpleCodec(Encoder<T> encoder, Decoder<T> decoder) {
+            
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+        
+        @Override
+        public void write (NBTWriter out, T value) throws IOException {
+            
+            this.encoder.write(out, value);
+        }
+        
+        @Override
+        public T read (NBTReader in) throws IOException {
+            
+            return this.decoder.read(in);
+        }
+    }
+    
+    /**
+     * Passes the bytes of an object stream to a writer. Flushing does nothing, so that
+     * finishing each value does not flush the writer to its destination.
+     */
+    private static final class WriterOutput extends OutputStream {
+        
+        /**
+         * The writer to write to.
+         */
+        private final NBTWriter out;
+        
+        /**
+         * Creates a new output.
+         *
+         * @param out The writer to write to.
+         */
+        private WriterOutput(NBTWriter out) {
+            
+            this.out = out;
+        }
+        
+        @Override
+        public void write (int value) throws IOException {
+            
+            this.out.write(value);
+        }
+        
+        @Override
+        public void write (byte[] bytes, int offset, int length) throws IOException {
+            
+            this.out.write(bytes, offset, length);
+        }
+    }
+    
+    /**
+     * An object stream without a header, which writes each class descriptor through the
+     * class descriptor table of the document.
+     */
+    private static final class TableOutput extends ObjectOutputStream {
+        
+        /**
+         * The class descriptor table of the document.
+         */
+        private final ClassDescriptorTable table;
+        
+        /**
+         * Creates a new stream.
+         *
+         * @param out The stream to write to.
+         * @param table The class descriptor table of the document.
+         * @throws IOException If an I/O error occurs.
+         */
+        private TableOutput(OutputStream out, ClassDescriptorTable table) throws IOException {
+            
+            super(out);
+            this.table = table;
+        }
+        
+        @Override
+        protected void writeStreamHeader () {
+            
+        }
+        
+        @Override
+        protected void writeClassDescriptor (ObjectStreamClass descriptor) throws IOException {
+            
+            final int existing = this.table.indexOf(descriptor);
+            
+            if (existing >= 0) {
+                
+                this.writeByte(DESCRIPTOR_REFERENCE);
+                this.writeShort(existing);
+                return;
+            }
+            
+            final int index = this.table.add(descriptor);
+            
+            if (index >= 0) {
+                
+                this.writeByte(DESCRIPTOR_DEFINITION);
+                this.writeShort(index);
+            }
+            
+            else
+                this.writeByte(DESCRIPTOR_INLINE);
+                
+            super.writeClassDescriptor(descriptor);
+        }
+    }
+    
+    /**
+     * An object stream which only resolves classes on the allow list, and never resolves
+     * proxy classes.
+     */
+    private static class FilteredInput extends ObjectInputStream {
+        
+        /**
+         * Creates a new stream.
+         *
+         * @param in The stream to read from.
+         * @throws IOException If an I/O error occurs while reading the stream header.
+         */
+        private FilteredInput(InputStream in) throws IOException {
+            
+            super(in);
+        }
+        
+        @Override
+        protected Class<?> resolveClass (ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+            
+            if (!isAllowed(descriptor.getName()))
+                throw new InvalidClassException(descriptor.getName(), "Class is not allowed to be deserialized.");
+                
+            return super.resolveClass(descriptor);
+        }
+        
+        @Override
+        protected Class<?> resolveProxyClass (String[] interfaces) throws IOException {
+            
+            throw new InvalidClassException("Proxy classes are not allowed to be deserialized.");
+        }
+    }
+    
+    /**
+     * An object stream without a header, which reads each class descriptor through the class
+     * descriptor table of the document.
+     */
+    private static final class TableInput extends FilteredInput {
+        
+        /**
+         * The class descriptor table of the document.
+         */
+        private final ClassDescriptorTable table;
+        
+        /**
+         * Creates a new stream.
+         *
+         * @param in The stream to read from.
+         * @param table The class descriptor table of the document.
+         * @throws IOException If an I/O error occurs.
+         */
+        private TableInput(InputStream in, ClassDescriptorTable table) throws IOException {
+            
+            super(in);
+            this.table = table;
+        }
+        
+        @Override
+        protected void readStreamHeader () {
+            
+        }
+        
+        @Override
+        protected ObjectStreamClass readClassDescriptor () throws IOException, ClassNotFoundException {
+            
+            final int type = this.readUnsignedByte();
+            
+            if (type == DESCRIPTOR_INLINE)
+                return super.readClassDescriptor();
+                
+            final int index = this.readUnsignedShort();
+            
+            if (type == DESCRIPTOR_DEFINITION) {
+                
+                final ObjectStreamClass descriptor = super.readClassDescriptor();
+                this.table.put(index, descriptor);
+                return descriptor;
+            }
+            
+            if (type != DESCRIPTOR_REFERENCE)
+                throw new StreamCorruptedException("Invalid class descriptor marker " + type);
+                
+            final ObjectStreamClass descriptor = this.table.get(index);
+            
+            if (descriptor == null)
+                throw new StreamCorruptedException("Class descriptor " + index + " has not been defined.");
+                
+            return descriptor;
+        }
+    }
+}
@@ -1,10 +1,71 @@
 package net.darkhax.nbttest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 
+import net.darkhax.opennbt.NBTBatchLoader;
 import net.darkhax.opennbt.NBTHelper;
+import net.darkhax.opennbt.compression.BlockGzipFile;
+import net.darkhax.opennbt.compression.BlockGzipOutputStream;
+import net.darkhax.opennbt.compression.CodecPool;
+import net.darkhax.opennbt.compression.Compression;
+import net.darkhax.opennbt.compression.CompressionFormat;
+import net.darkhax.opennbt.compression.GzipInputStream;
+import net.darkhax.opennbt.io.ByteBufferNBTReader;
+import net.darkhax.opennbt.io.NBTDecoder;
+import net.darkhax.opennbt.io.NBTEvent;
+import net.darkhax.opennbt.io.NBTEventReader;
+import net.darkhax.opennbt.io.NBTFrameCodec;
+import net.darkhax.opennbt.io.NBTProjection;
+import net.darkhax.opennbt.io.NBTReader;
+import net.darkhax.opennbt.io.NBTStreamWriter;
+import net.darkhax.opennbt.io.NBTWriter;
+import net.darkhax.opennbt.mapping.NBTMapper;
+import net.darkhax.opennbt.mapping.NBTName;
+import net.darkhax.opennbt.mapping.NBTSerializable;
+import net.darkhax.opennbt.region.RegionFile;
 import net.darkhax.opennbt.tags.CompoundTag;
+import net.darkhax.opennbt.tags.DoubleTag;
+import net.darkhax.opennbt.tags.IntTag;
+import net.darkhax.opennbt.tags.ListTag;
+import net.darkhax.opennbt.tags.NBTKey;
+import net.darkhax.opennbt.tags.SerializableArrayTag;
+import net.darkhax.opennbt.tags.SerializableTag;
 import net.darkhax.opennbt.tags.StringTag;
+import net.darkhax.opennbt.tags.Tag;
+import net.darkhax.opennbt.tags.TagCreateException;
+import net.darkhax.opennbt.tags.TagRegisterException;
+import net.darkhax.opennbt.tags.TagRegistry;
 
 public class OpenNBTTest {
     
@@ -18,6 +79,29 @@ public class OpenNBTTest {
         runIOTest();
         runBooleanConversionTest();
         runMassIOTest();
+        runEventReaderTest();
+        runStreamWriterTest();
+        runRegionFileTest();
+        runAsyncIOTest();
+        runBatchLoaderTest();
+        runBatchLoaderFailureTest();
+        runNameTableTest();
+        runSerializedSizeTest();
+        runChannelWriteTest();
+        runDecoderTest();
+        runSerializableCodecTest();
+        runGeneratedCodecTest();
+        runMapperTest();
+        runNumericTagTest();
+        runCompactCompoundTest();
+        runFrozenTagTest();
+        runMappedFileTest();
+        runLazyReadTest();
+        runProjectionTest();
+        runCompressionTest();
+        runBlockGzipTest();
+        runModifiedUTFTest();
+        runCustomTagTest();
     }
     
     /**
@@ -111,4 +195,1422 @@ public class OpenNBTTest {
         System.out.println("Read Tag Dump: " + readTag.toString());
         System.out.println("The mass IO test was " + ((tag.equals(readTag)) ? "successful!" : "not successful!") + NEW_LINE);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Performs a test on the event reader. The goal of this test is to write a tag with nested
+     * data, and then pick a few values out of it using events without building the tag tree.
+     * For the test to be considered a success, the picked values must match the input.
+     */
+    private static void runEventReaderTest () {
+        
+        System.out.println("Starting event reader test");
+        
+        // Creates a new CompoundTag with a nested tag and a large array.
+        final CompoundTag tag = new CompoundTag("EventTag");
+        final CompoundTag player = new CompoundTag("Player");
+        player.setString("Name", "Steve");
+        player.setFloat("Health", 20f);
+        tag.setCompoundTag("Player", player);
+        tag.setLongArray("Blocks", new long[4096]);
+        tag.setInt("Version", 1337);
+        
+        // Writes the tag to a new file called NBTExample.nbt
+        NBTHelper.writeFile(tag, "NBTExample.nbt", false);
+        
+        String name = null;
+        float health = 0f;
+        int version = 0;
+        
+        // Reads the values from the NBTExample.nbt file, skipping over the array payload.
+        try (NBTEventReader reader = new NBTEventReader(new NBTReader(new FileInputStream("NBTExample.nbt")))) {
+            
+            while (reader.next() != NBTEvent.END_DOCUMENT)
+                if (reader.getEvent() == NBTEvent.VALUE && reader.getName().equals("Name"))
+                    name = reader.getString();
+                    
+                else if (reader.getEvent() == NBTEvent.VALUE && reader.getName().equals("Health"))
+                    health = reader.getFloat();
+                    
+                else if (reader.getEvent() == NBTEvent.VALUE && reader.getName().equals("Version"))
+                    version = reader.getInt();
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("Name: " + name + NEW_LINE + "Health: " + health + NEW_LINE + "Version: " + version);
+        System.out.println("The event reader test was " + ("Steve".equals(name) && health == 20f && version == 1337 ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test on the streaming writer. The goal of this test is to write nested data
+     * without building a tag tree, and then read it back as a normal tag. For the test to be
+     * considered a success, the read tag must match the same data built as a tree.
+     */
+    private static void runStreamWriterTest () {
+        
+        System.out.println("Starting stream writer test");
+        
+        // Creates a new CompoundTag with a nested tag and a list.
+        final CompoundTag tag = new CompoundTag("StreamTag");
+        final CompoundTag player = new CompoundTag("Player");
+        player.setString("Name", "Steve");
+        player.setLongArray("Seeds", new long[] { 1, 2, 3 });
+        player.setTagList("Pos", Arrays.asList(new DoubleTag("x", 0.5d), new DoubleTag("y", 64d), new DoubleTag("z", 0.5d)));
+        player.setTag(new ListTag("Effects", CompoundTag.class));
+        tag.setCompoundTag("Player", player);
+        tag.setInt("Version", 1337);
+        
+        CompoundTag readTag = null;
+        boolean identical = false;
+        
+        // Writes the same data using the streaming writer, and reads it back.
+        try (NBTWriter out = new NBTWriter()) {
+            
+            final NBTStreamWriter writer = new NBTStreamWriter(out);
+            writer.beginCompound("StreamTag").beginCompound("Player").writeString("Name", "Steve").writeLongArray("Seeds", new long[] { 1, 2, 3 });
+            writer.beginList("Pos", DoubleTag.ID, 3).writeDouble("x", 0.5d).writeDouble("y", 64d).writeDouble("z", 0.5d).end();
+            writer.beginList("Effects", CompoundTag.ID, 0).end();
+            writer.end().writeInt("Version", 1337).end();
+            readTag = (CompoundTag) NBTHelper.readTag(new NBTReader(out.toByteArray()));
+            identical = Arrays.equals(out.toByteArray(), NBTHelper.toBytes(tag));
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("Expected: " + tag + NEW_LINE + "Streamed: " + readTag);
+        System.out.println("The stream writer test was " + (tag.equals(readTag) && identical ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test on region files. A small and a large chunk are written, then the small
+     * chunk is grown so it has to be moved, and the file is opened again. On success, every
+     * chunk read back must be the same as the chunk which was written.
+     */
+    private static void runRegionFileTest () {
+        
+        System.out.println("Starting region file test");
+        
+        final CompoundTag small = new CompoundTag("Chunk");
+        small.setInt("xPos", 1);
+        small.setInt("zPos", 2);
+        
+        final CompoundTag large = new CompoundTag("Chunk");
+        large.setIntArray("Data", new int[4096]);
+        
+        final File file = new File("r.0.0.mca");
+        file.delete();
+        boolean passed = false;
+        
+        try {
+            
+            try (RegionFile region = new RegionFile(file)) {
+                
+                region.writeChunk(1, 2, small);
+                region.writeChunk(3, 4, large);
+                small.setByteArray("Blocks", new byte[16384]);
+                region.writeChunk(1, 2, small, Compression.NONE);
+            }
+            
+            try (RegionFile region = new RegionFile(file)) {
+                
+                passed = region.hasChunk(1, 2) && !region.hasChunk(2, 1) && region.getTimestamp(3, 4) > 0 && region.readChunk(2, 1) == null;
+                passed &= region.readChunk(1, 2).getByteArray("Blocks").length == 16384 && region.readChunk(1, 2).getInt("zPos") == 2;
+                passed &= region.readChunk(3, 4).getIntArray("Data").length == 4096;
+            }
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("Region file size: " + file.length());
+        System.out.println("The region file test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test on the asynchronous IO methods. A tag is written and read back without
+     * blocking, and reading a missing file must complete the future exceptionally.
+     */
+    private static void runAsyncIOTest () {
+        
+        System.out.println("Starting async IO test");
+        
+        final CompoundTag tag = new CompoundTag("AsyncTag");
+        tag.setString("TestString", "Hello World!");
+        boolean passed = false;
+        
+        try {
+            
+            final CompoundTag readTag = NBTHelper.writeFileAsync(tag, "NBTAsync.nbt").thenCompose(ignored -> NBTHelper.readFileAsync("NBTAsync.nbt")).get();
+            passed = NBTHelper.readFileAsync("Missing.nbt").handle((missing, error) -> error instanceof IOException).get() && tag.equals(readTag);
+            System.out.println("Async Read: " + readTag);
+        }
+        
+        catch (final InterruptedException | ExecutionException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The async IO test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test on the batch loader. Several files are written and read back in
+     * parallel, along with a missing file. On success, every written file must be read in
+     * order, and the missing file must be reported as a failure.
+     */
+    private static void runBatchLoaderTest () {
+        
+        System.out.println("Starting batch loader test");
+        
+        final List<Path> paths = new ArrayList<Path>();
+        final List<Path> failures = new ArrayList<Path>();
+        
+        for (int index = 0; index < 16; index++) {
+            
+            final CompoundTag tag = new CompoundTag("BatchTag");
+            tag.setInt("Index", index);
+            NBTHelper.writeFile(tag, "NBTBatch" + index + ".nbt");
+            paths.add(Paths.get("NBTBatch" + index + ".nbt"));
+        }
+        
+        paths.add(Paths.get("Missing.nbt"));
+        final Map<Path, CompoundTag> tags = NBTBatchLoader.DEFAULT.withConcurrency(4).withFailureHandler((path, error) -> failures.add(path)).load(paths);
+        boolean passed = tags.size() == 16 && failures.equals(Arrays.asList(Paths.get("Missing.nbt")));
+        int expected = 0;
+        
+        for (final CompoundTag tag : tags.values())
+            passed &= tag.getInt("Index") == expected++;
+            
+        // Results for the test
+        System.out.println("Files Read: " + tags.size() + NEW_LINE + "Failures: " + failures);
+        System.out.println("The batch loader test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of a batch containing a file which throws an Error while it is read.
+     * The file is nested deeply enough to overflow the stack of the worker reading it. For the
+     * test to be considered a success, the Error must be passed to the failure handler, and
+     * the rest of the batch must still be read.
+     */
+    private static void runBatchLoaderFailureTest () {
+        
+        System.out.println("Starting batch loader failure test");
+        
+        final int depth = 200000;
+        final byte[] nested = new byte[depth * 4];
+        
+        for (int level = 0; level < depth; level++)
+            nested[level * 3] = CompoundTag.ID;
+            
+        final List<Path> paths = new ArrayList<Path>();
+        final Map<Path, Throwable> failures = new ConcurrentHashMap<Path, Throwable>();
+        boolean passed = false;
+        
+        try {
+            
+            Files.write(Paths.get("NBTNested.nbt"), nested);
+            paths.add(Paths.get("NBTNested.nbt"));
+            
+            final CompoundTag tag = new CompoundTag("BatchTag");
+            tag.setInt("Index", 1);
+            NBTHelper.writeFile(tag, "NBTBatchAfterNested.nbt");
+            paths.add(Paths.get("NBTBatchAfterNested.nbt"));
+            
+            final Map<Path, CompoundTag> tags = NBTBatchLoader.DEFAULT.withConcurrency(1).withFailureHandler(failures::put).load(paths);
+            passed = tags.size() == 1 && tags.get(Paths.get("NBTBatchAfterNested.nbt")).getInt("Index") == 1 && failures.get(Paths.get("NBTNested.nbt")) instanceof StackOverflowError;
+            
+            // Streams must not count the files which could not be read.
+            final NBTBatchLoader loader = NBTBatchLoader.DEFAULT.withConcurrency(1).withFailureHandler((path, error) -> {});
+            
+            try (Stream<Map.Entry<Path, CompoundTag>> stream = loader.stream(paths)) {
+                
+                passed &= stream.count() == 1;
+            }
+            
+            try (Stream<Map.Entry<Path, CompoundTag>> stream = loader.stream(paths)) {
+                
+                passed &= stream.toArray().length == 1;
+            }
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("Failures: " + failures.values());
+        System.out.println("The batch loader failure test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test on shared tag names. The same tag is read twice, and the names of both
+     * copies must be the same instance as the name of a key, which must also find the tag.
+     */
+    private static void runNameTableTest () {
+        
+        System.out.println("Starting name table test");
+        
+        final NBTKey key = NBTKey.of("TestInteger");
+        final CompoundTag tag = new CompoundTag("NameTag");
+        tag.setInt(key, 1337);
+        boolean passed = false;
+        
+        try (NBTWriter out = new NBTWriter()) {
+            
+            NBTHelper.writeTag(out, tag);
+            final CompoundTag first = (CompoundTag) NBTHelper.readTag(new NBTReader(out.toByteArray()));
+            final CompoundTag second = (CompoundTag) NBTHelper.readTag(new NBTReader(out.toByteArray()));
+            passed = first.getTag(key).getName() == key.getName() && second.getTag(key).getName() == key.getName() && second.getInt(key) == 1337;
+            
+            // Keys must also find tags in large compounds, under names which are not canonical.
+            final CompoundTag large = new CompoundTag("LargeTag");
+            
+            for (int index = 0; index < 20; index++)
+                large.setInt(new String("TestInteger" + (index == 10 ? "" : index)), index);
+                
+            passed &= large.hasTag(key) && large.getInt(key) == 10 && large.getAsLong(key) == 10L && large.<IntTag> removeTag(key).getAsInt() == 10 && !large.hasTag(key) && large.size() == 19;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The name table test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of the serialized size of tags, and of reading and writing tags with
+     * byte arrays and buffers. For the test to be considered a success, the computed size must
+     * match the written size before and after the tag is changed, and the tag must survive a
+     * round trip through an array and a direct buffer.
+     */
+    private static void runSerializedSizeTest () {
+        
+        System.out.println("Starting serialized size test");
+        
+        final CompoundTag tag = new CompoundTag("SizeTag");
+        tag.setInt("TestInteger", 1337);
+        tag.setString("TestString", "Hello World!");
+        tag.setIntArray("TestIntegerArray", new int[] { 200, 200, 208, 208, 203, 205, 203, 205, 48, 30 });
+        boolean passed = false;
+        
+        try {
+            
+            final byte[] before = NBTHelper.toBytes(tag);
+            final int sizeBefore = tag.serializedSize();
+            tag.setString("TestString", "Hello again, World!");
+            final byte[] after = NBTHelper.toBytes(tag);
+            
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(after.length);
+            NBTHelper.toBytes(tag, buffer);
+            buffer.flip();
+            
+            passed = before.length == sizeBefore && after.length == tag.serializedSize() && after.length == before.length + 7 && tag.equals(NBTHelper.fromBytes(after)) && tag.equals(NBTHelper.fromBytes(buffer)) && !buffer.hasRemaining();
+            
+            // Changes made deep in the tree must reach the cached size of the root.
+            final CompoundTag child = new CompoundTag("Child");
+            child.setString("Name", "Steve");
+            final ListTag children = new ListTag("Children", CompoundTag.class);
+            children.add(child);
+            tag.setTag(children);
+            final int sizeNested = tag.serializedSize();
+            child.setString("Name", "Alexandra");
+            passed &= tag.serializedSize() == sizeNested + 4 && tag.serializedSize() == NBTHelper.toBytes(tag).length;
+            
+            // Removing a tag through a view must clear the cached size as well.
+            final int sizeRemoved = tag.serializedSize() - children.serializedSize();
+            tag.keySet().remove("Children");
+            child.setString("Name", "Steve");
+            passed &= tag.serializedSize() == sizeRemoved && tag.serializedSize() == NBTHelper.toBytes(tag).length;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The serialized size test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of writing large arrays to a channel. Arrays this large are written
+     * straight to the channel instead of through the buffer. For the test to be considered a
+     * success, the file must match the same tag written into memory.
+     */
+    private static void runChannelWriteTest () {
+        
+        System.out.println("Starting channel write test");
+        
+        final long[] longs = new long[50000];
+        Arrays.setAll(longs, index -> index * 31L);
+        
+        final CompoundTag tag = new CompoundTag("ChannelTag");
+        tag.setLongArray("TestLongArray", longs);
+        tag.setByteArray("TestByteArray", new byte[20000]);
+        tag.setString("TestString", "Hello World!");
+        boolean passed = false;
+        
+        try {
+            
+            final File file = new File("NBTChannel.nbt");
+            NBTHelper.writeFile(tag, file, Compression.NONE);
+            passed = Arrays.equals(NBTHelper.toBytes(tag), Files.readAllBytes(file.toPath())) && Arrays.equals(NBTHelper.readFile(file, Compression.NONE).getLongArray("TestLongArray"), longs);
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The channel write test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of the incremental decoders. Two tags are handed to each decoder one
+     * byte at a time. For the test to be considered a success, both tags must be decoded, and
+     * must be the same as the tags which were written.
+     */
+    private static void runDecoderTest () {
+        
+        System.out.println("Starting decoder test");
+        
+        final CompoundTag tag = new CompoundTag("DecoderTag");
+        tag.setInt("TestInteger", 1337);
+        tag.setString("TestString", "Hello World!");
+        tag.setIntArray("TestIntegerArray", new int[] { 200, 200, 208, 208, 203, 205, 203, 205, 48, 30 });
+        boolean passed = false;
+        
+        try {
+            
+            final byte[] bytes = NBTHelper.toBytes(tag);
+            final ByteBuffer frame = NBTFrameCodec.encode(tag);
+            final NBTDecoder decoder = new NBTDecoder();
+            final NBTFrameCodec codec = new NBTFrameCodec();
+            
+            for (int pass = 0; pass < 2; pass++) {
+                
+                for (final byte value : bytes)
+                    decoder.feed(ByteBuffer.wrap(new byte[] { value }));
+                    
+                for (int index = 0; index < frame.limit(); index++)
+                    codec.feed(ByteBuffer.wrap(frame.array(), index, 1));
+            }
+            
+            passed = tag.equals(decoder.poll()) && tag.equals(decoder.poll()) && decoder.poll() == null && tag.equals(codec.poll()) && tag.equals(codec.poll()) && codec.poll() == null;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The decoder test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests that serializable values are written with their codecs or with shared class
+     * descriptors, that values from older versions can still be read, and that classes which
+     * are not allowed are rejected.
+     */
+    private static void runSerializableCodecTest () {
+        
+        System.out.println("Starting serializable codec test");
+        
+        final CompoundTag tag = new CompoundTag("SerializableTag");
+        
+        for (int index = 0; index < 10; index++)
+            tag.setTag(new SerializableTag("TestList" + index, new ArrayList<Integer>(Arrays.asList(index, index + 1))));
+            
+        tag.setTag(new SerializableTag("TestUUID", new UUID(1337, 42)));
+        tag.setTag(new SerializableArrayTag("TestArray", new Serializable[] { 1337, "Hello World!", null }));
+        boolean passed = false;
+        
+        try {
+            
+            final int single = new SerializableTag("TestList0", new ArrayList<Integer>(Arrays.asList(0, 1))).serializedSize();
+            final byte[] bytes = NBTHelper.toBytes(tag);
+            final boolean shared = bytes.length < single * 10 / 2;
+            final boolean read = tag.equals(NBTHelper.fromBytes(bytes)) && tag.equals(NBTHelper.fromBytes(NBTHelper.toBytes(NBTHelper.readTagLazy(bytes, 0, bytes.length))));
+            
+            final NBTWriter legacy = new NBTWriter();
+            legacy.writeByte(SerializableTag.ID);
+            legacy.writeUTF("LegacyList");
+            final ObjectOutputStream stream = new ObjectOutputStream(legacy);
+            stream.writeObject(new ArrayList<String>(Arrays.asList("Hello World!")));
+            stream.flush();
+            final boolean legacyRead = Arrays.asList("Hello World!").equals(NBTHelper.fromBytes(legacy.toByteArray()).getValue());
+            
+            boolean rejected = false;
+            
+            try {
+                
+                NBTHelper.fromBytes(NBTHelper.toBytes(new SerializableTag("Rejected", new AtomicInteger(1337))));
+            }
+            
+            catch (final InvalidClassException e) {
+                
+                rejected = true;
+            }
+            
+            passed = shared && read && legacyRead && rejected;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The serializable codec test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests that the codec generated for {@link MappedData} matches a hand written tag, and
+     * reads back what it writes.
+     */
+    private static void runGeneratedCodecTest () {
+        
+        System.out.println("Starting generated codec test");
+        
+        final MappedData data = new MappedData();
+        data.integer = 1337;
+        data.string = "Hello World!";
+        data.integers = new int[] { 200, 200, 208, 208, 203, 205, 203, 205, 48, 30 };
+        data.child = new MappedData();
+        data.child.integer = 42;
+        
+        final CompoundTag tag = new CompoundTag("MappedData");
+        tag.setInt("TestInteger", 1337);
+        tag.setString("string", "Hello World!");
+        tag.setIntArray("integers", data.integers);
+        final CompoundTag child = new CompoundTag("child");
+        child.setInt("TestInteger", 42);
+        tag.setCompoundTag("child", child);
+        boolean passed = false;
+        
+        try {
+            
+            final NBTWriter out = new NBTWriter();
+            out.writeByte(CompoundTag.ID);
+            out.writeUTF("MappedData");
+            OpenNBTTest_MappedData_NBTCodec.INSTANCE.write(out, data);
+            
+            final NBTReader in = new NBTReader(out.toByteArray());
+            in.readUnsignedByte();
+            in.readName();
+            final MappedData read = OpenNBTTest_MappedData_NBTCodec.INSTANCE.read(in);
+            
+            passed = tag.equals(OpenNBTTest_MappedData_NBTCodec.INSTANCE.toTag("MappedData", data)) && Arrays.equals(NBTHelper.toBytes(tag), out.toByteArray()) && tag.equals(OpenNBTTest_MappedData_NBTCodec.INSTANCE.toTag("MappedData", read)) && read.child.integer == 42 && read.child.string == null;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The generated codec test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests that {@link NBTMapper} maps an unannotated class, including its collections,
+     * arrays and nested objects, and that the object read back is the same as the original.
+     */
+    private static void runMapperTest () {
+        
+        System.out.println("Starting mapper test");
+        
+        final RuntimeData data = new RuntimeData();
+        data.number = 1337L;
+        data.flags = new boolean[] { true, false, true };
+        data.names.add("Darkhax");
+        data.names.add("OpenNBT");
+        data.scores.put("first", 48);
+        data.scores.put("second", 30);
+        data.mode = Thread.State.RUNNABLE;
+        data.children = new RuntimeData[] { new RuntimeData() };
+        data.children[0].number = 42L;
+        boolean passed = false;
+        
+        try {
+            
+            final CompoundTag tag = NBTMapper.toTag("RuntimeData", data);
+            final ListTag names = tag.getTag("names");
+            
+            final NBTWriter out = new NBTWriter();
+            NBTMapper.getCodec(RuntimeData.class).write(out, data);
+            final RuntimeData read = NBTMapper.getCodec(RuntimeData.class).read(new NBTReader(out.toByteArray()));
+            final RuntimeData mapped = NBTMapper.fromTag(tag, RuntimeData.class);
+            
+            passed = tag.getLong("number") == 1337L && names.size() == 2 && tag.getCompoundTag("scores").getInt("second") == 30 && "RUNNABLE".equals(tag.getString("mode")) && !((CompoundTag) tag.getTagList("children").get(0)).hasTag("mode");
+            passed &= read.equals(data) && mapped.equals(data) && mapped.names != read.names && NBTMapper.getCodec(MappedData.class).getClass() == OpenNBTTest_MappedData_NBTCodec.class;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+        }
+        
+        // Results for the test
+        System.out.println("The mapper test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests the unboxed number accessors of {@link CompoundTag}. Setting a number of the same
+     * type must update the stored tag, widening getters must accept smaller types, and the
+     * plain getters must still reject tags of another type.
+     */
+    private static void runNumericTagTest () {
+        
+        System.out.println("Starting numeric tag test");
+        
+        final CompoundTag tag = new CompoundTag("Numbers");
+        tag.setInt("int", 1337);
+        tag.setByte("byte", (byte) -5);
+        tag.setFloat("float", 0.5f);
+        final IntTag stored = tag.getTag("int");
+        
+        tag.setInt("int", 42);
+        tag.setLong("byte", 7L);
+        boolean passed = stored == tag.getTag("int") && stored.getAsInt() == 42 && tag.getInt("int") == 42 && tag.getLong("byte") == 7L;
+        
+        tag.setByte("small", (byte) -5);
+        passed &= tag.getAsLong("small") == -5L && tag.getAsDouble("float") == 0.5d && tag.getAsFloat("int") == 42f && tag.getAsInt("missing") == 0;
+        
+        try {
+            
+            tag.getAsInt("byte");
+            passed = false;
+        }
+        
+        catch (final ClassCastException e) {
+            
+            // A long can not be widened to an int.
+        }
+        
+        try {
+            
+            tag.getInt("small");
+            passed = false;
+        }
+        
+        catch (final ClassCastException e) {
+            
+            // The plain getters only accept their own type.
+        }
+        
+        // A tag shared with another compound must be replaced rather than changed.
+        final CompoundTag other = new CompoundTag("Other");
+        other.setTag(stored);
+        tag.setInt("int", 7);
+        passed &= stored.getAsInt() == 42 && other.getInt("int") == 42 && tag.getInt("int") == 7 && tag.getTag("int") != stored;
+        
+        // Results for the test
+        System.out.println("The numeric tag test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests the compact layout of compound tags. Compounds large enough to be indexed must keep
+     * their insertion order through removals, and compounds sharing a layout must still be
+     * changed independently.
+     */
+    private static void runCompactCompoundTest () {
+        
+        System.out.println("Starting compact compound test");
+        
+        final CompoundTag large = new CompoundTag("Large");
+        final List<String> expected = new ArrayList<String>();
+        
+        for (int index = 0; index < 40; index++) {
+            
+            large.setInt("Key" + index, index);
+            expected.add("Key" + index);
+        }
+        
+        large.removeTag("Key3");
+        expected.remove("Key3");
+        
+        for (final Iterator<String> keys = large.keySet().iterator(); keys.hasNext();)
+            if (keys.next().endsWith("7"))
+                keys.remove();
+                
+        expected.removeIf(key -> key.endsWith("7"));
+        boolean passed = new ArrayList<String>(large.keySet()).equals(expected) && large.getInt("Key39") == 39 && !large.hasTag("Key17");
+        
+        final CompoundTag first = new CompoundTag("Shared");
+        first.setString("id", "minecraft:stone");
+        first.setByte("Count", (byte) 1);
+        final CompoundTag second = first.clone();
+        second.setByte("Count", (byte) 64);
+        second.setShort("Damage", (short) 3);
+        first.removeTag("id");
+        
+        passed &= first.size() == 1 && first.getByte("Count") == 1 && second.size() == 3 && "minecraft:stone".equals(second.getString("id")) && second.getByte("Count") == 64;
+        
+        try {
+            
+            passed &= large.equals(NBTHelper.fromBytes(NBTHelper.toBytes(large))) && second.equals(NBTHelper.fromBytes(NBTHelper.toBytes(second)));
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("The compact compound test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Tests frozen tags. A lazily read tree must be fully decoded and frozen, changes to it must
+     * be rejected, and new versions made with {@link CompoundTag#with(Tag)} must share the
+     * children which were not changed.
+     */
+    private static void runFrozenTagTest () {
+        
+        System.out.println("Starting frozen tag test");
+        
+        final CompoundTag root = new CompoundTag("Root");
+        final CompoundTag player = new CompoundTag("Player");
+        player.setInt("Health", 20);
+        player.setString("Name", "Darkhax");
+        root.setCompoundTag("Player", player);
+        final ListTag inventory = new ListTag("Inventory", CompoundTag.class);
+        
+        for (int slot = 0; slot < 10; slot++) {
+            
+            final CompoundTag item = new CompoundTag("");
+            item.setByte("Slot", (byte) slot);
+            item.setString("id", "minecraft:stone");
+            inventory.add(item);
+        }
+        
+        root.setTag(inventory);
+        boolean passed = false;
+        
+        try {
+            
+            final CompoundTag frozen = new CompoundTag("Root");
+            frozen.readLazy(NBTHelper.toBytes(root), 7, Integer.MAX_VALUE);
+            frozen.freeze();
+            
+            final ListTag frozenInventory = frozen.getTag("Inventory");
+            passed = frozen.equals(root) && frozenInventory.isFrozen() && ((CompoundTag) frozenInventory.get(3)).isFrozen() && frozen.getCompoundTag("Player").getTag("Health").isFrozen();
+            
+            try {
+                
+                frozen.getCompoundTag("Player").setInt("Health", 1);
+                passed = false;
+            }
+            
+            catch (final UnsupportedOperationException e) {
+                
+                // Frozen tags can not be changed.
+            }
+            
+            try {
+                
+                frozen.getValue().remove("Player");
+                passed = false;
+            }
+            
+            catch (final UnsupportedOperationException e) {
+                
+                // Neither can their values.
+            }
+            
+            final CompoundTag updated = frozen.with(frozen.getCompoundTag("Player").with(new IntTag("Health", 5)));
+            passed &= updated.isFrozen() && updated.getCompoundTag("Player").getInt("Health") == 5 && frozen.getCompoundTag("Player").getInt("Health") == 20;
+            passed &= updated.getTag("Inventory") == frozenInventory && updated.getCompoundTag("Player").getTag("Name") == frozen.getCompoundTag("Player").getTag("Name");
+            passed &= updated.without("Inventory").size() == 1 && frozenInventory.withAdded(new CompoundTag("")).size() == 11 && frozenInventory.size() == 10;
+            
+            final int size = updated.serializedSize();
+            passed &= IntStream.range(0, 1000).parallel().allMatch(index -> updated.serializedSize() == size && updated.getCompoundTag("Player").getInt("Health") == 5);
+            
+            final CompoundTag copy = updated.clone();
+            copy.getCompoundTag("Player").setInt("Health", 10);
+            passed &= !copy.isFrozen() && copy.getCompoundTag("Player").getInt("Health") == 10 && updated.getCompoundTag("Player").getInt("Health") == 5;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("The frozen tag test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of reading uncompressed files through a memory mapped buffer. A tag
+     * holding every common type is written without compression, and must be the same when it
+     * is mapped back in as when it is read normally.
+     */
+    private static void runMappedFileTest () {
+        
+        System.out.println("Starting mapped file test");
+        
+        final CompoundTag tag = new CompoundTag("MappedTag");
+        tag.setByte("Byte", Byte.MIN_VALUE);
+        tag.setShort("Short", Short.MAX_VALUE);
+        tag.setInt("Int", Integer.MIN_VALUE);
+        tag.setLong("Long", Long.MAX_VALUE);
+        tag.setFloat("Float", 1.5f);
+        tag.setDouble("Double", -2.25d);
+        tag.setString("String", "Gr\u00fc\u00dfe, \u4e16\u754c");
+        tag.setByteArray("ByteArray", new byte[] { 1, 2, 3 });
+        tag.setIntArray("IntArray", IntStream.range(0, 5000).toArray());
+        tag.setLongArray("LongArray", new long[] { Long.MIN_VALUE, 0L, Long.MAX_VALUE });
+        tag.setDoubleArray("DoubleArray", new double[] { Double.MIN_VALUE, Double.MAX_VALUE });
+        tag.setStringArray("StringArray", new String[] { "one", "", "three" });
+        
+        final List<Tag> children = new ArrayList<Tag>();
+        
+        for (int index = 0; index < 10; index++) {
+            
+            final CompoundTag child = new CompoundTag("");
+            child.setInt("Index", index);
+            child.setString("Name", "Child " + index);
+            children.add(child);
+        }
+        
+        tag.setTagList("Children", children);
+        
+        NBTHelper.writeFile(tag, "NBTMapped.nbt", false);
+        final CompoundTag mapped = NBTHelper.readMappedFile("NBTMapped.nbt");
+        final boolean passed = mapped != null && tag.equals(mapped) && mapped.equals(NBTHelper.readFile("NBTMapped.nbt", false)) && mapped.getTagList("Children").size() == 10;
+        
+        // Results for the test
+        System.out.println("The mapped file test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of lazy reading. A file is read lazily, and only one child of a compound
+     * and one element of a list are changed. The untouched parts must be written back exactly
+     * as they were read, and the file must read back with only those changes applied.
+     */
+    private static void runLazyReadTest () {
+        
+        System.out.println("Starting lazy read test");
+        
+        final CompoundTag tag = new CompoundTag("LazyTag");
+        final List<Tag> entities = new ArrayList<Tag>();
+        
+        for (int index = 0; index < 100; index++) {
+            
+            final CompoundTag entity = new CompoundTag("");
+            entity.setInt("Id", index);
+            entity.setString("Name", "Entity " + index);
+            entity.setDoubleArray("Pos", new double[] { index, index * 2, index * 3 });
+            entities.add(entity);
+        }
+        
+        final CompoundTag player = new CompoundTag("Player");
+        player.setInt("Health", 20);
+        player.setString("Name", "Steve");
+        tag.setTagList("Entities", entities);
+        tag.setTag(player);
+        tag.setIntArray("Heights", IntStream.range(0, 256).toArray());
+        boolean passed = false;
+        
+        try {
+            
+            NBTHelper.writeFile(tag, "NBTLazy.nbt", true);
+            final CompoundTag lazy = NBTHelper.readFileLazy("NBTLazy.nbt", true);
+            passed = Arrays.equals(NBTHelper.toBytes(lazy), NBTHelper.toBytes(tag)) && lazy.serializedSize() == tag.serializedSize();
+            
+            final CompoundTag lazyPlayer = lazy.getCompoundTag("Player");
+            lazyPlayer.setInt("Health", 5);
+            final ListTag lazyEntities = lazy.getTag("Entities");
+            lazyEntities.<CompoundTag> get(42).setString("Name", "Renamed");
+            
+            player.setInt("Health", 5);
+            ((CompoundTag) entities.get(42)).setString("Name", "Renamed");
+            tag.setTagList("Entities", entities);
+            
+            NBTHelper.writeFile(lazy, "NBTLazy.nbt", true);
+            final CompoundTag read = NBTHelper.readFile("NBTLazy.nbt", true);
+            passed &= lazy.serializedSize() == tag.serializedSize() && read.equals(tag) && read.getCompoundTag("Player").getInt("Health") == 5;
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("The lazy read test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of projected reads. Only the tags along the requested paths may be read,
+     * including every element of a list of compounds on a path, and a name which contains a
+     * dot. Every other tag must be left out.
+     */
+    private static void runProjectionTest () {
+        
+        System.out.println("Starting projection test");
+        
+        final CompoundTag tag = new CompoundTag("ProjectedTag");
+        final CompoundTag level = new CompoundTag("Level");
+        final List<Tag> sections = new ArrayList<Tag>();
+        
+        for (int index = 0; index < 16; index++) {
+            
+            final CompoundTag section = new CompoundTag("");
+            section.setByte("Y", (byte) index);
+            section.setByteArray("Blocks", new byte[4096]);
+            sections.add(section);
+        }
+        
+        level.setTagList("Sections", sections);
+        level.setInt("xPos", 12);
+        level.setInt("zPos", -3);
+        level.setStringArray("Entities", new String[] { "Pig", "Cow" });
+        tag.setTag(level);
+        tag.setInt("DataVersion", 1343);
+        tag.setString("Odd.Name", "Dotted");
+        boolean passed = false;
+        
+        try {
+            
+            final NBTProjection projection = NBTProjection.of("Level.Sections.Y", "Level.xPos").include("Odd.Name");
+            final CompoundTag projected = projection.read(new NBTReader(NBTHelper.toBytes(tag)));
+            final CompoundTag projectedLevel = projected.getCompoundTag("Level");
+            final List<Tag> projectedSections = projectedLevel.getTagList("Sections");
+            passed = projected.size() == 2 && projectedLevel.size() == 2 && projectedLevel.getInt("xPos") == 12 && !projectedLevel.hasTag("Entities") && !projected.hasTag("DataVersion") && projected.getString("Odd.Name").equals("Dotted") && projectedSections.size() == 16;
+            
+            for (int index = 0; index < projectedSections.size(); index++) {
+                
+                final CompoundTag section = (CompoundTag) projectedSections.get(index);
+                passed &= section.size() == 1 && section.getByte("Y") == index;
+            }
+            
+            NBTHelper.writeFile(tag, "NBTProjected.nbt", true);
+            final CompoundTag whole = NBTHelper.readFileProjected("NBTProjected.nbt", true, "Level");
+            passed &= whole.size() == 1 && whole.getCompoundTag("Level").equals(level) && NBTProjection.of().include().read(new NBTReader(NBTHelper.toBytes(tag))).equals(tag);
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("The projection test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of the compression codecs. A file written with each format must be read
+     * back when its format is detected, higher levels must compress better than lower ones,
+     * a deflater released to the pool must be handed out again, and data after the last GZIP
+     * member must be ignored.
+     */
+    private static void runCompressionTest () {
+        
+        System.out.println("Starting compression test");
+        
+        final CompoundTag tag = new CompoundTag("CompressedTag");
+        tag.setIntArray("Heights", IntStream.range(0, 4096).map(index -> index % 64).toArray());
+        tag.setString("Name", "Compressed");
+        final File file = new File("NBTCompressed.nbt");
+        boolean passed = true;
+        
+        for (final CompressionFormat format : new CompressionFormat[] { CompressionFormat.NONE, CompressionFormat.GZIP, CompressionFormat.ZLIB, CompressionFormat.BLOCK_GZIP }) {
+            
+            NBTHelper.writeFile(tag, file, Compression.of(format));
+            passed &= tag.equals(NBTHelper.readFile(file, (Compression) null)) && tag.equals(NBTHelper.readFile(file, Compression.of(format)));
+        }
+        
+        // Raw DEFLATE data has no header, so it can only be read when its format is given.
+        NBTHelper.writeFile(tag, file, Compression.DEFLATE);
+        passed &= tag.equals(NBTHelper.readFile(file, Compression.DEFLATE));
+        
+        NBTHelper.writeFile(tag, file, Compression.GZIP.withLevel(Deflater.NO_COMPRESSION));
+        final long stored = file.length();
+        passed &= tag.equals(NBTHelper.readFile(file, (Compression) null));
+        NBTHelper.writeFile(tag, file, Compression.GZIP.withLevel(Deflater.BEST_COMPRESSION).withStrategy(Deflater.FILTERED));
+        passed &= file.length() < stored && tag.equals(NBTHelper.readFile(file, (Compression) null)) && Compression.GZIP.withLevel(3).getLevel() == 3;
+        
+        final Deflater deflater = CodecPool.acquireDeflater(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY, false);
+        CodecPool.releaseDeflater(deflater, false);
+        final List<Deflater> taken = new ArrayList<Deflater>();
+        
+        while (taken.size() < 64 && !taken.contains(deflater))
+            taken.add(CodecPool.acquireDeflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, false));
+            
+        passed &= taken.contains(deflater);
+        taken.forEach(pooled -> CodecPool.releaseDeflater(pooled, false));
+        
+        // Streams created after the pool was used must still produce correct data.
+        for (int index = 0; index < 20; index++) {
+            
+            NBTHelper.writeFile(tag, file, Compression.ZLIB);
+            passed &= tag.equals(NBTHelper.readFile(file, (Compression) null));
+        }
+        
+        // Padding or a partial header after the last member must be ignored, as GZIPInputStream does.
+        NBTHelper.writeFile(tag, file, Compression.GZIP);
+        
+        for (final byte[] trailing : new byte[][] { new byte[512], new byte[] { 0x1f, (byte) 0x8b } })
+            try {
+                
+                final ByteArrayOutputStream padded = new ByteArrayOutputStream();
+                padded.write(Files.readAllBytes(file.toPath()));
+                padded.write(trailing);
+                
+                try (InputStream in = new GzipInputStream(new ByteArrayInputStream(padded.toByteArray()))) {
+                    
+                    passed &= Arrays.equals(readAll(in), NBTHelper.toBytes(tag));
+                }
+            }
+            
+            catch (final IOException e) {
+                
+                e.printStackTrace();
+                passed = false;
+            }
+            
+        // Results for the test
+        System.out.println("The compression test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of the block GZIP format. Data is written in blocks small enough to need
+     * more than one index member, and must be read back the same by a standard GZIP reader,
+     * block by block, and through parallel streams starting at the beginning and at an
+     * offset in the middle of a block.
+     */
+    private static void runBlockGzipTest () {
+        
+        System.out.println("Starting block gzip test");
+        
+        final byte[] data = new byte[200000];
+        
+        for (int index = 0; index < data.length; index++)
+            data[index] = (byte) (index * 31 ^ index >> 8);
+            
+        final File file = new File("NBTBlocks.gz");
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        boolean passed = false;
+        
+        try {
+            
+            try (BlockGzipOutputStream out = new BlockGzipOutputStream(new FileOutputStream(file), Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 16, pool, 8)) {
+                
+                out.write(data, 0, 1000);
+                
+                for (int index = 1000; index < data.length; index++)
+                    out.write(data[index]);
+            }
+            
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+                
+                passed = Arrays.equals(readAll(in), data);
+            }
+            
+            try (BlockGzipFile blocks = new BlockGzipFile(file.toPath())) {
+                
+                final int offset = 123457;
+                passed &= blocks.getSize() == data.length && blocks.getBlockCount() == data.length / 16 && blocks.findBlock(offset) == offset / 16;
+                passed &= Arrays.equals(blocks.readBlock(offset / 16), Arrays.copyOfRange(data, offset / 16 * 16, offset / 16 * 16 + 16));
+                
+                try (InputStream in = blocks.openStream()) {
+                    
+                    passed &= Arrays.equals(readAll(in), data);
+                }
+                
+                try (InputStream in = blocks.openStream(offset, pool, 8)) {
+                    
+                    passed &= Arrays.equals(readAll(in), Arrays.copyOfRange(data, offset, data.length));
+                }
+            }
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        pool.shutdown();
+        
+        // Results for the test
+        System.out.println("The block gzip test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Reads every remaining byte from a stream.
+     *
+     * @param in The stream to read.
+     * @return byte[] The bytes which were read.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static byte[] readAll (InputStream in) throws IOException {
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+            out.write(buffer, 0, read);
+            
+        return out.toByteArray();
+    }
+    
+    /**
+     * Performs a test of modified UTF-8 strings. Every string must be encoded to exactly the
+     * same bytes as DataOutputStream.writeUTF, including NUL characters, characters outside of
+     * the basic plane and lone surrogates, and must be decoded back by every kind of reader.
+     */
+    private static void runModifiedUTFTest () {
+        
+        System.out.println("Starting modified UTF test");
+        
+        final StringBuilder mixed = new StringBuilder();
+        
+        for (int index = 0; index < 5000; index++)
+            mixed.append((char) ('a' + index % 26)).append("\u00e9\u4e16").appendCodePoint(0x1f600 + index % 16);
+            
+        final String[] values = { "", "Hello World!", "Gr\u00fc\u00dfe", "\u4e16\u754c", "\u0000", "a\u0000b", "\ud83d\ude00", "\ud800", "\udc00", "x\udc00\ud800y", "\u007f\u0080\u07ff\u0800\uffff", mixed.toString() };
+        boolean passed = true;
+        
+        try {
+            
+            for (final String value : values) {
+                
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                
+                try (DataOutputStream out = new DataOutputStream(expected)) {
+                    
+                    out.writeUTF(value);
+                }
+                
+                final byte[] bytes = expected.toByteArray();
+                final NBTWriter writer = new NBTWriter();
+                writer.writeUTF(value);
+                
+                passed &= Arrays.equals(writer.toByteArray(), bytes) && NBTWriter.getUTFLength(value) == bytes.length;
+                passed &= value.equals(new NBTReader(bytes).readUTF()) && value.equals(new NBTReader(new ByteArrayInputStream(bytes), 16).readUTF());
+                passed &= value.equals(new ByteBufferNBTReader(ByteBuffer.wrap(bytes)).readUTF()) && value.equals(new DataInputStream(new ByteArrayInputStream(writer.toByteArray())).readUTF());
+            }
+            
+            try {
+                
+                new NBTWriter().writeUTF(mixed.toString() + mixed.toString());
+                passed = false;
+            }
+            
+            catch (final IOException e) {
+                
+                // Strings longer than 65535 encoded bytes can not be written.
+            }
+        }
+        
+        catch (final IOException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        // Results for the test
+        System.out.println("The modified UTF test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * Performs a test of registering custom tags. One tag is created through its constructor,
+     * another through a factory, and a third has an ID outside of the range which can be
+     * written. Custom tags must be written and read like the built in ones, and IDs and
+     * classes can not be registered twice.
+     */
+    private static void runCustomTagTest () {
+        
+        System.out.println("Starting custom tag test");
+        
+        boolean passed = TagRegistry.getIdFor(BrokenTag.class) == -1;
+        final int colorId = TagRegistry.getNextID();
+        TagRegistry.register(colorId, ColorTag.class);
+        final int versionId = TagRegistry.getNextID();
+        TagRegistry.register(versionId, VersionTag.class, name -> new VersionTag(name, 1));
+        TagRegistry.register(1000, BrokenTag.class, name -> {
+            
+            throw new IllegalStateException("Broken tags can not be created.");
+        });
+        
+        passed &= colorId != versionId && TagRegistry.getIdFor(ColorTag.class) == colorId && TagRegistry.getClassFor(versionId) == VersionTag.class && TagRegistry.getIdFor(BrokenTag.class) == 1000 && TagRegistry.getClassFor(1000) == BrokenTag.class;
+        
+        final CompoundTag tag = new CompoundTag("CustomTag");
+        final ColorTag color = new ColorTag("Color");
+        color.rgb = 0x3366ff;
+        tag.setTag(color);
+        tag.setTag(new VersionTag("Version", 7));
+        tag.setTagList("Palette", Arrays.asList(new ColorTag("First"), new ColorTag("Second")));
+        
+        try {
+            
+            final byte[] bytes = NBTHelper.toBytes(tag);
+            final CompoundTag read = (CompoundTag) NBTHelper.fromBytes(bytes);
+            passed &= tag.equals(read) && tag.equals(NBTHelper.readTagLazy(bytes, 0, bytes.length)) && read.<ColorTag> getTag("Color").rgb == 0x3366ff && read.<VersionTag> getTag("Version").version == 7;
+            passed &= ((VersionTag) TagRegistry.createInstance(versionId, "Created")).version == 1 && TagRegistry.createInstance(colorId, "Created") instanceof ColorTag;
+        }
+        
+        catch (final IOException | TagCreateException e) {
+            
+            e.printStackTrace();
+            passed = false;
+        }
+        
+        try {
+            
+            TagRegistry.register(versionId, ColorTag.class);
+            passed = false;
+        }
+        
+        catch (final TagRegisterException e) {
+            
+            // The ID is already in use.
+        }
+        
+        try {
+            
+            TagRegistry.register(TagRegistry.getNextID(), ColorTag.class);
+            passed = false;
+        }
+        
+        catch (final TagRegisterException e) {
+            
+            // The class is already registered.
+        }
+        
+        try {
+            
+            TagRegistry.createInstance(1000, "Broken");
+            passed = false;
+        }
+        
+        catch (final TagCreateException e) {
+            
+            // The factory throws an exception, which is wrapped.
+        }
+        
+        // Results for the test
+        System.out.println("The custom tag test was " + (passed ? "successful!" : "not successful!") + NEW_LINE);
+    }
+    
+    /**
+     * A class which has an NBT codec generated for it.
+     */
+    @NBTSerializable
+    static class MappedData {
+        
+        /**
+         * An int, which is written under a different name.
+         */
+        @NBTName("TestInteger")
+        int integer;
+        
+        /**
+         * A string, which is left out when null.
+         */
+        String string;
+        
+        /**
+         * An array of ints.
+         */
+        int[] integers;
+        
+        /**
+         * A nested object, written as a compound tag.
+         */
+        MappedData child;
+    }
+    
+    /**
+     * A class with no annotations, which is mapped at run time.
+     */
+    static class RuntimeData {
+        
+        /**
+         * A boxed long.
+         */
+        Long number;
+        
+        /**
+         * A boolean array, written as a byte array tag.
+         */
+        boolean[] flags;
+        
+        /**
+         * A list of strings, written as a list tag.
+         */
+        List<String> names = new ArrayList<String>();
+        
+        /**
+         * A map, written as a compound tag.
+         */
+        Map<String, Integer> scores = new LinkedHashMap<String, Integer>();
+        
+        /**
+         * An enum, written as the name of the constant.
+         */
+        Thread.State mode;
+        
+        /**
+         * An array of nested objects, written as a list of compound tags.
+         */
+        RuntimeData[] children;
+        
+        /**
+         * A transient field, which is not mapped.
+         */
+        transient int ignored = 5;
+        
+        @Override
+        public boolean equals (Object obj) {
+            
+            if (!(obj instanceof RuntimeData))
+                return false;
+                
+            final RuntimeData other = (RuntimeData) obj;
+            return Objects.equals(this.number, other.number) && Arrays.equals(this.flags, other.flags) && Objects.equals(this.names, other.names) && Objects.equals(this.scores, other.scores) && this.mode == other.mode && Arrays.equals(this.children, other.children);
+        }
+        
+        @Override
+        public int hashCode () {
+            
+            return Objects.hash(this.number, this.names, this.scores, this.mode);
+        }
+    }
+    
+    /**
+     * A custom tag which holds a color, and is created through its constructor.
+     */
+    static class ColorTag extends Tag {
+        
+        /**
+         * The color, as RGB.
+         */
+        int rgb;
+        
+        /**
+         * Creates a tag with the specified name.
+         *
+         * @param name The name of the tag.
+         */
+        ColorTag(String name) {
+            
+            super(name);
+        }
+        
+        @Override
+        public Integer getValue () {
+            
+            return this.rgb;
+        }
+        
+        @Override
+        public void read (NBTReader in) throws IOException {
+            
+            this.rgb = in.readInt();
+        }
+        
+        @Override
+        public void write (NBTWriter out) throws IOException {
+            
+            out.writeInt(this.rgb);
+        }
+        
+        @Override
+        public ColorTag clone () {
+            
+            final ColorTag copy = new ColorTag(this.getName());
+            copy.rgb = this.rgb;
+            return copy;
+        }
+    }
+    
+    /**
+     * A custom tag which holds a version, and has no constructor which only takes a name.
+     */
+    static class VersionTag extends Tag {
+        
+        /**
+         * The version.
+         */
+        int version;
+        
+        /**
+         * Creates a tag with the specified name and version.
+         *
+         * @param name The name of the tag.
+         * @param version The version.
+         */
+        VersionTag(String name, int version) {
+            
+            super(name);
+            this.version = version;
+        }
+        
+        @Override
+        public Integer getValue () {
+            
+            return this.version;
+        }
+        
+        @Override
+        public void read (NBTReader in) throws IOException {
+            
+            this.version = in.readShort();
+        }
+        
+        @Override
+        public void write (NBTWriter out) throws IOException {
+            
+            out.writeShort(this.version);
+        }
+        
+        @Override
+        public VersionTag clone () {
+            
+            return new VersionTag(this.getName(), this.version);
+        }
+    }
+    
+    /**
+     * A custom tag whose factory always fails.
+     */
+    static class BrokenTag extends VersionTag {
+        
+        /**
+         * Creates a tag with the specified name.
+         *
+         * @param name The name of the tag.
+         */
+        BrokenTag(String name) {
+            
+            super(name, 0);
+        }
+    }
+}